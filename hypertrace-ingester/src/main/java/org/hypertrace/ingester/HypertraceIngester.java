@@ -16,8 +16,9 @@ import org.hypertrace.core.serviceframework.config.ConfigClient;
 import org.hypertrace.core.serviceframework.config.ConfigClientFactory;
 import org.hypertrace.core.serviceframework.config.ConfigUtils;
 import org.hypertrace.core.spannormalizer.SpanNormalizer;
-import org.hypertrace.core.viewgenerator.service.MultiViewGeneratorLauncher;
 import org.hypertrace.traceenricher.trace.enricher.TraceEnricher;
+import org.hypertrace.viewgenerator.service.MetricsRollupViewLauncher;
+import org.hypertrace.viewgenerator.service.ParallelViewGeneratorLauncher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,7 +48,10 @@ public class HypertraceIngester extends KafkaStreamsApp {
         kafkaStreamsApp = new TraceEnricher(ConfigClientFactory.getClient());
         break;
       case "all-views":
-        kafkaStreamsApp = new MultiViewGeneratorLauncher(ConfigClientFactory.getClient());
+        kafkaStreamsApp = new ParallelViewGeneratorLauncher(ConfigClientFactory.getClient());
+        break;
+      case "view-gen-metrics-rollup":
+        kafkaStreamsApp = new MetricsRollupViewLauncher(ConfigClientFactory.getClient());
         break;
       default:
         throw new RuntimeException(String.format("Invalid configured sub-topology : [%s]", name));
@@ -73,6 +77,12 @@ public class HypertraceIngester extends KafkaStreamsApp {
 
       // need to use its own copy as input/output topics are different
       Config subTopologyJobConfig = getSubJobConfig(subTopologyName);
+      // the sub-topologies share the commits of a single streams app
+      if (subTopology instanceof TraceEnricher
+          && TraceEnricher.isAsyncEnabled(subTopologyJobConfig)) {
+        throw new IllegalArgumentException(
+            "The traces cannot be enriched asynchronously within the ingester: " + subTopologyName);
+      }
       Map<String, Object> flattenSubTopologyConfig =
           subTopology.getStreamsConfig(subTopologyJobConfig);
       flattenSubTopologyConfig.put(subTopology.getJobConfigKey(), subTopologyJobConfig);
@@ -2,6 +2,7 @@ package org.hypertrace.traceenricher.enrichment;
 
 import com.google.common.collect.Lists;
 import com.typesafe.config.Config;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +14,12 @@ import org.hypertrace.core.datamodel.Attributes;
 import org.hypertrace.core.datamodel.Edge;
 import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.MetricValue;
+import org.hypertrace.core.datamodel.Metrics;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.StructuredTraceGraph;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.hypertrace.traceenricher.enrichment.clients.TraceScopedAttributeReader;
 import org.hypertrace.traceenricher.trace.util.StructuredTraceGraphBuilder;
 
 public abstract class AbstractTraceEnricher implements Enricher {
@@ -67,6 +71,8 @@ public abstract class AbstractTraceEnricher implements Enricher {
     }
 
     enrichedAttributes.getAttributeMap().put(key, value);
+    // the span values read before may depend on the attribute
+    TraceScopedAttributeReader.invalidate(event);
   }
 
   protected void addEnrichedAttributes(
@@ -74,6 +80,16 @@ public abstract class AbstractTraceEnricher implements Enricher {
     attributesToEnrich.forEach((key, value) -> addEnrichedAttribute(event, key, value));
   }
 
+  protected void addEnrichedMetric(Event event, String key, MetricValue value) {
+    if (event.getMetrics() == null) {
+      event.setMetrics(Metrics.newBuilder().setMetricMap(new HashMap<>()).build());
+    }
+
+    event.getMetrics().getMetricMap().put(key, value);
+    // the span values read before may depend on the metric
+    TraceScopedAttributeReader.invalidate(event);
+  }
+
   protected void addEnrichedAttributeIfNotNull(Event event, String key, String value) {
     if (value != null) {
       AttributeValue attributeValue = AttributeValue.newBuilder().setValue(value).build();
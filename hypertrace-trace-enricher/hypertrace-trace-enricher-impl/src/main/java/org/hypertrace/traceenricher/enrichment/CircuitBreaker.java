@@ -0,0 +1,94 @@
+package org.hypertrace.traceenricher.enrichment;
+
+import com.typesafe.config.Config;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker of a remote service the enrichers depend on. It opens after a number of
+ * consecutive failed (or too slow) calls to the service, during which the enrichers depending on
+ * the service are skipped rather than blocking on it. Once open for long enough, a single trial
+ * enrichment is let through: the breaker closes again if its calls succeed, or stays open
+ * otherwise.
+ */
+public class CircuitBreaker {
+  private static final String FAILURE_THRESHOLD_KEY = "failure.threshold";
+  private static final String OPEN_DURATION_KEY = "open.duration";
+  private static final String SLOW_CALL_DURATION_KEY = "slow.call.duration";
+  private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+  private static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(1);
+  private static final long CLOSED = 0;
+
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final Duration slowCallDuration;
+  private final Clock clock;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicLong openUntilMillis = new AtomicLong(CLOSED);
+  private final AtomicBoolean trialInProgress = new AtomicBoolean();
+
+  CircuitBreaker(
+      int failureThreshold, Duration openDuration, Duration slowCallDuration, Clock clock) {
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.slowCallDuration = slowCallDuration;
+    this.clock = clock;
+  }
+
+  static CircuitBreaker from(Config config) {
+    return new CircuitBreaker(
+        config.hasPath(FAILURE_THRESHOLD_KEY)
+            ? config.getInt(FAILURE_THRESHOLD_KEY)
+            : DEFAULT_FAILURE_THRESHOLD,
+        config.hasPath(OPEN_DURATION_KEY)
+            ? config.getDuration(OPEN_DURATION_KEY)
+            : DEFAULT_OPEN_DURATION,
+        config.hasPath(SLOW_CALL_DURATION_KEY)
+            ? config.getDuration(SLOW_CALL_DURATION_KEY)
+            : DEFAULT_SLOW_CALL_DURATION,
+        Clock.systemUTC());
+  }
+
+  /** Whether a call to the service may go through, or should be skipped */
+  public boolean allowRequest() {
+    long openUntil = openUntilMillis.get();
+    if (openUntil == CLOSED) {
+      return true;
+    }
+    if (clock.millis() < openUntil) {
+      return false;
+    }
+    return trialInProgress.compareAndSet(false, true);
+  }
+
+  public void recordSuccess() {
+    consecutiveFailures.set(0);
+    openUntilMillis.set(CLOSED);
+    trialInProgress.set(false);
+  }
+
+  public void recordFailure() {
+    if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      openUntilMillis.set(clock.millis() + openDuration.toMillis());
+    }
+    trialInProgress.set(false);
+  }
+
+  /** Gives up the trial granted by {@link #allowRequest()}, as the call won't be made after all */
+  public void releaseTrial() {
+    trialInProgress.set(false);
+  }
+
+  /** Calls to the service taking longer count as failures */
+  public Duration getSlowCallDuration() {
+    return slowCallDuration;
+  }
+
+  public boolean isOpen() {
+    return openUntilMillis.get() != CLOSED;
+  }
+}
@@ -2,10 +2,16 @@ package org.hypertrace.traceenricher.enrichment;
 
 import static org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry.registerCounter;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.grpc.Context;
+import io.grpc.Context.CancellableContext;
+import io.grpc.Deadline;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -13,13 +19,17 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.hypertrace.core.datamodel.Attributes;
 import org.hypertrace.core.datamodel.Edge;
 import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.DataflowMetricUtils;
 import org.hypertrace.core.datamodel.shared.HexUtils;
+import org.hypertrace.core.datamodel.shared.trace.AttributeValueCreator;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
 import org.hypertrace.traceenricher.util.AvroToJsonLogger;
@@ -33,8 +43,27 @@ public class EnrichmentProcessor {
   private static final Timer enrichmentArrivalTimer =
       PlatformMetricsRegistry.registerTimer(DataflowMetricUtils.ARRIVAL_LAG, new HashMap<>());
 
+  /** Trace attribute listing the enrichers skipped for the trace, if any */
+  public static final String SKIPPED_ENRICHERS_ATTRIBUTE = "enrichment.skipped.enrichers";
+
+  private static final String TRACE_TIME_BUDGET_CONFIG_KEY = "trace";
+  private static final String ENRICHER_TIME_BUDGET_CONFIG_KEY = "enricher";
+  private static final Duration DEFAULT_ENRICHER_TIME_BUDGET = Duration.ofSeconds(1);
+  private static final String ENRICHER_OWN_TIME_BUDGET_CONFIG_KEY = "time.budget";
+  private static final String CIRCUIT_BREAKER_CONFIG_KEY = "circuit.breaker";
+  private static final String ENRICHER_REMOTE_DEPENDENCIES_CONFIG_KEY = "remote.dependencies";
+
   // Must use linked hashmap
   private final Map<String, Enricher> enrichers = new LinkedHashMap<>();
+  private final ClientRegistry clientRegistry;
+  // budgets of the enrichers calling remote services, by enricher name
+  private final Map<String, EnricherBudget> enricherBudgets = new HashMap<>();
+  // circuit breakers by remote service
+  private final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+  @Nullable private final Duration traceTimeBudget;
+  private final Duration enricherTimeBudget;
+  // cancels the remote calls of the enrichers past their deadline
+  private static final ScheduledThreadPoolExecutor deadlineScheduler = newDeadlineScheduler();
 
   private static final String ENRICHED_TRACES_COUNTER = "hypertrace.enriched.traces";
   private static final ConcurrentMap<String, Counter> traceCounters = new ConcurrentHashMap<>();
@@ -47,7 +76,33 @@ public class EnrichmentProcessor {
   private static final ConcurrentMap<String, Counter> traceErrorsCounters =
       new ConcurrentHashMap<>();
 
+  private static final String SKIPPED_ENRICHMENTS_COUNTER = "hypertrace.trace.enrichment.skipped";
+  private static final ConcurrentMap<String, Counter> skippedEnrichmentsCounters =
+      new ConcurrentHashMap<>();
+
   public EnrichmentProcessor(List<EnricherInfo> enricherInfoList, ClientRegistry clientRegistry) {
+    this(enricherInfoList, clientRegistry, ConfigFactory.empty());
+  }
+
+  /**
+   * @param budgetConfig time budgets of the traces and of the enrichers, and settings of the
+   *     circuit breakers of the remote services the enrichers depend on
+   */
+  public EnrichmentProcessor(
+      List<EnricherInfo> enricherInfoList, ClientRegistry clientRegistry, Config budgetConfig) {
+    this.clientRegistry = clientRegistry;
+    this.traceTimeBudget =
+        budgetConfig.hasPath(TRACE_TIME_BUDGET_CONFIG_KEY)
+            ? budgetConfig.getDuration(TRACE_TIME_BUDGET_CONFIG_KEY)
+            : null;
+    this.enricherTimeBudget =
+        budgetConfig.hasPath(ENRICHER_TIME_BUDGET_CONFIG_KEY)
+            ? budgetConfig.getDuration(ENRICHER_TIME_BUDGET_CONFIG_KEY)
+            : DEFAULT_ENRICHER_TIME_BUDGET;
+    Config circuitBreakerConfig =
+        budgetConfig.hasPath(CIRCUIT_BREAKER_CONFIG_KEY)
+            ? budgetConfig.getConfig(CIRCUIT_BREAKER_CONFIG_KEY)
+            : ConfigFactory.empty();
     for (EnricherInfo enricherInfo : enricherInfoList) {
       try {
         if (enrichers.containsKey(enricherInfo.getName())) {
@@ -60,6 +115,7 @@ public class EnrichmentProcessor {
         enricher.init(enricherInfo.getEnricherConfig(), clientRegistry);
         LOG.info("Initialized the enricher: {}", enricherInfo.getClazz().getCanonicalName());
         enrichers.put(enricherInfo.getName(), enricher);
+        this.registerBudget(enricherInfo, circuitBreakerConfig);
       } catch (Exception e) {
         LOG.error("Exception initializing enricher:{}", enricherInfo, e);
       }
@@ -71,13 +127,28 @@ public class EnrichmentProcessor {
     DataflowMetricUtils.reportArrivalLagAndInsertTimestamp(
         trace, enrichmentArrivalTimer, ENRICHMENT_ARRIVAL_TIME);
     AvroToJsonLogger.log(LOG, "Structured Trace before all the enrichment is: {}", trace);
+    Instant traceStart = Instant.now();
+    List<String> skippedEnrichers = new ArrayList<>();
     for (Entry<String, Enricher> entry : enrichers.entrySet()) {
       String metricKey = String.format("%s/%s", trace.getCustomerId(), entry.getKey());
       Map<String, String> metricTags =
           Map.of("tenantId", trace.getCustomerId(), "enricher", entry.getKey());
+      EnricherBudget budget = enricherBudgets.get(entry.getKey());
+      if (budget != null && !this.canApply(budget, traceStart)) {
+        skippedEnrichers.add(entry.getKey());
+        skippedEnrichmentsCounters
+            .computeIfAbsent(
+                metricKey, k -> registerCounter(SKIPPED_ENRICHMENTS_COUNTER, metricTags))
+            .increment();
+        continue;
+      }
       try {
         Instant start = Instant.now();
-        applyEnricher(entry.getValue(), trace);
+        if (budget == null) {
+          applyEnricher(entry.getValue(), trace);
+        } else {
+          this.applyEnricherWithinBudget(entry.getValue(), trace, budget, traceStart);
+        }
         long timeElapsed = Duration.between(start, Instant.now()).toMillis();
 
         traceCounters
@@ -98,11 +169,115 @@ public class EnrichmentProcessor {
             entry.getKey(),
             HexUtils.getHex(trace.getTraceId()),
             e);
+      } finally {
+        if (budget != null) {
+          // the breakers record the calls made to their services, an enrichment that made none
+          // leaves the trial to the next one
+          budget.breakers.forEach(CircuitBreaker::releaseTrial);
+        }
       }
     }
+    if (!skippedEnrichers.isEmpty()) {
+      this.markPartiallyEnriched(trace, skippedEnrichers);
+    }
+    clientRegistry.onTraceEnriched();
     AvroToJsonLogger.log(LOG, "Structured Trace after all the enrichment is: {}", trace);
   }
 
+  private void registerBudget(EnricherInfo enricherInfo, Config circuitBreakerConfig) {
+    Config enricherConfig = enricherInfo.getEnricherConfig();
+    if (!enricherConfig.hasPath(ENRICHER_REMOTE_DEPENDENCIES_CONFIG_KEY)) {
+      return;
+    }
+    List<CircuitBreaker> breakers = new ArrayList<>();
+    for (String dependency :
+        enricherConfig.getStringList(ENRICHER_REMOTE_DEPENDENCIES_CONFIG_KEY)) {
+      breakers.add(
+          circuitBreakers.computeIfAbsent(
+              dependency, k -> this.newCircuitBreaker(k, circuitBreakerConfig)));
+    }
+    Duration timeBudget =
+        enricherConfig.hasPath(ENRICHER_OWN_TIME_BUDGET_CONFIG_KEY)
+            ? enricherConfig.getDuration(ENRICHER_OWN_TIME_BUDGET_CONFIG_KEY)
+            : enricherTimeBudget;
+    enricherBudgets.put(enricherInfo.getName(), new EnricherBudget(breakers, timeBudget));
+  }
+
+  private CircuitBreaker newCircuitBreaker(String remoteService, Config circuitBreakerConfig) {
+    CircuitBreaker circuitBreaker = CircuitBreaker.from(circuitBreakerConfig);
+    clientRegistry.registerCircuitBreaker(remoteService, circuitBreaker);
+    return circuitBreaker;
+  }
+
+  /**
+   * An enricher calling remote services is skipped once the trace ran out of time, or if any of
+   * its services is unavailable
+   */
+  private boolean canApply(EnricherBudget budget, Instant traceStart) {
+    if (traceTimeBudget != null
+        && Duration.between(traceStart, Instant.now()).compareTo(traceTimeBudget) > 0) {
+      return false;
+    }
+    for (int i = 0; i < budget.breakers.size(); i++) {
+      if (!budget.breakers.get(i).allowRequest()) {
+        // the trials granted by the other breakers won't happen
+        budget.breakers.subList(0, i).forEach(CircuitBreaker::releaseTrial);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies an enricher calling remote services with a gRPC deadline: the calls it makes on the
+   * enriching thread fail once its time budget, or the rest of the trace budget, is spent, rather
+   * than holding the thread until their own deadline. The enricher handles a failed call as any
+   * other, so the trace is left consistent.
+   */
+  private void applyEnricherWithinBudget(
+      Enricher enricher, StructuredTrace trace, EnricherBudget budget, Instant traceStart) {
+    long budgetNanos = budget.timeBudget.toNanos();
+    if (traceTimeBudget != null) {
+      budgetNanos =
+          Math.min(
+              budgetNanos,
+              traceTimeBudget.minus(Duration.between(traceStart, Instant.now())).toNanos());
+    }
+    CancellableContext deadlineContext =
+        Context.current()
+            .withDeadline(
+                Deadline.after(Math.max(budgetNanos, 0), TimeUnit.NANOSECONDS), deadlineScheduler);
+    try {
+      deadlineContext.run(() -> applyEnricher(enricher, trace));
+    } finally {
+      deadlineContext.cancel(null);
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor newDeadlineScheduler() {
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "enricher-deadlines");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // the deadlines of the enrichments done in time don't pile up
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  private void markPartiallyEnriched(StructuredTrace trace, List<String> skippedEnrichers) {
+    if (trace.getAttributes() == null) {
+      trace.setAttributes(Attributes.newBuilder().build());
+    }
+    trace
+        .getAttributes()
+        .getAttributeMap()
+        .put(SKIPPED_ENRICHERS_ATTRIBUTE, AttributeValueCreator.create(skippedEnrichers));
+  }
+
   private void applyEnricher(Enricher enricher, StructuredTrace trace) {
     // Enrich entities
     List<Entity> entityList = trace.getEntityList();
@@ -143,4 +318,14 @@ public class EnrichmentProcessor {
     // Enrich trace attributes/metrics
     enricher.enrichTrace(trace);
   }
+
+  private static class EnricherBudget {
+    private final List<CircuitBreaker> breakers;
+    private final Duration timeBudget;
+
+    private EnricherBudget(List<CircuitBreaker> breakers, Duration timeBudget) {
+      this.breakers = breakers;
+      this.timeBudget = timeBudget;
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package org.hypertrace.traceenricher.enrichment.clients;
 
 import io.grpc.Channel;
+import javax.annotation.Nullable;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
@@ -9,7 +10,10 @@ import org.hypertrace.entity.data.service.rxclient.EntityDataClient;
 import org.hypertrace.entity.query.service.v1.EntityQueryServiceGrpc.EntityQueryServiceBlockingStub;
 import org.hypertrace.trace.accessor.entities.TraceEntityAccessor;
 import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
+import org.hypertrace.traceenricher.enrichment.CircuitBreaker;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CacheSnapshotManager;
 import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityCache;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 
 public interface ClientRegistry {
 
@@ -32,4 +36,19 @@ public interface ClientRegistry {
   EntityCache getEntityCache();
 
   CachingAttributeClient getCachingAttributeClient();
+
+  CacheSnapshotManager getCacheSnapshotManager();
+
+  /** Null when the entities created by the enrichers should be upserted synchronously */
+  @Nullable
+  EntityWriteBehindQueue getEntityWriteBehindQueue();
+
+  /**
+   * Reports the outcome of the calls made to the remote service (entity.service,
+   * attribute.service or config.service) to the circuit breaker
+   */
+  void registerCircuitBreaker(String remoteService, CircuitBreaker circuitBreaker);
+
+  /** Releases what the clients kept for the trace just enriched on the calling thread */
+  void onTraceEnriched();
 }
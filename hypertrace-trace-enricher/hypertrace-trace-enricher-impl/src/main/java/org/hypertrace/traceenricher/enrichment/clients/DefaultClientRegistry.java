@@ -1,10 +1,17 @@
 package org.hypertrace.traceenricher.enrichment.clients;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.typesafe.config.Config;
 import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
@@ -21,9 +28,16 @@ import org.hypertrace.trace.accessor.entities.TraceEntityAccessor;
 import org.hypertrace.trace.accessor.entities.TraceEntityAccessorBuilder;
 import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
 import org.hypertrace.trace.reader.attributes.TraceAttributeReaderFactory;
+import org.hypertrace.traceenricher.enrichment.CircuitBreaker;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CachePolicy;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CacheSnapshotManager;
 import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityCache;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 
 public class DefaultClientRegistry implements ClientRegistry {
+  private static final String ATTRIBUTE_SERVICE = "attribute.service";
+  private static final String CONFIG_SERVICE = "config.service";
+  private static final String ENTITY_SERVICE = "entity.service";
   private static final String ATTRIBUTE_SERVICE_HOST_KEY = "attribute.service.config.host";
   private static final String ATTRIBUTE_SERVICE_PORT_KEY = "attribute.service.config.port";
   private static final String CONFIG_SERVICE_HOST_KEY = "config.service.config.host";
@@ -32,29 +46,46 @@ public class DefaultClientRegistry implements ClientRegistry {
   private static final String ENTITY_SERVICE_PORT_KEY = "entity.service.config.port";
   private static final String TRACE_ENTITY_WRITE_THROTTLE_DURATION =
       "trace.entity.write.throttle.duration";
-
-  private final ManagedChannel attributeServiceChannel;
-  private final ManagedChannel configServiceChannel;
-  private final ManagedChannel entityServiceChannel;
+  private static final String ENTITY_CACHE_PREFETCH_PARALLELISM_KEY =
+      "entity.cache.prefetch.parallelism";
+  private static final String ENTITY_CACHE_PREFETCH_TIMEOUT_KEY = "entity.cache.prefetch.timeout";
+  private static final String ENTITY_CACHE_CONFIG_KEY = "entity.cache";
+  private static final String CACHE_SNAPSHOT_CONFIG_KEY = "cache.snapshot";
+  private static final String ENTITY_WRITE_BEHIND_CONFIG_KEY = "entity.write.behind";
+
+  private final Channel attributeServiceChannel;
+  private final Channel configServiceChannel;
+  private final Channel entityServiceChannel;
   private final EdsCacheClient edsCacheClient;
   private final EntityDataClient entityDataClient;
   private final CachingAttributeClient cachingAttributeClient;
+  private final ExecutorService entityCacheExecutor;
   private final EntityCache entityCache;
+  private final CacheSnapshotManager cacheSnapshotManager;
+  @Nullable private final EntityWriteBehindQueue entityWriteBehindQueue;
   private final TraceEntityAccessor entityAccessor;
-  private final TraceAttributeReader<StructuredTrace, Event> attributeReader;
+  private final TraceScopedAttributeReader attributeReader;
   private final GrpcChannelRegistry grpcChannelRegistry = new GrpcChannelRegistry();
+  // interceptors of the calls to the remote services, by service
+  private final Map<String, RemoteCallInterceptor> remoteCallInterceptors = new HashMap<>();
 
   public DefaultClientRegistry(Config config) {
     this.attributeServiceChannel =
-        this.buildChannel(
-            config.getString(ATTRIBUTE_SERVICE_HOST_KEY),
-            config.getInt(ATTRIBUTE_SERVICE_PORT_KEY));
+        this.interceptRemoteCalls(
+            ATTRIBUTE_SERVICE,
+            this.buildChannel(
+                config.getString(ATTRIBUTE_SERVICE_HOST_KEY),
+                config.getInt(ATTRIBUTE_SERVICE_PORT_KEY)));
     this.configServiceChannel =
-        this.buildChannel(
-            config.getString(CONFIG_SERVICE_HOST_KEY), config.getInt(CONFIG_SERVICE_PORT_KEY));
+        this.interceptRemoteCalls(
+            CONFIG_SERVICE,
+            this.buildChannel(
+                config.getString(CONFIG_SERVICE_HOST_KEY), config.getInt(CONFIG_SERVICE_PORT_KEY)));
     this.entityServiceChannel =
-        this.buildChannel(
-            config.getString(ENTITY_SERVICE_HOST_KEY), config.getInt(ENTITY_SERVICE_PORT_KEY));
+        this.interceptRemoteCalls(
+            ENTITY_SERVICE,
+            this.buildChannel(
+                config.getString(ENTITY_SERVICE_HOST_KEY), config.getInt(ENTITY_SERVICE_PORT_KEY)));
 
     this.cachingAttributeClient =
         CachingAttributeClient.builder(this.attributeServiceChannel)
@@ -62,18 +93,49 @@ public class DefaultClientRegistry implements ClientRegistry {
             .withCacheExpiration(Duration.of(15, ChronoUnit.MINUTES))
             .build();
 
-    this.attributeReader = TraceAttributeReaderFactory.build(this.cachingAttributeClient);
+    this.attributeReader =
+        new TraceScopedAttributeReader(
+            TraceAttributeReaderFactory.build(this.cachingAttributeClient));
     this.edsCacheClient =
         new EdsCacheClient(
             new EntityDataServiceClient(this.entityServiceChannel),
             EntityServiceClientConfig.from(config).getCacheConfig());
     this.entityDataClient = EntityDataClient.builder(this.entityServiceChannel).build();
-    this.entityCache = new EntityCache(this.edsCacheClient);
+    this.entityCacheExecutor =
+        Executors.newFixedThreadPool(
+            config.hasPath(ENTITY_CACHE_PREFETCH_PARALLELISM_KEY)
+                ? config.getInt(ENTITY_CACHE_PREFETCH_PARALLELISM_KEY)
+                : 8,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("entity-cache-loader-%d")
+                .build());
+    this.entityCache =
+        new EntityCache(
+            this.edsCacheClient,
+            this.entityCacheExecutor,
+            config.hasPath(ENTITY_CACHE_PREFETCH_TIMEOUT_KEY)
+                ? config.getDuration(ENTITY_CACHE_PREFETCH_TIMEOUT_KEY)
+                : Duration.ofSeconds(10),
+            config.hasPath(ENTITY_CACHE_CONFIG_KEY)
+                ? CachePolicy.from(config.getConfig(ENTITY_CACHE_CONFIG_KEY))
+                : CachePolicy.DEFAULT);
+    this.cacheSnapshotManager =
+        config.hasPath(CACHE_SNAPSHOT_CONFIG_KEY)
+            ? CacheSnapshotManager.from(config.getConfig(CACHE_SNAPSHOT_CONFIG_KEY))
+            : CacheSnapshotManager.disabled();
+    this.cacheSnapshotManager.register(this.entityCache);
+    this.entityWriteBehindQueue =
+        config.hasPath(ENTITY_WRITE_BEHIND_CONFIG_KEY)
+            ? EntityWriteBehindQueue.from(
+                this.edsCacheClient, config.getConfig(ENTITY_WRITE_BEHIND_CONFIG_KEY))
+            : null;
     this.entityAccessor =
         new TraceEntityAccessorBuilder(
                 EntityTypeClient.builder(this.entityServiceChannel).build(),
                 this.entityDataClient,
                 this.cachingAttributeClient)
+            .withTraceAttributeReader(this.attributeReader)
             .withEntityWriteThrottleDuration(
                 config.hasPath(TRACE_ENTITY_WRITE_THROTTLE_DURATION)
                     ? config.getDuration(TRACE_ENTITY_WRITE_THROTTLE_DURATION)
@@ -133,10 +195,49 @@ public class DefaultClientRegistry implements ClientRegistry {
     return this.cachingAttributeClient;
   }
 
+  @Override
+  public CacheSnapshotManager getCacheSnapshotManager() {
+    return this.cacheSnapshotManager;
+  }
+
+  @Override
+  @Nullable
+  public EntityWriteBehindQueue getEntityWriteBehindQueue() {
+    return this.entityWriteBehindQueue;
+  }
+
+  @Override
+  public void registerCircuitBreaker(String remoteService, CircuitBreaker circuitBreaker) {
+    RemoteCallInterceptor interceptor = this.remoteCallInterceptors.get(remoteService);
+    if (interceptor == null) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Unknown remote service: %s, expected one of %s",
+              remoteService, this.remoteCallInterceptors.keySet()));
+    }
+    interceptor.register(circuitBreaker);
+  }
+
+  @Override
+  public void onTraceEnriched() {
+    this.attributeReader.clear();
+  }
+
   public void shutdown() {
+    this.cacheSnapshotManager.shutdown();
+    if (this.entityWriteBehindQueue != null) {
+      this.entityWriteBehindQueue.shutdown();
+    }
+    this.entityCacheExecutor.shutdownNow();
     this.grpcChannelRegistry.shutdown();
   }
 
+  private Channel interceptRemoteCalls(String remoteService, ManagedChannel channel) {
+    RemoteCallInterceptor interceptor = new RemoteCallInterceptor();
+    this.remoteCallInterceptors.put(remoteService, interceptor);
+    return ClientInterceptors.intercept(channel, interceptor);
+  }
+
   protected ManagedChannel buildChannel(String host, int port) {
     return this.grpcChannelRegistry.forPlaintextAddress(host, port);
   }
@@ -0,0 +1,69 @@
+package org.hypertrace.traceenricher.enrichment.clients;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.hypertrace.traceenricher.enrichment.CircuitBreaker;
+
+/**
+ * Reports the outcome of the calls made on the channel of a remote service to its circuit
+ * breakers. Only the call itself is timed: it fails if the service is unavailable, overloaded or
+ * timed out, or if it took longer than the slow call duration of the breaker. Other errors are the
+ * answers of a healthy service, and calls cancelled by the client say nothing about it.
+ */
+class RemoteCallInterceptor implements ClientInterceptor {
+  private static final Set<Code> FAILURE_CODES =
+      EnumSet.of(Code.UNAVAILABLE, Code.DEADLINE_EXCEEDED, Code.RESOURCE_EXHAUSTED);
+
+  private final List<CircuitBreaker> circuitBreakers = new CopyOnWriteArrayList<>();
+
+  void register(CircuitBreaker circuitBreaker) {
+    this.circuitBreakers.add(circuitBreaker);
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        long startNanos = System.nanoTime();
+        super.start(
+            new SimpleForwardingClientCallListener<RespT>(responseListener) {
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                record(status, Duration.ofNanos(System.nanoTime() - startNanos));
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+
+  private void record(Status status, Duration elapsed) {
+    if (status.getCode() == Code.CANCELLED) {
+      return;
+    }
+    for (CircuitBreaker circuitBreaker : this.circuitBreakers) {
+      if (FAILURE_CODES.contains(status.getCode())
+          || elapsed.compareTo(circuitBreaker.getSlowCallDuration()) > 0) {
+        circuitBreaker.recordFailure();
+      } else {
+        circuitBreaker.recordSuccess();
+      }
+    }
+  }
+}
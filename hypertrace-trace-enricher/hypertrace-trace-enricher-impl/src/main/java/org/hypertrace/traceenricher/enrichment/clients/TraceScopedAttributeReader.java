@@ -0,0 +1,141 @@
+package org.hypertrace.traceenricher.enrichment.clients;
+
+import io.micrometer.core.instrument.Counter;
+import io.reactivex.rxjava3.core.Single;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.hypertrace.core.attribute.service.v1.LiteralValue;
+import org.hypertrace.core.attribute.service.v1.LiteralValue.ValueCase;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
+
+/**
+ * Attribute reader memoizing the span values resolved while a trace is enriched, so that the
+ * enrichers reading the same attributes of a span don't each evaluate its definition again. The
+ * values are kept per stream thread for the trace being enriched on it, until {@link #clear()} or
+ * until the thread moves on to another trace.
+ *
+ * <p>Only present values are memoized: an attribute missing when first read may still be set by a
+ * later enricher. The values of a span are dropped by {@link #invalidate(Event)} whenever an
+ * enricher sets an enriched attribute or metric of the span through the helpers of {@code
+ * AbstractTraceEnricher}, as a value already read may depend on it. The enrichers changing the
+ * attributes or metrics of a span otherwise have to invalidate it themselves.
+ */
+public class TraceScopedAttributeReader implements TraceAttributeReader<StructuredTrace, Event> {
+  private static final String CACHE_HITS_COUNTER = "hypertrace.enricher.attribute.value.cache.hits";
+  private static final String CACHE_MISSES_COUNTER =
+      "hypertrace.enricher.attribute.value.cache.misses";
+
+  private final TraceAttributeReader<StructuredTrace, Event> delegate;
+  // static for the enrichers to invalidate the values of a span without a reference to the reader
+  private static final ThreadLocal<TraceValues> traceValues = new ThreadLocal<>();
+  private final Counter cacheHitsCounter;
+  private final Counter cacheMissesCounter;
+
+  public TraceScopedAttributeReader(TraceAttributeReader<StructuredTrace, Event> delegate) {
+    this.delegate = delegate;
+    this.cacheHitsCounter = PlatformMetricsRegistry.registerCounter(CACHE_HITS_COUNTER, Map.of());
+    this.cacheMissesCounter =
+        PlatformMetricsRegistry.registerCounter(CACHE_MISSES_COUNTER, Map.of());
+  }
+
+  @Override
+  public Single<LiteralValue> getSpanValue(
+      StructuredTrace trace, Event span, String attributeScope, String attributeKey) {
+    return this.delegate.getSpanValue(trace, span, attributeScope, attributeKey);
+  }
+
+  @Override
+  public LiteralValue resolveSpanValue(
+      StructuredTrace trace, Event span, String attributeScope, String attributeKey) {
+    Map<AttributeKey, LiteralValue> values = this.getValues(trace, span);
+    AttributeKey key = new AttributeKey(attributeScope, attributeKey);
+    LiteralValue value = values.get(key);
+    if (value != null) {
+      this.cacheHitsCounter.increment();
+      return value;
+    }
+
+    this.cacheMissesCounter.increment();
+    value = this.delegate.resolveSpanValue(trace, span, attributeScope, attributeKey);
+    if (!value.getValueCase().equals(ValueCase.VALUE_NOT_SET)) {
+      values.put(key, value);
+    }
+    return value;
+  }
+
+  @Override
+  public Single<LiteralValue> getTraceValue(StructuredTrace trace, String attributeKey) {
+    return this.delegate.getTraceValue(trace, attributeKey);
+  }
+
+  @Override
+  public String getTenantId(Event span) {
+    return this.delegate.getTenantId(span);
+  }
+
+  /** Drops the values memoized on the calling thread */
+  public void clear() {
+    traceValues.remove();
+  }
+
+  /** Drops the values of the span memoized on the calling thread, once the span changed */
+  public static void invalidate(Event span) {
+    TraceValues values = traceValues.get();
+    if (values != null) {
+      values.spanValues.remove(span);
+    }
+  }
+
+  private Map<AttributeKey, LiteralValue> getValues(StructuredTrace trace, Event span) {
+    TraceValues values = traceValues.get();
+    if (values == null || values.reader != this || values.trace != trace) {
+      values = new TraceValues(this, trace);
+      traceValues.set(values);
+    }
+    return values.spanValues.computeIfAbsent(span, s -> new HashMap<>());
+  }
+
+  private static class TraceValues {
+    private final TraceScopedAttributeReader reader;
+    private final StructuredTrace trace;
+    // spans are compared by identity, comparing the avro records would cost more than resolving
+    private final Map<Event, Map<AttributeKey, LiteralValue>> spanValues = new IdentityHashMap<>();
+
+    private TraceValues(TraceScopedAttributeReader reader, StructuredTrace trace) {
+      this.reader = reader;
+      this.trace = trace;
+    }
+  }
+
+  private static class AttributeKey {
+    private final String attributeScope;
+    private final String attributeKey;
+
+    private AttributeKey(String attributeScope, String attributeKey) {
+      this.attributeScope = attributeScope;
+      this.attributeKey = attributeKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      AttributeKey that = (AttributeKey) o;
+      return attributeScope.equals(that.attributeScope) && attributeKey.equals(that.attributeKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(attributeScope, attributeKey);
+    }
+  }
+}
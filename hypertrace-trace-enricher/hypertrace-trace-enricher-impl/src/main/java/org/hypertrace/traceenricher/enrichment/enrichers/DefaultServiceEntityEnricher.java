@@ -1,9 +1,15 @@
 package org.hypertrace.traceenricher.enrichment.enrichers;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
 import com.typesafe.config.Config;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.HexUtils;
@@ -17,6 +23,7 @@ import org.hypertrace.semantic.convention.utils.span.SpanSemanticConventionUtils
 import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
 import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.DecisionMemo;
 import org.hypertrace.traceenricher.util.EntityAvroConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +39,11 @@ public class DefaultServiceEntityEnricher extends AbstractTraceEnricher {
       EntityConstants.getValue(ServiceAttribute.SERVICE_ATTRIBUTE_NAME);
   private static final String SPAN_ID_KEY = "span_id";
   private static final String TRACE_ID_KEY = "trace_id";
+  private static final String DECISION_MEMO_CONFIG_KEY = "decision.memo";
 
   private ServiceEntityFactory factory;
+  // service entity of the spans, by tenant and service name
+  private DecisionMemo<org.hypertrace.core.datamodel.Entity> serviceDecisions;
 
   @Override
   public void init(Config enricherConfig, ClientRegistry clientRegistry) {
@@ -41,6 +51,30 @@ public class DefaultServiceEntityEnricher extends AbstractTraceEnricher {
     this.factory =
         new ServiceEntityFactory(
             clientRegistry.getEdsCacheClient(), clientRegistry.getEntityCache());
+    this.serviceDecisions =
+        enricherConfig.hasPath(DECISION_MEMO_CONFIG_KEY)
+            ? DecisionMemo.from(
+                enricherConfig.getConfig(DECISION_MEMO_CONFIG_KEY), "serviceDecisionMemo")
+            : DecisionMemo.disabled();
+  }
+
+  /** Resolves the services of all the spans of the trace at once before enriching each span */
+  @Override
+  public void onEnrichEntitiesComplete(StructuredTrace trace) {
+    Set<Pair<String, String>> services = new HashSet<>();
+    for (Event event : trace.getEventList()) {
+      if (EnrichedSpanUtils.getServiceId(event) != null) {
+        continue;
+      }
+      // the ancestors are not enriched yet, the service they name is the one they will get
+      String serviceName =
+          this.getServiceNameToEnrich(
+              trace, event, DefaultServiceEntityEnricher::getServiceNameOnceEnriched);
+      if (serviceName != null && !this.hasServiceDecision(event.getCustomerId(), serviceName)) {
+        services.add(Pair.of(event.getCustomerId(), serviceName));
+      }
+    }
+    factory.prefetchServices(services);
   }
 
   @Override
@@ -50,62 +84,106 @@ public class DefaultServiceEntityEnricher extends AbstractTraceEnricher {
       return;
     }
 
+    String serviceName =
+        this.getServiceNameToEnrich(trace, event, EnrichedSpanUtils::getServiceName);
+    if (serviceName == null) {
+      return;
+    }
+    org.hypertrace.core.datamodel.Entity avroEntity =
+        this.getServiceEntity(trace, event, serviceName);
+    if (avroEntity != null) {
+      addEntity(trace, event, avroEntity);
+
+      addEnrichedAttribute(
+          event, SERVICE_ID_ATTR_NAME, AttributeValueCreator.create(avroEntity.getEntityId()));
+      addEnrichedAttribute(
+          event, SERVICE_NAME_ATTR_NAME, AttributeValueCreator.create(avroEntity.getEntityName()));
+    }
+  }
+
+  /**
+   * The name of the service to enrich the span with, null if the span gets no service, the
+   * service names of its ancestors being read with the given function
+   */
+  @Nullable
+  private String getServiceNameToEnrich(
+      StructuredTrace trace, Event event, Function<Event, String> ancestorServiceName) {
     // If there is serviceName present in the span, just go ahead and create a service
     // entity with those details. This is to support BareMetal case.
     String serviceName = event.getServiceName();
-    if (serviceName != null) {
-      // Check if the exit span's jaeger_svcname is different from the parent span's jaeger_svcname
-      // If it is then use the parent span's jaeger_svcname as the exit span's jaeger svc name else
-      // just use the jaeger svc name as is.
-      // This will give us 2 things:
-      // 1. No service corresponding to exit span will be registered
-      //    (Typically this is an example where a facade service is created for a backend.
-      //    See redis and mysql in HotROD app for an example).
-      //    The actual service name on the exit span will instead be registered
-      //    as a backend by the {@link ClientSpanEndpointResolver}
-      // 2. Enrich the exit span with the parent span's service entity.
-      //    This will enable creating an edge between the exit span and the backend
-
-      StructuredTraceGraph graph = buildGraph(trace);
-      if (EnrichedSpanUtils.isExitSpan(event) && SpanAttributeUtils.isLeafSpan(graph, event)) {
-        String parentSvcName =
-            findServiceNameOfFirstAncestorThatIsNotAnExitSpanAndBelongsToADifferentService(
-                    event, serviceName, graph)
-                .orElse(null);
-        if (parentSvcName != null) {
-          serviceName = parentSvcName;
-        } else {
-          // create backend entity at {@link ClientSpanEndpointResolver} if service and peer service
-          // are same
-          String peerServiceName = SpanSemanticConventionUtils.getPeerServiceName(event);
-          if (peerServiceName != null && peerServiceName.equals(serviceName)) {
-            return;
-          }
-        }
-      }
+    if (serviceName == null) {
+      return null;
+    }
+    // Check if the exit span's jaeger_svcname is different from the parent span's jaeger_svcname
+    // If it is then use the parent span's jaeger_svcname as the exit span's jaeger svc name else
+    // just use the jaeger svc name as is.
+    // This will give us 2 things:
+    // 1. No service corresponding to exit span will be registered
+    //    (Typically this is an example where a facade service is created for a backend.
+    //    See redis and mysql in HotROD app for an example).
+    //    The actual service name on the exit span will instead be registered
+    //    as a backend by the {@link ClientSpanEndpointResolver}
+    // 2. Enrich the exit span with the parent span's service entity.
+    //    This will enable creating an edge between the exit span and the backend
 
-      Map<String, String> attributes =
-          Map.of(
-              SPAN_ID_KEY,
-              HexUtils.getHex(event.getEventId()),
-              TRACE_ID_KEY,
-              HexUtils.getHex(trace.getTraceId()));
-      org.hypertrace.entity.data.service.v1.Entity entity =
-          factory.getService(
-              event.getCustomerId(), serviceName, ServiceType.JAEGER_SERVICE.name(), attributes);
-      org.hypertrace.core.datamodel.Entity avroEntity =
-          EntityAvroConverter.convertToAvroEntity(entity, false);
-      if (avroEntity != null) {
-        addEntity(trace, event, avroEntity);
-
-        addEnrichedAttribute(
-            event, SERVICE_ID_ATTR_NAME, AttributeValueCreator.create(avroEntity.getEntityId()));
-        addEnrichedAttribute(
-            event,
-            SERVICE_NAME_ATTR_NAME,
-            AttributeValueCreator.create(avroEntity.getEntityName()));
+    StructuredTraceGraph graph = buildGraph(trace);
+    if (EnrichedSpanUtils.isExitSpan(event) && SpanAttributeUtils.isLeafSpan(graph, event)) {
+      String parentSvcName =
+          findServiceNameOfFirstAncestorThatIsNotAnExitSpanAndBelongsToADifferentService(
+                  event, serviceName, graph, ancestorServiceName)
+              .orElse(null);
+      if (parentSvcName != null) {
+        return parentSvcName;
+      }
+      // create backend entity at {@link ClientSpanEndpointResolver} if service and peer service
+      // are same
+      String peerServiceName = SpanSemanticConventionUtils.getPeerServiceName(event);
+      if (peerServiceName != null && peerServiceName.equals(serviceName)) {
+        return null;
       }
     }
+    return serviceName;
+  }
+
+  /** The service name of the span once enriched by this enricher, as long as it is not a leaf */
+  @Nullable
+  private static String getServiceNameOnceEnriched(Event event) {
+    String serviceName = EnrichedSpanUtils.getServiceName(event);
+    return serviceName == null ? event.getServiceName() : serviceName;
+  }
+
+  private boolean hasServiceDecision(String customerId, String serviceName) {
+    return serviceDecisions.get(DecisionMemo.shapeOf(customerId, serviceName)) != null;
+  }
+
+  /**
+   * The service entity of the span, reusing the decision taken for the previous spans of the same
+   * tenant and service when memoized. Each trace gets its own copy of the entity.
+   */
+  private org.hypertrace.core.datamodel.Entity getServiceEntity(
+      StructuredTrace trace, Event event, String serviceName) {
+    HashCode shape = DecisionMemo.shapeOf(event.getCustomerId(), serviceName);
+    org.hypertrace.core.datamodel.Entity memoizedEntity = serviceDecisions.get(shape);
+    if (memoizedEntity != null) {
+      return org.hypertrace.core.datamodel.Entity.newBuilder(memoizedEntity).build();
+    }
+
+    Map<String, String> attributes =
+        Map.of(
+            SPAN_ID_KEY,
+            HexUtils.getHex(event.getEventId()),
+            TRACE_ID_KEY,
+            HexUtils.getHex(trace.getTraceId()));
+    org.hypertrace.entity.data.service.v1.Entity entity =
+        factory.getService(
+            event.getCustomerId(), serviceName, ServiceType.JAEGER_SERVICE.name(), attributes);
+    org.hypertrace.core.datamodel.Entity avroEntity =
+        EntityAvroConverter.convertToAvroEntity(entity, false);
+    if (avroEntity != null && serviceDecisions.isEnabled()) {
+      serviceDecisions.put(
+          shape, org.hypertrace.core.datamodel.Entity.newBuilder(avroEntity).build());
+    }
+    return avroEntity;
   }
 
   /**
@@ -115,12 +193,22 @@ public class DefaultServiceEntityEnricher extends AbstractTraceEnricher {
   @VisibleForTesting
   Optional<String> findServiceNameOfFirstAncestorThatIsNotAnExitSpanAndBelongsToADifferentService(
       Event event, String svcName, StructuredTraceGraph graph) {
+    return findServiceNameOfFirstAncestorThatIsNotAnExitSpanAndBelongsToADifferentService(
+        event, svcName, graph, EnrichedSpanUtils::getServiceName);
+  }
+
+  private Optional<String>
+      findServiceNameOfFirstAncestorThatIsNotAnExitSpanAndBelongsToADifferentService(
+          Event event,
+          String svcName,
+          StructuredTraceGraph graph,
+          Function<Event, String> ancestorServiceName) {
     Event parent = graph.getParentEvent(event);
-    String parentSvcName = parent != null ? EnrichedSpanUtils.getServiceName(parent) : null;
+    String parentSvcName = parent != null ? ancestorServiceName.apply(parent) : null;
     while ((parent != null && EnrichedSpanUtils.isExitApiBoundary(parent))
         || svcName.equals(parentSvcName)) {
       parent = graph.getParentEvent(parent);
-      parentSvcName = parent != null ? EnrichedSpanUtils.getServiceName(parent) : null;
+      parentSvcName = parent != null ? ancestorServiceName.apply(parent) : null;
     }
     return Optional.ofNullable(parentSvcName);
   }
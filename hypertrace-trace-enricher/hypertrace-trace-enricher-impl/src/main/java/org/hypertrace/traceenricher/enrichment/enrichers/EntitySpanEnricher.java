@@ -1,7 +1,6 @@
 package org.hypertrace.traceenricher.enrichment.enrichers;
 
 import com.typesafe.config.Config;
-import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.trace.accessor.entities.TraceEntityAccessor;
 import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
@@ -14,11 +13,12 @@ public class EntitySpanEnricher extends AbstractTraceEnricher {
   private TraceEntityAccessor entityAccessor;
 
   @Override
-  public void enrichEvent(StructuredTrace trace, Event event) {
+  public void enrichTrace(StructuredTrace trace) {
+    // once per trace, so that an entity shared by many spans is only resolved and written once
     try {
-      this.entityAccessor.writeAssociatedEntitiesForSpanEventually(trace, event);
+      this.entityAccessor.writeAssociatedEntitiesForTraceEventually(trace);
     } catch (Exception exception) {
-      LOG.error("Failed to enrich entities on span", exception);
+      LOG.error("Failed to enrich entities on trace", exception);
     }
   }
 
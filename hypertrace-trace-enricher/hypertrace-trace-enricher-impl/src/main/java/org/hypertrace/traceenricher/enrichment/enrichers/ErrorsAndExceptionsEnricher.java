@@ -1,6 +1,5 @@
 package org.hypertrace.traceenricher.enrichment.enrichers;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import org.hypertrace.core.datamodel.Event;
@@ -53,16 +52,10 @@ public class ErrorsAndExceptionsEnricher extends AbstractTraceEnricher {
     boolean hasException = ErrorSemanticConventionUtils.checkForException(event);
 
     if (hasException) {
-      if (event.getMetrics() == null) {
-        event.setMetrics(Metrics.newBuilder().setMetricMap(new HashMap<>()).build());
-      }
-
-      event
-          .getMetrics()
-          .getMetricMap()
-          .put(
-              EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_EXCEPTION_COUNT),
-              MetricValue.newBuilder().setValue(1.0d).build());
+      addEnrichedMetric(
+          event,
+          EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_EXCEPTION_COUNT),
+          MetricValue.newBuilder().setValue(1.0d).build());
     }
   }
 
@@ -71,18 +64,12 @@ public class ErrorsAndExceptionsEnricher extends AbstractTraceEnricher {
     boolean hasError = findIfEventHasError(event);
 
     if (hasError) {
-      if (event.getMetrics() == null) {
-        event.setMetrics(Metrics.newBuilder().setMetricMap(new HashMap<>()).build());
-      }
-
       // TODO: Currently we only track the error count but we might want to enrich with additional
       //  details like kind of error, error message, etc in future.
-      event
-          .getMetrics()
-          .getMetricMap()
-          .put(
-              EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_ERROR_COUNT),
-              MetricValue.newBuilder().setValue(1.0d).build());
+      addEnrichedMetric(
+          event,
+          EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_ERROR_COUNT),
+          MetricValue.newBuilder().setValue(1.0d).build());
     }
   }
 
@@ -1,9 +1,9 @@
 package org.hypertrace.traceenricher.enrichment.enrichers;
 
 import com.google.common.util.concurrent.RateLimiter;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
@@ -40,6 +40,14 @@ public class ServiceEntityFactory {
     this.entityCache = entityCache;
   }
 
+  /**
+   * Loads the services for the given (customer id, name) pairs, so that {@link #getService} hits a
+   * warm cache
+   */
+  void prefetchServices(Collection<Pair<String, String>> customerIdAndNames) {
+    entityCache.prefetchServicesByName(customerIdAndNames);
+  }
+
   Entity getService(
       String customerId, String name, String serviceType, Map<String, String> attributes) {
     try {
@@ -68,7 +76,7 @@ public class ServiceEntityFactory {
           }
         }
       }
-    } catch (ExecutionException e) {
+    } catch (Exception e) {
       LOG.error("Could not get service; customerId: {}, name: {}", customerId, name, e);
     }
 
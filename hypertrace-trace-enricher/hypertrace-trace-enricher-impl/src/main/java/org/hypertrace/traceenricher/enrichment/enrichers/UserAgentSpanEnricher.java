@@ -1,22 +1,16 @@
 package org.hypertrace.traceenricher.enrichment.enrichers;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.typesafe.config.Config;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
-import javax.annotation.Nullable;
-import javax.annotation.ParametersAreNonnullByDefault;
-import net.sf.uadetector.ReadableUserAgent;
-import net.sf.uadetector.UserAgentStringParser;
-import net.sf.uadetector.service.UADetectorServiceFactory;
 import org.hypertrace.core.datamodel.AttributeValue;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.trace.AttributeValueCreator;
-import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.semantic.convention.utils.http.HttpSemanticConventionUtils;
 import org.hypertrace.semantic.convention.utils.rpc.RpcSemanticConventionUtils;
 import org.hypertrace.traceenricher.enrichedspan.constants.EnrichedSpanConstants;
@@ -25,45 +19,42 @@ import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.UserAgent;
 import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CachePolicy;
+import org.hypertrace.traceenricher.enrichment.enrichers.useragent.ParsedUserAgent;
+import org.hypertrace.traceenricher.enrichment.enrichers.useragent.UADetectorUserAgentParser;
+import org.hypertrace.traceenricher.enrichment.enrichers.useragent.UserAgentParser;
 
 public class UserAgentSpanEnricher extends AbstractTraceEnricher {
 
   private static final String CACHE_CONFIG_KEY = "cache";
   private static final String CACHE_CONFIG_MAX_SIZE = "maxSize";
   private static final int CACHE_MAX_SIZE_DEFAULT = 10000;
+  private static final String PARSER_CLASS_KEY = "parser.class";
   private static final String USER_AGENT_MAX_LENGTH_KEY = "user.agent.max.length";
   private static final int DEFAULT_USER_AGENT_MAX_LENGTH = 1000;
-  private static final String DOT = ".";
-  private final UserAgentStringParser userAgentStringParser =
-      UADetectorServiceFactory.getResourceModuleParser();
-  @Nullable private LoadingCache<String, ReadableUserAgent> userAgentCache;
+  private static final HashFunction USER_AGENT_HASH_FUNCTION = Hashing.murmur3_128();
+  private UserAgentParser userAgentParser;
+  // parsed user agents keyed by the 64 bit hash of the (truncated) string, collisions among the
+  // cached user agents being unlikely enough to not keep the strings around to compare them
+  private Cache<Long, ParsedUserAgent> userAgentCache;
   private int userAgentMaxLength;
 
   @Override
   public void init(Config enricherConfig, ClientRegistry clientRegistry) {
+    userAgentParser =
+        enricherConfig.hasPath(PARSER_CLASS_KEY)
+            ? createParser(enricherConfig.getString(PARSER_CLASS_KEY))
+            : new UADetectorUserAgentParser();
+    int cacheSize = CACHE_MAX_SIZE_DEFAULT;
     if (enricherConfig.hasPath(CACHE_CONFIG_KEY)) {
       Config enricherCacheConfig = enricherConfig.getConfig(CACHE_CONFIG_KEY);
-      int cacheSize =
-          enricherCacheConfig.hasPath(CACHE_CONFIG_MAX_SIZE)
-              ? enricherCacheConfig.getInt(CACHE_CONFIG_MAX_SIZE)
-              : CACHE_MAX_SIZE_DEFAULT;
-      userAgentCache =
-          CacheBuilder.newBuilder()
-              .maximumSize(cacheSize)
-              .recordStats()
-              .build(
-                  new CacheLoader<>() {
-                    @Override
-                    @ParametersAreNonnullByDefault
-                    public ReadableUserAgent load(String userAgentString) {
-                      return userAgentStringParser.parse(userAgentString);
-                    }
-                  });
-      PlatformMetricsRegistry.registerCache(
-          this.getClass().getName() + DOT + "userAgentCache",
-          userAgentCache,
-          Collections.emptyMap());
+      if (enricherCacheConfig.hasPath(CACHE_CONFIG_MAX_SIZE)) {
+        cacheSize = enricherCacheConfig.getInt(CACHE_CONFIG_MAX_SIZE);
+      }
     }
+    userAgentCache =
+        CachePolicy.monitor(
+            "userAgentCache", Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build());
     if (enricherConfig.hasPath(USER_AGENT_MAX_LENGTH_KEY)) {
       userAgentMaxLength = enricherConfig.getInt(USER_AGENT_MAX_LENGTH_KEY);
     } else {
@@ -86,14 +77,14 @@ public class UserAgentSpanEnricher extends AbstractTraceEnricher {
     Optional<String> mayBeUserAgent = getUserAgent(event);
 
     if (mayBeUserAgent.isPresent()) {
-      String userAgentStr = mayBeUserAgent.get();
-      if (userAgentStr.length() > userAgentMaxLength) {
-        userAgentStr = userAgentStr.substring(0, userAgentMaxLength);
-      }
-      ReadableUserAgent userAgent =
-          userAgentCache != null
-              ? userAgentCache.getUnchecked(userAgentStr)
-              : userAgentStringParser.parse(userAgentStr);
+      String userAgentStr =
+          mayBeUserAgent.get().length() > userAgentMaxLength
+              ? mayBeUserAgent.get().substring(0, userAgentMaxLength)
+              : mayBeUserAgent.get();
+      ParsedUserAgent userAgent =
+          userAgentCache.get(
+              USER_AGENT_HASH_FUNCTION.hashUnencodedChars(userAgentStr).asLong(),
+              hash -> userAgentParser.parse(userAgentStr));
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_NAME),
@@ -101,24 +92,34 @@ public class UserAgentSpanEnricher extends AbstractTraceEnricher {
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_TYPE),
-          AttributeValueCreator.create(userAgent.getType().getName()));
+          AttributeValueCreator.create(userAgent.getType()));
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_DEVICE_CATEGORY),
-          AttributeValueCreator.create(userAgent.getDeviceCategory().getName()));
+          AttributeValueCreator.create(userAgent.getDeviceCategory()));
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_OS_NAME),
-          AttributeValueCreator.create(userAgent.getOperatingSystem().getName()));
+          AttributeValueCreator.create(userAgent.getOsName()));
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_OS_VERSION),
-          AttributeValueCreator.create(
-              userAgent.getOperatingSystem().getVersionNumber().toVersionString()));
+          AttributeValueCreator.create(userAgent.getOsVersion()));
       addEnrichedAttribute(
           event,
           EnrichedSpanConstants.getValue(UserAgent.USER_AGENT_BROWSER_VERSION),
-          AttributeValueCreator.create(userAgent.getVersionNumber().toVersionString()));
+          AttributeValueCreator.create(userAgent.getBrowserVersion()));
+    }
+  }
+
+  private static UserAgentParser createParser(String parserClassName) {
+    try {
+      return Class.forName(parserClassName)
+          .asSubclass(UserAgentParser.class)
+          .getDeclaredConstructor()
+          .newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Invalid user agent parser: " + parserClassName, e);
     }
   }
 
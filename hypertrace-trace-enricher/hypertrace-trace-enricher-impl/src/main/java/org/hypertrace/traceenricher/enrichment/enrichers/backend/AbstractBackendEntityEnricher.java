@@ -2,14 +2,16 @@ package org.hypertrace.traceenricher.enrichment.enrichers.backend;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.hash.HashCode;
 import com.typesafe.config.Config;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -19,6 +21,7 @@ import org.hypertrace.core.datamodel.shared.HexUtils;
 import org.hypertrace.core.datamodel.shared.SpanAttributeUtils;
 import org.hypertrace.core.datamodel.shared.StructuredTraceGraph;
 import org.hypertrace.core.datamodel.shared.trace.AttributeValueCreator;
+import org.hypertrace.core.grpcutils.context.ContextualKey;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.constants.v1.BackendAttribute;
 import org.hypertrace.entity.data.service.client.EdsClient;
@@ -35,7 +38,9 @@ import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
 import org.hypertrace.traceenricher.enrichment.enrichers.BackendType;
 import org.hypertrace.traceenricher.enrichment.enrichers.backend.provider.BackendProvider;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.DecisionMemo;
 import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityCache;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 import org.hypertrace.traceenricher.enrichment.enrichers.resolver.backend.BackendInfo;
 import org.hypertrace.traceenricher.util.EnricherUtil;
 import org.hypertrace.traceenricher.util.EntityAvroConverter;
@@ -52,6 +57,7 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
   private static final String COLON = ":";
   private static final Joiner COLON_JOINER = Joiner.on(COLON);
   private static final String DEFAULT_PORT = "-1";
+  private static final String DECISION_MEMO_CONFIG_KEY = "decision.memo";
 
   private static final String BACKEND_PROTOCOL_ATTR_NAME =
       EntityConstants.getValue(BackendAttribute.BACKEND_ATTRIBUTE_PROTOCOL);
@@ -66,13 +72,23 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
 
   private EdsClient edsClient;
   private EntityCache entityCache;
+  @Nullable private EntityWriteBehindQueue entityWriteBehindQueue;
   private FqnResolver fqnResolver;
+  // backend entity of the leaf exit spans, empty if they are not calling a backend, by the shape of
+  // the backend resolved for them
+  private DecisionMemo<Optional<BackendDecision>> backendDecisions;
 
   @Override
   public void init(Config enricherConfig, ClientRegistry clientRegistry) {
     LOGGER.info("Initialize BackendEntityEnricher with Config: {}", enricherConfig.toString());
     this.edsClient = clientRegistry.getEdsCacheClient();
     this.entityCache = clientRegistry.getEntityCache();
+    this.entityWriteBehindQueue = clientRegistry.getEntityWriteBehindQueue();
+    this.backendDecisions =
+        enricherConfig.hasPath(DECISION_MEMO_CONFIG_KEY)
+            ? DecisionMemo.from(
+                enricherConfig.getConfig(DECISION_MEMO_CONFIG_KEY), "backendDecisionMemo")
+            : DecisionMemo.disabled();
     setup(enricherConfig, clientRegistry);
     this.fqnResolver = getFqnResolver();
   }
@@ -89,20 +105,54 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
   public void enrichTrace(StructuredTrace trace) {
     try {
       StructuredTraceGraph structuredTraceGraph = buildGraph(trace);
-      trace.getEventList().stream()
-          // filter leaf exit spans only
-          .filter(
-              event ->
-                  EnrichedSpanUtils.isExitSpan(event)
-                      && SpanAttributeUtils.isLeafSpan(structuredTraceGraph, event)
-                      && canResolveBackend(structuredTraceGraph, event))
-          // resolve backend entity
-          .map(event -> Pair.of(event, resolve(event, trace, structuredTraceGraph)))
-          .filter(pair -> pair.getRight().isPresent())
-          // check if backend entity is valid
-          .filter(pair -> isValidBackendEntity(trace, pair.getLeft(), pair.getRight().get()))
-          // decorate event/trace with backend entity attributes
-          .forEach(pair -> decorateWithBackendEntity(pair.getRight().get(), pair.getLeft(), trace));
+      List<Pair<Event, BackendInfo>> candidates =
+          trace.getEventList().stream()
+              // filter leaf exit spans only
+              .filter(
+                  event ->
+                      EnrichedSpanUtils.isExitSpan(event)
+                          && SpanAttributeUtils.isLeafSpan(structuredTraceGraph, event)
+                          && canResolveBackend(structuredTraceGraph, event))
+              // resolve backend entity
+              .map(event -> Pair.of(event, resolve(event, trace, structuredTraceGraph)))
+              .filter(pair -> pair.getRight().isPresent())
+              .map(pair -> Pair.of(pair.getLeft(), pair.getRight().get()))
+              .collect(Collectors.toList());
+      List<Pair<Event, BackendInfo>> undecidedCandidates =
+          backendDecisions.isEnabled() ? this.applyMemoizedDecisions(trace, candidates) : candidates;
+      if (undecidedCandidates.isEmpty()) {
+        return;
+      }
+
+      // warm up the service lookups for all the candidates at once before validating them
+      prefetchPossibleServices(undecidedCandidates);
+      List<Pair<Event, BackendInfo>> backends =
+          undecidedCandidates.stream()
+              // check if backend entity is valid
+              .filter(
+                  pair -> {
+                    if (isValidBackendEntity(trace, pair.getLeft(), pair.getRight())) {
+                      return true;
+                    }
+                    if (backendDecisions.isEnabled()) {
+                      backendDecisions.put(getShape(pair), Optional.empty());
+                    }
+                    return false;
+                  })
+              .collect(Collectors.toList());
+
+      // warm up the backend lookups for all the valid backends at once before decorating
+      entityCache.prefetchBackendsByIdentifyingAttributes(
+          backends.stream()
+              .map(Pair::getRight)
+              .map(BackendInfo::getEntity)
+              .map(
+                  entity ->
+                      RequestContext.forTenantId(entity.getTenantId())
+                          .buildContextualKey(entity.getIdentifyingAttributesMap()))
+              .collect(Collectors.toList()));
+      // decorate event/trace with backend entity attributes
+      backends.forEach(pair -> decorateWithBackendEntity(pair.getRight(), pair.getLeft(), trace));
     } catch (Exception ex) {
       LOGGER.error("An error occurred while enriching backend", ex);
     }
@@ -121,22 +171,89 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
     return true;
   }
 
+  /**
+   * Decorates the candidates of an already seen shape as decided for the previous ones, and returns
+   * the candidates left to decide
+   */
+  private List<Pair<Event, BackendInfo>> applyMemoizedDecisions(
+      StructuredTrace trace, List<Pair<Event, BackendInfo>> candidates) {
+    List<Pair<Event, BackendInfo>> undecidedCandidates = new ArrayList<>();
+    for (Pair<Event, BackendInfo> candidate : candidates) {
+      Optional<BackendDecision> decision = backendDecisions.get(getShape(candidate));
+      if (decision == null) {
+        undecidedCandidates.add(candidate);
+      } else {
+        decision.ifPresent(
+            backend -> decorate(backend, candidate.getRight(), candidate.getLeft(), trace));
+      }
+    }
+    return undecidedCandidates;
+  }
+
+  /**
+   * The shape of a candidate backend, made of everything deciding whether it is a backend and which
+   * one: its identifying attributes, and the peer service of its span. Subclasses looking up the
+   * possible services by more than the tenant and name should not enable the decision memo.
+   */
+  private HashCode getShape(Pair<Event, BackendInfo> candidate) {
+    Map<String, AttributeValue> identifyingAttributes =
+        candidate.getRight().getEntity().getIdentifyingAttributesMap();
+    return DecisionMemo.shapeOf(
+        candidate.getLeft().getCustomerId(),
+        getIdentifyingAttribute(identifyingAttributes, BACKEND_PROTOCOL_ATTR_NAME),
+        getIdentifyingAttribute(identifyingAttributes, BACKEND_HOST_ATTR_NAME),
+        getIdentifyingAttribute(identifyingAttributes, BACKEND_PORT_ATTR_NAME),
+        SpanSemanticConventionUtils.getPeerServiceName(candidate.getLeft()));
+  }
+
+  @Nullable
+  private String getIdentifyingAttribute(
+      Map<String, AttributeValue> identifyingAttributes, String name) {
+    AttributeValue value = identifyingAttributes.get(name);
+    return value == null ? null : value.getValue().getString();
+  }
+
+  /**
+   * Loads the service entities looked up by {@link #isValidBackendEntity} for all the candidate
+   * backends in one go, instead of one blocking lookup per candidate.
+   */
+  private void prefetchPossibleServices(List<Pair<Event, BackendInfo>> candidates) {
+    List<Pair<String, String>> keys = new ArrayList<>();
+    for (Pair<Event, BackendInfo> candidate : candidates) {
+      Map<String, AttributeValue> identifyingAttributes =
+          candidate.getRight().getEntity().getIdentifyingAttributesMap();
+      if (!requiresServiceCheck(identifyingAttributes)) {
+        continue;
+      }
+
+      String customerId = candidate.getLeft().getCustomerId();
+      keys.add(
+          Pair.of(
+              customerId,
+              identifyingAttributes.get(BACKEND_HOST_ATTR_NAME).getValue().getString()));
+      String peerServiceName = SpanSemanticConventionUtils.getPeerServiceName(candidate.getLeft());
+      if (peerServiceName != null) {
+        keys.add(Pair.of(customerId, peerServiceName));
+      }
+    }
+    entityCache.prefetchServicesByFqn(keys);
+  }
+
+  /** Only HTTP, HTTPS and GRPC backends could actually be a known service */
+  private boolean requiresServiceCheck(Map<String, AttributeValue> identifyingAttributes) {
+    BackendType backendType =
+        BackendType.valueOf(
+            identifyingAttributes.get(BACKEND_PROTOCOL_ATTR_NAME).getValue().getString());
+    return backendType == BackendType.HTTP
+        || backendType == BackendType.HTTPS
+        || backendType == BackendType.GRPC;
+  }
+
   /** Checks if the candidateEntity is indeed a backend Entity */
   private boolean isValidBackendEntity(
       StructuredTrace trace, Event backendSpan, BackendInfo candidateInfo) {
     // Always create backend entity for RabbitMq, Mongo, Redis, Jdbc
-    String backendProtocol =
-        candidateInfo
-            .getEntity()
-            .getIdentifyingAttributesMap()
-            .get(BACKEND_PROTOCOL_ATTR_NAME)
-            .getValue()
-            .getString();
-
-    BackendType backendType = BackendType.valueOf(backendProtocol);
-    if (backendType != BackendType.HTTP
-        && backendType != BackendType.HTTPS
-        && backendType != BackendType.GRPC) {
+    if (!requiresServiceCheck(candidateInfo.getEntity().getIdentifyingAttributesMap())) {
       return true;
     }
 
@@ -183,8 +300,27 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
       return;
     }
 
+    Map<String, org.hypertrace.core.datamodel.AttributeValue> attributesToEnrich =
+        getAttributesToEnrich(backend);
+    if (backendDecisions.isEnabled()) {
+      BackendDecision decision = new BackendDecision(avroEntity, attributesToEnrich);
+      backendDecisions.put(getShape(Pair.of(event, backendInfo)), Optional.of(decision.copy()));
+    }
+
     addEntity(trace, event, avroEntity);
-    addEnrichedAttributes(event, getAttributesToEnrich(backend));
+    addEnrichedAttributes(event, attributesToEnrich);
+    addEnrichedAttributes(event, backendInfo.getAttributes());
+  }
+
+  /** Decorates the event with its own copy of the memoized backend entity and attributes */
+  private void decorate(
+      BackendDecision memoizedDecision,
+      BackendInfo backendInfo,
+      Event event,
+      StructuredTrace trace) {
+    BackendDecision decision = memoizedDecision.copy();
+    addEntity(trace, event, decision.entity);
+    addEnrichedAttributes(event, decision.attributes);
     addEnrichedAttributes(event, backendInfo.getAttributes());
   }
 
@@ -251,18 +387,21 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
   @Nullable
   private Entity createBackendIfMissing(Entity backendEntity) {
     RequestContext requestContext = RequestContext.forTenantId(backendEntity.getTenantId());
+    ContextualKey<Map<String, AttributeValue>> key =
+        requestContext.buildContextualKey(backendEntity.getIdentifyingAttributesMap());
     try {
-      Optional<Entity> backendFromCache =
-          entityCache
-              .getBackendIdAttrsToEntityCache()
-              .get(requestContext.buildContextualKey(backendEntity.getIdentifyingAttributesMap()));
+      Optional<Entity> backendFromCache = entityCache.getBackendIdAttrsToEntityCache().get(key);
       return backendFromCache.orElseGet(
           () -> {
             Entity result = this.upsertBackend(backendEntity);
             LOGGER.info("Created backend:{}", result);
+            if (result != null) {
+              // replace the cached negative result so that the next spans don't upsert again
+              entityCache.getBackendIdAttrsToEntityCache().put(key, Optional.of(result));
+            }
             return result;
           });
-    } catch (ExecutionException ex) {
+    } catch (Exception ex) {
       LOGGER.error("Error trying to load backend from cache for backend:{}", backendEntity);
       return null;
     }
@@ -346,6 +485,9 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
   }
 
   protected Entity upsertBackend(Entity backendEntity) {
+    if (entityWriteBehindQueue != null) {
+      return entityWriteBehindQueue.upsert(backendEntity);
+    }
     return edsClient.upsert(backendEntity);
   }
 
@@ -353,6 +495,29 @@ public abstract class AbstractBackendEntityEnricher extends AbstractTraceEnriche
       StructuredTrace trace, Event span, String possibleFqn) {
     return entityCache
         .getFqnToServiceEntityCache()
-        .getUnchecked(Pair.of(span.getCustomerId(), possibleFqn));
+        .get(Pair.of(span.getCustomerId(), possibleFqn));
+  }
+
+  private static class BackendDecision {
+    private final org.hypertrace.core.datamodel.Entity entity;
+    private final Map<String, org.hypertrace.core.datamodel.AttributeValue> attributes;
+
+    private BackendDecision(
+        org.hypertrace.core.datamodel.Entity entity,
+        Map<String, org.hypertrace.core.datamodel.AttributeValue> attributes) {
+      this.entity = entity;
+      this.attributes = attributes;
+    }
+
+    private BackendDecision copy() {
+      Map<String, org.hypertrace.core.datamodel.AttributeValue> attributesCopy =
+          new LinkedHashMap<>();
+      attributes.forEach(
+          (key, value) ->
+              attributesCopy.put(
+                  key, org.hypertrace.core.datamodel.AttributeValue.newBuilder(value).build()));
+      return new BackendDecision(
+          org.hypertrace.core.datamodel.Entity.newBuilder(entity).build(), attributesCopy);
+    }
   }
 }
@@ -0,0 +1,123 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Refresh-ahead policy for the caches of remote lookups done by the enrichers. Entries that are
+ * still being read are reloaded in the background once they are older than the refresh interval,
+ * so hot keys never block a trace on a reload. Entries that are not read expire, negative results
+ * expire sooner than hits, and every expiration is jittered so that entries loaded together do not
+ * expire together.
+ */
+public class CachePolicy {
+  private static final String REFRESH_AFTER_WRITE_KEY = "refresh.after.write";
+  private static final String EXPIRE_AFTER_WRITE_KEY = "expire.after.write";
+  private static final String NEGATIVE_EXPIRE_AFTER_WRITE_KEY = "negative.expire.after.write";
+  private static final String EXPIRY_JITTER_KEY = "expiry.jitter";
+
+  public static final CachePolicy DEFAULT =
+      new CachePolicy(Duration.ofMinutes(5), Duration.ofMinutes(15), Duration.ofMinutes(1), 0.2);
+
+  private final Duration refreshAfterWrite;
+  private final Duration expireAfterWrite;
+  private final Duration negativeExpireAfterWrite;
+  private final double expiryJitter;
+
+  public CachePolicy(
+      Duration refreshAfterWrite,
+      Duration expireAfterWrite,
+      Duration negativeExpireAfterWrite,
+      double expiryJitter) {
+    this.refreshAfterWrite = refreshAfterWrite;
+    this.expireAfterWrite = expireAfterWrite;
+    this.negativeExpireAfterWrite = negativeExpireAfterWrite;
+    this.expiryJitter = expiryJitter;
+  }
+
+  /** Reads the policy from the given config, using the {@link #DEFAULT} for any missing key */
+  public static CachePolicy from(Config config) {
+    return new CachePolicy(
+        config.hasPath(REFRESH_AFTER_WRITE_KEY)
+            ? config.getDuration(REFRESH_AFTER_WRITE_KEY)
+            : DEFAULT.refreshAfterWrite,
+        config.hasPath(EXPIRE_AFTER_WRITE_KEY)
+            ? config.getDuration(EXPIRE_AFTER_WRITE_KEY)
+            : DEFAULT.expireAfterWrite,
+        config.hasPath(NEGATIVE_EXPIRE_AFTER_WRITE_KEY)
+            ? config.getDuration(NEGATIVE_EXPIRE_AFTER_WRITE_KEY)
+            : DEFAULT.negativeExpireAfterWrite,
+        config.hasPath(EXPIRY_JITTER_KEY)
+            ? config.getDouble(EXPIRY_JITTER_KEY)
+            : DEFAULT.expiryJitter);
+  }
+
+  /**
+   * Builds a loading cache following this policy, recording the stats needed by {@link #monitor}.
+   *
+   * @param isNegative tells whether a loaded value is a negative result, e.g. an entity not found
+   * @param executor executor running the background reloads
+   */
+  public <K, V> LoadingCache<K, V> build(
+      long maximumSize, CacheLoader<K, V> loader, Predicate<V> isNegative, Executor executor) {
+    return this.<K, V>newBuilder(isNegative, executor).maximumSize(maximumSize).build(loader);
+  }
+
+  /**
+   * Starts a cache builder following this policy, for caches that need more than {@link #build},
+   * e.g. a weigher or a removal listener. The caller still has to bound the cache size.
+   */
+  public <K, V> Caffeine<K, V> newBuilder(Predicate<V> isNegative, Executor executor) {
+    return Caffeine.newBuilder()
+        .refreshAfterWrite(refreshAfterWrite)
+        .expireAfter(new JitteredExpiry<K, V>(isNegative))
+        .executor(executor)
+        .recordStats();
+  }
+
+  /** Registers the hit, miss, eviction and load latency metrics of the cache under the name */
+  public static <K, V, C extends Cache<K, V>> C monitor(String name, C cache) {
+    return CaffeineCacheMetrics.monitor(PlatformMetricsRegistry.getMeterRegistry(), cache, name);
+  }
+
+  private class JitteredExpiry<K, V> implements Expiry<K, V> {
+    private final Predicate<V> isNegative;
+
+    private JitteredExpiry(Predicate<V> isNegative) {
+      this.isNegative = isNegative;
+    }
+
+    @Override
+    public long expireAfterCreate(@Nonnull K key, @Nonnull V value, long currentTime) {
+      Duration expiry = isNegative.test(value) ? negativeExpireAfterWrite : expireAfterWrite;
+      double jitter =
+          expiryJitter > 0
+              ? ThreadLocalRandom.current().nextDouble(-expiryJitter, expiryJitter)
+              : 0;
+      return (long) (expiry.toNanos() * (1 + jitter));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        @Nonnull K key, @Nonnull V value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        @Nonnull K key, @Nonnull V value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.Config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically saves the registered caches to compressed local snapshot files and restores them
+ * when they get registered, so that a restarted enricher starts with warm caches instead of
+ * reloading every entry from the remote services. Restored entries are served as is until the
+ * cache refreshes or expires them like any other entry.
+ */
+public class CacheSnapshotManager {
+  private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshotManager.class);
+
+  private static final String ENABLED_KEY = "enabled";
+  private static final String DIR_KEY = "dir";
+  private static final String INTERVAL_KEY = "interval";
+  private static final String MAX_AGE_KEY = "max.age";
+  private static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(5);
+  private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+  private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private final Path dir;
+  private final Duration maxAge;
+  private final ScheduledExecutorService scheduler;
+  private final List<SnapshotableCache> caches = new CopyOnWriteArrayList<>();
+
+  /** Snapshots are only taken when {@code enabled} is set and a {@code dir} is configured */
+  public static CacheSnapshotManager from(Config config) {
+    if (!config.hasPath(ENABLED_KEY)
+        || !config.getBoolean(ENABLED_KEY)
+        || !config.hasPath(DIR_KEY)) {
+      return disabled();
+    }
+    return new CacheSnapshotManager(
+        Paths.get(config.getString(DIR_KEY)),
+        config.hasPath(INTERVAL_KEY) ? config.getDuration(INTERVAL_KEY) : DEFAULT_INTERVAL,
+        config.hasPath(MAX_AGE_KEY) ? config.getDuration(MAX_AGE_KEY) : DEFAULT_MAX_AGE);
+  }
+
+  public static CacheSnapshotManager disabled() {
+    return new CacheSnapshotManager();
+  }
+
+  private CacheSnapshotManager() {
+    this.dir = null;
+    this.maxAge = null;
+    this.scheduler = null;
+  }
+
+  CacheSnapshotManager(Path dir, Duration interval, Duration maxAge) {
+    this.dir = dir;
+    this.maxAge = maxAge;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("cache-snapshot-%d").build());
+    this.scheduler.scheduleWithFixedDelay(
+        this::saveAll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isEnabled() {
+    return dir != null;
+  }
+
+  /** Restores the cache from its last snapshot, if recent enough, and snapshots it from now on */
+  public void register(SnapshotableCache cache) {
+    if (!isEnabled()) {
+      return;
+    }
+    restore(cache);
+    caches.add(cache);
+  }
+
+  public void saveAll() {
+    caches.forEach(this::save);
+  }
+
+  /** Stops the periodic snapshots after taking a last one */
+  public void shutdown() {
+    if (!isEnabled()) {
+      return;
+    }
+    scheduler.shutdownNow();
+    saveAll();
+  }
+
+  private void save(SnapshotableCache cache) {
+    Path file = getSnapshotFile(cache);
+    Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_SUFFIX);
+    try {
+      Files.createDirectories(dir);
+      try (DataOutputStream out =
+          new DataOutputStream(
+              new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        cache.writeSnapshot(out);
+      }
+      Files.move(
+          tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      LOG.warn("Failed to save the snapshot of cache {} to {}", cache.getSnapshotName(), file, e);
+    }
+  }
+
+  private void restore(SnapshotableCache cache) {
+    Path file = getSnapshotFile(cache);
+    if (!Files.isRegularFile(file)) {
+      return;
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != SNAPSHOT_VERSION) {
+        LOG.info("Ignoring the snapshot {} written by another version", file);
+        return;
+      }
+      Instant snapshotTime = Instant.ofEpochMilli(in.readLong());
+      if (snapshotTime.plus(maxAge).isBefore(Instant.now())) {
+        LOG.info("Ignoring the snapshot {} taken at {} as it is too old", file, snapshotTime);
+        return;
+      }
+      cache.readSnapshot(in);
+      LOG.info(
+          "Restored cache {} from the snapshot taken at {}", cache.getSnapshotName(), snapshotTime);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Failed to restore cache {} from {}", cache.getSnapshotName(), file, e);
+    }
+  }
+
+  private Path getSnapshotFile(SnapshotableCache cache) {
+    return dir.resolve(cache.getSnapshotName() + SNAPSHOT_FILE_SUFFIX);
+  }
+}
@@ -0,0 +1,90 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.typesafe.config.Config;
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+/**
+ * Memo of the enrichment decisions taken for spans of the same shape, that is with the same values
+ * for everything a decision depends on (tenant, service name, backend protocol, host and port...).
+ * Repetitive traffic then reuses the decision instead of taking it again, skipping the lookups and
+ * conversions it involves, and only spans of a new shape are fully enriched. The decisions expire
+ * like the entities they are derived from.
+ *
+ * <p>A disabled memo never holds any decision.
+ */
+public class DecisionMemo<V> {
+  private static final String ENABLED_KEY = "enabled";
+  private static final String MAXIMUM_SIZE_KEY = "maximum.size";
+  private static final String EXPIRE_AFTER_WRITE_KEY = "expire.after.write";
+  private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+  private static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofMinutes(5);
+  private static final HashFunction SHAPE_HASH_FUNCTION = Hashing.murmur3_128();
+  private static final int NULL_COMPONENT = -1;
+
+  @Nullable private final Cache<HashCode, V> decisions;
+
+  private DecisionMemo(@Nullable Cache<HashCode, V> decisions) {
+    this.decisions = decisions;
+  }
+
+  public static <V> DecisionMemo<V> disabled() {
+    return new DecisionMemo<>(null);
+  }
+
+  /** Reads the memo from the given config, disabled unless enabled there */
+  public static <V> DecisionMemo<V> from(Config config, String name) {
+    if (!config.hasPath(ENABLED_KEY) || !config.getBoolean(ENABLED_KEY)) {
+      return disabled();
+    }
+    Cache<HashCode, V> decisions =
+        Caffeine.newBuilder()
+            .maximumSize(
+                config.hasPath(MAXIMUM_SIZE_KEY)
+                    ? config.getLong(MAXIMUM_SIZE_KEY)
+                    : DEFAULT_MAXIMUM_SIZE)
+            .expireAfterWrite(
+                config.hasPath(EXPIRE_AFTER_WRITE_KEY)
+                    ? config.getDuration(EXPIRE_AFTER_WRITE_KEY)
+                    : DEFAULT_EXPIRE_AFTER_WRITE)
+            .recordStats()
+            .build();
+    return new DecisionMemo<>(CachePolicy.monitor(name, decisions));
+  }
+
+  /** The fingerprint of the shape made of the given components, any of which may be null */
+  public static HashCode shapeOf(String... components) {
+    Hasher hasher = SHAPE_HASH_FUNCTION.newHasher();
+    for (String component : components) {
+      // the length keeps ("ab", "c") and ("a", "bc") apart
+      if (component == null) {
+        hasher.putInt(NULL_COMPONENT);
+      } else {
+        hasher.putInt(component.length()).putUnencodedChars(component);
+      }
+    }
+    return hasher.hash();
+  }
+
+  public boolean isEnabled() {
+    return decisions != null;
+  }
+
+  /** The decision taken for the shape, null if none was memoized */
+  @Nullable
+  public V get(HashCode shape) {
+    return decisions == null ? null : decisions.getIfPresent(shape);
+  }
+
+  public void put(HashCode shape, V decision) {
+    if (decisions != null) {
+      decisions.put(shape, decision);
+    }
+  }
+}
@@ -1,17 +1,23 @@
 package org.hypertrace.traceenricher.enrichment.enrichers.cache;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import java.util.Collections;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import javax.annotation.Nonnull;
 import org.apache.commons.lang3.tuple.Pair;
 import org.hypertrace.core.grpcutils.context.ContextualKey;
-import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.constants.v1.CommonAttribute;
 import org.hypertrace.entity.data.service.client.EdsClient;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
@@ -20,103 +26,86 @@ import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.data.service.v1.Value;
 import org.hypertrace.entity.service.constants.EntityConstants;
 import org.hypertrace.entity.v1.entitytype.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Class that holds all the entity related caches used by the enrichers */
-public class EntityCache {
+public class EntityCache implements SnapshotableCache {
+  private static final Logger LOG = LoggerFactory.getLogger(EntityCache.class);
   private static final String DOT = ".";
+  private static final Duration DEFAULT_PREFETCH_TIMEOUT = Duration.ofSeconds(10);
+  private static final long MAXIMUM_SIZE = 10000;
   private final EdsClient edsClient;
+  private final Executor prefetchExecutor;
+  private final Duration prefetchTimeout;
 
   /**
    * Cache to cache the service fqn to service Entity mapping so that we don't look it up over and
    * over.
    */
-  private final LoadingCache<Pair<String, String>, Optional<Entity>> fqnToServiceEntity =
-      CacheBuilder.newBuilder()
-          .maximumSize(10000)
-          .expireAfterWrite(5, TimeUnit.MINUTES)
-          .recordStats()
-          .build(
-              new CacheLoader<>() {
-                public Optional<Entity> load(@Nonnull Pair<String, String> pair) {
-                  AttributeValue fqnAttribute =
-                      AttributeValue.newBuilder()
-                          .setValue(Value.newBuilder().setString(pair.getRight()))
-                          .build();
-
-                  ByTypeAndIdentifyingAttributes request =
-                      ByTypeAndIdentifyingAttributes.newBuilder()
-                          .setEntityType(EntityType.SERVICE.name())
-                          .putIdentifyingAttributes(
-                              EntityConstants.getValue(CommonAttribute.COMMON_ATTRIBUTE_FQN),
-                              fqnAttribute)
-                          .build();
-
-                  return Optional.ofNullable(
-                      edsClient.getByTypeAndIdentifyingAttributes(pair.getLeft(), request));
-                }
-              });
+  private final LoadingCache<Pair<String, String>, Optional<Entity>> fqnToServiceEntity;
 
   /**
    * Cache to cache the service name to a list of services mapping so that we don't look it up over
    * and over.
    */
-  private final LoadingCache<Pair<String, String>, List<Entity>> nameToServiceEntities =
-      CacheBuilder.newBuilder()
-          .maximumSize(10000)
-          .expireAfterWrite(5, TimeUnit.MINUTES)
-          .build(
-              new CacheLoader<>() {
-                @Override
-                public List<Entity> load(@Nonnull Pair<String, String> pair) {
-                  // Lookup by name first, to see if there are any services with that name.
-                  return edsClient.getEntitiesByName(
-                      pair.getLeft(), EntityType.SERVICE.name(), pair.getRight());
-                }
-              });
+  private final LoadingCache<Pair<String, String>, List<Entity>> nameToServiceEntities;
 
   /**
    * Cache of K8S namespaces Key: Customer Id, Namespace name Value: List of Namespace entity ids
    */
-  private final LoadingCache<Pair<String, String>, List<Entity>> namespaceCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(10000)
-          .expireAfterWrite(5, TimeUnit.MINUTES)
-          .build(
-              new CacheLoader<>() {
-                @Override
-                public List<Entity> load(@Nonnull Pair<String, String> key) {
-                  return edsClient.getEntitiesByName(
-                      key.getLeft(), EntityType.K8S_NAMESPACE.name(), key.getRight());
-                }
-              });
+  private final LoadingCache<Pair<String, String>, List<Entity>> namespaceCache;
 
   /**
    * Cache of Backend identifying attributes to Entity Key: Map of identifying attributes Value:
    * Optional Backend entity
    */
   private final LoadingCache<ContextualKey<Map<String, AttributeValue>>, Optional<Entity>>
-      backendIdAttrsToEntityCache =
-          CacheBuilder.newBuilder()
-              .maximumSize(10000)
-              .expireAfterWrite(5, TimeUnit.MINUTES)
-              .build(CacheLoader.from(this::loadBackendFromIdentifyingAttributes));
+      backendIdAttrsToEntityCache;
 
   public EntityCache(EdsClient edsClient) {
+    this(edsClient, MoreExecutors.directExecutor(), DEFAULT_PREFETCH_TIMEOUT, CachePolicy.DEFAULT);
+  }
+
+  /**
+   * @param executor executor on which the cache misses found by the prefetch methods are loaded
+   *     concurrently, and on which hot entries are refreshed in the background
+   * @param prefetchTimeout maximum time a prefetch waits for its loads before giving up and leaving
+   *     the remaining misses to be loaded lazily
+   * @param cachePolicy refresh and expiry policy of all the caches
+   */
+  public EntityCache(
+      EdsClient edsClient, Executor executor, Duration prefetchTimeout, CachePolicy cachePolicy) {
     this.edsClient = edsClient;
-    PlatformMetricsRegistry.registerCache(
-        this.getClass().getName() + DOT + "fqnToServiceEntity",
-        fqnToServiceEntity,
-        Collections.emptyMap());
-    PlatformMetricsRegistry.registerCache(
-        this.getClass().getName() + DOT + "nameToServiceEntities",
-        nameToServiceEntities,
-        Collections.emptyMap());
-    PlatformMetricsRegistry.registerCache(
-        this.getClass().getName() + DOT + "namespaceCache", namespaceCache, Collections.emptyMap());
-    PlatformMetricsRegistry.registerCache(
-        this.getClass().getName() + DOT + "backendIdAttrsToEntityCache",
-        backendIdAttrsToEntityCache,
-        Collections.emptyMap());
+    this.prefetchExecutor = executor;
+    this.prefetchTimeout = prefetchTimeout;
+    this.fqnToServiceEntity =
+        cachePolicy.build(MAXIMUM_SIZE, this::loadServiceFromFqn, Optional::isEmpty, executor);
+    this.nameToServiceEntities =
+        cachePolicy.build(
+            MAXIMUM_SIZE,
+            // Lookup by name first, to see if there are any services with that name.
+            key ->
+                edsClient.getEntitiesByName(
+                    key.getLeft(), EntityType.SERVICE.name(), key.getRight()),
+            List::isEmpty,
+            executor);
+    this.namespaceCache =
+        cachePolicy.build(
+            MAXIMUM_SIZE,
+            key ->
+                edsClient.getEntitiesByName(
+                    key.getLeft(), EntityType.K8S_NAMESPACE.name(), key.getRight()),
+            List::isEmpty,
+            executor);
+    this.backendIdAttrsToEntityCache =
+        cachePolicy.build(
+            MAXIMUM_SIZE, this::loadBackendFromIdentifyingAttributes, Optional::isEmpty, executor);
+
+    CachePolicy.monitor(getCacheName("fqnToServiceEntity"), fqnToServiceEntity);
+    CachePolicy.monitor(getCacheName("nameToServiceEntities"), nameToServiceEntities);
+    CachePolicy.monitor(getCacheName("namespaceCache"), namespaceCache);
+    CachePolicy.monitor(getCacheName("backendIdAttrsToEntityCache"), backendIdAttrsToEntityCache);
   }
 
   public LoadingCache<Pair<String, String>, Optional<Entity>> getFqnToServiceEntityCache() {
@@ -136,6 +125,174 @@ public class EntityCache {
     return backendIdAttrsToEntityCache;
   }
 
+  /** Warms up {@link #getFqnToServiceEntityCache()} for the given (tenant id, fqn) keys */
+  public void prefetchServicesByFqn(Collection<Pair<String, String>> keys) {
+    prefetch(fqnToServiceEntity, keys);
+  }
+
+  /** Warms up {@link #getNameToServiceEntitiesCache()} for the given (tenant id, name) keys */
+  public void prefetchServicesByName(Collection<Pair<String, String>> keys) {
+    prefetch(nameToServiceEntities, keys);
+  }
+
+  /** Warms up {@link #getBackendIdAttrsToEntityCache()} for the given identifying attributes */
+  public void prefetchBackendsByIdentifyingAttributes(
+      Collection<ContextualKey<Map<String, AttributeValue>>> keys) {
+    prefetch(backendIdAttrsToEntityCache, keys);
+  }
+
+  /**
+   * Loads all the keys missing from the cache concurrently so that the enrichers looking them up
+   * afterwards hit a warm cache instead of making one blocking call per miss. Concurrent loads of
+   * the same key, including the ones issued by other stream threads, are coalesced by the cache
+   * into a single call. Failed or timed out loads are ignored here and retried on the next lookup.
+   */
+  private <K> void prefetch(LoadingCache<K, ?> cache, Collection<K> keys) {
+    CompletableFuture<?>[] loads =
+        keys.stream()
+            .distinct()
+            .filter(key -> cache.getIfPresent(key) == null)
+            .map(key -> CompletableFuture.runAsync(() -> cache.get(key), prefetchExecutor))
+            .toArray(CompletableFuture[]::new);
+    if (loads.length == 0) {
+      return;
+    }
+
+    try {
+      CompletableFuture.allOf(loads).get(prefetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      LOG.debug("Failed to prefetch {} entities, they will be loaded lazily", loads.length, e);
+    }
+  }
+
+  @Override
+  public String getSnapshotName() {
+    return "entity-cache";
+  }
+
+  /** Only the found entities are saved, negative results are short-lived anyway */
+  @Override
+  public void writeSnapshot(DataOutput out) throws IOException {
+    Map<Pair<String, String>, Entity> servicesByFqn = new HashMap<>();
+    fqnToServiceEntity
+        .asMap()
+        .forEach((key, value) -> value.ifPresent(entity -> servicesByFqn.put(key, entity)));
+    out.writeInt(servicesByFqn.size());
+    for (Map.Entry<Pair<String, String>, Entity> entry : servicesByFqn.entrySet()) {
+      writePair(out, entry.getKey());
+      SnapshotableCache.writeBytes(out, entry.getValue().toByteArray());
+    }
+
+    writeEntityLists(out, nameToServiceEntities.asMap());
+    writeEntityLists(out, namespaceCache.asMap());
+
+    Map<ContextualKey<Map<String, AttributeValue>>, Entity> backends = new HashMap<>();
+    backendIdAttrsToEntityCache
+        .asMap()
+        .forEach((key, value) -> value.ifPresent(entity -> backends.put(key, entity)));
+    out.writeInt(backends.size());
+    for (Map.Entry<ContextualKey<Map<String, AttributeValue>>, Entity> entry :
+        backends.entrySet()) {
+      out.writeUTF(entry.getKey().getContext().getTenantId().orElseThrow());
+      Map<String, AttributeValue> identifyingAttributes = entry.getKey().getData();
+      out.writeInt(identifyingAttributes.size());
+      for (Map.Entry<String, AttributeValue> attribute : identifyingAttributes.entrySet()) {
+        out.writeUTF(attribute.getKey());
+        SnapshotableCache.writeBytes(out, attribute.getValue().toByteArray());
+      }
+      SnapshotableCache.writeBytes(out, entry.getValue().toByteArray());
+    }
+  }
+
+  @Override
+  public void readSnapshot(DataInput in) throws IOException {
+    int servicesByFqnCount = in.readInt();
+    for (int i = 0; i < servicesByFqnCount; i++) {
+      fqnToServiceEntity.put(
+          readPair(in), Optional.of(Entity.parseFrom(SnapshotableCache.readBytes(in))));
+    }
+
+    readEntityLists(in, nameToServiceEntities);
+    readEntityLists(in, namespaceCache);
+
+    int backendCount = in.readInt();
+    for (int i = 0; i < backendCount; i++) {
+      String tenantId = in.readUTF();
+      int attributeCount = in.readInt();
+      Map<String, AttributeValue> identifyingAttributes = new HashMap<>();
+      for (int j = 0; j < attributeCount; j++) {
+        identifyingAttributes.put(
+            in.readUTF(), AttributeValue.parseFrom(SnapshotableCache.readBytes(in)));
+      }
+      backendIdAttrsToEntityCache.put(
+          RequestContext.forTenantId(tenantId).buildContextualKey(identifyingAttributes),
+          Optional.of(Entity.parseFrom(SnapshotableCache.readBytes(in))));
+    }
+  }
+
+  private void writeEntityLists(DataOutput out, Map<Pair<String, String>, List<Entity>> entries)
+      throws IOException {
+    Map<Pair<String, String>, List<Entity>> nonEmptyEntries = new HashMap<>();
+    entries.forEach(
+        (key, value) -> {
+          if (!value.isEmpty()) {
+            nonEmptyEntries.put(key, value);
+          }
+        });
+    out.writeInt(nonEmptyEntries.size());
+    for (Map.Entry<Pair<String, String>, List<Entity>> entry : nonEmptyEntries.entrySet()) {
+      writePair(out, entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (Entity entity : entry.getValue()) {
+        SnapshotableCache.writeBytes(out, entity.toByteArray());
+      }
+    }
+  }
+
+  private void readEntityLists(DataInput in, LoadingCache<Pair<String, String>, List<Entity>> cache)
+      throws IOException {
+    int entryCount = in.readInt();
+    for (int i = 0; i < entryCount; i++) {
+      Pair<String, String> key = readPair(in);
+      int entityCount = in.readInt();
+      List<Entity> entities = new ArrayList<>(entityCount);
+      for (int j = 0; j < entityCount; j++) {
+        entities.add(Entity.parseFrom(SnapshotableCache.readBytes(in)));
+      }
+      cache.put(key, entities);
+    }
+  }
+
+  private void writePair(DataOutput out, Pair<String, String> pair) throws IOException {
+    out.writeUTF(pair.getLeft());
+    out.writeUTF(pair.getRight());
+  }
+
+  private Pair<String, String> readPair(DataInput in) throws IOException {
+    return Pair.of(in.readUTF(), in.readUTF());
+  }
+
+  private String getCacheName(String cache) {
+    return this.getClass().getName() + DOT + cache;
+  }
+
+  private Optional<Entity> loadServiceFromFqn(Pair<String, String> pair) {
+    AttributeValue fqnAttribute =
+        AttributeValue.newBuilder().setValue(Value.newBuilder().setString(pair.getRight())).build();
+
+    ByTypeAndIdentifyingAttributes request =
+        ByTypeAndIdentifyingAttributes.newBuilder()
+            .setEntityType(EntityType.SERVICE.name())
+            .putIdentifyingAttributes(
+                EntityConstants.getValue(CommonAttribute.COMMON_ATTRIBUTE_FQN), fqnAttribute)
+            .build();
+
+    return Optional.ofNullable(
+        edsClient.getByTypeAndIdentifyingAttributes(pair.getLeft(), request));
+  }
+
   protected Optional<Entity> loadBackendFromIdentifyingAttributes(
       ContextualKey<Map<String, AttributeValue>> key) {
     ByTypeAndIdentifyingAttributes request =
@@ -0,0 +1,270 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.data.service.client.EdsClient;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.ByTypeAndIdentifyingAttributes;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue for the entities created by the enrichers. An entity gets a deterministic id
+ * derived from its tenant, type and identifying attributes as soon as it is queued, so the spans
+ * can be enriched with it right away, and is upserted into the entity service later on by a
+ * background thread. Queued upserts of the same entity are coalesced into one, failed upserts are
+ * retried on the next flushes.
+ *
+ * <p>When the queue is full, the entity is upserted synchronously by the caller instead.
+ */
+public class EntityWriteBehindQueue {
+  private static final Logger LOG = LoggerFactory.getLogger(EntityWriteBehindQueue.class);
+
+  private static final String ENABLED_KEY = "enabled";
+  private static final String FLUSH_INTERVAL_KEY = "flush.interval";
+  private static final String BATCH_SIZE_KEY = "batch.size";
+  private static final String MAX_RETRIES_KEY = "max.retries";
+  private static final String CAPACITY_KEY = "capacity";
+
+  private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_MAX_RETRIES = 3;
+  private static final int DEFAULT_CAPACITY = 10_000;
+
+  private static final String QUEUE_DEPTH_METRIC = "hypertrace.entity.write.behind.queue.depth";
+  private static final String FLUSH_LATENCY_METRIC = "hypertrace.entity.write.behind.flush.latency";
+  private static final String DROPPED_METRIC = "hypertrace.entity.write.behind.dropped";
+
+  private final EdsClient edsClient;
+  private final int batchSize;
+  private final int maxRetries;
+  private final int capacity;
+  // tenantId/entityId -> entity waiting to be upserted
+  private final Map<String, Entity> pendingEntities = new ConcurrentHashMap<>();
+  private final Map<String, Integer> failedAttempts = new ConcurrentHashMap<>();
+  // tenantId/entityId -> listener of the entity as stored, for the entities that may already exist
+  private final Map<String, Consumer<Entity>> storedListeners = new ConcurrentHashMap<>();
+  private final AtomicInteger queueDepth;
+  private final Timer flushLatencyTimer;
+  private final Counter droppedCounter;
+  @Nullable private final ScheduledExecutorService scheduler;
+
+  @VisibleForTesting
+  EntityWriteBehindQueue(
+      EdsClient edsClient,
+      @Nullable Duration flushInterval,
+      int batchSize,
+      int maxRetries,
+      int capacity) {
+    this.edsClient = edsClient;
+    this.batchSize = batchSize;
+    this.maxRetries = maxRetries;
+    this.capacity = capacity;
+    this.queueDepth =
+        PlatformMetricsRegistry.registerGauge(QUEUE_DEPTH_METRIC, Map.of(), new AtomicInteger());
+    this.flushLatencyTimer = PlatformMetricsRegistry.registerTimer(FLUSH_LATENCY_METRIC, Map.of());
+    this.droppedCounter = PlatformMetricsRegistry.registerCounter(DROPPED_METRIC, Map.of());
+    if (flushInterval == null) {
+      this.scheduler = null;
+      return;
+    }
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("entity-write-behind-%d")
+                .build());
+    this.scheduler.scheduleWithFixedDelay(
+        this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Builds the queue from the given config, or returns null if the write-behind is not enabled in
+   * which case the entities should be upserted synchronously.
+   */
+  @Nullable
+  public static EntityWriteBehindQueue from(EdsClient edsClient, Config config) {
+    if (!config.hasPath(ENABLED_KEY) || !config.getBoolean(ENABLED_KEY)) {
+      return null;
+    }
+    return new EntityWriteBehindQueue(
+        edsClient,
+        config.hasPath(FLUSH_INTERVAL_KEY)
+            ? config.getDuration(FLUSH_INTERVAL_KEY)
+            : DEFAULT_FLUSH_INTERVAL,
+        config.hasPath(BATCH_SIZE_KEY) ? config.getInt(BATCH_SIZE_KEY) : DEFAULT_BATCH_SIZE,
+        config.hasPath(MAX_RETRIES_KEY) ? config.getInt(MAX_RETRIES_KEY) : DEFAULT_MAX_RETRIES,
+        config.hasPath(CAPACITY_KEY) ? config.getInt(CAPACITY_KEY) : DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Queues the upsert of the given entity. The entity should be new to the entity service, or
+   * have the id the entity service assigned to it: the id generated for an entity without one is
+   * not the one the entity service has for an existing entity.
+   *
+   * @return the entity as it will be stored by the entity service, with its id set and its
+   *     identifying attributes among its attributes
+   */
+  public Entity upsert(Entity entity) {
+    return this.upsert(entity, null);
+  }
+
+  /**
+   * Queues the upsert of the given entity, which may already exist in the entity service under
+   * another id. The entity gets a generated id right away, and the background flush looks up the
+   * existing entity, upserts the given one with the existing id if any, and passes the stored
+   * entity on to the listener, so that the caller replaces the generated id it handed out. Nothing
+   * is looked up on the calling thread unless the queue is full.
+   *
+   * @return the entity with the generated id, until the flush stores it
+   */
+  public Entity upsert(Entity entity, @Nullable Consumer<Entity> storedListener) {
+    Entity entityWithId = asStored(entity);
+    String key = getKey(entityWithId);
+    if (pendingEntities.size() >= capacity && !pendingEntities.containsKey(key)) {
+      LOG.debug("Entity write-behind queue is full, upserting {} synchronously", key);
+      return storedListener == null
+          ? edsClient.upsert(entityWithId)
+          : this.upsertWithExistingId(entityWithId);
+    }
+
+    if (storedListener != null) {
+      storedListeners.put(key, storedListener);
+    }
+    pendingEntities.merge(key, entityWithId, EntityWriteBehindQueue::coalesce);
+    queueDepth.set(pendingEntities.size());
+    return entityWithId;
+  }
+
+  /** Upserts everything queued so far, a batch at a time */
+  public void flush() {
+    List<String> keys = new ArrayList<>(pendingEntities.keySet());
+    for (List<String> batch : Iterables.partition(keys, batchSize)) {
+      flushLatencyTimer.record(() -> batch.forEach(this::flushEntity));
+    }
+    queueDepth.set(pendingEntities.size());
+  }
+
+  /** Stops the background flushes and upserts what is left in the queue */
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    flush();
+  }
+
+  /**
+   * Id of the given entity, the same for every upsert of an entity with the same tenant, type and
+   * identifying attributes.
+   */
+  public static String generateEntityId(Entity entity) {
+    ByteString bytes =
+        ByteString.copyFromUtf8(entity.getTenantId())
+            .concat(ByteString.copyFromUtf8(entity.getEntityType()));
+    for (Map.Entry<String, AttributeValue> attribute :
+        new TreeMap<>(entity.getIdentifyingAttributesMap()).entrySet()) {
+      bytes =
+          bytes
+              .concat(ByteString.copyFromUtf8(attribute.getKey()))
+              .concat(attribute.getValue().toByteString());
+    }
+    return UUID.nameUUIDFromBytes(bytes.toByteArray()).toString();
+  }
+
+  private static Entity asStored(Entity entity) {
+    Entity.Builder builder = entity.toBuilder();
+    if (entity.getEntityId().isEmpty()) {
+      builder.setEntityId(generateEntityId(entity));
+    }
+    // the entity service keeps the identifying attributes among the attributes too
+    entity
+        .getIdentifyingAttributesMap()
+        .forEach(
+            (name, value) -> {
+              if (!entity.containsAttributes(name)) {
+                builder.putAttributes(name, value);
+              }
+            });
+    return builder.build();
+  }
+
+  @VisibleForTesting
+  int getQueueDepth() {
+    return pendingEntities.size();
+  }
+
+  private void flushEntity(String key) {
+    Entity entity = pendingEntities.remove(key);
+    if (entity == null) {
+      return;
+    }
+    Consumer<Entity> storedListener = storedListeners.get(key);
+    try {
+      if (storedListener == null) {
+        edsClient.upsert(entity);
+      } else {
+        Entity storedEntity = this.upsertWithExistingId(entity);
+        storedListeners.remove(key, storedListener);
+        storedListener.accept(storedEntity);
+      }
+      failedAttempts.remove(key);
+    } catch (Exception e) {
+      int attempts = failedAttempts.merge(key, 1, Integer::sum);
+      if (attempts > maxRetries) {
+        LOG.error("Dropping entity {} after {} failed upserts", key, attempts, e);
+        failedAttempts.remove(key);
+        storedListeners.remove(key);
+        droppedCounter.increment();
+        return;
+      }
+      LOG.warn("Failed to upsert entity {}, will retry", key, e);
+      // a newer version of the entity queued meanwhile replaces the failed one
+      pendingEntities.merge(key, entity, (newer, failed) -> coalesce(failed, newer));
+    }
+  }
+
+  /** Upserts the entity with the id of the existing entity of the same identity, if any */
+  private Entity upsertWithExistingId(Entity entity) {
+    Entity existingEntity =
+        edsClient.getByTypeAndIdentifyingAttributes(
+            entity.getTenantId(),
+            ByTypeAndIdentifyingAttributes.newBuilder()
+                .setEntityType(entity.getEntityType())
+                .putAllIdentifyingAttributes(entity.getIdentifyingAttributesMap())
+                .build());
+    Entity entityToStore =
+        existingEntity == null
+            ? entity
+            : entity.toBuilder().setEntityId(existingEntity.getEntityId()).build();
+    Entity storedEntity = edsClient.upsert(entityToStore);
+    return storedEntity == null ? entityToStore : storedEntity;
+  }
+
+  private static String getKey(Entity entity) {
+    return entity.getTenantId() + "/" + entity.getEntityId();
+  }
+
+  private static Entity coalesce(Entity older, Entity newer) {
+    return older.toBuilder().mergeFrom(newer).build();
+  }
+}
@@ -0,0 +1,29 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** A cache whose entries can be saved to and restored from a {@link CacheSnapshotManager} */
+public interface SnapshotableCache {
+
+  /** Unique name of the cache, used as the name of its snapshot file */
+  String getSnapshotName();
+
+  /** Writes the entries worth restoring after a restart, typically the positive results */
+  void writeSnapshot(DataOutput out) throws IOException;
+
+  /** Puts the entries written by {@link #writeSnapshot} back into the cache */
+  void readSnapshot(DataInput in) throws IOException;
+
+  static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
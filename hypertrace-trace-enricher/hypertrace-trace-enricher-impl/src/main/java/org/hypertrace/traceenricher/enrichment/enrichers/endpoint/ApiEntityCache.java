@@ -0,0 +1,274 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.Config;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CachePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the API entities shared by all the tenants and services, keyed by (tenant id, service
+ * id, api name). The cache is bounded by the approximate size in bytes of its entries rather than
+ * by their count, and no tenant may hold more than its quota of entries so that one tenant with a
+ * high cardinality of operation names cannot evict the APIs of everybody else. APIs of a tenant
+ * over its quota are still upserted, they are just not cached.
+ *
+ * <p>Concurrent lookups of the same missing key wait for a single upsert of the API entity, cached
+ * or not. The entries are refreshed on a small bounded pool of their own, as the refreshes block on
+ * the entity service.
+ */
+public class ApiEntityCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ApiEntityCache.class);
+
+  private static final String MAXIMUM_WEIGHT_KEY = "maximum.weight";
+  private static final String TENANT_MAXIMUM_ENTRIES_KEY = "tenant.maximum.entries";
+  private static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+  private static final int DEFAULT_TENANT_MAXIMUM_ENTRIES = 50_000;
+  private static final String REFRESH_THREADS_KEY = "refresh.threads";
+  private static final int DEFAULT_REFRESH_THREADS = 2;
+  // refreshes past it are rejected, and retried on a later read of their entry
+  private static final int REFRESH_QUEUE_CAPACITY = 1_000;
+
+  private final ApiEntityDao apiEntityDao;
+  private final int tenantMaximumEntries;
+  private final Map<String, AtomicInteger> tenantEntryCounts = new ConcurrentHashMap<>();
+  private final Map<ApiKey, CompletableFuture<Entity>> uncachedUpserts = new ConcurrentHashMap<>();
+  private final LoadingCache<ApiKey, Entity> cache;
+
+  public ApiEntityCache(ApiEntityDao apiEntityDao) {
+    this(
+        apiEntityDao,
+        DEFAULT_MAXIMUM_WEIGHT,
+        DEFAULT_TENANT_MAXIMUM_ENTRIES,
+        CachePolicy.DEFAULT,
+        newRefreshExecutor(DEFAULT_REFRESH_THREADS));
+  }
+
+  public ApiEntityCache(
+      ApiEntityDao apiEntityDao,
+      long maximumWeight,
+      int tenantMaximumEntries,
+      CachePolicy cachePolicy,
+      Executor executor) {
+    this.apiEntityDao = apiEntityDao;
+    this.tenantMaximumEntries = tenantMaximumEntries;
+    // upserted api entities are never negative, a failed upsert is not cached at all
+    this.cache =
+        cachePolicy
+            .<ApiKey, Entity>newBuilder(entity -> false, executor)
+            .maximumWeight(maximumWeight)
+            .weigher((ApiKey key, Entity entity) -> key.weight() + entity.getSerializedSize())
+            .removalListener(
+                (ApiKey key, Entity entity, RemovalCause cause) -> {
+                  if (key != null && cause != RemovalCause.REPLACED) {
+                    getTenantEntryCount(key.tenantId).decrementAndGet();
+                  }
+                })
+            .build(new ApiEntityLoader());
+    CachePolicy.monitor("apiEntityCache", cache);
+  }
+
+  /** Reads the cache bounds and refresh policy from the given config, using defaults if missing */
+  public static ApiEntityCache from(ApiEntityDao apiEntityDao, Config config) {
+    return new ApiEntityCache(
+        apiEntityDao,
+        config.hasPath(MAXIMUM_WEIGHT_KEY)
+            ? config.getBytes(MAXIMUM_WEIGHT_KEY)
+            : DEFAULT_MAXIMUM_WEIGHT,
+        config.hasPath(TENANT_MAXIMUM_ENTRIES_KEY)
+            ? config.getInt(TENANT_MAXIMUM_ENTRIES_KEY)
+            : DEFAULT_TENANT_MAXIMUM_ENTRIES,
+        CachePolicy.from(config),
+        newRefreshExecutor(
+            config.hasPath(REFRESH_THREADS_KEY)
+                ? config.getInt(REFRESH_THREADS_KEY)
+                : DEFAULT_REFRESH_THREADS));
+  }
+
+  public Entity getApiEntity(String tenantId, String serviceId, String serviceName, String name) {
+    ApiKey key = new ApiKey(tenantId, serviceId, serviceName, name);
+    Entity apiEntity = cache.getIfPresent(key);
+    if (apiEntity != null) {
+      return apiEntity;
+    }
+    if (getTenantEntryCount(tenantId).get() >= tenantMaximumEntries) {
+      LOG.debug("API entity cache quota reached for tenant {}, not caching {}", tenantId, key);
+      return upsertUncachedApiEntity(key);
+    }
+    return cache.get(key);
+  }
+
+  /** Snapshot of the cached API entities */
+  Map<ApiKey, Entity> getCachedApiEntities() {
+    return Map.copyOf(cache.asMap());
+  }
+
+  void putApiEntity(ApiKey key, Entity apiEntity) {
+    if (getTenantEntryCount(key.tenantId).get() < tenantMaximumEntries
+        && cache.asMap().putIfAbsent(key, apiEntity) == null) {
+      getTenantEntryCount(key.tenantId).incrementAndGet();
+    }
+  }
+
+  int getTenantEntryCountForTesting(String tenantId) {
+    return getTenantEntryCount(tenantId).get();
+  }
+
+  private AtomicInteger getTenantEntryCount(String tenantId) {
+    return tenantEntryCounts.computeIfAbsent(tenantId, t -> new AtomicInteger());
+  }
+
+  /** Upserts the API entity of a tenant over its quota, once for all the concurrent lookups */
+  private Entity upsertUncachedApiEntity(ApiKey key) {
+    CompletableFuture<Entity> upsert = new CompletableFuture<>();
+    CompletableFuture<Entity> pendingUpsert = uncachedUpserts.putIfAbsent(key, upsert);
+    if (pendingUpsert != null) {
+      try {
+        return pendingUpsert.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    try {
+      Entity apiEntity = upsertApiEntity(key);
+      upsert.complete(apiEntity);
+      return apiEntity;
+    } catch (RuntimeException e) {
+      upsert.completeExceptionally(e);
+      throw e;
+    } finally {
+      uncachedUpserts.remove(key, upsert);
+    }
+  }
+
+  private static Executor newRefreshExecutor(int threads) {
+    // rejects the refreshes past the capacity of the queue rather than blocking the readers
+    return new ThreadPoolExecutor(
+        threads,
+        threads,
+        0,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("api-entity-cache-refresh-%d")
+            .build());
+  }
+
+  private Entity upsertApiEntity(ApiKey key) {
+    // an API upserted in the background takes the id it is stored with once it is
+    return apiEntityDao.upsertApiEntity(
+        key.tenantId,
+        key.serviceId,
+        key.serviceName,
+        ApiEntityDao.API_TYPE,
+        key.name,
+        storedEntity -> cache.asMap().replace(key, storedEntity));
+  }
+
+  private class ApiEntityLoader implements CacheLoader<ApiKey, Entity> {
+    @Override
+    public Entity load(@Nonnull ApiKey key) {
+      Entity apiEntity = upsertApiEntity(key);
+      if (apiEntity != null) {
+        getTenantEntryCount(key.tenantId).incrementAndGet();
+      }
+      return apiEntity;
+    }
+
+    @Override
+    public Entity reload(@Nonnull ApiKey key, @Nonnull Entity oldValue) {
+      // a reload replaces the cached entry, it does not add one to the tenant count
+      Entity apiEntity = upsertApiEntity(key);
+      return apiEntity != null ? apiEntity : oldValue;
+    }
+  }
+
+  /**
+   * Identifies an API of a service. The service name is only carried along to upsert the API
+   * entity, the service id already identifies the service.
+   */
+  static class ApiKey {
+    private final String tenantId;
+    private final String serviceId;
+    private final String serviceName;
+    private final String name;
+
+    ApiKey(String tenantId, String serviceId, String serviceName, String name) {
+      this.tenantId = tenantId;
+      this.serviceId = serviceId;
+      this.serviceName = serviceName;
+      this.name = name;
+    }
+
+    String getTenantId() {
+      return tenantId;
+    }
+
+    String getServiceId() {
+      return serviceId;
+    }
+
+    String getServiceName() {
+      return serviceName;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    /** Approximate retained size in bytes of the strings of this key */
+    private int weight() {
+      return 2
+          * (tenantId.length()
+              + serviceId.length()
+              + (serviceName == null ? 0 : serviceName.length())
+              + name.length());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ApiKey apiKey = (ApiKey) o;
+      return tenantId.equals(apiKey.tenantId)
+          && serviceId.equals(apiKey.serviceId)
+          && name.equals(apiKey.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenantId, serviceId, name);
+    }
+
+    @Override
+    public String toString() {
+      return "ApiKey{tenantId='"
+          + tenantId
+          + "', serviceId='"
+          + serviceId
+          + "', name='"
+          + name
+          + "'}";
+    }
+  }
+}
@@ -2,6 +2,8 @@ package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
 
 import com.google.common.base.Preconditions;
 import com.google.protobuf.TextFormat;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import org.hypertrace.entity.constants.v1.ApiAttribute;
 import org.hypertrace.entity.constants.v1.ServiceAttribute;
 import org.hypertrace.entity.data.service.client.EdsClient;
@@ -11,6 +13,7 @@ import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.data.service.v1.Value;
 import org.hypertrace.entity.service.constants.EntityConstants;
 import org.hypertrace.entity.v1.entitytype.EntityType;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +45,38 @@ public class ApiEntityDao {
       EntityConstants.getValue(ApiAttribute.API_ATTRIBUTE_API_TYPE);
 
   private final EdsClient edsClient;
+  @Nullable private final EntityWriteBehindQueue writeBehindQueue;
 
   public ApiEntityDao(EdsClient client) {
-    edsClient = client;
+    this(client, null);
+  }
+
+  /**
+   * @param writeBehindQueue queue the API entities are upserted through if not null, instead of
+   *     upserting them synchronously. An API gets a generated id until the queue is flushed, which
+   *     looks up the API so that an existing API keeps the id the entity service assigned to it.
+   */
+  public ApiEntityDao(EdsClient client, @Nullable EntityWriteBehindQueue writeBehindQueue) {
+    this.edsClient = client;
+    this.writeBehindQueue = writeBehindQueue;
   }
 
   public Entity upsertApiEntity(
       String tenantId, String serviceId, String serviceName, String apiType, String apiName) {
+    return this.upsertApiEntity(tenantId, serviceId, serviceName, apiType, apiName, null);
+  }
+
+  /**
+   * @param storedListener listener of the API entity as stored by the entity service, when it is
+   *     upserted through the write-behind queue: its id replaces the generated one returned
+   */
+  public Entity upsertApiEntity(
+      String tenantId,
+      String serviceId,
+      String serviceName,
+      String apiType,
+      String apiName,
+      @Nullable Consumer<Entity> storedListener) {
 
     Preconditions.checkNotNull(tenantId, "tenantId can't be empty");
     Preconditions.checkNotNull(serviceId, "serviceId can't be empty");
@@ -73,7 +101,11 @@ public class ApiEntityDao {
 
     Entity entity = entityBuilder.build();
     LOGGER.info("Upserting Api entity: [{}]", TextFormat.shortDebugString(entity));
-    return edsClient.upsert(entity);
+    if (writeBehindQueue == null) {
+      return edsClient.upsert(entity);
+    }
+    return writeBehindQueue.upsert(
+        entity, storedListener == null ? storedEntity -> {} : storedListener);
   }
 
   private AttributeValue createAttributeValue(String value) {
@@ -1,11 +1,14 @@
 package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import com.typesafe.config.Config;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.hypertrace.core.datamodel.AttributeValue;
 import org.hypertrace.core.datamodel.Event;
@@ -19,6 +22,8 @@ import org.hypertrace.entity.service.constants.EntityConstants;
 import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
 import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.SnapshotableCache;
+import org.hypertrace.traceenricher.enrichment.enrichers.endpoint.ApiEntityCache.ApiKey;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraphBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +32,7 @@ import org.slf4j.LoggerFactory;
  * Enriches the Entry Span with API attributes. The API attributes are based on operation_name tag
  * on a Span.
  */
-public class EndpointEnricher extends AbstractTraceEnricher {
+public class EndpointEnricher extends AbstractTraceEnricher implements SnapshotableCache {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EndpointEnricher.class);
 
@@ -40,15 +45,21 @@ public class EndpointEnricher extends AbstractTraceEnricher {
   private static final String API_DISCOVERY_STATE_ATTR =
       EntityConstants.getValue(ApiAttribute.API_ATTRIBUTE_DISCOVERY_STATE);
 
-  private ApiEntityDao apiEntityDao;
+  private static final String API_ENTITY_CACHE_CONFIG_KEY = "api.entity.cache";
 
-  // serviceId -> EndpointDiscoverer
-  private final Map<String, OperationNameBasedEndpointDiscoverer> serviceIdToEndpointDiscoverer =
-      new ConcurrentHashMap<>();
+  private ApiEntityCache apiEntityCache;
 
   @Override
   public void init(Config enricherConfig, ClientRegistry clientRegistry) {
-    this.apiEntityDao = new ApiEntityDao(clientRegistry.getEdsCacheClient());
+    ApiEntityDao apiEntityDao =
+        new ApiEntityDao(
+            clientRegistry.getEdsCacheClient(), clientRegistry.getEntityWriteBehindQueue());
+    this.apiEntityCache =
+        enricherConfig.hasPath(API_ENTITY_CACHE_CONFIG_KEY)
+            ? ApiEntityCache.from(
+                apiEntityDao, enricherConfig.getConfig(API_ENTITY_CACHE_CONFIG_KEY))
+            : new ApiEntityCache(apiEntityDao);
+    clientRegistry.getCacheSnapshotManager().register(this);
   }
 
   @Override
@@ -85,8 +96,7 @@ public class EndpointEnricher extends AbstractTraceEnricher {
     Entity apiEntity = null;
     try {
       apiEntity =
-          getOperationNameBasedEndpointDiscoverer(customerId, serviceId, serviceName)
-              .getApiEntity(event);
+          apiEntityCache.getApiEntity(customerId, serviceId, serviceName, event.getEventName());
     } catch (Exception e) {
       LOGGER.error(
           "Unable to get apiEntity for tenantId {}, serviceId {} and event {}",
@@ -140,17 +150,35 @@ public class EndpointEnricher extends AbstractTraceEnricher {
 
   @VisibleForTesting
   void setApiEntityDao(ApiEntityDao apiEntityDao) {
-    this.apiEntityDao = apiEntityDao;
+    this.apiEntityCache = new ApiEntityCache(apiEntityDao);
   }
 
-  private OperationNameBasedEndpointDiscoverer getOperationNameBasedEndpointDiscoverer(
-      String customerId, String serviceId, String serviceName) {
-    serviceIdToEndpointDiscoverer.computeIfAbsent(
-        serviceId,
-        e ->
-            new OperationNameBasedEndpointDiscoverer(
-                customerId, serviceId, serviceName, apiEntityDao));
-    return serviceIdToEndpointDiscoverer.get(serviceId);
+  @Override
+  public String getSnapshotName() {
+    return "endpoint-cache";
+  }
+
+  @Override
+  public void writeSnapshot(DataOutput out) throws IOException {
+    Map<ApiKey, Entity> apiEntities = apiEntityCache.getCachedApiEntities();
+    out.writeInt(apiEntities.size());
+    for (Map.Entry<ApiKey, Entity> entry : apiEntities.entrySet()) {
+      ApiKey key = entry.getKey();
+      out.writeUTF(key.getTenantId());
+      out.writeUTF(key.getServiceId());
+      out.writeUTF(Strings.nullToEmpty(key.getServiceName()));
+      out.writeUTF(key.getName());
+      SnapshotableCache.writeBytes(out, entry.getValue().toByteArray());
+    }
+  }
+
+  @Override
+  public void readSnapshot(DataInput in) throws IOException {
+    int apiEntityCount = in.readInt();
+    for (int i = 0; i < apiEntityCount; i++) {
+      ApiKey key = new ApiKey(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+      apiEntityCache.putApiEntity(key, Entity.parseFrom(SnapshotableCache.readBytes(in)));
+    }
   }
 
   /**
@@ -0,0 +1,91 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.space;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.hypertrace.spaces.config.service.v1.AttributeValueRuleData;
+import org.hypertrace.spaces.config.service.v1.SpaceConfigRule;
+
+/**
+ * The space rules of a tenant, compiled once when they are loaded. The rules are grouped by the
+ * attribute they read, so that each distinct attribute is resolved once per span no matter how
+ * many rules refer to it.
+ */
+class CompiledSpaceRules {
+  static final CompiledSpaceRules EMPTY = compile(Collections.emptyList());
+
+  private final List<SpaceConfigRule> rules;
+  private final List<RuleAttribute> attributes;
+
+  private CompiledSpaceRules(List<SpaceConfigRule> rules, List<RuleAttribute> attributes) {
+    this.rules = rules;
+    this.attributes = attributes;
+  }
+
+  static CompiledSpaceRules compile(List<SpaceConfigRule> rules) {
+    Set<RuleAttribute> attributes = new LinkedHashSet<>();
+    for (SpaceConfigRule rule : rules) {
+      switch (rule.getRuleDataCase()) {
+        case ATTRIBUTE_VALUE_RULE_DATA:
+          AttributeValueRuleData ruleData = rule.getAttributeValueRuleData();
+          attributes.add(
+              new RuleAttribute(ruleData.getAttributeScope(), ruleData.getAttributeKey()));
+          break;
+        case RULEDATA_NOT_SET:
+        default:
+          // matches no space
+          break;
+      }
+    }
+    return new CompiledSpaceRules(
+        Collections.unmodifiableList(rules),
+        Collections.unmodifiableList(new ArrayList<>(attributes)));
+  }
+
+  List<SpaceConfigRule> getRules() {
+    return rules;
+  }
+
+  /** The distinct attributes read by the rules, in the order of the rules */
+  List<RuleAttribute> getAttributes() {
+    return attributes;
+  }
+
+  static class RuleAttribute {
+    private final String attributeScope;
+    private final String attributeKey;
+
+    RuleAttribute(String attributeScope, String attributeKey) {
+      this.attributeScope = attributeScope;
+      this.attributeKey = attributeKey;
+    }
+
+    String getAttributeScope() {
+      return attributeScope;
+    }
+
+    String getAttributeKey() {
+      return attributeKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RuleAttribute that = (RuleAttribute) o;
+      return attributeScope.equals(that.attributeScope) && attributeKey.equals(that.attributeKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(attributeScope, attributeKey);
+    }
+  }
+}
@@ -4,8 +4,12 @@ import static org.hypertrace.traceenricher.enrichedspan.constants.EnrichedSpanCo
 
 import com.google.common.annotations.VisibleForTesting;
 import com.typesafe.config.Config;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
@@ -18,12 +22,15 @@ public class SpaceEnricher extends AbstractTraceEnricher {
 
   private SpaceRulesCachingClient ruleClient;
   private SpaceRuleEvaluator ruleEvaluator;
+  // spaces of the trace being enriched on the stream thread, gathered while enriching its events
+  private final ThreadLocal<TraceSpaces> traceSpaces = new ThreadLocal<>();
 
   @Override
   public void init(Config enricherConfig, ClientRegistry clientRegistry) {
-    this.init(
-        new SpaceRulesCachingClient(clientRegistry.getConfigServiceChannel()),
-        new SpaceRuleEvaluator(clientRegistry.getAttributeReader()));
+    SpaceRulesCachingClient ruleClient =
+        new SpaceRulesCachingClient(clientRegistry.getConfigServiceChannel());
+    clientRegistry.getCacheSnapshotManager().register(ruleClient);
+    this.init(ruleClient, new SpaceRuleEvaluator(clientRegistry.getAttributeReader()));
   }
 
   /**
@@ -38,20 +45,24 @@ public class SpaceEnricher extends AbstractTraceEnricher {
 
   @Override
   public void enrichEvent(StructuredTrace trace, Event event) {
-    addEnrichedAttribute(
-        event,
-        SPACE_IDS_ATTRIBUTE,
-        AttributeValueCreator.create(this.calculateSpaces(trace, event)));
+    List<String> spaceIds = this.calculateSpaces(trace, event);
+    addEnrichedAttribute(event, SPACE_IDS_ATTRIBUTE, AttributeValueCreator.create(spaceIds));
+    this.getTraceSpaces(trace).spaceIds.addAll(spaceIds);
   }
 
   @Override
   public void enrichTrace(StructuredTrace trace) {
+    TraceSpaces spaces = this.traceSpaces.get();
+    this.traceSpaces.remove();
+    // falls back to the spaces carried by the events if they weren't enriched by this enricher
     List<String> includedSpaceIds =
-        trace.getEventList().stream()
-            .map(EnrichedSpanUtils::getSpaceIds)
-            .flatMap(Collection::stream)
-            .distinct()
-            .collect(Collectors.toList());
+        spaces != null && spaces.trace == trace
+            ? new ArrayList<>(spaces.spaceIds)
+            : trace.getEventList().stream()
+                .map(EnrichedSpanUtils::getSpaceIds)
+                .flatMap(Collection::stream)
+                .distinct()
+                .collect(Collectors.toList());
 
     trace
         .getAttributes()
@@ -60,10 +71,30 @@ public class SpaceEnricher extends AbstractTraceEnricher {
   }
 
   private List<String> calculateSpaces(StructuredTrace trace, Event span) {
-    return this.ruleClient.getRulesForTenant(span.getCustomerId()).stream()
-        .map(rule -> this.ruleEvaluator.calculateSpacesForRule(trace, span, rule))
-        .flatMap(Collection::stream)
-        .distinct()
-        .collect(Collectors.toList());
+    CompiledSpaceRules rules = this.ruleClient.getCompiledRulesForTenant(span.getCustomerId());
+    if (rules.getAttributes().isEmpty()) {
+      return Collections.emptyList();
+    }
+    Set<String> spaceIds = new LinkedHashSet<>();
+    this.ruleEvaluator.calculateSpaces(trace, span, rules, spaceIds);
+    return new ArrayList<>(spaceIds);
+  }
+
+  private TraceSpaces getTraceSpaces(StructuredTrace trace) {
+    TraceSpaces spaces = this.traceSpaces.get();
+    if (spaces == null || spaces.trace != trace) {
+      spaces = new TraceSpaces(trace);
+      this.traceSpaces.set(spaces);
+    }
+    return spaces;
+  }
+
+  private static class TraceSpaces {
+    private final StructuredTrace trace;
+    private final Set<String> spaceIds = new LinkedHashSet<>();
+
+    private TraceSpaces(StructuredTrace trace) {
+      this.trace = trace;
+    }
   }
 }
@@ -1,13 +1,18 @@
 package org.hypertrace.traceenricher.enrichment.enrichers.space;
 
+import static java.util.function.Predicate.not;
+
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.spaces.config.service.v1.AttributeValueRuleData;
 import org.hypertrace.spaces.config.service.v1.SpaceConfigRule;
 import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
 import org.hypertrace.trace.reader.attributes.ValueCoercer;
+import org.hypertrace.traceenricher.enrichment.enrichers.space.CompiledSpaceRules.RuleAttribute;
 
 class SpaceRuleEvaluator {
   private final TraceAttributeReader<StructuredTrace, Event> attributeReader;
@@ -20,27 +25,39 @@ class SpaceRuleEvaluator {
       StructuredTrace trace, Event span, SpaceConfigRule rule) {
     switch (rule.getRuleDataCase()) {
       case ATTRIBUTE_VALUE_RULE_DATA:
-        return this.calculateSpacesForAttribute(trace, span, rule.getAttributeValueRuleData());
+        AttributeValueRuleData ruleData = rule.getAttributeValueRuleData();
+        return this.calculateSpaceForAttribute(
+                trace, span, ruleData.getAttributeScope(), ruleData.getAttributeKey())
+            .map(List::of)
+            .orElse(Collections.emptyList());
       case RULEDATA_NOT_SET:
       default:
         return List.of();
     }
   }
 
-  private List<String> calculateSpacesForAttribute(
-      StructuredTrace trace, Event span, AttributeValueRuleData attributeValueRuleData) {
+  /**
+   * Adds the spaces of the span matched by the given rules to the given collection, resolving each
+   * attribute read by the rules once.
+   */
+  public void calculateSpaces(
+      StructuredTrace trace, Event span, CompiledSpaceRules rules, Collection<String> spaceIds) {
+    for (RuleAttribute attribute : rules.getAttributes()) {
+      this.calculateSpaceForAttribute(
+              trace, span, attribute.getAttributeScope(), attribute.getAttributeKey())
+          .ifPresent(spaceIds::add);
+    }
+  }
 
-    return this.attributeReader
-        .getSpanValue(
-            trace,
-            span,
-            attributeValueRuleData.getAttributeScope(),
-            attributeValueRuleData.getAttributeKey())
-        .mapOptional(ValueCoercer::convertToString)
-        .filter(string -> !string.isEmpty())
-        .map(List::of)
-        .onErrorComplete()
-        .defaultIfEmpty(Collections.emptyList())
-        .blockingGet();
+  private Optional<String> calculateSpaceForAttribute(
+      StructuredTrace trace, Event span, String attributeScope, String attributeKey) {
+    try {
+      return ValueCoercer.convertToString(
+              this.attributeReader.resolveSpanValue(trace, span, attributeScope, attributeKey))
+          .filter(not(String::isEmpty));
+    } catch (RuntimeException exception) {
+      // An attribute that can't be resolved for the span matches no space
+      return Optional.empty();
+    }
   }
 }
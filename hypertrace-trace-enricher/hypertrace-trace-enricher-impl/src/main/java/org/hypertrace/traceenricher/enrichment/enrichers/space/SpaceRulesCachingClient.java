@@ -5,8 +5,13 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.Weigher;
 import io.grpc.Channel;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.hypertrace.core.grpcutils.client.GrpcClientRequestContextUtil;
 import org.hypertrace.core.grpcutils.client.RequestContextClientCallCredsProviderFactory;
@@ -15,10 +20,11 @@ import org.hypertrace.spaces.config.service.v1.GetRulesRequest;
 import org.hypertrace.spaces.config.service.v1.SpaceConfigRule;
 import org.hypertrace.spaces.config.service.v1.SpacesConfigServiceGrpc;
 import org.hypertrace.spaces.config.service.v1.SpacesConfigServiceGrpc.SpacesConfigServiceBlockingStub;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.SnapshotableCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-class SpaceRulesCachingClient {
+class SpaceRulesCachingClient implements SnapshotableCache {
   private static final Logger LOG = LoggerFactory.getLogger(SpaceRulesCachingClient.class);
   private static final String DOT = ".";
   private final SpacesConfigServiceBlockingStub configServiceStub;
@@ -34,26 +40,68 @@ class SpaceRulesCachingClient {
         Collections.emptyMap());
   }
 
-  private final LoadingCache<String, List<SpaceConfigRule>> spaceRulesCache =
+  // rules are compiled as they are loaded, rather than for every span they are evaluated against
+  private final LoadingCache<String, CompiledSpaceRules> spaceRulesCache =
       CacheBuilder.newBuilder()
           .expireAfterWrite(3, TimeUnit.MINUTES)
           .maximumWeight(10_000)
-          .weigher((Weigher<String, List<SpaceConfigRule>>) (key, value) -> value.size())
+          .weigher((Weigher<String, CompiledSpaceRules>) (key, value) -> value.getRules().size())
           .recordStats()
           .build(CacheLoader.from(this::loadRulesForTenant));
 
   public List<SpaceConfigRule> getRulesForTenant(String tenantId) {
+    return this.getCompiledRulesForTenant(tenantId).getRules();
+  }
+
+  public CompiledSpaceRules getCompiledRulesForTenant(String tenantId) {
     try {
       return spaceRulesCache.get(tenantId);
     } catch (Exception exception) {
       LOG.error("Error fetching space config rules", exception);
-      return Collections.emptyList();
+      return CompiledSpaceRules.EMPTY;
+    }
+  }
+
+  @Override
+  public String getSnapshotName() {
+    return "space-rules-cache";
+  }
+
+  @Override
+  public void writeSnapshot(DataOutput out) throws IOException {
+    Map<String, CompiledSpaceRules> rulesByTenant = Map.copyOf(spaceRulesCache.asMap());
+    out.writeInt(rulesByTenant.size());
+    for (Map.Entry<String, CompiledSpaceRules> entry : rulesByTenant.entrySet()) {
+      out.writeUTF(entry.getKey());
+      List<SpaceConfigRule> rules = entry.getValue().getRules();
+      out.writeInt(rules.size());
+      for (SpaceConfigRule rule : rules) {
+        SnapshotableCache.writeBytes(out, rule.toByteArray());
+      }
+    }
+  }
+
+  @Override
+  public void readSnapshot(DataInput in) throws IOException {
+    int tenantCount = in.readInt();
+    for (int i = 0; i < tenantCount; i++) {
+      String tenantId = in.readUTF();
+      int ruleCount = in.readInt();
+      List<SpaceConfigRule> rules = new ArrayList<>(ruleCount);
+      for (int j = 0; j < ruleCount; j++) {
+        rules.add(SpaceConfigRule.parseFrom(SnapshotableCache.readBytes(in)));
+      }
+      spaceRulesCache.put(tenantId, CompiledSpaceRules.compile(rules));
     }
   }
 
-  private List<SpaceConfigRule> loadRulesForTenant(String tenantId) {
-    return GrpcClientRequestContextUtil.executeInTenantContext(
-        tenantId,
-        () -> this.configServiceStub.getRules(GetRulesRequest.getDefaultInstance()).getRulesList());
+  private CompiledSpaceRules loadRulesForTenant(String tenantId) {
+    return CompiledSpaceRules.compile(
+        GrpcClientRequestContextUtil.executeInTenantContext(
+            tenantId,
+            () ->
+                this.configServiceStub
+                    .getRules(GetRulesRequest.getDefaultInstance())
+                    .getRulesList()));
   }
 }
@@ -0,0 +1,50 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.useragent;
+
+/** The attributes of a parsed user agent, as enriched on the spans */
+public class ParsedUserAgent {
+  private final String name;
+  private final String type;
+  private final String deviceCategory;
+  private final String osName;
+  private final String osVersion;
+  private final String browserVersion;
+
+  public ParsedUserAgent(
+      String name,
+      String type,
+      String deviceCategory,
+      String osName,
+      String osVersion,
+      String browserVersion) {
+    this.name = name;
+    this.type = type;
+    this.deviceCategory = deviceCategory;
+    this.osName = osName;
+    this.osVersion = osVersion;
+    this.browserVersion = browserVersion;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getDeviceCategory() {
+    return deviceCategory;
+  }
+
+  public String getOsName() {
+    return osName;
+  }
+
+  public String getOsVersion() {
+    return osVersion;
+  }
+
+  public String getBrowserVersion() {
+    return browserVersion;
+  }
+}
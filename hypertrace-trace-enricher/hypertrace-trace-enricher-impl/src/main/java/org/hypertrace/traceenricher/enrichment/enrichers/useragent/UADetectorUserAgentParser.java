@@ -0,0 +1,23 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.useragent;
+
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import net.sf.uadetector.service.UADetectorServiceFactory;
+
+/** Default parser, backed by the UADetector resource module */
+public class UADetectorUserAgentParser implements UserAgentParser {
+  private final UserAgentStringParser userAgentStringParser =
+      UADetectorServiceFactory.getResourceModuleParser();
+
+  @Override
+  public ParsedUserAgent parse(String userAgent) {
+    ReadableUserAgent readableUserAgent = userAgentStringParser.parse(userAgent);
+    return new ParsedUserAgent(
+        readableUserAgent.getName(),
+        readableUserAgent.getType().getName(),
+        readableUserAgent.getDeviceCategory().getName(),
+        readableUserAgent.getOperatingSystem().getName(),
+        readableUserAgent.getOperatingSystem().getVersionNumber().toVersionString(),
+        readableUserAgent.getVersionNumber().toVersionString());
+  }
+}
@@ -0,0 +1,9 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.useragent;
+
+/**
+ * Parses user agent strings into the attributes enriched on the spans. Implementations must be
+ * thread safe and have a public no arg constructor, so that they can be configured by class name.
+ */
+public interface UserAgentParser {
+  ParsedUserAgent parse(String userAgent);
+}
@@ -0,0 +1,108 @@
+package org.hypertrace.traceenricher.enrichment;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+  private MutableClock clock;
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  public void setup() {
+    clock = new MutableClock();
+    circuitBreaker = new CircuitBreaker(3, Duration.ofSeconds(30), Duration.ofSeconds(1), clock);
+  }
+
+  @Test
+  public void opensAfterConsecutiveFailures() {
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordSuccess();
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.allowRequest());
+    assertFalse(circuitBreaker.isOpen());
+
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.isOpen());
+    assertFalse(circuitBreaker.allowRequest());
+  }
+
+  @Test
+  public void letsASingleTrialThroughOnceOpenLongEnough() {
+    this.open();
+    clock.advance(Duration.ofSeconds(29));
+    assertFalse(circuitBreaker.allowRequest());
+
+    clock.advance(Duration.ofSeconds(1));
+    assertTrue(circuitBreaker.allowRequest());
+    assertFalse(circuitBreaker.allowRequest());
+
+    circuitBreaker.recordSuccess();
+    assertFalse(circuitBreaker.isOpen());
+    assertTrue(circuitBreaker.allowRequest());
+    assertTrue(circuitBreaker.allowRequest());
+  }
+
+  @Test
+  public void staysOpenIfTheTrialFails() {
+    this.open();
+    clock.advance(Duration.ofSeconds(30));
+    assertTrue(circuitBreaker.allowRequest());
+
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.isOpen());
+    assertFalse(circuitBreaker.allowRequest());
+
+    clock.advance(Duration.ofSeconds(30));
+    assertTrue(circuitBreaker.allowRequest());
+  }
+
+  @Test
+  public void releasedTrialCanBeGrantedAgain() {
+    this.open();
+    clock.advance(Duration.ofSeconds(30));
+    assertTrue(circuitBreaker.allowRequest());
+
+    circuitBreaker.releaseTrial();
+    assertTrue(circuitBreaker.allowRequest());
+  }
+
+  private void open() {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure();
+    }
+    assertTrue(circuitBreaker.isOpen());
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant instant = Instant.EPOCH;
+
+    private void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.hypertrace.traceenricher.enrichment;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.typesafe.config.ConfigFactory;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.datamodel.Attributes;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EnrichmentProcessorTest {
+  private static Deadline enrichmentDeadline;
+
+  @BeforeEach
+  public void setup() {
+    enrichmentDeadline = null;
+  }
+
+  @Test
+  public void remoteCallsOfAnEnricherHaveTheDeadlineOfItsTimeBudget() {
+    EnrichmentProcessor processor =
+        newProcessor(Map.of("remote.dependencies", List.of("entity.service"), "time.budget", "2s"));
+
+    processor.process(newTrace());
+
+    assertNotNull(enrichmentDeadline);
+    long timeRemainingMillis = enrichmentDeadline.timeRemaining(TimeUnit.MILLISECONDS);
+    assertTrue(timeRemainingMillis > 0 && timeRemainingMillis <= 2_000);
+  }
+
+  @Test
+  public void remoteCallsOfAnEnricherEndWithTheTraceBudget() {
+    EnrichmentProcessor processor =
+        newProcessor(Map.of("remote.dependencies", List.of("entity.service"), "time.budget", "1m"));
+
+    processor.process(newTrace());
+
+    assertTrue(enrichmentDeadline.timeRemaining(TimeUnit.MILLISECONDS) <= 5_000);
+  }
+
+  @Test
+  public void localEnricherHasNoDeadline() {
+    newProcessor(Map.of()).process(newTrace());
+
+    assertNull(enrichmentDeadline);
+  }
+
+  private static EnrichmentProcessor newProcessor(Map<String, Object> enricherConfig) {
+    return new EnrichmentProcessor(
+        List.of(
+            new EnricherInfo(
+                "DeadlineRecordingEnricher",
+                DeadlineRecordingEnricher.class,
+                List.of(),
+                ConfigFactory.parseMap(enricherConfig))),
+        mock(ClientRegistry.class),
+        ConfigFactory.parseMap(Map.of("trace", "5s")));
+  }
+
+  private static StructuredTrace newTrace() {
+    return StructuredTrace.newBuilder()
+        .setCustomerId("customer1")
+        .setTraceId(ByteBuffer.wrap("trace1".getBytes()))
+        .setStartTimeMillis(System.currentTimeMillis() - 10_000)
+        .setEndTimeMillis(System.currentTimeMillis())
+        .setAttributes(Attributes.newBuilder().build())
+        .setEntityList(new ArrayList<>())
+        .setEntityEdgeList(new ArrayList<>())
+        .setEventEdgeList(new ArrayList<>())
+        .setEntityEventEdgeList(new ArrayList<>())
+        .setEventList(new ArrayList<>())
+        .build();
+  }
+
+  public static class DeadlineRecordingEnricher extends AbstractTraceEnricher {
+    @Override
+    public void enrichTrace(StructuredTrace trace) {
+      enrichmentDeadline = Context.current().getDeadline();
+    }
+  }
+}
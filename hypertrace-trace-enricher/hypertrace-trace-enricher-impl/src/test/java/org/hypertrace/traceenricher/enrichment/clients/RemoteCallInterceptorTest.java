@@ -0,0 +1,84 @@
+package org.hypertrace.traceenricher.enrichment.clients;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientCall.Listener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.time.Duration;
+import org.hypertrace.traceenricher.enrichment.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RemoteCallInterceptorTest {
+  private ClientCall<Object, Object> call;
+  private Channel channel;
+  private CircuitBreaker circuitBreaker;
+  private RemoteCallInterceptor interceptor;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    call = mock(ClientCall.class);
+    channel = mock(Channel.class);
+    when(channel.newCall(any(), any())).thenReturn(call);
+    circuitBreaker = mock(CircuitBreaker.class);
+    when(circuitBreaker.getSlowCallDuration()).thenReturn(Duration.ofSeconds(1));
+    interceptor = new RemoteCallInterceptor();
+    interceptor.register(circuitBreaker);
+  }
+
+  @Test
+  public void unavailableServiceIsAFailure() {
+    this.closeCall(Status.UNAVAILABLE);
+    verify(circuitBreaker).recordFailure();
+    verify(circuitBreaker, never()).recordSuccess();
+  }
+
+  @Test
+  public void timedOutCallIsAFailure() {
+    this.closeCall(Status.DEADLINE_EXCEEDED);
+    verify(circuitBreaker).recordFailure();
+  }
+
+  @Test
+  public void answerOfAHealthyServiceIsASuccess() {
+    this.closeCall(Status.OK);
+    this.closeCall(Status.NOT_FOUND);
+    verify(circuitBreaker, never()).recordFailure();
+  }
+
+  @Test
+  public void slowCallIsAFailure() {
+    when(circuitBreaker.getSlowCallDuration()).thenReturn(Duration.ZERO);
+    this.closeCall(Status.OK);
+    verify(circuitBreaker).recordFailure();
+  }
+
+  @Test
+  public void cancelledCallIsNotRecorded() {
+    this.closeCall(Status.CANCELLED);
+    verify(circuitBreaker, never()).recordFailure();
+    verify(circuitBreaker, never()).recordSuccess();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void closeCall(Status status) {
+    ClientCall<Object, Object> interceptedCall =
+        interceptor.interceptCall(mock(MethodDescriptor.class), CallOptions.DEFAULT, channel);
+    interceptedCall.start(mock(Listener.class), new Metadata());
+    ArgumentCaptor<Listener<Object>> listener = ArgumentCaptor.forClass(Listener.class);
+    verify(call, atLeastOnce()).start(listener.capture(), any());
+    listener.getValue().onClose(status, new Metadata());
+  }
+}
@@ -0,0 +1,114 @@
+package org.hypertrace.traceenricher.enrichment.clients;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import org.hypertrace.core.attribute.service.v1.LiteralValue;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.MetricValue;
+import org.hypertrace.core.datamodel.Metrics;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
+import org.hypertrace.traceenricher.enrichment.AbstractTraceEnricher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TraceScopedAttributeReaderTest {
+  private static final LiteralValue VALUE =
+      LiteralValue.newBuilder().setStringValue("value").build();
+
+  private TraceAttributeReader<StructuredTrace, Event> delegate;
+  private TraceScopedAttributeReader attributeReader;
+  private StructuredTrace trace;
+  private Event span;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    delegate = mock(TraceAttributeReader.class);
+    attributeReader = new TraceScopedAttributeReader(delegate);
+    trace = mock(StructuredTrace.class);
+    span = mock(Event.class);
+  }
+
+  @Test
+  public void testValueIsResolvedOncePerTrace() {
+    when(delegate.resolveSpanValue(trace, span, "SPAN", "key")).thenReturn(VALUE);
+
+    assertEquals(VALUE, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+    assertEquals(VALUE, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+    verify(delegate, times(1)).resolveSpanValue(trace, span, "SPAN", "key");
+
+    // the values don't outlive the enrichment of the trace
+    attributeReader.clear();
+    assertEquals(VALUE, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+    verify(delegate, times(2)).resolveSpanValue(trace, span, "SPAN", "key");
+  }
+
+  @Test
+  public void testValuesAreNotSharedAcrossTraces() {
+    StructuredTrace otherTrace = mock(StructuredTrace.class);
+    when(delegate.resolveSpanValue(trace, span, "SPAN", "key")).thenReturn(VALUE);
+    when(delegate.resolveSpanValue(otherTrace, span, "SPAN", "key")).thenReturn(VALUE);
+
+    attributeReader.resolveSpanValue(trace, span, "SPAN", "key");
+    attributeReader.resolveSpanValue(otherTrace, span, "SPAN", "key");
+
+    verify(delegate, times(1)).resolveSpanValue(otherTrace, span, "SPAN", "key");
+  }
+
+  @Test
+  public void testMissingValueIsNotMemoized() {
+    when(delegate.resolveSpanValue(trace, span, "SPAN", "key"))
+        .thenReturn(LiteralValue.getDefaultInstance())
+        .thenReturn(VALUE);
+
+    assertEquals(
+        LiteralValue.getDefaultInstance(),
+        attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+    // set by a later enricher
+    assertEquals(VALUE, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+  }
+
+  @Test
+  public void testValuesOfAnInvalidatedSpanAreResolvedAgain() {
+    Event otherSpan = mock(Event.class);
+    LiteralValue rewritten = LiteralValue.newBuilder().setStringValue("rewritten").build();
+    when(delegate.resolveSpanValue(trace, span, "SPAN", "key"))
+        .thenReturn(VALUE)
+        .thenReturn(rewritten);
+    when(delegate.resolveSpanValue(trace, otherSpan, "SPAN", "key")).thenReturn(VALUE);
+    attributeReader.resolveSpanValue(trace, span, "SPAN", "key");
+    attributeReader.resolveSpanValue(trace, otherSpan, "SPAN", "key");
+
+    // a later enricher rewrites an attribute of the span
+    TraceScopedAttributeReader.invalidate(span);
+
+    assertEquals(rewritten, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+    assertEquals(VALUE, attributeReader.resolveSpanValue(trace, otherSpan, "SPAN", "key"));
+    verify(delegate, times(1)).resolveSpanValue(trace, otherSpan, "SPAN", "key");
+  }
+
+  @Test
+  public void testEnrichedMetricInvalidatesTheSpan() {
+    LiteralValue rewritten = LiteralValue.newBuilder().setStringValue("rewritten").build();
+    when(span.getMetrics()).thenReturn(Metrics.newBuilder().setMetricMap(new HashMap<>()).build());
+    when(delegate.resolveSpanValue(trace, span, "SPAN", "key"))
+        .thenReturn(VALUE)
+        .thenReturn(rewritten);
+    attributeReader.resolveSpanValue(trace, span, "SPAN", "key");
+
+    new AbstractTraceEnricher() {
+      @Override
+      public void enrichEvent(StructuredTrace trace, Event event) {
+        addEnrichedMetric(event, "metric", MetricValue.newBuilder().setValue(1.0d).build());
+      }
+    }.enrichEvent(trace, span);
+
+    assertEquals(rewritten, attributeReader.resolveSpanValue(trace, span, "SPAN", "key"));
+  }
+}
@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.nio.ByteBuffer;
@@ -136,6 +138,43 @@ public class DefaultServiceEntityEnricherTest extends AbstractAttributeEnricherT
     assertEquals(ENTITY_ID, EnrichedSpanUtils.getServiceId(e1));
   }
 
+  @Test
+  public void testPrefetchesTheServiceOfTheAncestorOfLeafExitSpans() {
+    org.hypertrace.entity.data.service.v1.Entity service =
+        org.hypertrace.entity.data.service.v1.Entity.newBuilder()
+            .setTenantId(TENANT_ID)
+            .setEntityType(EntityType.SERVICE.name())
+            .setEntityId(ENTITY_ID)
+            .setEntityName("sampleapp")
+            .build();
+    doReturn(Collections.singletonList(service))
+        .when(edsClient)
+        .getEntitiesByName(TENANT_ID, EntityType.SERVICE.name(), "sampleapp");
+
+    // sampleapp (entry) -> redis (exit)
+    Event parent =
+        createEvent(
+            TENANT_ID,
+            "parent",
+            Map.of("span.kind", "server"),
+            Map.of(API_BOUNDARY_TYPE_ATTR, "ENTRY", "SPAN_TYPE", "ENTRY"),
+            null,
+            "sampleapp");
+    Event current =
+        createEvent(
+            TENANT_ID,
+            "current",
+            Map.of("span.kind", "client"),
+            Map.of(API_BOUNDARY_TYPE_ATTR, "EXIT", "SPAN_TYPE", "EXIT"),
+            ByteBuffer.wrap("parent".getBytes()),
+            "redis");
+    enricher.onEnrichEntitiesComplete(createStructuredTrace(TENANT_ID, parent, current));
+
+    // the exit span is enriched with the service of its parent, not its facade service
+    verify(edsClient).getEntitiesByName(TENANT_ID, EntityType.SERVICE.name(), "sampleapp");
+    verify(edsClient, never()).getEntitiesByName(TENANT_ID, EntityType.SERVICE.name(), "redis");
+  }
+
   @Test
   public void testEnrichTraceNoServiceName() {
     org.hypertrace.entity.data.service.v1.Entity service =
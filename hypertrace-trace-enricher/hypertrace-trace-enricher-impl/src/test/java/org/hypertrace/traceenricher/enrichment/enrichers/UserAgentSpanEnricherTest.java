@@ -9,7 +9,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.hypertrace.core.datamodel.AttributeValue;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.eventfields.grpc.Grpc;
@@ -22,6 +25,8 @@ import org.hypertrace.traceenricher.enrichedspan.constants.v1.CommonAttribute;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.UserAgent;
 import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
+import org.hypertrace.traceenricher.enrichment.enrichers.useragent.ParsedUserAgent;
+import org.hypertrace.traceenricher.enrichment.enrichers.useragent.UserAgentParser;
 import org.hypertrace.traceenricher.util.Constants;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -590,6 +595,31 @@ public class UserAgentSpanEnricherTest extends AbstractAttributeEnricherTest {
             .getValue());
   }
 
+  @Test
+  public void enrichWithConfiguredParserParsingEachUserAgentOnce() {
+    enricher = new UserAgentSpanEnricher();
+    enricher.init(
+        ConfigFactory.parseMap(Map.of("parser.class", CountingUserAgentParser.class.getName())),
+        mock(ClientRegistry.class));
+    CountingUserAgentParser.PARSED_USER_AGENTS.clear();
+
+    for (int i = 0; i < 2; i++) {
+      Event e = createMockEvent();
+      mockProtocol(e, Protocol.PROTOCOL_GRPC);
+      addAttribute(e, RPC_REQUEST_METADATA_USER_AGENT.getValue(), "grpc-java-okhttp/1.19.0");
+      addAttribute(e, OTEL_SPAN_TAG_RPC_SYSTEM.getValue(), "grpc");
+      enricher.enrichEvent(null, e);
+
+      assertEquals(
+          "grpc-java-okhttp/1.19.0",
+          e.getEnrichedAttributes()
+              .getAttributeMap()
+              .get(Constants.getEnrichedSpanConstant(UserAgent.USER_AGENT_NAME))
+              .getValue());
+    }
+    assertEquals(List.of("grpc-java-okhttp/1.19.0"), CountingUserAgentParser.PARSED_USER_AGENTS);
+  }
+
   private void mockProtocol(Event event, Protocol protocol) {
     event
         .getEnrichedAttributes()
@@ -607,4 +637,14 @@ public class UserAgentSpanEnricherTest extends AbstractAttributeEnricherTest {
         .getAttributeMap()
         .put(key, AttributeValue.newBuilder().setValue(val).build());
   }
+
+  public static class CountingUserAgentParser implements UserAgentParser {
+    private static final List<String> PARSED_USER_AGENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public ParsedUserAgent parse(String userAgent) {
+      PARSED_USER_AGENTS.add(userAgent);
+      return new ParsedUserAgent(userAgent, "", "", "", "", "");
+    }
+  }
 }
@@ -1,10 +1,16 @@
 package org.hypertrace.traceenricher.enrichment.enrichers.backend;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
@@ -29,6 +35,7 @@ import org.hypertrace.traceenricher.enrichment.clients.ClientRegistry;
 import org.hypertrace.traceenricher.enrichment.enrichers.AbstractAttributeEnricherTest;
 import org.hypertrace.traceenricher.enrichment.enrichers.BackendType;
 import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityCache;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -129,6 +136,31 @@ public class BackendEntityEnricherTest extends AbstractAttributeEnricherTest {
     Assertions.assertEquals(backendName, EnrichedSpanUtils.getBackendName(e));
   }
 
+  @Test
+  public void test_EnrichTrace_ValidBackendThroughWriteBehindQueue() {
+    EntityWriteBehindQueue writeBehindQueue =
+        EntityWriteBehindQueue.from(
+            edsClient, ConfigFactory.parseMap(Map.of("enabled", true, "flush.interval", "1h")));
+    when(clientRegistry.getEntityWriteBehindQueue()).thenReturn(writeBehindQueue);
+    enricher.init(getEntityServiceConfig(), clientRegistry);
+
+    Event first = createMongoExitEvent("event1");
+    Event second = createMongoExitEvent("event2");
+    enricher.enrichTrace(createStructuredTrace(TENANT_ID, first, second));
+
+    // both spans are enriched with the queued backend, the second one from the cache
+    for (Event e : List.of(first, second)) {
+      Assertions.assertNotNull(EnrichedSpanUtils.getBackendId(e));
+      Assertions.assertEquals("mongo:27017", EnrichedSpanUtils.getBackendName(e));
+      Assertions.assertEquals("mongo", EnrichedSpanUtils.getBackendHost(e));
+    }
+    Assertions.assertEquals(
+        EnrichedSpanUtils.getBackendId(first), EnrichedSpanUtils.getBackendId(second));
+    verify(edsClient, times(0)).upsert(any());
+    writeBehindQueue.shutdown();
+    verify(edsClient, times(1)).upsert(any());
+  }
+
   @Test
   public void test_EnrichTrace_BackendResolvedForBrokenEvent() {
     String eventName = "broken event";
@@ -412,6 +444,52 @@ public class BackendEntityEnricherTest extends AbstractAttributeEnricherTest {
     Assertions.assertNotNull(EnrichedSpanUtils.getBackendName(e));
   }
 
+  @Test
+  public void test_EnrichTrace_memoizedBackendDecision() {
+    enricher = new BackendEntityEnricher();
+    enricher.init(
+        getEntityServiceConfig()
+            .withValue("decision.memo.enabled", ConfigValueFactory.fromAnyRef(true)),
+        clientRegistry);
+    String backendId = "backend1";
+    String backendName = "mongo:27017";
+    Map<String, String> identifyingAttributes =
+        Map.of(
+            BACKEND_PROTOCOL_ATTR_NAME, BackendType.MONGO.name(),
+            BACKEND_HOST_ATTR_NAME, "mongo",
+            BACKEND_PORT_ATTR_NAME, "27017");
+    when(edsClient.upsert(any()))
+        .thenAnswer(
+            invocation ->
+                Entity.newBuilder((Entity) invocation.getArgument(0))
+                    .setEntityId(backendId)
+                    .putAllAttributes(createEdsAttributes(identifyingAttributes))
+                    .build());
+
+    Event first = createApiExitEvent(EVENT_ID).setEventName("mongo exit").build();
+    first
+        .getAttributes()
+        .getAttributeMap()
+        .put(RawSpanConstants.getValue(Mongo.MONGO_URL), createAvroAttribute("mongo:27017"));
+    StructuredTrace firstTrace = createStructuredTrace(TENANT_ID, first);
+    enricher.enrichTrace(firstTrace);
+
+    Event second = createApiExitEvent("event2").setEventName("mongo exit").build();
+    second
+        .getAttributes()
+        .getAttributeMap()
+        .put(RawSpanConstants.getValue(Mongo.MONGO_URL), createAvroAttribute("mongo:27017"));
+    StructuredTrace secondTrace = createStructuredTrace(TENANT_ID, second);
+    enricher.enrichTrace(secondTrace);
+
+    verify(edsClient, times(1)).upsert(any());
+    Assertions.assertEquals(backendId, EnrichedSpanUtils.getBackendId(second));
+    Assertions.assertEquals(backendName, EnrichedSpanUtils.getBackendName(second));
+    Assertions.assertEquals(firstTrace.getEntityList(), secondTrace.getEntityList());
+    // each trace gets its own copy of the memoized entity
+    Assertions.assertNotSame(firstTrace.getEntityList().get(0), secondTrace.getEntityList().get(0));
+  }
+
   private Event.Builder createApiEntryEvent(String eventId) {
     return Event.newBuilder()
         .setCustomerId(TENANT_ID)
@@ -441,6 +519,14 @@ public class BackendEntityEnricherTest extends AbstractAttributeEnricherTest {
             createNewAvroAttributes(Map.of(SPAN_TYPE_ATTR, "EXIT", "peer.service", peerService)));
   }
 
+  private Event createMongoExitEvent(String eventId) {
+    Event e = createApiExitEvent(eventId).setEventName("mongo exit").build();
+    e.getAttributes()
+        .getAttributeMap()
+        .put(RawSpanConstants.getValue(Mongo.MONGO_URL), createAvroAttribute("mongo:27017"));
+    return e;
+  }
+
   private org.hypertrace.entity.data.service.v1.Entity createEntity(
       EntityType entityType,
       String name,
@@ -0,0 +1,72 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.data.service.client.EdsCacheClient;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CacheSnapshotManagerTest {
+  private static final String TENANT_ID = "tenant1";
+
+  @TempDir Path snapshotDir;
+
+  @Test
+  public void testEntityCacheIsRestoredFromSnapshot() {
+    Entity service = Entity.newBuilder().setEntityId("service1").setEntityName("svc").build();
+    Entity backend = Entity.newBuilder().setEntityId("backend1").setEntityName("db").build();
+    Map<String, AttributeValue> backendAttributes =
+        Map.of(
+            "host",
+            AttributeValue.newBuilder().setValue(Value.newBuilder().setString("db")).build());
+
+    EntityCache entityCache = new EntityCache(mock(EdsCacheClient.class));
+    entityCache.getFqnToServiceEntityCache().put(Pair.of(TENANT_ID, "svc"), Optional.of(service));
+    entityCache.getFqnToServiceEntityCache().put(Pair.of(TENANT_ID, "missing"), Optional.empty());
+    entityCache.getNameToServiceEntitiesCache().put(Pair.of(TENANT_ID, "svc"), List.of(service));
+    entityCache
+        .getBackendIdAttrsToEntityCache()
+        .put(
+            RequestContext.forTenantId(TENANT_ID).buildContextualKey(backendAttributes),
+            Optional.of(backend));
+
+    CacheSnapshotManager manager =
+        new CacheSnapshotManager(snapshotDir, Duration.ofHours(1), Duration.ofHours(1));
+    manager.register(entityCache);
+    manager.shutdown();
+
+    EdsCacheClient edsClient = mock(EdsCacheClient.class);
+    EntityCache restoredCache = new EntityCache(edsClient);
+    new CacheSnapshotManager(snapshotDir, Duration.ofHours(1), Duration.ofHours(1))
+        .register(restoredCache);
+
+    assertEquals(
+        Optional.of(service),
+        restoredCache.getFqnToServiceEntityCache().getIfPresent(Pair.of(TENANT_ID, "svc")));
+    assertNull(
+        restoredCache.getFqnToServiceEntityCache().getIfPresent(Pair.of(TENANT_ID, "missing")));
+    assertEquals(
+        List.of(service),
+        restoredCache.getNameToServiceEntitiesCache().getIfPresent(Pair.of(TENANT_ID, "svc")));
+    assertEquals(
+        Optional.of(backend),
+        restoredCache
+            .getBackendIdAttrsToEntityCache()
+            .getIfPresent(
+                RequestContext.forTenantId(TENANT_ID).buildContextualKey(backendAttributes)));
+    verifyNoInteractions(edsClient);
+  }
+}
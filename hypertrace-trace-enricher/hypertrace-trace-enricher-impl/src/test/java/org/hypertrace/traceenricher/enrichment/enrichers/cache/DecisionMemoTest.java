@@ -0,0 +1,47 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class DecisionMemoTest {
+
+  @Test
+  public void shapesAreFingerprintedByEachComponent() {
+    assertEquals(
+        DecisionMemo.shapeOf("tenant", "service"), DecisionMemo.shapeOf("tenant", "service"));
+    assertNotEquals(
+        DecisionMemo.shapeOf("tenant", "service"), DecisionMemo.shapeOf("tenant", "other"));
+    assertNotEquals(DecisionMemo.shapeOf("ab", "c"), DecisionMemo.shapeOf("a", "bc"));
+    assertNotEquals(DecisionMemo.shapeOf("tenant", null), DecisionMemo.shapeOf("tenant", ""));
+    assertNotEquals(DecisionMemo.shapeOf("tenant", null), DecisionMemo.shapeOf("tenant"));
+  }
+
+  @Test
+  public void memoizesDecisionsOnceEnabled() {
+    DecisionMemo<String> memo =
+        DecisionMemo.from(
+            ConfigFactory.parseMap(Map.of("enabled", true, "maximum.size", 10)), "testMemo");
+    assertTrue(memo.isEnabled());
+    assertNull(memo.get(DecisionMemo.shapeOf("tenant", "service")));
+
+    memo.put(DecisionMemo.shapeOf("tenant", "service"), "service1");
+    assertEquals("service1", memo.get(DecisionMemo.shapeOf("tenant", "service")));
+    assertNull(memo.get(DecisionMemo.shapeOf("tenant", "other")));
+  }
+
+  @Test
+  public void disabledMemoHoldsNoDecision() {
+    DecisionMemo<String> memo = DecisionMemo.from(ConfigFactory.empty(), "disabledMemo");
+    assertFalse(memo.isEnabled());
+
+    memo.put(DecisionMemo.shapeOf("tenant", "service"), "service1");
+    assertNull(memo.get(DecisionMemo.shapeOf("tenant", "service")));
+  }
+}
@@ -0,0 +1,70 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hypertrace.entity.data.service.client.EdsCacheClient;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.v1.entitytype.EntityType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class EntityCacheTest {
+  private static final String TENANT_ID = "tenant1";
+
+  @Mock private EdsCacheClient edsClient;
+  private ExecutorService executor;
+  private EntityCache entityCache;
+
+  @BeforeEach
+  public void setup() {
+    executor = Executors.newFixedThreadPool(4);
+    entityCache = new EntityCache(edsClient, executor, Duration.ofSeconds(5), CachePolicy.DEFAULT);
+  }
+
+  @AfterEach
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPrefetchServicesByNameLoadsEachMissOnce() {
+    Entity service = Entity.newBuilder().setEntityId("service1").build();
+    when(edsClient.getEntitiesByName(eq(TENANT_ID), eq(EntityType.SERVICE.name()), anyString()))
+        .thenReturn(List.of(service));
+
+    entityCache.prefetchServicesByName(
+        List.of(
+            Pair.of(TENANT_ID, "service1"),
+            Pair.of(TENANT_ID, "service2"),
+            Pair.of(TENANT_ID, "service1")));
+
+    assertEquals(
+        List.of(service),
+        entityCache.getNameToServiceEntitiesCache().get(Pair.of(TENANT_ID, "service1")));
+    assertEquals(
+        List.of(service),
+        entityCache.getNameToServiceEntitiesCache().get(Pair.of(TENANT_ID, "service2")));
+    verify(edsClient, times(2))
+        .getEntitiesByName(eq(TENANT_ID), eq(EntityType.SERVICE.name()), anyString());
+
+    // already cached keys are not loaded again
+    entityCache.prefetchServicesByName(List.of(Pair.of(TENANT_ID, "service1")));
+    verify(edsClient, times(2))
+        .getEntitiesByName(eq(TENANT_ID), eq(EntityType.SERVICE.name()), anyString());
+  }
+}
@@ -0,0 +1,94 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hypertrace.entity.data.service.client.EdsClient;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EntityWriteBehindQueueTest {
+
+  private EdsClient edsClient;
+  private EntityWriteBehindQueue queue;
+
+  @BeforeEach
+  public void setup() {
+    edsClient = mock(EdsClient.class);
+    queue = new EntityWriteBehindQueue(edsClient, null, 10, 1, 100);
+  }
+
+  @Test
+  public void testEntityGetsDeterministicIdAndIsUpsertedOnFlush() {
+    Entity first = queue.upsert(createBackend("foo", "from-span-1"));
+    Entity second = queue.upsert(createBackend("foo", "from-span-2"));
+
+    assertFalse(first.getEntityId().isEmpty());
+    assertEquals(first.getEntityId(), second.getEntityId());
+    verify(edsClient, never()).upsert(any());
+    assertEquals(1, queue.getQueueDepth());
+
+    queue.flush();
+
+    // both upserts coalesced into one with the latest attributes
+    ArgumentCaptor<Entity> upserted = ArgumentCaptor.forClass(Entity.class);
+    verify(edsClient, times(1)).upsert(upserted.capture());
+    assertEquals(first.getEntityId(), upserted.getValue().getEntityId());
+    assertEquals(
+        "from-span-2", upserted.getValue().getAttributesMap().get("from").getValue().getString());
+    assertEquals(0, queue.getQueueDepth());
+  }
+
+  @Test
+  public void testQueuedEntityHasItsIdentifyingAttributesAmongItsAttributes() {
+    Entity queued = queue.upsert(createBackend("foo", "from-span-1"));
+
+    assertEquals("foo", queued.getAttributesMap().get("host").getValue().getString());
+    assertEquals("from-span-1", queued.getAttributesMap().get("from").getValue().getString());
+  }
+
+  @Test
+  public void testFailedUpsertIsRetriedThenDropped() {
+    when(edsClient.upsert(any())).thenThrow(new RuntimeException("unavailable"));
+    queue.upsert(createBackend("foo", "from-span-1"));
+
+    queue.flush();
+    assertEquals(1, queue.getQueueDepth());
+    queue.flush();
+    assertEquals(0, queue.getQueueDepth());
+    verify(edsClient, times(2)).upsert(any());
+  }
+
+  @Test
+  public void testDifferentIdentifyingAttributesGetDifferentIds() {
+    assertFalse(
+        queue
+            .upsert(createBackend("foo", "from"))
+            .getEntityId()
+            .equals(queue.upsert(createBackend("bar", "from")).getEntityId()));
+  }
+
+  private Entity createBackend(String host, String from) {
+    return Entity.newBuilder()
+        .setTenantId("tenant-1")
+        .setEntityType("BACKEND")
+        .setEntityName(host)
+        .putIdentifyingAttributes("host", createAttributeValue(host))
+        .putAttributes("from", createAttributeValue(from))
+        .build();
+  }
+
+  private AttributeValue createAttributeValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
+}
@@ -0,0 +1,205 @@
+package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.lang.Thread.State;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.CachePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ApiEntityCacheTest {
+
+  private ApiEntityDao apiEntityDao;
+  private ApiEntityCache apiEntityCache;
+
+  @BeforeEach
+  public void setup() {
+    apiEntityDao = mock(ApiEntityDao.class);
+    apiEntityCache =
+        new ApiEntityCache(
+            apiEntityDao, 1024 * 1024, 2, CachePolicy.DEFAULT, MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void whenCacheIsEmptyExpectCacheToLoadAndReturnEntity() {
+    Entity entity = mockUpsert("tenant-1", "Driver::getCustomers");
+
+    assertEquals(
+        entity,
+        apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "Driver::getCustomers"));
+    assertEquals(1, apiEntityCache.getTenantEntryCountForTesting("tenant-1"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void whenApiIsStoredInTheBackgroundExpectTheStoredEntityToBeCached() {
+    Entity generated = mockUpsert("tenant-1", "Driver::getCustomers");
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "Driver::getCustomers");
+    ArgumentCaptor<Consumer<Entity>> storedListener = ArgumentCaptor.forClass(Consumer.class);
+    verify(apiEntityDao)
+        .upsertApiEntity(
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            storedListener.capture());
+
+    Entity stored = generated.toBuilder().setEntityId("eds-api-id").build();
+    storedListener.getValue().accept(stored);
+
+    assertEquals(
+        stored,
+        apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "Driver::getCustomers"));
+    assertEquals(1, apiEntityCache.getTenantEntryCountForTesting("tenant-1"));
+  }
+
+  @Test
+  public void whenCacheIsNotEmptyExpectCacheToReturnCachedEntity() {
+    Entity entity = mockUpsert("tenant-1", "Driver::getCustomers");
+
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "Driver::getCustomers");
+    assertEquals(
+        entity,
+        apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "Driver::getCustomers"));
+
+    // make sure cache didn't trigger a load again
+    verify(apiEntityDao, times(1))
+        .upsertApiEntity(
+            eq("tenant-1"),
+            eq("service-1"),
+            eq("service1"),
+            eq(ApiEntityDao.API_TYPE),
+            eq("Driver::getCustomers"),
+            any());
+  }
+
+  @Test
+  public void whenTenantQuotaIsReachedExpectEntitiesToBeUpsertedButNotCached() {
+    mockUpsert("tenant-1", "api-1");
+    mockUpsert("tenant-1", "api-2");
+    Entity overQuota = mockUpsert("tenant-1", "api-3");
+    mockUpsert("tenant-2", "api-1");
+
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-1");
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-2");
+    assertEquals(
+        overQuota, apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-3"));
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-3");
+    // other tenants still get their entities cached
+    apiEntityCache.getApiEntity("tenant-2", "service-1", "service1", "api-1");
+    apiEntityCache.getApiEntity("tenant-2", "service-1", "service1", "api-1");
+
+    verify(apiEntityDao, times(2))
+        .upsertApiEntity(
+            eq("tenant-1"),
+            eq("service-1"),
+            eq("service1"),
+            eq(ApiEntityDao.API_TYPE),
+            eq("api-3"),
+            any());
+    verify(apiEntityDao, times(1))
+        .upsertApiEntity(
+            eq("tenant-2"),
+            eq("service-1"),
+            eq("service1"),
+            eq(ApiEntityDao.API_TYPE),
+            eq("api-1"),
+            any());
+    assertEquals(2, apiEntityCache.getTenantEntryCountForTesting("tenant-1"));
+    assertEquals(1, apiEntityCache.getTenantEntryCountForTesting("tenant-2"));
+  }
+
+  @Test
+  public void whenTenantQuotaIsReachedExpectConcurrentLookupsToShareOneUpsert() throws Exception {
+    mockUpsert("tenant-1", "api-1");
+    mockUpsert("tenant-1", "api-2");
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-1");
+    apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-2");
+
+    Entity overQuota = Entity.newBuilder().setEntityId("tenant-1api-3").build();
+    CountDownLatch upsertStarted = new CountDownLatch(1);
+    CountDownLatch upsertReleased = new CountDownLatch(1);
+    when(apiEntityDao.upsertApiEntity(
+            eq("tenant-1"),
+            anyString(),
+            anyString(),
+            eq(ApiEntityDao.API_TYPE),
+            eq("api-3"),
+            any()))
+        .thenAnswer(
+            invocation -> {
+              upsertStarted.countDown();
+              upsertReleased.await();
+              return overQuota;
+            });
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Entity> first =
+          executor.submit(
+              () -> apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-3"));
+      assertTrue(upsertStarted.await(5, TimeUnit.SECONDS));
+      AtomicReference<Thread> secondThread = new AtomicReference<>();
+      Future<Entity> second =
+          executor.submit(
+              () -> {
+                secondThread.set(Thread.currentThread());
+                return apiEntityCache.getApiEntity("tenant-1", "service-1", "service1", "api-3");
+              });
+      // the second lookup waits for the upsert of the first one
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (secondThread.get() == null || secondThread.get().getState() != State.WAITING) {
+        assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(1);
+      }
+      upsertReleased.countDown();
+
+      assertEquals(overQuota, first.get(5, TimeUnit.SECONDS));
+      assertEquals(overQuota, second.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(apiEntityDao, times(1))
+        .upsertApiEntity(
+            eq("tenant-1"),
+            eq("service-1"),
+            eq("service1"),
+            eq(ApiEntityDao.API_TYPE),
+            eq("api-3"),
+            any());
+    assertEquals(2, apiEntityCache.getTenantEntryCountForTesting("tenant-1"));
+  }
+
+  private Entity mockUpsert(String tenantId, String apiName) {
+    Entity entity =
+        Entity.newBuilder().setEntityId(tenantId + apiName).setEntityName(apiName).build();
+    when(apiEntityDao.upsertApiEntity(
+            eq(tenantId),
+            anyString(),
+            anyString(),
+            eq(ApiEntityDao.API_TYPE),
+            eq(apiName),
+            any()))
+        .thenReturn(entity);
+    return entity;
+  }
+}
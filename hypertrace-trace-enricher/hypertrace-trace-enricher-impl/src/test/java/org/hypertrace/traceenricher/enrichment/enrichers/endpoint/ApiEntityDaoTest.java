@@ -1,10 +1,19 @@
 package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.hypertrace.entity.data.service.client.EdsClient;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.traceenricher.enrichment.enrichers.cache.EntityWriteBehindQueue;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +36,50 @@ class ApiEntityDaoTest {
     verify(edsClient).upsert(any(org.hypertrace.entity.data.service.v1.Entity.class));
   }
 
+  @Test
+  void whenApiExistsExpectWriteBehindFlushToKeepTheEntityServiceId() {
+    EntityWriteBehindQueue writeBehindQueue = createWriteBehindQueue();
+    ApiEntityDao writeBehindDao = new ApiEntityDao(edsClient, writeBehindQueue);
+    when(edsClient.getByTypeAndIdentifyingAttributes(eq("tenant-1"), any()))
+        .thenReturn(Entity.newBuilder().setEntityId("eds-api-id").build());
+    List<Entity> storedEntities = new ArrayList<>();
+
+    Entity apiEntity =
+        writeBehindDao.upsertApiEntity(
+            "tenant-1",
+            "service-1",
+            "service1",
+            "OPERATION_NAME",
+            "Driver::getCustomers",
+            storedEntities::add);
+
+    // nothing is looked up on the enriching thread
+    Assertions.assertEquals(
+        EntityWriteBehindQueue.generateEntityId(apiEntity), apiEntity.getEntityId());
+    verify(edsClient, never()).getByTypeAndIdentifyingAttributes(any(), any());
+    verify(edsClient, never()).upsert(any(Entity.class));
+
+    writeBehindQueue.shutdown();
+    Entity storedEntity = apiEntity.toBuilder().setEntityId("eds-api-id").build();
+    verify(edsClient).upsert(storedEntity);
+    Assertions.assertEquals(List.of(storedEntity), storedEntities);
+  }
+
+  @Test
+  void whenApiIsNewExpectWriteBehindUpsertWithAGeneratedId() {
+    EntityWriteBehindQueue writeBehindQueue = createWriteBehindQueue();
+    ApiEntityDao writeBehindDao = new ApiEntityDao(edsClient, writeBehindQueue);
+
+    Entity apiEntity =
+        writeBehindDao.upsertApiEntity(
+            "tenant-1", "service-1", "service1", "OPERATION_NAME", "Driver::getCustomers");
+
+    Assertions.assertEquals(
+        EntityWriteBehindQueue.generateEntityId(apiEntity), apiEntity.getEntityId());
+    writeBehindQueue.shutdown();
+    verify(edsClient).upsert(apiEntity);
+  }
+
   @Test
   void whenParamsAreNullThenExpectNullPointerException() {
     Assertions.assertThrows(
@@ -58,4 +111,9 @@ class ApiEntityDaoTest {
           apiEntityDao.upsertApiEntity("tenant-1", "service-1", "service1", "OPERATION_NAME", null);
         });
   }
+
+  private EntityWriteBehindQueue createWriteBehindQueue() {
+    return EntityWriteBehindQueue.from(
+        edsClient, ConfigFactory.parseMap(Map.of("enabled", true, "flush.interval", "1h")));
+  }
 }
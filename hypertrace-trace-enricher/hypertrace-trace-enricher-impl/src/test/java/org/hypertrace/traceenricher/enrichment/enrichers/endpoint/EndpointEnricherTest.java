@@ -2,6 +2,8 @@ package org.hypertrace.traceenricher.enrichment.enrichers.endpoint;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -99,11 +101,12 @@ class EndpointEnricherTest extends AbstractAttributeEnricherTest {
             .build();
 
     when(dao.upsertApiEntity(
-            trace.getCustomerId(),
-            SERVICE_ID,
-            SERVICE_NAME,
-            ApiEntityDao.API_TYPE,
-            event.getEventName()))
+            eq(trace.getCustomerId()),
+            eq(SERVICE_ID),
+            eq(SERVICE_NAME),
+            eq(ApiEntityDao.API_TYPE),
+            eq(event.getEventName()),
+            any()))
         .thenReturn(entity);
     endpointEnricher.enrichEvent(trace, event);
 
@@ -3,14 +3,20 @@ package org.hypertrace.traceenricher.enrichment.enrichers.space;
 import static java.util.Collections.emptyList;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import org.hypertrace.core.attribute.service.v1.LiteralValue;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.trace.AttributeValueCreator;
+import org.hypertrace.spaces.config.service.v1.AttributeValueRuleData;
 import org.hypertrace.spaces.config.service.v1.SpaceConfigRule;
+import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
 import org.hypertrace.traceenricher.enrichment.enrichers.AbstractAttributeEnricherTest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,14 +29,14 @@ class SpaceEnricherTest extends AbstractAttributeEnricherTest {
 
   @Mock SpaceRulesCachingClient ruleClient;
 
-  @Mock SpaceRuleEvaluator ruleEvaluator;
+  @Mock TraceAttributeReader<StructuredTrace, Event> attributeReader;
 
   private SpaceEnricher enricher;
 
   @BeforeEach
   void beforeEach() {
     this.enricher = new SpaceEnricher();
-    this.enricher.init(this.ruleClient, this.ruleEvaluator);
+    this.enricher.init(this.ruleClient, new SpaceRuleEvaluator(this.attributeReader));
   }
 
   @Test
@@ -38,11 +44,13 @@ class SpaceEnricherTest extends AbstractAttributeEnricherTest {
     Event targetEvent = mock(Event.class, RETURNS_DEEP_STUBS);
     when(targetEvent.getCustomerId()).thenReturn(TENANT_ID);
 
-    when(this.ruleClient.getRulesForTenant(TENANT_ID)).thenReturn(emptyList());
+    when(this.ruleClient.getCompiledRulesForTenant(TENANT_ID))
+        .thenReturn(CompiledSpaceRules.compile(emptyList()));
     this.enricher.enrichEvent(mock(StructuredTrace.class), targetEvent);
 
     verify(targetEvent.getEnrichedAttributes().getAttributeMap())
         .put("SPACE_IDS", AttributeValueCreator.create(emptyList()));
+    verifyNoInteractions(this.attributeReader);
   }
 
   @Test
@@ -50,11 +58,11 @@ class SpaceEnricherTest extends AbstractAttributeEnricherTest {
     Event targetEvent = mock(Event.class, RETURNS_DEEP_STUBS);
     StructuredTrace mockTrace = mock(StructuredTrace.class);
     when(targetEvent.getCustomerId()).thenReturn(TENANT_ID);
-    SpaceConfigRule mockRule = SpaceConfigRule.getDefaultInstance(); // Protos can't be mocked
 
-    when(this.ruleClient.getRulesForTenant(TENANT_ID)).thenReturn(List.of(mockRule));
-    when(this.ruleEvaluator.calculateSpacesForRule(mockTrace, targetEvent, mockRule))
-        .thenReturn(List.of("my-space"));
+    when(this.ruleClient.getCompiledRulesForTenant(TENANT_ID))
+        .thenReturn(CompiledSpaceRules.compile(List.of(createRule("1", "key"))));
+    when(this.attributeReader.resolveSpanValue(mockTrace, targetEvent, "SPAN", "key"))
+        .thenReturn(stringValue("my-space"));
 
     enricher.enrichEvent(mockTrace, targetEvent);
 
@@ -67,23 +75,50 @@ class SpaceEnricherTest extends AbstractAttributeEnricherTest {
     Event targetEvent = mock(Event.class, RETURNS_DEEP_STUBS);
     StructuredTrace mockTrace = mock(StructuredTrace.class);
     when(targetEvent.getCustomerId()).thenReturn(TENANT_ID);
-    SpaceConfigRule mockRule1 = SpaceConfigRule.newBuilder().setId("1").build();
-    SpaceConfigRule mockRule2 = SpaceConfigRule.newBuilder().setId("2").build();
-    SpaceConfigRule mockRule3 = SpaceConfigRule.newBuilder().setId("3").build();
-
-    when(this.ruleClient.getRulesForTenant(TENANT_ID))
-        .thenReturn(List.of(mockRule1, mockRule2, mockRule3));
-    when(this.ruleEvaluator.calculateSpacesForRule(mockTrace, targetEvent, mockRule1))
-        .thenReturn(List.of("my-space"));
-    when(this.ruleEvaluator.calculateSpacesForRule(mockTrace, targetEvent, mockRule2))
-        .thenReturn(List.of("my-other-space"));
-    when(this.ruleEvaluator.calculateSpacesForRule(mockTrace, targetEvent, mockRule3))
-        .thenReturn(List.of("my-space")); // Expect to dedupe
+
+    when(this.ruleClient.getCompiledRulesForTenant(TENANT_ID))
+        .thenReturn(
+            CompiledSpaceRules.compile(
+                List.of(
+                    createRule("1", "key"),
+                    createRule("2", "other-key"),
+                    createRule("3", "key"),
+                    SpaceConfigRule.newBuilder().setId("4").build())));
+    when(this.attributeReader.resolveSpanValue(mockTrace, targetEvent, "SPAN", "key"))
+        .thenReturn(stringValue("my-space"));
+    when(this.attributeReader.resolveSpanValue(mockTrace, targetEvent, "SPAN", "other-key"))
+        .thenReturn(stringValue("my-space")); // Expect to dedupe
 
     enricher.enrichEvent(mockTrace, targetEvent);
 
     verify(targetEvent.getEnrichedAttributes().getAttributeMap())
-        .put("SPACE_IDS", AttributeValueCreator.create(List.of("my-space", "my-other-space")));
+        .put("SPACE_IDS", AttributeValueCreator.create(List.of("my-space")));
+    // rules reading the same attribute only resolve it once
+    verify(this.attributeReader, times(1)).resolveSpanValue(mockTrace, targetEvent, "SPAN", "key");
+  }
+
+  @Test
+  void testEnrichTraceWithSpacesOfEnrichedEvents() {
+    Event targetEvent1 = mock(Event.class, RETURNS_DEEP_STUBS);
+    Event targetEvent2 = mock(Event.class, RETURNS_DEEP_STUBS);
+    StructuredTrace mockTrace = mock(StructuredTrace.class, RETURNS_DEEP_STUBS);
+    when(targetEvent1.getCustomerId()).thenReturn(TENANT_ID);
+    when(targetEvent2.getCustomerId()).thenReturn(TENANT_ID);
+
+    when(this.ruleClient.getCompiledRulesForTenant(TENANT_ID))
+        .thenReturn(CompiledSpaceRules.compile(List.of(createRule("1", "key"))));
+    when(this.attributeReader.resolveSpanValue(mockTrace, targetEvent1, "SPAN", "key"))
+        .thenReturn(stringValue("first-space"));
+    when(this.attributeReader.resolveSpanValue(mockTrace, targetEvent2, "SPAN", "key"))
+        .thenReturn(stringValue("second-space"));
+
+    enricher.enrichEvent(mockTrace, targetEvent1);
+    enricher.enrichEvent(mockTrace, targetEvent2);
+    enricher.enrichTrace(mockTrace);
+
+    verify(mockTrace.getAttributes().getAttributeMap())
+        .put("SPACE_IDS", AttributeValueCreator.create(List.of("first-space", "second-space")));
+    verify(mockTrace, never()).getEventList();
   }
 
   @Test
@@ -103,4 +138,18 @@ class SpaceEnricherTest extends AbstractAttributeEnricherTest {
     verify(mockTrace.getAttributes().getAttributeMap())
         .put("SPACE_IDS", AttributeValueCreator.create(List.of("first-space", "second-space")));
   }
+
+  private SpaceConfigRule createRule(String id, String attributeKey) {
+    return SpaceConfigRule.newBuilder()
+        .setId(id)
+        .setAttributeValueRuleData(
+            AttributeValueRuleData.newBuilder()
+                .setAttributeScope("SPAN")
+                .setAttributeKey(attributeKey))
+        .build();
+  }
+
+  private LiteralValue stringValue(String value) {
+    return LiteralValue.newBuilder().setStringValue(value).build();
+  }
 }
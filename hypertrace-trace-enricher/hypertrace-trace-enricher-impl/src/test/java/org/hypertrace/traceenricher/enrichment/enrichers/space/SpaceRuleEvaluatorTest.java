@@ -3,7 +3,6 @@ package org.hypertrace.traceenricher.enrichment.enrichers.space;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.when;
 
-import io.reactivex.rxjava3.core.Single;
 import java.util.List;
 import java.util.NoSuchElementException;
 import org.hypertrace.core.attribute.service.v1.LiteralValue;
@@ -47,8 +46,9 @@ class SpaceRuleEvaluatorTest {
 
   @Test
   void testConvertsStringValue() {
-    when(this.mockAttributeReader.getSpanValue(this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
-        .thenReturn(Single.just(LiteralValue.newBuilder().setStringValue("attr-value").build()));
+    when(this.mockAttributeReader.resolveSpanValue(
+            this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
+        .thenReturn(LiteralValue.newBuilder().setStringValue("attr-value").build());
     assertEquals(
         List.of("attr-value"),
         this.ruleEvaluator.calculateSpacesForRule(this.mockTrace, this.mockSpan, this.rule));
@@ -56,8 +56,9 @@ class SpaceRuleEvaluatorTest {
 
   @Test
   void testConvertsIntValue() {
-    when(this.mockAttributeReader.getSpanValue(this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
-        .thenReturn(Single.just(LiteralValue.newBuilder().setIntValue(12).build()));
+    when(this.mockAttributeReader.resolveSpanValue(
+            this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
+        .thenReturn(LiteralValue.newBuilder().setIntValue(12).build());
     assertEquals(
         List.of("12"),
         this.ruleEvaluator.calculateSpacesForRule(this.mockTrace, this.mockSpan, this.rule));
@@ -65,8 +66,9 @@ class SpaceRuleEvaluatorTest {
 
   @Test
   void testConvertsNoValue() {
-    when(this.mockAttributeReader.getSpanValue(this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
-        .thenReturn(Single.error(new NoSuchElementException("no value")));
+    when(this.mockAttributeReader.resolveSpanValue(
+            this.mockTrace, this.mockSpan, MOCK_SCOPE, MOCK_KEY))
+        .thenThrow(new NoSuchElementException("no value"));
     assertEquals(
         List.of(),
         this.ruleEvaluator.calculateSpacesForRule(this.mockTrace, this.mockSpan, this.rule));
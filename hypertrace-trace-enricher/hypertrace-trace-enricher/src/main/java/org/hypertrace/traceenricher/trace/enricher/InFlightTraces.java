@@ -0,0 +1,70 @@
+package org.hypertrace.traceenricher.trace.enricher;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.hypertrace.core.datamodel.StructuredTrace;
+
+/**
+ * Bounded window of the traces of a stream thread being enriched asynchronously. The enriched
+ * traces are passed on in the order they were received, whatever the order their enrichment
+ * completes in.
+ */
+class InFlightTraces {
+  private final int maxInFlight;
+  private final Deque<Future<StructuredTrace>> traces = new ArrayDeque<>();
+
+  InFlightTraces(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  void add(Future<StructuredTrace> trace) {
+    traces.addLast(trace);
+  }
+
+  boolean isFull() {
+    return traces.size() >= maxInFlight;
+  }
+
+  int size() {
+    return traces.size();
+  }
+
+  /** Passes on the enriched traces at the head of the window, up to the first one not done yet */
+  void forwardCompleted(Consumer<StructuredTrace> forwarder) {
+    while (!traces.isEmpty() && traces.peekFirst().isDone()) {
+      forwarder.accept(getEnrichedTrace(traces.pollFirst()));
+    }
+  }
+
+  /** Waits for the trace at the head of the window to be enriched and passes it on */
+  void forwardHead(Consumer<StructuredTrace> forwarder) {
+    if (!traces.isEmpty()) {
+      forwarder.accept(getEnrichedTrace(traces.pollFirst()));
+    }
+  }
+
+  /** Waits for all the traces of the window to be enriched and passes them on */
+  void forwardAll(Consumer<StructuredTrace> forwarder) {
+    while (!traces.isEmpty()) {
+      forwarder.accept(getEnrichedTrace(traces.pollFirst()));
+    }
+  }
+
+  private StructuredTrace getEnrichedTrace(Future<StructuredTrace> trace) {
+    try {
+      return trace.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a trace enrichment", e);
+    } catch (ExecutionException e) {
+      // fails the stream thread, as the enrichment failing on it would
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Trace enrichment failed", e.getCause());
+    }
+  }
+}
@@ -1,17 +1,28 @@
 package org.hypertrace.traceenricher.trace.enricher;
 
+import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_ASYNC_CONFIG_KEY;
+import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_BUDGET_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_CLIENTS_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_CONFIG_TEMPLATE;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_NAMES_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.kstream.Transformer;
 import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.traceenricher.enrichment.EnrichmentProcessor;
 import org.hypertrace.traceenricher.enrichment.EnrichmentRegistry;
@@ -20,11 +31,33 @@ import org.hypertrace.traceenricher.enrichment.clients.DefaultClientRegistry;
 public class StructuredTraceEnrichProcessor
     implements Transformer<String, StructuredTrace, KeyValue<String, StructuredTrace>> {
 
+  private static final String CACHE_SNAPSHOT_DIR_CONFIG_KEY = "cache.snapshot.dir";
+  private static final String CACHE_SNAPSHOT_DIR_NAME = "enricher-cache-snapshots";
+
+  private static final String ASYNC_ENABLED_CONFIG_KEY = "enabled";
+  private static final String ASYNC_MAX_IN_FLIGHT_CONFIG_KEY = "max.in.flight.traces";
+  private static final String ASYNC_THREADS_CONFIG_KEY = "threads";
+  private static final String ASYNC_FLUSH_INTERVAL_CONFIG_KEY = "flush.interval";
+  private static final int DEFAULT_ASYNC_MAX_IN_FLIGHT = 32;
+  private static final int DEFAULT_ASYNC_THREADS = 16;
+  private static final Duration DEFAULT_ASYNC_FLUSH_INTERVAL = Duration.ofMillis(100);
+
   private static EnrichmentProcessor processor = null;
+  // shared by the stream threads enriching their traces asynchronously
+  private static ExecutorService enrichmentExecutor = null;
+  // window of the traces in flight of each stream thread: a commit requested by a task commits all
+  // the tasks of its thread, so the traces of every task are flushed before it
+  private static final ThreadLocal<InFlightTraces> threadInFlightTraces = new ThreadLocal<>();
   private DefaultClientRegistry clientRegistry;
+  private ProcessorContext context;
+  // null unless the traces are enriched asynchronously
+  private InFlightTraces inFlightTraces;
+  // whether the task received traces whose offsets were not committed since
+  private boolean commitPending;
 
   @Override
   public void init(ProcessorContext context) {
+    this.context = context;
     if (processor == null) {
       synchronized (StructuredTraceEnrichProcessor.class) {
         if (processor == null) {
@@ -34,23 +67,112 @@ public class StructuredTraceEnrichProcessor
           clientRegistry = new DefaultClientRegistry(this.getClientsConfig(context.appConfigs()));
           processor =
               new EnrichmentProcessor(
-                  enrichmentRegistry.getOrderedRegisteredEnrichers(), clientRegistry);
+                  enrichmentRegistry.getOrderedRegisteredEnrichers(),
+                  clientRegistry,
+                  this.getBudgetConfig(context.appConfigs()));
         }
       }
     }
+    Config asyncConfig = this.getAsyncConfig(context.appConfigs());
+    if (asyncConfig.hasPath(ASYNC_ENABLED_CONFIG_KEY)
+        && asyncConfig.getBoolean(ASYNC_ENABLED_CONFIG_KEY)) {
+      Object commitInterval = context.appConfigs().get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG);
+      if (commitInterval == null || Long.parseLong(commitInterval.toString()) != Long.MAX_VALUE) {
+        throw new IllegalStateException(
+            "The traces can only be enriched asynchronously by a streams app that does not commit"
+                + " on its own, see TraceEnricher#getStreamsConfig. Commit interval: "
+                + commitInterval);
+      }
+      this.initAsyncEnrichment(asyncConfig);
+    }
   }
 
   @Override
   public KeyValue<String, StructuredTrace> transform(String key, StructuredTrace value) {
-    processor.process(value);
-    return new KeyValue<>(null, value);
+    if (inFlightTraces == null) {
+      processor.process(value);
+      return new KeyValue<>(null, value);
+    }
+    inFlightTraces.add(
+        CompletableFuture.supplyAsync(
+            () -> {
+              processor.process(value);
+              return value;
+            },
+            enrichmentExecutor));
+    commitPending = true;
+    inFlightTraces.forwardCompleted(this::forward);
+    if (inFlightTraces.isFull()) {
+      inFlightTraces.forwardHead(this::forward);
+    }
+    // the enriched traces are forwarded once done, in the order they were received
+    return null;
   }
 
   @Override
   public void close() {
+    if (inFlightTraces != null) {
+      // the traces received by the task are not dropped on a rebalance or shutdown
+      inFlightTraces.forwardAll(this::forward);
+    }
     // clientRegistry.shutdown(); TODO restore cleanup once shared static instance removed
   }
 
+  /**
+   * Each stream thread keeps a bounded window of traces in flight, enriched concurrently so that
+   * their remote lookups overlap. The window is flushed periodically, after which the commit of
+   * the offsets of the traces the task received since its last commit is requested, whether they
+   * were forwarded by the flush or before it. The traces of all the tasks of the thread go
+   * to the same output topic, whichever task forwards them. Kafka Streams does not commit on its
+   * own in this mode, see {@link TraceEnricher#getStreamsConfig}.
+   */
+  private void initAsyncEnrichment(Config asyncConfig) {
+    synchronized (StructuredTraceEnrichProcessor.class) {
+      if (enrichmentExecutor == null) {
+        int threads =
+            asyncConfig.hasPath(ASYNC_THREADS_CONFIG_KEY)
+                ? asyncConfig.getInt(ASYNC_THREADS_CONFIG_KEY)
+                : DEFAULT_ASYNC_THREADS;
+        AtomicInteger threadCount = new AtomicInteger();
+        enrichmentExecutor =
+            Executors.newFixedThreadPool(
+                threads,
+                runnable -> {
+                  Thread thread =
+                      new Thread(runnable, "trace-enricher-" + threadCount.getAndIncrement());
+                  thread.setDaemon(true);
+                  return thread;
+                });
+      }
+    }
+    inFlightTraces = threadInFlightTraces.get();
+    if (inFlightTraces == null) {
+      inFlightTraces =
+          new InFlightTraces(
+              asyncConfig.hasPath(ASYNC_MAX_IN_FLIGHT_CONFIG_KEY)
+                  ? asyncConfig.getInt(ASYNC_MAX_IN_FLIGHT_CONFIG_KEY)
+                  : DEFAULT_ASYNC_MAX_IN_FLIGHT);
+      threadInFlightTraces.set(inFlightTraces);
+    }
+    Duration flushInterval =
+        asyncConfig.hasPath(ASYNC_FLUSH_INTERVAL_CONFIG_KEY)
+            ? asyncConfig.getDuration(ASYNC_FLUSH_INTERVAL_CONFIG_KEY)
+            : DEFAULT_ASYNC_FLUSH_INTERVAL;
+    context.schedule(flushInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> this.flush());
+  }
+
+  private void flush() {
+    inFlightTraces.forwardAll(this::forward);
+    if (commitPending) {
+      context.commit();
+      commitPending = false;
+    }
+  }
+
+  private void forward(StructuredTrace trace) {
+    context.forward(null, trace);
+  }
+
   private Map<String, Config> getEnricherConfigs(Map<String, Object> properties) {
     Config jobConfig = (Config) properties.get(STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY);
     List<String> enrichers = jobConfig.getStringList(ENRICHER_NAMES_CONFIG_KEY);
@@ -64,7 +186,31 @@ public class StructuredTraceEnrichProcessor
 
   private Config getClientsConfig(Map<String, Object> properties) {
     Config jobConfig = (Config) properties.get(STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY);
-    return jobConfig.getConfig(ENRICHER_CLIENTS_CONFIG_KEY);
+    Config clientsConfig = jobConfig.getConfig(ENRICHER_CLIENTS_CONFIG_KEY);
+    // cache snapshots are kept in the kafka streams state dir unless configured otherwise
+    Object stateDir = properties.get(StreamsConfig.STATE_DIR_CONFIG);
+    if (stateDir == null) {
+      return clientsConfig;
+    }
+    return clientsConfig.withFallback(
+        ConfigFactory.parseMap(
+            Map.of(
+                CACHE_SNAPSHOT_DIR_CONFIG_KEY,
+                Paths.get(stateDir.toString(), CACHE_SNAPSHOT_DIR_NAME).toString())));
+  }
+
+  private Config getBudgetConfig(Map<String, Object> properties) {
+    Config jobConfig = (Config) properties.get(STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY);
+    return jobConfig.hasPath(ENRICHER_BUDGET_CONFIG_KEY)
+        ? jobConfig.getConfig(ENRICHER_BUDGET_CONFIG_KEY)
+        : ConfigFactory.empty();
+  }
+
+  private Config getAsyncConfig(Map<String, Object> properties) {
+    Config jobConfig = (Config) properties.get(STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY);
+    return jobConfig.hasPath(ENRICHER_ASYNC_CONFIG_KEY)
+        ? jobConfig.getConfig(ENRICHER_ASYNC_CONFIG_KEY)
+        : ConfigFactory.empty();
   }
 
   private String getEnricherConfigPath(String enricher) {
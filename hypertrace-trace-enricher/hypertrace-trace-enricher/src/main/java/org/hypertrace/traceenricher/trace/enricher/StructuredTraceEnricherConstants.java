@@ -7,6 +7,8 @@ public class StructuredTraceEnricherConstants {
   public static final String ENRICHER_CONFIGS_KEY = "enricher.configs";
   public static final String ENRICHER_NAMES_CONFIG_KEY = "enricher.names";
   public static final String ENRICHER_CLIENTS_CONFIG_KEY = "enricher.clients";
+  public static final String ENRICHER_BUDGET_CONFIG_KEY = "enricher.budget";
+  public static final String ENRICHER_ASYNC_CONFIG_KEY = "enricher.async";
   public static final String ENRICHER_CONFIG_TEMPLATE = "enricher.%s";
   public static final String STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY =
       "structured-traces-enrichment-job";
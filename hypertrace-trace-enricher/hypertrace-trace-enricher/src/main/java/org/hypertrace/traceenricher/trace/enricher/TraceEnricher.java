@@ -1,5 +1,6 @@
 package org.hypertrace.traceenricher.trace.enricher;
 
+import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.ENRICHER_ASYNC_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.INPUT_TOPIC_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.OUTPUT_TOPIC_CONFIG_KEY;
 import static org.hypertrace.traceenricher.trace.enricher.StructuredTraceEnricherConstants.STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Produced;
@@ -22,6 +24,7 @@ import org.slf4j.LoggerFactory;
 public class TraceEnricher extends KafkaStreamsApp {
 
   private static final Logger logger = LoggerFactory.getLogger(TraceEnricher.class);
+  private static final String ASYNC_ENABLED_CONFIG_KEY = ENRICHER_ASYNC_CONFIG_KEY + ".enabled";
 
   public TraceEnricher(ConfigClient configClient) {
     super(configClient);
@@ -51,6 +54,29 @@ public class TraceEnricher extends KafkaStreamsApp {
     return streamsBuilder;
   }
 
+  /**
+   * When the traces are enriched asynchronously, the offsets are only committed on the requests
+   * following each flush of the traces in flight: an automatic commit could include the offsets of
+   * traces not forwarded yet.
+   */
+  @Override
+  public Map<String, Object> getStreamsConfig(Config jobConfig) {
+    Map<String, Object> streamsConfig = super.getStreamsConfig(jobConfig);
+    if (isAsyncEnabled(jobConfig)) {
+      streamsConfig.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, Long.MAX_VALUE);
+    }
+    return streamsConfig;
+  }
+
+  /**
+   * Whether the traces are enriched asynchronously, which takes a streams app of its own: the
+   * commit interval it pins applies to all the topologies of the app
+   */
+  public static boolean isAsyncEnabled(Config jobConfig) {
+    return jobConfig.hasPath(ASYNC_ENABLED_CONFIG_KEY)
+        && jobConfig.getBoolean(ASYNC_ENABLED_CONFIG_KEY);
+  }
+
   @Override
   public String getJobConfigKey() {
     return STRUCTURED_TRACES_ENRICHMENT_JOB_CONFIG_KEY;
@@ -1,6 +1,8 @@
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -8,6 +10,7 @@ import java.util.Properties;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.TestInputTopic;
 import org.apache.kafka.streams.TestOutputTopic;
 import org.apache.kafka.streams.TopologyTestDriver;
@@ -93,6 +96,72 @@ public class HypertraceTraceEnricherTest {
         HexUtils.getHex("1234".getBytes()), HexUtils.getHex(structuredTrace.getTraceId()));
   }
 
+  @Test
+  @SetEnvironmentVariable(key = "SERVICE_NAME", value = "hypertrace-trace-enricher")
+  public void testTraceEnricherTopologyWithAsyncEnrichment() {
+    Config config =
+        underTestConfig.withValue("enricher.async.enabled", ConfigValueFactory.fromAnyRef(true));
+
+    Map<String, Object> mergedProps = underTest.getBaseStreamsConfig();
+    mergedProps.putAll(underTest.getStreamsConfig(config));
+    mergedProps.put(underTest.getJobConfigKey(), config);
+    // only the commits requested once the traces in flight are flushed
+    Assertions.assertEquals(
+        Long.MAX_VALUE, mergedProps.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+
+    StreamsBuilder streamsBuilder =
+        underTest.buildTopology(mergedProps, new StreamsBuilder(), new HashMap<>());
+    Properties props = new Properties();
+    mergedProps.forEach(props::put);
+    TopologyTestDriver topologyTestDriver = new TopologyTestDriver(streamsBuilder.build(), props);
+
+    Serde<StructuredTrace> htStructuredTraceSerde = new AvroSerde<>();
+    TestInputTopic<String, StructuredTrace> inputTopic =
+        topologyTestDriver.createInputTopic(
+            config.getString(StructuredTraceEnricherConstants.INPUT_TOPIC_CONFIG_KEY),
+            Serdes.String().serializer(),
+            htStructuredTraceSerde.serializer());
+    TestOutputTopic outputTopic =
+        topologyTestDriver.createOutputTopic(
+            config.getString(StructuredTraceEnricherConstants.OUTPUT_TOPIC_CONFIG_KEY),
+            Serdes.String().deserializer(),
+            htStructuredTraceSerde.deserializer());
+
+    inputTopic.pipeInput(createHTStructuredTrace("customer1", "1234"));
+    inputTopic.pipeInput(createHTStructuredTrace("customer1", "5678"));
+    // the traces still in flight are forwarded on the next flush
+    topologyTestDriver.advanceWallClockTime(Duration.ofSeconds(1));
+
+    Assertions.assertEquals(
+        HexUtils.getHex("1234".getBytes()),
+        HexUtils.getHex(((StructuredTrace) outputTopic.readValue()).getTraceId()));
+    Assertions.assertEquals(
+        HexUtils.getHex("5678".getBytes()),
+        HexUtils.getHex(((StructuredTrace) outputTopic.readValue()).getTraceId()));
+    Assertions.assertTrue(outputTopic.isEmpty());
+  }
+
+  @Test
+  @SetEnvironmentVariable(key = "SERVICE_NAME", value = "hypertrace-trace-enricher")
+  public void testAsyncEnrichmentNeedsTheCommitIntervalPinned() {
+    Config config =
+        underTestConfig.withValue("enricher.async.enabled", ConfigValueFactory.fromAnyRef(true));
+
+    // the commit interval of the app the enricher is added to, as within the ingester
+    Map<String, Object> mergedProps = underTest.getBaseStreamsConfig();
+    mergedProps.putAll(underTest.getStreamsConfig(underTestConfig));
+    mergedProps.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 30_000L);
+    mergedProps.put(underTest.getJobConfigKey(), config);
+
+    StreamsBuilder streamsBuilder =
+        underTest.buildTopology(mergedProps, new StreamsBuilder(), new HashMap<>());
+    Properties props = new Properties();
+    mergedProps.forEach(props::put);
+
+    Assertions.assertThrows(
+        RuntimeException.class, () -> new TopologyTestDriver(streamsBuilder.build(), props));
+  }
+
   private org.hypertrace.core.datamodel.StructuredTrace createHTStructuredTrace(
       String customerId, String traceId) {
     return StructuredTrace.newBuilder()
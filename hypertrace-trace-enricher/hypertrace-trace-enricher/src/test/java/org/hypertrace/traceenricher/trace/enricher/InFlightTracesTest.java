@@ -0,0 +1,79 @@
+package org.hypertrace.traceenricher.trace.enricher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.junit.jupiter.api.Test;
+
+public class InFlightTracesTest {
+
+  @Test
+  public void forwardsCompletedTracesInReceivedOrder() {
+    InFlightTraces inFlightTraces = new InFlightTraces(3);
+    StructuredTrace first = createTrace("1");
+    StructuredTrace second = createTrace("2");
+    StructuredTrace third = createTrace("3");
+    CompletableFuture<StructuredTrace> firstEnrichment = new CompletableFuture<>();
+    inFlightTraces.add(firstEnrichment);
+    inFlightTraces.add(CompletableFuture.completedFuture(second));
+    inFlightTraces.add(CompletableFuture.completedFuture(third));
+    assertTrue(inFlightTraces.isFull());
+
+    List<StructuredTrace> forwarded = new ArrayList<>();
+    inFlightTraces.forwardCompleted(forwarded::add);
+    assertTrue(forwarded.isEmpty());
+
+    firstEnrichment.complete(first);
+    inFlightTraces.forwardCompleted(forwarded::add);
+    assertEquals(List.of(first, second, third), forwarded);
+    assertEquals(0, inFlightTraces.size());
+    assertFalse(inFlightTraces.isFull());
+  }
+
+  @Test
+  public void forwardsHeadAndAllOnceEnriched() {
+    InFlightTraces inFlightTraces = new InFlightTraces(2);
+    StructuredTrace first = createTrace("1");
+    StructuredTrace second = createTrace("2");
+    inFlightTraces.add(CompletableFuture.supplyAsync(() -> first));
+    inFlightTraces.add(CompletableFuture.supplyAsync(() -> second));
+
+    List<StructuredTrace> forwarded = new ArrayList<>();
+    inFlightTraces.forwardHead(forwarded::add);
+    assertEquals(1, forwarded.size());
+    assertSame(first, forwarded.get(0));
+
+    inFlightTraces.forwardAll(forwarded::add);
+    assertEquals(List.of(first, second), forwarded);
+  }
+
+  @Test
+  public void rethrowsEnrichmentFailures() {
+    InFlightTraces inFlightTraces = new InFlightTraces(2);
+    inFlightTraces.add(CompletableFuture.failedFuture(new IllegalArgumentException("failed")));
+
+    assertThrows(IllegalArgumentException.class, () -> inFlightTraces.forwardAll(trace -> {}));
+  }
+
+  private StructuredTrace createTrace(String traceId) {
+    return StructuredTrace.newBuilder()
+        .setCustomerId("customer1")
+        .setTraceId(ByteBuffer.wrap(traceId.getBytes()))
+        .setStartTimeMillis(0)
+        .setEndTimeMillis(1)
+        .setEntityList(new ArrayList<>())
+        .setEntityEdgeList(new ArrayList<>())
+        .setEventEdgeList(new ArrayList<>())
+        .setEntityEventEdgeList(new ArrayList<>())
+        .setEventList(new ArrayList<>())
+        .build();
+  }
+}
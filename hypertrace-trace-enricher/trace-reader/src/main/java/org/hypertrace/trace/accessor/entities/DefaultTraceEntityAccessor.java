@@ -1,10 +1,11 @@
 package org.hypertrace.trace.accessor.entities;
 
-import static io.reactivex.rxjava3.core.Maybe.zip;
 import static java.util.function.Predicate.not;
 
-import io.reactivex.rxjava3.core.Maybe;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -60,87 +61,120 @@ class DefaultTraceEntityAccessor implements TraceEntityAccessor {
         .forEach(entityType -> this.writeEntityIfExists(entityType, trace, span));
   }
 
-  private void writeEntityIfExists(EntityType entityType, StructuredTrace trace, Event span) {
-    Entity entity = this.buildEntity(entityType, trace, span).blockingGet();
-    if (entity == null) {
-      return;
-    }
-    UpsertCondition upsertCondition =
-        this.buildUpsertCondition(entityType, trace, span)
-            .defaultIfEmpty(UpsertCondition.getDefaultInstance())
+  @Override
+  public void writeAssociatedEntitiesForTraceEventually(StructuredTrace trace) {
+    Map<String, List<Event>> spansByTenantId =
+        trace.getEventList().stream()
+            .collect(
+                Collectors.groupingBy(
+                    this.traceAttributeReader::getTenantId,
+                    LinkedHashMap::new,
+                    Collectors.toList()));
+    spansByTenantId.forEach((tenantId, spans) -> this.writeEntities(tenantId, trace, spans));
+  }
+
+  private void writeEntities(String tenantId, StructuredTrace trace, List<Event> spans) {
+    List<EntityType> entityTypes =
+        GrpcRxExecutionContext.forTenantContext(tenantId)
+            .wrapSingle(() -> this.entityTypeClient.getAll().toList())
             .blockingGet();
 
+    // (entity type, entity id) -> entity write merged across the spans
+    Map<Entry<String, String>, EntityWrite> entityWrites = new LinkedHashMap<>();
+    for (Event span : spans) {
+      for (EntityType entityType : entityTypes) {
+        Optional<Entity> entity = this.buildEntity(entityType, trace, span);
+        if (entity.isEmpty()) {
+          continue;
+        }
+        EntityWrite entityWrite =
+            new EntityWrite(entity.get(), this.resolveUpsertCondition(entityType, trace, span));
+        entityWrites.merge(
+            Map.entry(entity.get().getEntityType(), entity.get().getEntityId()),
+            entityWrite,
+            EntityWrite::mergeWith);
+      }
+    }
+
+    entityWrites
+        .values()
+        .forEach(
+            entityWrite ->
+                this.writeEntity(tenantId, entityWrite.entity, entityWrite.upsertCondition));
+  }
+
+  private void writeEntityIfExists(EntityType entityType, StructuredTrace trace, Event span) {
+    this.buildEntity(entityType, trace, span)
+        .ifPresent(
+            entity ->
+                this.writeEntity(
+                    this.traceAttributeReader.getTenantId(span),
+                    entity,
+                    this.resolveUpsertCondition(entityType, trace, span)));
+  }
+
+  private void writeEntity(String tenantId, Entity entity, UpsertCondition upsertCondition) {
     this.entityDataClient.createOrUpdateEntityEventually(
-        RequestContext.forTenantId(this.traceAttributeReader.getTenantId(span)),
+        RequestContext.forTenantId(tenantId),
         entity,
         upsertCondition,
         this.writeThrottleDuration);
   }
 
-  private Maybe<UpsertCondition> buildUpsertCondition(
+  private UpsertCondition resolveUpsertCondition(
       EntityType entityType, StructuredTrace trace, Event span) {
     if (entityType.getTimestampAttributeKey().isEmpty()) {
-      return Maybe.empty();
+      return UpsertCondition.getDefaultInstance();
     }
 
-    return spanTenantContext(span)
-        .wrapSingle(
-            () ->
-                this.attributeClient.get(
-                    entityType.getAttributeScope(), entityType.getTimestampAttributeKey()))
-        .filter(this::isEntitySourced)
-        .flatMap(
-            attribute ->
+    AttributeMetadata attribute =
+        spanTenantContext(span)
+            .wrapSingle(
+                () ->
+                    this.attributeClient.get(
+                        entityType.getAttributeScope(), entityType.getTimestampAttributeKey()))
+            .blockingGet();
+    if (!this.isEntitySourced(attribute)) {
+      return UpsertCondition.getDefaultInstance();
+    }
+
+    return this.resolveAttribute(attribute, trace, span)
+        .map(
+            value ->
                 this.buildUpsertCondition(
-                    attribute, PredicateOperator.PREDICATE_OPERATOR_LESS_THAN, trace, span));
+                    attribute, PredicateOperator.PREDICATE_OPERATOR_LESS_THAN, value))
+        .orElse(UpsertCondition.getDefaultInstance());
   }
 
-  private Maybe<UpsertCondition> buildUpsertCondition(
-      AttributeMetadata attribute, PredicateOperator operator, StructuredTrace trace, Event span) {
-
-    return this.traceAttributeReader
-        .getSpanValue(trace, span, attribute.getScopeString(), attribute.getKey())
-        .onErrorComplete()
-        .flatMap(value -> this.buildUpsertCondition(attribute, operator, value));
+  private UpsertCondition buildUpsertCondition(
+      AttributeMetadata attribute, PredicateOperator operator, AttributeValue currentValue) {
+    return UpsertCondition.newBuilder()
+        .setPropertyPredicate(
+            Predicate.newBuilder()
+                .setAttributeKey(attribute.getKey())
+                .setOperator(operator)
+                .setValue(currentValue))
+        .build();
   }
 
-  private Maybe<UpsertCondition> buildUpsertCondition(
-      AttributeMetadata attribute, PredicateOperator operator, LiteralValue currentValue) {
-    return AttributeValueConverter.convertToAttributeValue(currentValue)
-        .map(
-            attributeValue ->
-                UpsertCondition.newBuilder()
-                    .setPropertyPredicate(
-                        Predicate.newBuilder()
-                            .setAttributeKey(attribute.getKey())
-                            .setOperator(operator)
-                            .setValue(attributeValue))
-                    .build());
-  }
-
-  private Maybe<Entity> buildEntity(EntityType entityType, StructuredTrace trace, Event span) {
-    Maybe<Map<String, AttributeValue>> attributes =
-        this.resolveAllAttributes(entityType.getAttributeScope(), trace, span).cache();
-
-    Maybe<String> id =
-        attributes.mapOptional(
-            map -> this.extractNonEmptyString(map, entityType.getIdAttributeKey()));
-
-    Maybe<String> name =
-        attributes.mapOptional(
-            map -> this.extractNonEmptyString(map, entityType.getNameAttributeKey()));
-
-    return zip(
-            id,
-            name,
-            attributes,
-            (resolvedId, resolvedName, resolvedAttributeMap) ->
-                Entity.newBuilder()
-                    .setEntityId(resolvedId)
-                    .setEntityType(entityType.getName())
-                    .setEntityName(resolvedName)
-                    .putAllAttributes(resolvedAttributeMap)
-                    .build())
+  private Optional<Entity> buildEntity(EntityType entityType, StructuredTrace trace, Event span) {
+    Map<String, AttributeValue> attributes =
+        this.resolveAllAttributes(entityType.getAttributeScope(), trace, span);
+
+    Optional<String> id = this.extractNonEmptyString(attributes, entityType.getIdAttributeKey());
+    Optional<String> name =
+        this.extractNonEmptyString(attributes, entityType.getNameAttributeKey());
+    if (id.isEmpty() || name.isEmpty()) {
+      return Optional.empty();
+    }
+
+    return Optional.of(
+            Entity.newBuilder()
+                .setEntityId(id.get())
+                .setEntityType(entityType.getName())
+                .setEntityName(name.get())
+                .putAllAttributes(attributes)
+                .build())
         .filter(entity -> this.canCreateEntity(entityType, entity));
   }
 
@@ -161,24 +195,36 @@ class DefaultTraceEntityAccessor implements TraceEntityAccessor {
     }
   }
 
-  private Maybe<Map<String, AttributeValue>> resolveAllAttributes(
+  private Map<String, AttributeValue> resolveAllAttributes(
       String scope, StructuredTrace trace, Event span) {
-    return spanTenantContext(span)
-        .wrapSingle(() -> this.attributeClient.getAllInScope(scope))
-        .flattenAsObservable(list -> list)
-        .filter(this::isEntitySourced)
-        .flatMapMaybe(attributeMetadata -> this.resolveAttribute(attributeMetadata, trace, span))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue))
-        .toMaybe();
+    List<AttributeMetadata> attributes =
+        spanTenantContext(span)
+            .wrapSingle(() -> this.attributeClient.getAllInScope(scope))
+            .blockingGet();
+
+    Map<String, AttributeValue> resolvedAttributes = new HashMap<>();
+    for (AttributeMetadata attributeMetadata : attributes) {
+      if (this.isEntitySourced(attributeMetadata)) {
+        this.resolveAttribute(attributeMetadata, trace, span)
+            .ifPresent(value -> resolvedAttributes.put(attributeMetadata.getKey(), value));
+      }
+    }
+    return resolvedAttributes;
   }
 
-  private Maybe<Entry<String, AttributeValue>> resolveAttribute(
+  private Optional<AttributeValue> resolveAttribute(
       AttributeMetadata attributeMetadata, StructuredTrace trace, Event span) {
-    return this.traceAttributeReader
-        .getSpanValue(trace, span, attributeMetadata.getScopeString(), attributeMetadata.getKey())
-        .onErrorComplete()
-        .flatMap(AttributeValueConverter::convertToAttributeValue)
-        .map(value -> Map.entry(attributeMetadata.getKey(), value));
+    LiteralValue literalValue;
+    try {
+      literalValue =
+          this.traceAttributeReader.resolveSpanValue(
+              trace, span, attributeMetadata.getScopeString(), attributeMetadata.getKey());
+    } catch (RuntimeException exception) {
+      // An attribute that can't be resolved for the span is left out
+      return Optional.empty();
+    }
+    return Optional.ofNullable(
+        AttributeValueConverter.convertToAttributeValue(literalValue).blockingGet());
   }
 
   private Optional<String> extractNonEmptyString(
@@ -198,4 +244,26 @@ class DefaultTraceEntityAccessor implements TraceEntityAccessor {
   private boolean isEntitySourced(AttributeMetadata attributeMetadata) {
     return attributeMetadata.getSourcesList().contains(AttributeSource.EDS);
   }
+
+  private static class EntityWrite {
+    private final Entity entity;
+    private final UpsertCondition upsertCondition;
+
+    private EntityWrite(Entity entity, UpsertCondition upsertCondition) {
+      this.entity = entity;
+      this.upsertCondition = upsertCondition;
+    }
+
+    /**
+     * Attributes of the later span win, and so does its upsert condition since it is built from
+     * the timestamp attribute of that same span.
+     */
+    private EntityWrite mergeWith(EntityWrite later) {
+      return new EntityWrite(
+          this.entity.toBuilder().putAllAttributes(later.entity.getAttributesMap()).build(),
+          later.upsertCondition.equals(UpsertCondition.getDefaultInstance())
+              ? this.upsertCondition
+              : later.upsertCondition);
+    }
+  }
 }
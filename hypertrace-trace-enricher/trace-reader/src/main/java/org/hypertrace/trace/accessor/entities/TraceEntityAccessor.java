@@ -6,4 +6,10 @@ import org.hypertrace.core.datamodel.StructuredTrace;
 public interface TraceEntityAccessor {
 
   void writeAssociatedEntitiesForSpanEventually(StructuredTrace trace, Event span);
+
+  /**
+   * Writes the entities associated with all the spans of the trace, each distinct entity once with
+   * the attributes of all its spans merged.
+   */
+  void writeAssociatedEntitiesForTraceEventually(StructuredTrace trace);
 }
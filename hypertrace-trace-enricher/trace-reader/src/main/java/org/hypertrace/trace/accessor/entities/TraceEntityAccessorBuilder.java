@@ -2,8 +2,11 @@ package org.hypertrace.trace.accessor.entities;
 
 import java.time.Duration;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.entity.data.service.rxclient.EntityDataClient;
 import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
+import org.hypertrace.trace.reader.attributes.TraceAttributeReader;
 import org.hypertrace.trace.reader.attributes.TraceAttributeReaderFactory;
 
 public class TraceEntityAccessorBuilder {
@@ -11,6 +14,7 @@ public class TraceEntityAccessorBuilder {
   private final EntityDataClient entityDataClient;
   private final CachingAttributeClient attributeClient;
   private Duration entityWriteThrottleDuration = Duration.ofSeconds(15);
+  private TraceAttributeReader<StructuredTrace, Event> traceAttributeReader;
 
   public TraceEntityAccessorBuilder(
       EntityTypeClient entityTypeClient,
@@ -26,12 +30,21 @@ public class TraceEntityAccessorBuilder {
     return this;
   }
 
+  /** Reads the entity attributes through the given reader rather than a new one */
+  public TraceEntityAccessorBuilder withTraceAttributeReader(
+      TraceAttributeReader<StructuredTrace, Event> traceAttributeReader) {
+    this.traceAttributeReader = traceAttributeReader;
+    return this;
+  }
+
   public TraceEntityAccessor build() {
     return new DefaultTraceEntityAccessor(
         this.entityTypeClient,
         this.entityDataClient,
         this.attributeClient,
-        TraceAttributeReaderFactory.build(this.attributeClient),
+        this.traceAttributeReader != null
+            ? this.traceAttributeReader
+            : TraceAttributeReaderFactory.build(this.attributeClient),
         entityWriteThrottleDuration);
   }
 }
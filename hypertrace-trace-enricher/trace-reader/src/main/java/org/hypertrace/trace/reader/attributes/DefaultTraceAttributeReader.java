@@ -27,6 +27,14 @@ class DefaultTraceAttributeReader implements TraceAttributeReader<StructuredTrac
         .flatMap(definition -> this.valueResolver.resolve(valueSource, definition));
   }
 
+  @Override
+  public LiteralValue resolveSpanValue(
+      StructuredTrace trace, Event span, String attributeScope, String attributeKey) {
+    ValueSource valueSource = ValueSourceFactory.forSpan(trace, span);
+    return this.valueResolver.resolveNow(
+        valueSource, this.getAttribute(valueSource, attributeScope, attributeKey).blockingGet());
+  }
+
   @Override
   public Single<LiteralValue> getTraceValue(StructuredTrace trace, String attributeKey) {
     ValueSource valueSource = ValueSourceFactory.forTrace(trace);
@@ -2,11 +2,15 @@ package org.hypertrace.trace.reader.attributes;
 
 import static io.reactivex.rxjava3.core.Single.zip;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.RateLimiter;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
@@ -29,6 +33,9 @@ class DefaultValueResolver implements ValueResolver {
   private static final RateLimiter LOGGING_LIMITER = RateLimiter.create(1 / 60d);
   private final CachingAttributeClient attributeClient;
   private final AttributeProjectionRegistry attributeProjectionRegistry;
+  // Weak keys are compared by identity, so a plan lives as long as the cached metadata it is for
+  private final Map<AttributeMetadata, ValuePlan> valuePlans =
+      CacheBuilder.newBuilder().weakKeys().<AttributeMetadata, ValuePlan>build().asMap();
 
   DefaultValueResolver(
       CachingAttributeClient attributeClient,
@@ -48,6 +55,13 @@ class DefaultValueResolver implements ValueResolver {
         valueSource, attributeMetadata, attributeMetadata.getDefinition());
   }
 
+  @Override
+  public LiteralValue resolveNow(ValueSource valueSource, AttributeMetadata attributeMetadata) {
+    return this.valuePlans
+        .computeIfAbsent(attributeMetadata, this::compile)
+        .resolve(valueSource);
+  }
+
   private Single<LiteralValue> resolveDefinition(
       ValueSource valueSource,
       AttributeMetadata attributeMetadata,
@@ -167,12 +181,161 @@ class DefaultValueResolver implements ValueResolver {
   }
 
   private <T> Single<T> buildAndLogErrorLazily(String message, Object... args) {
-    return Single.error(
-        () -> {
-          if (LOGGING_LIMITER.tryAcquire()) {
-            log.error(String.format(message, args));
+    return Single.error(() -> this.buildAndLogError(message, args));
+  }
+
+  private UnsupportedOperationException buildAndLogError(String message, Object... args) {
+    if (LOGGING_LIMITER.tryAcquire()) {
+      log.error(String.format(message, args));
+    }
+    return new UnsupportedOperationException(String.format(message, args));
+  }
+
+  /*
+   * The compiled plans below mirror the reactive resolution above, with the definition tree
+   * walked once per attribute rather than once per resolution.
+   */
+
+  private ValuePlan compile(AttributeMetadata attributeMetadata) {
+    if (!attributeMetadata.hasDefinition()) {
+      return this.failingPlan("Attribute definition not set");
+    }
+
+    return this.compileDefinition(attributeMetadata, attributeMetadata.getDefinition());
+  }
+
+  private ValuePlan compileDefinition(
+      AttributeMetadata attributeMetadata, AttributeDefinition definition) {
+    switch (definition.getValueCase()) {
+      case SOURCE_PATH:
+        return this.compileValue(
+            attributeMetadata.getScopeString(),
+            attributeMetadata.getType(),
+            attributeMetadata.getValueKind(),
+            definition.getSourcePath());
+      case PROJECTION:
+        return this.compileProjection(definition.getProjection());
+      case SOURCE_FIELD:
+        SourceField sourceField = definition.getSourceField();
+        AttributeKind attributeKind = attributeMetadata.getValueKind();
+        return valueSource ->
+            valueSource
+                .getSourceField(sourceField, attributeKind)
+                .orElse(LiteralValue.getDefaultInstance());
+      case FIRST_VALUE_PRESENT:
+        return this.compileFirstValuePresent(
+            attributeMetadata, definition.getFirstValuePresent());
+      case VALUE_NOT_SET:
+      default:
+        return this.failingPlan("Unrecognized attribute definition");
+    }
+  }
+
+  private ValuePlan compileValue(
+      String attributeScope,
+      AttributeType attributeType,
+      AttributeKind attributeKind,
+      String path) {
+    switch (attributeType) {
+      case ATTRIBUTE:
+        return valueSource ->
+            this.sourceForScope(valueSource, attributeScope)
+                .getAttribute(path, attributeKind)
+                .orElse(LiteralValue.getDefaultInstance());
+      case METRIC:
+        return valueSource ->
+            this.sourceForScope(valueSource, attributeScope)
+                .getMetric(path, attributeKind)
+                .orElse(LiteralValue.getDefaultInstance());
+      case UNRECOGNIZED:
+      case TYPE_UNDEFINED:
+      default:
+        return this.failingPlan("Unrecognized projection type");
+    }
+  }
+
+  private ValueSource sourceForScope(ValueSource contextValueSource, String attributeScope) {
+    return contextValueSource
+        .sourceForScope(attributeScope)
+        .orElseThrow(
+            () ->
+                this.buildAndLogError(
+                    "No value source available supporting scope %s", attributeScope));
+  }
+
+  private ValuePlan compileProjection(Projection projection) {
+    switch (projection.getValueCase()) {
+      case ATTRIBUTE_ID:
+        String attributeId = projection.getAttributeId();
+        return valueSource ->
+            this.resolveNow(
+                valueSource,
+                valueSource
+                    .executionContext()
+                    .wrapSingle(() -> this.attributeClient.get(attributeId))
+                    .blockingGet());
+      case LITERAL:
+        LiteralValue literal = projection.getLiteral();
+        return valueSource -> literal;
+      case EXPRESSION:
+        return this.compileExpression(projection.getExpression());
+      case VALUE_NOT_SET:
+      default:
+        return this.failingPlan("Unrecognized projection type");
+    }
+  }
+
+  private ValuePlan compileFirstValuePresent(
+      AttributeMetadata attributeMetadata, AttributeDefinitions definitions) {
+    List<ValuePlan> definitionPlans =
+        definitions.getDefinitionsList().stream()
+            .map(definition -> this.compileDefinition(attributeMetadata, definition))
+            .collect(Collectors.toUnmodifiableList());
+
+    return valueSource -> {
+      for (ValuePlan definitionPlan : definitionPlans) {
+        try {
+          LiteralValue literalValue = definitionPlan.resolve(valueSource);
+          if (!literalValue.getValueCase().equals(ValueCase.VALUE_NOT_SET)) {
+            return literalValue;
           }
-          return new UnsupportedOperationException(String.format(message, args));
-        });
+        } catch (RuntimeException ignored) {
+          // Same as an unset value, try the next definition
+        }
+      }
+      return LiteralValue.getDefaultInstance();
+    };
+  }
+
+  private ValuePlan compileExpression(ProjectionExpression expression) {
+    Optional<AttributeProjection> projection =
+        this.attributeProjectionRegistry.getProjection(expression.getOperator());
+    if (projection.isEmpty()) {
+      return this.failingPlan("Unregistered projection operator: %s", expression.getOperator());
+    }
+
+    AttributeProjection attributeProjection = projection.get();
+    List<ValuePlan> argumentPlans =
+        expression.getArgumentsList().stream()
+            .map(this::compileProjection)
+            .collect(Collectors.toUnmodifiableList());
+    return valueSource -> {
+      List<LiteralValue> arguments = new ArrayList<>(argumentPlans.size());
+      for (ValuePlan argumentPlan : argumentPlans) {
+        arguments.add(argumentPlan.resolve(valueSource));
+      }
+      return attributeProjection.project(arguments);
+    };
+  }
+
+  private ValuePlan failingPlan(String message, Object... args) {
+    return valueSource -> {
+      throw this.buildAndLogError(message, args);
+    };
+  }
+
+  @FunctionalInterface
+  private interface ValuePlan {
+    LiteralValue resolve(ValueSource valueSource);
   }
 }
@@ -7,6 +7,15 @@ import org.hypertrace.core.attribute.service.v1.LiteralValue;
 public interface TraceAttributeReader<T extends GenericRecord, S extends GenericRecord> {
   Single<LiteralValue> getSpanValue(T trace, S span, String attributeScope, String attributeKey);
 
+  /**
+   * Synchronous counterpart of {@link #getSpanValue}, for callers that would block on its result
+   * anyway.
+   *
+   * @throws RuntimeException if the value cannot be resolved, where {@link #getSpanValue} would
+   *     error
+   */
+  LiteralValue resolveSpanValue(T trace, S span, String attributeScope, String attributeKey);
+
   Single<LiteralValue> getTraceValue(T trace, String attributeKey);
 
   String getTenantId(S span);
@@ -10,6 +10,13 @@ public interface ValueResolver {
 
   Single<LiteralValue> resolve(ValueSource valueSource, AttributeMetadata attributeMetadata);
 
+  /**
+   * Synchronous counterpart of {@link #resolve}, for callers that would block on its result anyway.
+   *
+   * @throws RuntimeException if the value cannot be resolved, where {@link #resolve} would error
+   */
+  LiteralValue resolveNow(ValueSource valueSource, AttributeMetadata attributeMetadata);
+
   static ValueResolver build(CachingAttributeClient attributeClient) {
     return new DefaultValueResolver(attributeClient, new AttributeProjectionRegistry());
   }
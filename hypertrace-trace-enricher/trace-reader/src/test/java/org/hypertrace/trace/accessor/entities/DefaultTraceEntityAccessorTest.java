@@ -9,6 +9,7 @@ import static org.hypertrace.trace.reader.attributes.LiteralValueUtil.stringLite
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -18,6 +19,7 @@ import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
@@ -244,20 +246,66 @@ class DefaultTraceEntityAccessorTest {
     verify(mockDataClient, times(1)).createOrUpdateEntityEventually(any(), any(), any(), any());
   }
 
+  @Test
+  void writesEachEntityOfTraceOnceWithMergedAttributes() {
+    Event otherSpan =
+        defaultedEventBuilder().setCustomerId(TENANT_ID).setEventName("other").build();
+    StructuredTrace trace =
+        defaultedStructuredTraceBuilder().setEventList(List.of(TEST_SPAN, otherSpan)).build();
+    AttributeMetadata otherAttribute =
+        TEST_ENTITY_NAME_ATTRIBUTE.toBuilder().setKey("other").build();
+    mockAllEntityTypes();
+    mockGetAllAttributes(TEST_ENTITY_ID_ATTRIBUTE, TEST_ENTITY_NAME_ATTRIBUTE, otherAttribute);
+    when(this.mockAttributeReader.getTenantId(any())).thenReturn(TENANT_ID);
+    for (Event span : List.of(TEST_SPAN, otherSpan)) {
+      mockAttributeRead(
+          trace, span, TEST_ENTITY_ID_ATTRIBUTE, stringLiteral(TEST_ENTITY_ID_ATTRIBUTE_VALUE));
+      mockAttributeRead(
+          trace, span, TEST_ENTITY_NAME_ATTRIBUTE, stringLiteral(TEST_ENTITY_NAME_ATTRIBUTE_VALUE));
+    }
+    mockAttributeRead(trace, TEST_SPAN, otherAttribute, LiteralValue.getDefaultInstance());
+    mockAttributeRead(trace, otherSpan, otherAttribute, stringLiteral("other-value"));
+
+    this.entityAccessor.writeAssociatedEntitiesForTraceEventually(trace);
+
+    verify(mockTypeClient, times(1)).getAll();
+    verify(mockDataClient, times(1))
+        .createOrUpdateEntityEventually(
+            argThat(MATCHING_TENANT_REQUEST_CONTEXT),
+            eq(
+                EXPECTED_ENTITY.toBuilder()
+                    .putAllAttributes(buildAttributesWithKeyValues(Map.of("other", "other-value")))
+                    .build()),
+            eq(UpsertCondition.getDefaultInstance()),
+            eq(DEFAULT_DURATION));
+  }
+
   private void mockTenantId() {
     when(this.mockAttributeReader.getTenantId(TEST_SPAN)).thenReturn(TENANT_ID);
   }
 
   private void mockAttributeRead(AttributeMetadata attributeMetadata, LiteralValue value) {
-    when(this.mockAttributeReader.getSpanValue(
-            TEST_TRACE, TEST_SPAN, attributeMetadata.getScopeString(), attributeMetadata.getKey()))
-        .thenReturn(Single.just(value));
+    // doReturn, as the read may already be stubbed to throw
+    doReturn(value)
+        .when(this.mockAttributeReader)
+        .resolveSpanValue(
+            TEST_TRACE, TEST_SPAN, attributeMetadata.getScopeString(), attributeMetadata.getKey());
+  }
+
+  private void mockAttributeRead(
+      StructuredTrace trace,
+      Event span,
+      AttributeMetadata attributeMetadata,
+      LiteralValue value) {
+    when(this.mockAttributeReader.resolveSpanValue(
+            trace, span, attributeMetadata.getScopeString(), attributeMetadata.getKey()))
+        .thenReturn(value);
   }
 
   private void mockAttributeReadError(AttributeMetadata attributeMetadata) {
-    when(this.mockAttributeReader.getSpanValue(
+    when(this.mockAttributeReader.resolveSpanValue(
             TEST_TRACE, TEST_SPAN, attributeMetadata.getScopeString(), attributeMetadata.getKey()))
-        .thenReturn(Single.error(new NoSuchElementException()));
+        .thenThrow(new NoSuchElementException());
   }
 
   private void mockGetAllAttributes(AttributeMetadata... attributeMetadata) {
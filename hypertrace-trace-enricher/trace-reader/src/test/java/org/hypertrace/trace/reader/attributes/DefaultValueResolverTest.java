@@ -8,6 +8,7 @@ import static org.hypertrace.trace.reader.attributes.AvroUtil.defaultedStructure
 import static org.hypertrace.trace.reader.attributes.LiteralValueUtil.longLiteral;
 import static org.hypertrace.trace.reader.attributes.LiteralValueUtil.stringLiteral;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -180,6 +181,10 @@ class DefaultValueResolverTest {
         this.resolver
             .resolve(ValueSourceFactory.forSpan(this.mockStructuredTrace, span), projectionMetadata)
             .blockingGet());
+    assertEquals(
+        stringLiteral("42coolString"),
+        this.resolver.resolveNow(
+            ValueSourceFactory.forSpan(this.mockStructuredTrace, span), projectionMetadata));
   }
 
   @Test
@@ -310,6 +315,10 @@ class DefaultValueResolverTest {
         this.resolver
             .resolve(ValueSourceFactory.forSpan(this.mockStructuredTrace, span), metadata)
             .blockingGet());
+    assertEquals(
+        LiteralValue.getDefaultInstance(),
+        this.resolver.resolveNow(
+            ValueSourceFactory.forSpan(this.mockStructuredTrace, span), metadata));
   }
 
   @Test
@@ -376,5 +385,22 @@ class DefaultValueResolverTest {
         this.resolver
             .resolve(ValueSourceFactory.forSpan(this.mockStructuredTrace, span), metadata)
             .blockingGet());
+    assertEquals(
+        longLiteral(13),
+        this.resolver.resolveNow(
+            ValueSourceFactory.forSpan(this.mockStructuredTrace, span), metadata));
+  }
+
+  @Test
+  void resolveNowThrowsIfDefinitionNotSet() {
+    AttributeMetadata metadata =
+        AttributeMetadata.newBuilder().setScopeString("TEST_SCOPE").build();
+    Event span = defaultedEventBuilder().build();
+
+    assertThrows(
+        UnsupportedOperationException.class,
+        () ->
+            this.resolver.resolveNow(
+                ValueSourceFactory.forSpan(this.mockStructuredTrace, span), metadata));
   }
 }
@@ -18,4 +18,10 @@ dependencies {
       because("Multiple vulnerabilities in avro-declared version")
     }
   }
+
+  testImplementation("org.junit.jupiter:junit-jupiter:5.7.1")
+}
+
+tasks.test {
+  useJUnitPlatform()
 }
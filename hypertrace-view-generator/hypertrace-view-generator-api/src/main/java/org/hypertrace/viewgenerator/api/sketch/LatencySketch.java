@@ -0,0 +1,182 @@
+package org.hypertrace.viewgenerator.api.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch of latencies, answering quantile queries within a relative accuracy of 1%. As
+ * in DDSketch, positive values are counted in logarithmic buckets, the bucket of index i holding
+ * the values in (gamma^(i-1), gamma^i], and the values no greater than zero are counted apart.
+ * Merging two sketches adds up their bucket counts, so the sketches of the rows of a view can be
+ * merged in any order into the sketch of all their values.
+ *
+ * <p>The serialized form, stored in the bytes fields of the views, is a version byte, then the
+ * count of values no greater than zero, the index of the first bucket, the number of buckets and
+ * the count of each bucket, all as variable length integers. An empty buffer is an empty sketch.
+ */
+public class LatencySketch {
+  private static final double RELATIVE_ACCURACY = 0.01;
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private static final byte VERSION = 1;
+  private static final int GROWTH_HEADROOM = 16;
+
+  private long zeroCount;
+  // counts[i] is the count of the bucket of index minIndex + i
+  private long[] counts = new long[0];
+  private int minIndex;
+  private long count;
+
+  public static LatencySketch fromByteBuffer(ByteBuffer buffer) {
+    LatencySketch sketch = new LatencySketch();
+    if (buffer == null || !buffer.hasRemaining()) {
+      return sketch;
+    }
+    ByteBuffer input = buffer.duplicate();
+    byte version = input.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported latency sketch version " + version);
+    }
+    sketch.zeroCount = readVarLong(input);
+    sketch.minIndex = (int) decodeZigZag(readVarLong(input));
+    sketch.counts = new long[(int) readVarLong(input)];
+    sketch.count = sketch.zeroCount;
+    for (int i = 0; i < sketch.counts.length; i++) {
+      sketch.counts[i] = readVarLong(input);
+      sketch.count += sketch.counts[i];
+    }
+    return sketch;
+  }
+
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  public void add(double value, long n) {
+    if (n <= 0) {
+      return;
+    }
+    if (value > 0) {
+      increment((int) Math.ceil(Math.log(value) / LOG_GAMMA), n);
+    } else {
+      zeroCount += n;
+    }
+    count += n;
+  }
+
+  public void merge(LatencySketch other) {
+    zeroCount += other.zeroCount;
+    for (int i = 0; i < other.counts.length; i++) {
+      if (other.counts[i] > 0) {
+        increment(other.minIndex + i, other.counts[i]);
+      }
+    }
+    count += other.count;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** The value of the given quantile, between 0 and 1, or NaN if the sketch is empty */
+  public double getQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile out of [0, 1]: " + quantile);
+    }
+    if (count == 0) {
+      return Double.NaN;
+    }
+    long rank = (long) (quantile * (count - 1));
+    if (rank < zeroCount) {
+      return 0;
+    }
+    long seen = zeroCount;
+    int last = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] == 0) {
+        continue;
+      }
+      seen += counts[i];
+      last = i;
+      if (seen > rank) {
+        break;
+      }
+    }
+    return getValue(minIndex + last);
+  }
+
+  public ByteBuffer toByteBuffer() {
+    int first = 0;
+    int end = counts.length;
+    while (first < end && counts[first] == 0) {
+      first++;
+    }
+    while (end > first && counts[end - 1] == 0) {
+      end--;
+    }
+    // 10 bytes per variable length long at most
+    ByteBuffer output = ByteBuffer.allocate(1 + 10 * (3 + end - first));
+    output.put(VERSION);
+    writeVarLong(output, zeroCount);
+    writeVarLong(output, encodeZigZag(minIndex + first));
+    writeVarLong(output, end - first);
+    for (int i = first; i < end; i++) {
+      writeVarLong(output, counts[i]);
+    }
+    output.flip();
+    return output;
+  }
+
+  private void increment(int index, long n) {
+    if (counts.length == 0) {
+      minIndex = index;
+      counts = new long[GROWTH_HEADROOM];
+    } else if (index < minIndex) {
+      int shift = minIndex - index;
+      long[] grown = new long[counts.length + shift];
+      System.arraycopy(counts, 0, grown, shift, counts.length);
+      counts = grown;
+      minIndex = index;
+    } else if (index - minIndex >= counts.length) {
+      counts = Arrays.copyOf(counts, index - minIndex + GROWTH_HEADROOM);
+    }
+    counts[index - minIndex] += n;
+  }
+
+  /** The value of a bucket, with the same relative error to both of its bounds */
+  private static double getValue(int index) {
+    return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+  }
+
+  private static long encodeZigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long decodeZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarLong(ByteBuffer output, long value) {
+    while ((value & ~0x7FL) != 0) {
+      output.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.put((byte) value);
+  }
+
+  private static long readVarLong(ByteBuffer input) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = input.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed latency sketch");
+  }
+}
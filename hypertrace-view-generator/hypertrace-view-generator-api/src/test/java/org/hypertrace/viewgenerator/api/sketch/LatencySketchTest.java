@@ -0,0 +1,54 @@
+package org.hypertrace.viewgenerator.api.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencySketchTest {
+
+  @Test
+  public void answersQuantilesWithinTheRelativeAccuracy() {
+    LatencySketch sketch = new LatencySketch();
+    for (int i = 1; i <= 1000; i++) {
+      sketch.add(i);
+    }
+
+    assertEquals(1000, sketch.getCount());
+    assertEquals(500, sketch.getQuantile(0.5), 5);
+    assertEquals(990, sketch.getQuantile(0.99), 9.9);
+    assertEquals(1, sketch.getQuantile(0), 0.01);
+  }
+
+  @Test
+  public void mergesIntoTheSketchOfAllTheValues() {
+    LatencySketch all = new LatencySketch();
+    LatencySketch low = new LatencySketch();
+    LatencySketch high = new LatencySketch();
+    for (int i = 0; i < 100; i++) {
+      all.add(i);
+      (i < 50 ? low : high).add(i);
+    }
+
+    high.merge(low);
+
+    assertEquals(all.getCount(), high.getCount());
+    assertEquals(all.toByteBuffer(), high.toByteBuffer());
+  }
+
+  @Test
+  public void roundTripsThroughBytes() {
+    LatencySketch sketch = new LatencySketch();
+    sketch.add(0);
+    sketch.add(0.25);
+    sketch.add(12);
+    sketch.add(30_000, 3);
+
+    LatencySketch read = LatencySketch.fromByteBuffer(sketch.toByteBuffer());
+
+    assertEquals(6, read.getCount());
+    assertEquals(sketch.toByteBuffer(), read.toByteBuffer());
+    assertEquals(sketch.getQuantile(0.5), read.getQuantile(0.5));
+    assertTrue(LatencySketch.fromByteBuffer(new LatencySketch().toByteBuffer()).isEmpty());
+  }
+}
@@ -35,6 +35,9 @@ dependencies {
   implementation("org.hypertrace.core.viewgenerator:view-generator-framework:0.3.1")
   implementation("org.hypertrace.core.datamodel:data-model:0.1.18")
   implementation("org.hypertrace.core.serviceframework:platform-metrics:0.1.26")
+  implementation("org.hypertrace.core.serviceframework:platform-service-framework:0.1.26")
+  implementation("org.hypertrace.core.kafkastreams.framework:kafka-streams-framework:0.1.21")
+  implementation("com.typesafe:config:1.4.1")
 
   implementation("org.hypertrace.entity.service:entity-service-api:0.8.0")
 
@@ -1,8 +1,10 @@
 package org.hypertrace.viewgenerator.generators;
 
 import java.nio.ByteBuffer;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.avro.Schema;
 import org.hypertrace.core.datamodel.Entity;
@@ -17,6 +19,7 @@ import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUti
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.ErrorMetrics;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.viewgenerator.api.BackendEntityView;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +39,11 @@ public class BackendEntityViewGenerator extends BaseViewGenerator<BackendEntityV
   private static final String ERROR_COUNT_ATTR =
       EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_ERROR_COUNT);
 
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.of(TraceIndex.ANCESTRY);
+  }
+
   @Override
   List<BackendEntityView> generateView(
       StructuredTrace structuredTrace,
@@ -43,6 +51,7 @@ public class BackendEntityViewGenerator extends BaseViewGenerator<BackendEntityV
       Map<ByteBuffer, Event> eventMap,
       Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
       Map<ByteBuffer, ByteBuffer> childToParentEventIds) {
+    TraceState traceState = ViewGeneratorState.getTraceState(structuredTrace);
     return structuredTrace.getEventList().stream()
         .filter(event -> EnrichedSpanUtils.getBackendId(event) != null)
         .map(
@@ -51,9 +60,7 @@ public class BackendEntityViewGenerator extends BaseViewGenerator<BackendEntityV
                         event,
                         structuredTrace,
                         EnrichedSpanUtils.getBackendId(event),
-                        entityMap,
-                        eventMap,
-                        childToParentEventIds)
+                        traceState)
                     .build())
         .collect(Collectors.toList());
   }
@@ -62,9 +69,7 @@ public class BackendEntityViewGenerator extends BaseViewGenerator<BackendEntityV
       Event event,
       StructuredTrace trace,
       String backendId,
-      final Map<String, Entity> entityMap,
-      final Map<ByteBuffer, Event> eventMap,
-      final Map<ByteBuffer, ByteBuffer> childToParentEventIds) {
+      final TraceState traceState) {
 
     BackendEntityView.Builder builder = BackendEntityView.newBuilder();
     try {
@@ -108,13 +113,12 @@ public class BackendEntityViewGenerator extends BaseViewGenerator<BackendEntityV
       // todo: replace this with the start of execution segment entry once the Api Trace is
       // fixed
       // entry_api_id
-      Event startApiSpan =
-          EnrichedSpanUtils.getApiEntrySpan(event, eventMap, childToParentEventIds);
+      Event startApiSpan = traceState.getApiEntryEvent(event);
       if (startApiSpan != null) {
         builder.setCallerApiId(EnrichedSpanUtils.getApiId(startApiSpan));
       }
 
-      builder.setTags(getAttributeMap(event.getAttributes()));
+      builder.setTags(getTags(trace.getCustomerId(), event.getAttributes()));
 
       // this is the same for now
       builder.setDisplayName(event.getEventName());
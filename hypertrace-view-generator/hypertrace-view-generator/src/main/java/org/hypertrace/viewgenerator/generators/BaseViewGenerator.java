@@ -1,11 +1,14 @@
 package org.hypertrace.viewgenerator.generators;
 
+import com.typesafe.config.Config;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.avro.generic.GenericRecord;
 import org.hypertrace.core.datamodel.AttributeValue;
@@ -25,14 +28,19 @@ import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
  * Pre-processing for View Generators, for data that are mostly needed by the the view generators
  */
 public abstract class BaseViewGenerator<OUT extends GenericRecord>
-    implements JavaCodeBasedViewGenerator<StructuredTrace, OUT> {
+    implements JavaCodeBasedViewGenerator<StructuredTrace, OUT>, ConfigurableViewGenerator {
 
   private static final String VIEW_GENERATION_ARRIVAL_TIME = "view.generation.arrival.time";
+  private static final String TAG_PROJECTION_CONFIG_KEY = "tag.projection";
+  private static final String DURATION_SKETCHES_ENABLED_CONFIG_KEY = "duration.sketches.enabled";
   private static final Timer viewGeneratorArrivalTimer =
       PlatformMetricsRegistry.registerTimer(DataflowMetricUtils.ARRIVAL_LAG, new HashMap<>());
 
   static final String EMPTY_STRING = "";
 
+  private TagProjection tagProjection = TagProjection.KEEP_ALL;
+  private boolean durationSketchesEnabled;
+
   static double getMetricValue(Event event, String metricName, double defaultValue) {
     if (event.getMetrics() == null || event.getMetrics().getMetricMap().isEmpty()) {
       return defaultValue;
@@ -59,37 +67,82 @@ public abstract class BaseViewGenerator<OUT extends GenericRecord>
     return attr != null ? attr.getValue() : null;
   }
 
+  /**
+   * Reads the tag projection of the view from its config, all the tags being kept by default, and
+   * whether the view rows carry duration sketches, which they don't by default
+   */
+  @Override
+  public void configure(Config config) {
+    tagProjection =
+        config.hasPath(TAG_PROJECTION_CONFIG_KEY)
+            ? TagProjection.from(config.getConfig(TAG_PROJECTION_CONFIG_KEY), getViewName())
+            : TagProjection.KEEP_ALL;
+    durationSketchesEnabled =
+        config.hasPath(DURATION_SKETCHES_ENABLED_CONFIG_KEY)
+            && config.getBoolean(DURATION_SKETCHES_ENABLED_CONFIG_KEY);
+  }
+
   @Override
   public List<OUT> process(StructuredTrace trace) {
+    reportArrival(trace);
+    return generate(trace);
+  }
+
+  /** Reports the arrival of the trace for view generation, updating the trace */
+  static void reportArrival(StructuredTrace trace) {
     DataflowMetricUtils.reportArrivalLagAndInsertTimestamp(
         trace, viewGeneratorArrivalTimer, VIEW_GENERATION_ARRIVAL_TIME);
+  }
+
+  /** Generates the view of the trace, only reading it */
+  List<OUT> generate(StructuredTrace trace) {
     TraceState traceState = ViewGeneratorState.getTraceState(trace);
-    Map<String, Entity> entityMap = Collections.unmodifiableMap(traceState.getEntityMap());
-    Map<ByteBuffer, Event> eventMap = Collections.unmodifiableMap(traceState.getEventMap());
+    Set<TraceIndex> traceIndexes = getTraceIndexes();
+    Map<String, Entity> entityMap =
+        traceIndexes.contains(TraceIndex.ENTITIES)
+            ? Collections.unmodifiableMap(traceState.getEntityMap())
+            : null;
+    Map<ByteBuffer, Event> eventMap =
+        traceIndexes.contains(TraceIndex.EVENTS)
+            ? Collections.unmodifiableMap(traceState.getEventMap())
+            : null;
     Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds =
-        Collections.unmodifiableMap(traceState.getParentToChildrenEventIds());
+        traceIndexes.contains(TraceIndex.PARENT_TO_CHILDREN)
+            ? Collections.unmodifiableMap(traceState.getParentToChildrenEventIds())
+            : null;
     Map<ByteBuffer, ByteBuffer> childToParentEventIds =
-        Collections.unmodifiableMap(traceState.getChildToParentEventIds());
+        traceIndexes.contains(TraceIndex.CHILD_TO_PARENT)
+            ? Collections.unmodifiableMap(traceState.getChildToParentEventIds())
+            : null;
+    if (traceIndexes.contains(TraceIndex.ANCESTRY)) {
+      traceState.buildAncestry();
+    }
+    if (traceIndexes.contains(TraceIndex.EXIT_CALLEES)) {
+      traceState.getExitSpanToCalleeApiEntrySpanMap();
+    }
 
     return generateView(
         trace, entityMap, eventMap, parentToChildrenEventIds, childToParentEventIds);
   }
 
+  /**
+   * The indexes of the trace the view generator reads, which are built for it if no other view
+   * generator of the trace built them already. All of them by default.
+   */
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.allOf(TraceIndex.class);
+  }
+
+  /** Generates the view of the trace, the maps of the indexes not declared as read being null */
   abstract List<OUT> generateView(
       StructuredTrace structuredTrace,
-      final Map<String, Entity> entityMap,
-      final Map<ByteBuffer, Event> eventMap,
-      final Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
-      final Map<ByteBuffer, ByteBuffer> childToParentEventIds);
+      @Nullable final Map<String, Entity> entityMap,
+      @Nullable final Map<ByteBuffer, Event> eventMap,
+      @Nullable final Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
+      @Nullable final Map<ByteBuffer, ByteBuffer> childToParentEventIds);
 
-  protected Map<String, String> getAttributeMap(Attributes attributes) {
-    Map<String, String> resultMap = new HashMap<>();
-    if (attributes == null || attributes.getAttributeMap() == null) {
-      return resultMap;
-    }
-    for (Map.Entry<String, AttributeValue> entry : attributes.getAttributeMap().entrySet()) {
-      resultMap.put(entry.getKey(), entry.getValue().getValue());
-    }
-    return resultMap;
+  /** The tags of the view rows of a span, projected from its attributes */
+  protected Map<String, String> getTags(String tenantId, Attributes attributes) {
+    return tagProjection.project(tenantId, attributes);
   }
 }
@@ -0,0 +1,8 @@
+package org.hypertrace.viewgenerator.generators;
+
+import com.typesafe.config.Config;
+
+/** A view generator configured by the config of its view, before it generates any view */
+public interface ConfigurableViewGenerator {
+  void configure(Config config);
+}
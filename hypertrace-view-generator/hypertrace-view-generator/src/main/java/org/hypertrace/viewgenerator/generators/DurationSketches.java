@@ -0,0 +1,53 @@
+package org.hypertrace.viewgenerator.generators;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
+import org.hypertrace.viewgenerator.api.sketch.LatencySketch;
+
+/** Mergeable sketches of durations, set on the view rows of a trace */
+class DurationSketches {
+  private DurationSketches() {}
+
+  /**
+   * The sketch of the durations of the entry spans among the given events, the durations of the
+   * other spans being parts of them
+   */
+  static ByteBuffer ofEntrySpans(Collection<Event> events) {
+    LatencySketch sketch = new LatencySketch();
+    for (Event event : events) {
+      if (EnrichedSpanUtils.isEntrySpan(event)) {
+        sketch.add(event.getEndTimeMillis() - event.getStartTimeMillis());
+      }
+    }
+    return sketch.toByteBuffer();
+  }
+
+  /**
+   * Sets the sketch of the durations of the rows of each group on the first row of the group only,
+   * so that merging the sketches of all the rows counts each duration once
+   */
+  static <T> void setPerGroup(
+      List<T> rows,
+      Function<T, Object[]> groupKey,
+      ToLongFunction<T> durationMillis,
+      BiConsumer<T, ByteBuffer> sketchSetter) {
+    Map<List<Object>, T> firstRows = new LinkedHashMap<>();
+    Map<List<Object>, LatencySketch> sketches = new LinkedHashMap<>();
+    for (T row : rows) {
+      List<Object> key = Arrays.asList(groupKey.apply(row));
+      firstRows.putIfAbsent(key, row);
+      sketches.computeIfAbsent(key, k -> new LatencySketch()).add(durationMillis.applyAsLong(row));
+    }
+    sketches.forEach(
+        (key, sketch) -> sketchSetter.accept(firstRows.get(key), sketch.toByteBuffer()));
+  }
+}
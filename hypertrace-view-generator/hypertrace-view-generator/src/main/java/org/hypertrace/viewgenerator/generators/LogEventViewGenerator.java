@@ -1,12 +1,13 @@
 package org.hypertrace.viewgenerator.generators;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.typesafe.config.Config;
+import java.io.CharArrayWriter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.avro.Schema;
@@ -21,10 +22,21 @@ import org.hypertrace.viewgenerator.api.LogEventView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LogEventViewGenerator implements JavaCodeBasedViewGenerator<LogEvents, LogEventView> {
+public class LogEventViewGenerator
+    implements JavaCodeBasedViewGenerator<LogEvents, LogEventView>, ConfigurableViewGenerator {
 
   private static final Logger LOG = LoggerFactory.getLogger(LogEventViewGenerator.class);
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final String ATTRIBUTES_MAX_VALUE_LENGTH_CONFIG_KEY =
+      "attributes.max.value.length";
+  private static final String ATTRIBUTES_MAX_LENGTH_CONFIG_KEY = "attributes.max.length";
+  // quotes, colon and comma written around each attribute
+  private static final int ATTRIBUTE_JSON_OVERHEAD = 6;
+  // buffers grown larger by an unusually large log event are not kept for the next ones
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+  private static final ThreadLocal<CharArrayWriter> attributesJsonBuffer =
+      ThreadLocal.withInitial(CharArrayWriter::new);
 
   private static final String LOG_EVENT_ATTRIBUTE_SIZE_METRIC =
       "hypertrace.log.event.attribute.size";
@@ -37,10 +49,29 @@ public class LogEventViewGenerator implements JavaCodeBasedViewGenerator<LogEven
   static final List<String> SUMMARY_KEYS =
       List.of("message", "exception.message", "exception.type", "event", "body");
 
+  private int maxAttributeValueLength = Integer.MAX_VALUE;
+  private int maxAttributesLength = Integer.MAX_VALUE;
+
+  /** Reads the optional caps on the attributes json of the log events */
+  @Override
+  public void configure(Config config) {
+    maxAttributeValueLength =
+        config.hasPath(ATTRIBUTES_MAX_VALUE_LENGTH_CONFIG_KEY)
+            ? config.getInt(ATTRIBUTES_MAX_VALUE_LENGTH_CONFIG_KEY)
+            : Integer.MAX_VALUE;
+    maxAttributesLength =
+        config.hasPath(ATTRIBUTES_MAX_LENGTH_CONFIG_KEY)
+            ? config.getInt(ATTRIBUTES_MAX_LENGTH_CONFIG_KEY)
+            : Integer.MAX_VALUE;
+  }
+
   @Override
   public List<LogEventView> process(LogEvents logEvents) {
     try {
       List<LogEventView> list = new ArrayList<>();
+      // the log events of a batch mostly belong to the same tenant
+      String gaugeTenantId = null;
+      AtomicInteger attributeSizeGauge = null;
       for (LogEvent logEventRecord : logEvents.getLogEvents()) {
         String attributes = convertAttributes(logEventRecord.getAttributes());
         LogEventView logEventView =
@@ -53,15 +84,18 @@ public class LogEventViewGenerator implements JavaCodeBasedViewGenerator<LogEven
                 .setSummary(getSummary(logEventRecord.getAttributes()))
                 .build();
         if (!StringUtils.isEmpty(logEventRecord.getTenantId()) && null != attributes) {
-          logEventAttributeSizeGauge
-              .computeIfAbsent(
-                  logEventRecord.getTenantId(),
-                  v ->
-                      PlatformMetricsRegistry.registerGauge(
-                          LOG_EVENT_ATTRIBUTE_SIZE_METRIC,
-                          Map.of("tenantId", logEventRecord.getTenantId()),
-                          new AtomicInteger(0)))
-              .set(attributes.length());
+          if (!logEventRecord.getTenantId().equals(gaugeTenantId)) {
+            gaugeTenantId = logEventRecord.getTenantId();
+            attributeSizeGauge =
+                logEventAttributeSizeGauge.computeIfAbsent(
+                    gaugeTenantId,
+                    v ->
+                        PlatformMetricsRegistry.registerGauge(
+                            LOG_EVENT_ATTRIBUTE_SIZE_METRIC,
+                            Map.of("tenantId", v),
+                            new AtomicInteger(0)));
+          }
+          attributeSizeGauge.set(attributes.length());
         }
         list.add(logEventView);
       }
@@ -77,29 +111,51 @@ public class LogEventViewGenerator implements JavaCodeBasedViewGenerator<LogEven
       return null;
     }
     Map<String, AttributeValue> attributeValueMap = attributes.getAttributeMap();
-    Optional<String> summaryKey =
-        SUMMARY_KEYS.stream().filter(attributeValueMap::containsKey).findFirst();
-
-    return summaryKey
-        .map(summary -> attributeValueMap.get(summaryKey.get()).getValue())
-        .orElse(
-            attributeValueMap.entrySet().stream()
-                .findFirst()
-                .map(attribute -> attribute.getValue().getValue())
-                .orElse(null));
+    for (String summaryKey : SUMMARY_KEYS) {
+      AttributeValue summary = attributeValueMap.get(summaryKey);
+      if (summary != null) {
+        return summary.getValue();
+      }
+    }
+    return attributeValueMap.values().iterator().next().getValue();
   }
 
-  private String convertAttributes(Attributes attributes) throws JsonProcessingException {
+  /**
+   * Writes the attributes as a json object straight from the attribute map into a buffer reused by
+   * the thread. Values are truncated to the max value length, and the attributes that would make
+   * the json longer than the max length are left out.
+   */
+  private String convertAttributes(Attributes attributes) throws IOException {
     if (isEmpty(attributes)) {
       return null;
     }
-    Map<String, String> resultMap = new HashMap<>();
-
-    for (Map.Entry<String, AttributeValue> entry : attributes.getAttributeMap().entrySet()) {
-      resultMap.put(entry.getKey(), entry.getValue().getValue());
+    CharArrayWriter buffer = attributesJsonBuffer.get();
+    buffer.reset();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+      generator.writeStartObject();
+      long length = 2;
+      for (Map.Entry<String, AttributeValue> entry : attributes.getAttributeMap().entrySet()) {
+        String value = entry.getValue().getValue();
+        if (value != null && value.length() > maxAttributeValueLength) {
+          value = value.substring(0, maxAttributeValueLength);
+        }
+        // escaped characters aside, null being written as such
+        length +=
+            entry.getKey().length()
+                + (value == null ? 4 : value.length())
+                + ATTRIBUTE_JSON_OVERHEAD;
+        if (length > maxAttributesLength) {
+          break;
+        }
+        generator.writeStringField(entry.getKey(), value);
+      }
+      generator.writeEndObject();
     }
-
-    return OBJECT_MAPPER.writeValueAsString(resultMap);
+    String json = buffer.toString();
+    if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+      attributesJsonBuffer.remove();
+    }
+    return json;
   }
 
   private boolean isEmpty(Attributes attributes) {
@@ -0,0 +1,207 @@
+package org.hypertrace.viewgenerator.generators;
+
+import com.typesafe.config.Config;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.hypertrace.core.datamodel.Entity;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.datamodel.shared.ApiNode;
+import org.hypertrace.traceenricher.enrichedspan.constants.EnrichedSpanConstants;
+import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
+import org.hypertrace.traceenricher.enrichedspan.constants.v1.ErrorMetrics;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.hypertrace.viewgenerator.api.sketch.LatencySketch;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
+
+/**
+ * Rolls up the calls of a trace into rows per (service, api, backend, status) and window: the calls
+ * to an api are counted on its entry boundary spans, with no backend, and the calls from an api to
+ * a backend on the backend exit spans. The rows of a trace are partial, and are merged by {@link
+ * #merge} with those of the other traces of the same window and key, see {@link #getRollupKey}.
+ */
+public class MetricsRollupViewGenerator extends BaseViewGenerator<MetricsRollupView> {
+  private static final String ROLLUP_WINDOW_CONFIG_KEY = "rollup.window";
+  private static final Duration DEFAULT_ROLLUP_WINDOW = Duration.ofMinutes(1);
+  private static final String ERROR_COUNT_METRIC =
+      EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_ERROR_COUNT);
+  private static final String EXCEPTION_COUNT_METRIC =
+      EnrichedSpanConstants.getValue(ErrorMetrics.ERROR_METRICS_EXCEPTION_COUNT);
+  private static final char ROLLUP_KEY_SEPARATOR = '\u0000';
+
+  private long windowMillis = DEFAULT_ROLLUP_WINDOW.toMillis();
+
+  /** The length of the rollup windows, read from the view config */
+  public static Duration getRollupWindow(Config config) {
+    return config.hasPath(ROLLUP_WINDOW_CONFIG_KEY)
+        ? config.getDuration(ROLLUP_WINDOW_CONFIG_KEY)
+        : DEFAULT_ROLLUP_WINDOW;
+  }
+
+  /** The key of the rows to merge within a window: their tenant, service, api, backend, status */
+  public static String getRollupKey(MetricsRollupView view) {
+    return getRollupKey(
+        view.getTenantId(),
+        view.getServiceId(),
+        view.getApiId(),
+        view.getBackendId(),
+        view.getStatusCode());
+  }
+
+  /** Merges two rows of the same window and key into a new row */
+  public static MetricsRollupView merge(MetricsRollupView view, MetricsRollupView other) {
+    LatencySketch sketch = LatencySketch.fromByteBuffer(view.getDurationSketch());
+    sketch.merge(LatencySketch.fromByteBuffer(other.getDurationSketch()));
+    return MetricsRollupView.newBuilder(view)
+        .setNumCalls(view.getNumCalls() + other.getNumCalls())
+        .setErrorCount(view.getErrorCount() + other.getErrorCount())
+        .setExceptionCount(view.getExceptionCount() + other.getExceptionCount())
+        .setDurationSumMillis(view.getDurationSumMillis() + other.getDurationSumMillis())
+        .setDurationSketch(sketch.toByteBuffer())
+        .build();
+  }
+
+  @Override
+  public void configure(Config config) {
+    super.configure(config);
+    windowMillis = getRollupWindow(config).toMillis();
+  }
+
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.of(TraceIndex.ANCESTRY);
+  }
+
+  @Override
+  List<MetricsRollupView> generateView(
+      StructuredTrace structuredTrace,
+      Map<String, Entity> entityMap,
+      Map<ByteBuffer, Event> eventMap,
+      Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
+      Map<ByteBuffer, ByteBuffer> childToParentEventIds) {
+    Map<String, Rollup> rollups = new LinkedHashMap<>();
+
+    List<ApiNode<Event>> apiNodes =
+        ViewGeneratorState.getApiTraceGraph(structuredTrace).getApiNodeList();
+    for (ApiNode<Event> apiNode : apiNodes) {
+      Event event = apiNode.getHeadEvent();
+      if (EnrichedSpanUtils.containsServiceId(event) && EnrichedSpanUtils.isEntrySpan(event)) {
+        addCall(rollups, structuredTrace, event, event, null, null);
+      }
+    }
+
+    TraceState traceState = ViewGeneratorState.getTraceState(structuredTrace);
+    for (Event event : structuredTrace.getEventList()) {
+      String backendId = EnrichedSpanUtils.getBackendId(event);
+      if (backendId != null) {
+        addCall(
+            rollups,
+            structuredTrace,
+            event,
+            traceState.getApiEntryEvent(event),
+            backendId,
+            EnrichedSpanUtils.getBackendName(event));
+      }
+    }
+
+    List<MetricsRollupView> views = new ArrayList<>(rollups.size());
+    for (Rollup rollup : rollups.values()) {
+      views.add(rollup.builder.setDurationSketch(rollup.sketch.toByteBuffer()).build());
+    }
+    return views;
+  }
+
+  private void addCall(
+      Map<String, Rollup> rollups,
+      StructuredTrace trace,
+      Event event,
+      @Nullable Event apiEntryEvent,
+      @Nullable String backendId,
+      @Nullable String backendName) {
+    long windowStart = Math.floorDiv(event.getStartTimeMillis(), windowMillis) * windowMillis;
+    String serviceId = EnrichedSpanUtils.getServiceId(event);
+    String apiId = apiEntryEvent != null ? EnrichedSpanUtils.getApiId(apiEntryEvent) : null;
+    String statusCode = EnrichedSpanUtils.getStatusCode(event);
+    String key =
+        getRollupKey(
+            String.valueOf(windowStart),
+            trace.getCustomerId(),
+            serviceId,
+            apiId,
+            backendId,
+            statusCode);
+
+    Rollup rollup =
+        rollups.computeIfAbsent(
+            key,
+            k ->
+                new Rollup(
+                    MetricsRollupView.newBuilder()
+                        .setTenantId(trace.getCustomerId())
+                        .setWindowStartMillis(windowStart)
+                        .setWindowEndMillis(windowStart + windowMillis)
+                        .setServiceId(serviceId)
+                        .setServiceName(EnrichedSpanUtils.getServiceName(event))
+                        .setApiId(apiId)
+                        .setApiName(
+                            apiEntryEvent != null
+                                ? EnrichedSpanUtils.getApiName(apiEntryEvent)
+                                : null)
+                        .setBackendId(backendId)
+                        .setBackendName(backendName)
+                        .setStatusCode(statusCode)));
+    long durationMillis = event.getEndTimeMillis() - event.getStartTimeMillis();
+    rollup.builder.setNumCalls(rollup.builder.getNumCalls() + 1);
+    rollup.builder.setErrorCount(
+        rollup.builder.getErrorCount() + (long) getMetricValue(event, ERROR_COUNT_METRIC, 0.0d));
+    rollup.builder.setExceptionCount(
+        rollup.builder.getExceptionCount()
+            + (long) getMetricValue(event, EXCEPTION_COUNT_METRIC, 0.0d));
+    rollup.builder.setDurationSumMillis(rollup.builder.getDurationSumMillis() + durationMillis);
+    rollup.sketch.add(durationMillis);
+  }
+
+  private static String getRollupKey(String... dimensions) {
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < dimensions.length; i++) {
+      if (i > 0) {
+        key.append(ROLLUP_KEY_SEPARATOR);
+      }
+      key.append(Objects.toString(dimensions[i], EMPTY_STRING));
+    }
+    return key.toString();
+  }
+
+  @Override
+  public String getViewName() {
+    return MetricsRollupView.class.getName();
+  }
+
+  @Override
+  public Schema getSchema() {
+    return MetricsRollupView.getClassSchema();
+  }
+
+  @Override
+  public Class<MetricsRollupView> getViewClass() {
+    return MetricsRollupView.class;
+  }
+
+  private static class Rollup {
+    private final MetricsRollupView.Builder builder;
+    private final LatencySketch sketch = new LatencySketch();
+
+    private Rollup(MetricsRollupView.Builder builder) {
+      this.builder = builder;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package org.hypertrace.viewgenerator.generators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.avro.generic.GenericRecord;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
+
+/**
+ * Generates the views of a trace with several view generators concurrently. The trace state and
+ * the api trace graph of the trace are built once, on the calling thread, and shared by all the
+ * generators, which only read the trace. The calling thread generates the first view while the
+ * executor generates the others.
+ */
+public class ParallelViewGenerator {
+  private final List<BaseViewGenerator<? extends GenericRecord>> viewGenerators;
+  private final ExecutorService executor;
+
+  public ParallelViewGenerator(
+      List<BaseViewGenerator<? extends GenericRecord>> viewGenerators, ExecutorService executor) {
+    if (viewGenerators.isEmpty()) {
+      throw new IllegalArgumentException("No view generator to run");
+    }
+    this.viewGenerators = List.copyOf(viewGenerators);
+    this.executor = executor;
+  }
+
+  public List<BaseViewGenerator<? extends GenericRecord>> getViewGenerators() {
+    return viewGenerators;
+  }
+
+  /** The views of the trace, in the order of the view generators */
+  public List<List<? extends GenericRecord>> process(StructuredTrace trace) {
+    BaseViewGenerator.reportArrival(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    ApiTraceGraph apiTraceGraph = ViewGeneratorState.getApiTraceGraph(trace);
+
+    List<Future<List<? extends GenericRecord>>> pendingViews = new ArrayList<>();
+    for (BaseViewGenerator<? extends GenericRecord> viewGenerator :
+        viewGenerators.subList(1, viewGenerators.size())) {
+      pendingViews.add(
+          executor.submit(
+              () -> {
+                ViewGeneratorState.share(traceState, apiTraceGraph);
+                return viewGenerator.generate(trace);
+              }));
+    }
+
+    List<List<? extends GenericRecord>> views = new ArrayList<>(viewGenerators.size());
+    views.add(viewGenerators.get(0).generate(trace));
+    for (Future<List<? extends GenericRecord>> pendingView : pendingViews) {
+      views.add(getView(pendingView));
+    }
+    return views;
+  }
+
+  private List<? extends GenericRecord> getView(Future<List<? extends GenericRecord>> view) {
+    try {
+      return view.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a view generation", e);
+    } catch (ExecutionException e) {
+      // fails the stream thread, as the generation failing on it would
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("View generation failed", e.getCause());
+    }
+  }
+}
@@ -2,8 +2,11 @@ package org.hypertrace.viewgenerator.generators;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.apache.avro.Schema;
 import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
@@ -16,9 +19,15 @@ import org.hypertrace.traceenricher.enrichedspan.constants.v1.ErrorMetrics;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
 import org.hypertrace.viewgenerator.api.RawServiceView;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
 
 public class RawServiceViewGenerator extends BaseViewGenerator<RawServiceView> {
 
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.of(TraceIndex.CHILD_TO_PARENT);
+  }
+
   @Override
   List<RawServiceView> generateView(
       StructuredTrace structuredTrace,
@@ -30,25 +39,26 @@ public class RawServiceViewGenerator extends BaseViewGenerator<RawServiceView> {
 
     // Construct ApiTraceGraph and look at all the head spans within each ApiNode
     ApiTraceGraph apiTraceGraph = ViewGeneratorState.getApiTraceGraph(structuredTrace);
+    TraceState traceState = ViewGeneratorState.getTraceState(structuredTrace);
 
     List<ApiNode<Event>> apiNodes = apiTraceGraph.getApiNodeList();
     for (ApiNode<Event> apiNode : apiNodes) {
       Event event = apiNode.getHeadEvent();
       if (EnrichedSpanUtils.containsServiceId(event)) {
         RawServiceView.Builder builder = RawServiceView.newBuilder();
-        builder.setTenantId(structuredTrace.getCustomerId());
+        builder.setTenantId(traceState.intern(structuredTrace.getCustomerId()));
         builder.setTraceId(structuredTrace.getTraceId());
         builder.setSpanId(event.getEventId());
         builder.setParentSpanId(childToParentEventIds.get(event.getEventId()));
-        builder.setServiceName(EnrichedSpanUtils.getServiceName(event));
+        builder.setServiceName(traceState.getServiceName(event));
         builder.setServiceId(EnrichedSpanUtils.getServiceId(event));
-        builder.setApiName(EnrichedSpanUtils.getApiName(event));
+        builder.setApiName(traceState.getApiName(event));
         builder.setApiId(EnrichedSpanUtils.getApiId(event));
         builder.setApiDiscoveryState(EnrichedSpanUtils.getApiDiscoveryState(event));
         builder.setStartTimeMillis(event.getStartTimeMillis());
         builder.setEndTimeMillis(event.getEndTimeMillis());
         builder.setDurationMillis(event.getEndTimeMillis() - event.getStartTimeMillis());
-        builder.setTransactionName(getTransactionName(structuredTrace));
+        builder.setTransactionName(traceState.getTransactionName());
 
         String spanType = EnrichedSpanUtils.getSpanType(event);
         if (spanType != null) {
@@ -93,9 +103,21 @@ public class RawServiceViewGenerator extends BaseViewGenerator<RawServiceView> {
 
         builder.setSpaceIds(EnrichedSpanUtils.getSpaceIds(event));
 
+        if (isDurationSketchesEnabled()) {
+          builder.setApiNodeDurationSketch(DurationSketches.ofEntrySpans(apiNode.getEvents()));
+        }
+
         list.add(builder.build());
       }
     }
+
+    if (isDurationSketchesEnabled()) {
+      DurationSketches.setPerGroup(
+          list.stream().filter(view -> view.getNumCalls() > 0).collect(Collectors.toList()),
+          view -> new Object[] {view.getServiceId(), view.getApiId()},
+          RawServiceView::getDurationMillis,
+          RawServiceView::setTraceDurationSketch);
+    }
     return list;
   }
 
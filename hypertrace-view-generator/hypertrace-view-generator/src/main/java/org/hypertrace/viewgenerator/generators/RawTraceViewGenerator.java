@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +22,11 @@ import org.hypertrace.viewgenerator.api.RawTraceView;
 
 public class RawTraceViewGenerator extends BaseViewGenerator<RawTraceView> {
 
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.noneOf(TraceIndex.class);
+  }
+
   @Override
   List<RawTraceView> generateView(
       StructuredTrace structuredTrace,
@@ -32,7 +38,8 @@ public class RawTraceViewGenerator extends BaseViewGenerator<RawTraceView> {
     builder.setTenantId(structuredTrace.getCustomerId());
     builder.setTraceId(structuredTrace.getTraceId());
 
-    String transactionName = getTransactionName(structuredTrace);
+    String transactionName =
+        ViewGeneratorState.getTraceState(structuredTrace).getTransactionName();
     if (transactionName != null) {
       builder.setTransactionName(transactionName);
     }
@@ -41,6 +48,7 @@ public class RawTraceViewGenerator extends BaseViewGenerator<RawTraceView> {
     builder.setEndTimeMillis(structuredTrace.getEndTimeMillis());
     builder.setDurationMillis(
         structuredTrace.getEndTimeMillis() - structuredTrace.getStartTimeMillis());
+    // a single scan of the events, with no index of the trace
     Set<String> services = new HashSet<>();
     for (Event event : structuredTrace.getEventList()) {
       String serviceName = EnrichedSpanUtils.getServiceName(event);
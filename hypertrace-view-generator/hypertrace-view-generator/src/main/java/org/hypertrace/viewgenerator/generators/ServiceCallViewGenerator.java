@@ -2,8 +2,10 @@ package org.hypertrace.viewgenerator.generators;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.avro.Schema;
 import org.apache.commons.lang3.StringUtils;
@@ -12,7 +14,6 @@ import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.core.datamodel.shared.HexUtils;
-import org.hypertrace.core.datamodel.shared.SpanAttributeUtils;
 import org.hypertrace.entity.constants.v1.BackendAttribute;
 import org.hypertrace.entity.service.constants.EntityConstants;
 import org.hypertrace.semantic.convention.utils.http.HttpSemanticConventionUtils;
@@ -22,6 +23,7 @@ import org.hypertrace.traceenricher.enrichedspan.constants.v1.ErrorMetrics;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
 import org.hypertrace.viewgenerator.api.ServiceCallView;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +54,11 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
     return ServiceCallView.class;
   }
 
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.of(TraceIndex.ANCESTRY);
+  }
+
   @Override
   List<ServiceCallView> generateView(
       StructuredTrace structuredTrace,
@@ -73,7 +80,25 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
 
     // Scenario #4: Handle non entry roots
     createEdgeFromNonRootEntryEvent(
-        apiTraceGraph, structuredTrace, eventMap, childToParentEventId, serviceCallViewRecords);
+        apiTraceGraph,
+        structuredTrace,
+        ViewGeneratorState.getTraceState(structuredTrace),
+        serviceCallViewRecords);
+
+    if (isDurationSketchesEnabled()) {
+      DurationSketches.setPerGroup(
+          serviceCallViewRecords,
+          view ->
+              new Object[] {
+                view.getCallerServiceIdStr(),
+                view.getCallerApiIdStr(),
+                view.getCalleeServiceIdStr(),
+                view.getCalleeApiIdStr(),
+                view.getCalleeBackendId()
+              },
+          ServiceCallView::getDurationMillis,
+          ServiceCallView::setTraceDurationSketch);
+    }
 
     if (LOG.isTraceEnabled()) {
       LOG.trace(
@@ -111,7 +136,8 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
    */
   private ServiceCallView createGenericRecordFromApiNodeEdge(
       StructuredTrace trace, Event source, Event target) {
-    ServiceCallView.Builder builder = createAndInitializeBuilder(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    ServiceCallView.Builder builder = createAndInitializeBuilder(traceState);
 
     // Edge exception count = source exception count + target exception count
     int exceptionCount =
@@ -139,10 +165,10 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
 
     Protocol protocol = EnrichedSpanUtils.getProtocol(target);
     // Set the server side attributes.
-    buildEntrySpanView(target, builder, protocol);
+    buildEntrySpanView(traceState, target, builder, protocol);
     buildCommonServiceCallView(target, builder, exceptionCount, errorCount);
     // Set the client side attributes
-    buildExitSpanView(source, builder);
+    buildExitSpanView(traceState, source, builder);
 
     return builder.build();
   }
@@ -152,16 +178,19 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
    * view.
    */
   private void buildEntrySpanView(
-      Event event, ServiceCallView.Builder builder, @Nullable Protocol protocol) {
+      TraceState traceState,
+      Event event,
+      ServiceCallView.Builder builder,
+      @Nullable Protocol protocol) {
     builder.setServerEventId(event.getEventId());
-    builder.setCalleeService(EnrichedSpanUtils.getServiceName(event));
+    builder.setCalleeService(traceState.getServiceName(event));
     builder.setCalleeSpaceIds(EnrichedSpanUtils.getSpaceIds(event));
     String serviceId = EnrichedSpanUtils.getServiceId(event);
     if (serviceId != null) {
       builder.setCalleeServiceIdStr(serviceId);
     }
 
-    builder.setCalleeApi(EnrichedSpanUtils.getApiName(event));
+    builder.setCalleeApi(traceState.getApiName(event));
     builder.setCalleeApiIdStr(EnrichedSpanUtils.getApiId(event));
 
     if (protocol != null) {
@@ -207,8 +236,9 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
     builder.setDurationMillis(event.getEndTimeMillis() - event.getStartTimeMillis());
   }
 
-  private void buildExitSpanView(Event event, ServiceCallView.Builder builder) {
-    builder.setCallerService(EnrichedSpanUtils.getServiceName(event));
+  private void buildExitSpanView(
+      TraceState traceState, Event event, ServiceCallView.Builder builder) {
+    builder.setCallerService(traceState.getServiceName(event));
     builder.setCallerSpaceIds(EnrichedSpanUtils.getSpaceIds(event));
     String serviceId = EnrichedSpanUtils.getServiceId(event);
     if (serviceId != null) {
@@ -217,7 +247,7 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
 
     builder.setClientEventId(event.getEventId());
 
-    builder.setCallerApi(EnrichedSpanUtils.getApiName(event));
+    builder.setCallerApi(traceState.getApiName(event));
     builder.setCallerApiIdStr(EnrichedSpanUtils.getApiId(event));
   }
 
@@ -250,11 +280,12 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
   }
 
   private ServiceCallView getServiceCallFromSingleEntryEvent(StructuredTrace trace, Event event) {
-    ServiceCallView.Builder builder = createAndInitializeBuilder(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    ServiceCallView.Builder builder = createAndInitializeBuilder(traceState);
     buildCommonServiceCallView(event, builder);
 
     Protocol protocol = EnrichedSpanUtils.getProtocol(event);
-    buildEntrySpanView(event, builder, protocol);
+    buildEntrySpanView(traceState, event, builder, protocol);
 
     return builder.build();
   }
@@ -278,11 +309,12 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
   }
 
   private ServiceCallView getServiceCallFromSingleExitEvent(StructuredTrace trace, Event event) {
-    ServiceCallView.Builder builder = createAndInitializeBuilder(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    ServiceCallView.Builder builder = createAndInitializeBuilder(traceState);
     buildCommonServiceCallView(event, builder);
 
     Protocol protocol = EnrichedSpanUtils.getProtocol(event);
-    buildExitSpanView(event, builder);
+    buildExitSpanView(traceState, event, builder);
 
     // If the call was made into a backend, populate Backend specific data on the view.
     if (event
@@ -350,13 +382,12 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
   void createEdgeFromNonRootEntryEvent(
       ApiTraceGraph apiTraceGraph,
       StructuredTrace structuredTrace,
-      Map<ByteBuffer, Event> eventMap,
-      Map<ByteBuffer, ByteBuffer> childToParentEventId,
+      TraceState traceState,
       List<ServiceCallView> serviceCallViewRecords) {
     apiTraceGraph.getApiNodeList().stream()
         .filter(apiNode -> apiNode.getEntryApiBoundaryEvent().isEmpty()) // No entry api boundary
         .flatMap(apiNode -> apiNode.getExitApiBoundaryEvents().stream())
-        .map(exitEvent -> getRootAncestor(exitEvent, childToParentEventId, eventMap))
+        .map(traceState::getRootAncestor)
         .distinct() // Make sure that we create a record for each root that makes multiple
         // exits. We don't want to double count root span calls.
         .filter(
@@ -371,31 +402,15 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
                     createViewForNonEntryRootSpan(structuredTrace, rootEvent)));
   }
 
-  private Event getRootAncestor(
-      Event descendant,
-      final Map<ByteBuffer, ByteBuffer> childToParentEventId,
-      final Map<ByteBuffer, Event> eventMap) {
-    Event rootAncestor = descendant;
-    while (rootAncestor != null) {
-      Event parentSpan =
-          SpanAttributeUtils.getParentSpan(rootAncestor, childToParentEventId, eventMap);
-      if (parentSpan == null) {
-        break;
-      }
-      rootAncestor = parentSpan;
-    }
-
-    return rootAncestor;
-  }
-
   private ServiceCallView createViewForNonEntryRootSpan(StructuredTrace trace, Event event) {
-    ServiceCallView.Builder builder = createAndInitializeBuilder(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    ServiceCallView.Builder builder = createAndInitializeBuilder(traceState);
     Protocol protocol = EnrichedSpanUtils.getProtocol(event);
     buildCommonServiceCallView(event, builder);
 
     builder.setServerEventId(event.getEventId());
     builder.setCalleeSpaceIds(EnrichedSpanUtils.getSpaceIds(event));
-    builder.setCalleeService(EnrichedSpanUtils.getServiceName(event));
+    builder.setCalleeService(traceState.getServiceName(event));
     String serviceId = EnrichedSpanUtils.getServiceId(event);
     if (serviceId != null) {
       builder.setCalleeServiceIdStr(serviceId);
@@ -415,17 +430,18 @@ public class ServiceCallViewGenerator extends BaseViewGenerator<ServiceCallView>
     return builder.build();
   }
 
-  private ServiceCallView.Builder createAndInitializeBuilder(StructuredTrace trace) {
+  private ServiceCallView.Builder createAndInitializeBuilder(TraceState traceState) {
     ServiceCallView.Builder builder = ServiceCallView.newBuilder();
-    addTraceCommonAttributes(trace, builder);
+    addTraceCommonAttributes(traceState, builder);
 
     return builder;
   }
 
-  private void addTraceCommonAttributes(StructuredTrace trace, ServiceCallView.Builder builder) {
-    builder.setTenantId(trace.getCustomerId());
+  private void addTraceCommonAttributes(TraceState traceState, ServiceCallView.Builder builder) {
+    StructuredTrace trace = traceState.getTrace();
+    builder.setTenantId(traceState.intern(trace.getCustomerId()));
     builder.setTraceId(trace.getTraceId());
-    builder.setTransactionName(getTransactionName(trace));
+    builder.setTransactionName(traceState.getTransactionName());
   }
 
   /**
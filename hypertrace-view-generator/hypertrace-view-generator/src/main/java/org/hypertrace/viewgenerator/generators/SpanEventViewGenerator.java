@@ -3,9 +3,10 @@ package org.hypertrace.viewgenerator.generators;
 import static org.hypertrace.core.datamodel.shared.SpanAttributeUtils.getStringAttribute;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.avro.Schema;
 import org.hypertrace.core.datamodel.Entity;
@@ -21,6 +22,7 @@ import org.hypertrace.traceenricher.enrichedspan.constants.v1.CommonAttribute;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.ErrorMetrics;
 import org.hypertrace.traceenricher.enrichedspan.constants.v1.Protocol;
 import org.hypertrace.viewgenerator.api.SpanEventView;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
 
 public class SpanEventViewGenerator extends BaseViewGenerator<SpanEventView> {
 
@@ -45,6 +47,11 @@ public class SpanEventViewGenerator extends BaseViewGenerator<SpanEventView> {
     return SpanEventView.class;
   }
 
+  @Override
+  Set<TraceIndex> getTraceIndexes() {
+    return EnumSet.of(TraceIndex.CHILD_TO_PARENT, TraceIndex.ANCESTRY, TraceIndex.EXIT_CALLEES);
+  }
+
   @Override
   List<SpanEventView> generateView(
       StructuredTrace structuredTrace,
@@ -52,92 +59,32 @@ public class SpanEventViewGenerator extends BaseViewGenerator<SpanEventView> {
       Map<ByteBuffer, Event> eventMap,
       Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
       Map<ByteBuffer, ByteBuffer> childToParentEventIds) {
-    Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpanMap =
-        getExitSpanToCalleeApiEntrySpanMap(
-            structuredTrace.getEventList(),
-            childToParentEventIds,
-            parentToChildrenEventIds,
-            eventMap);
+    TraceState traceState = ViewGeneratorState.getTraceState(structuredTrace);
 
     return structuredTrace.getEventList().stream()
         .map(
             event ->
                 generateViewBuilder(
-                        event,
-                        structuredTrace.getTraceId(),
-                        eventMap,
-                        childToParentEventIds,
-                        exitSpanToCalleeApiEntrySpanMap)
+                        event, structuredTrace.getTraceId(), childToParentEventIds, traceState)
                     .build())
         .collect(Collectors.toList());
   }
 
-  Map<ByteBuffer, Event> getExitSpanToCalleeApiEntrySpanMap(
-      List<Event> spans,
-      Map<ByteBuffer, ByteBuffer> childToParentEventIds,
-      Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
-      Map<ByteBuffer, Event> idToEvent) {
-    Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpanMap = new HashMap<>();
-
-    spans.stream()
-        .filter(EnrichedSpanUtils::isExitApiBoundary) // Only consider Boundary Exit spans
-        .forEach(
-            span -> {
-              Event apiEntrySpanForExitSpan =
-                  getApiEntrySpanForExitSpan(span, parentToChildrenEventIds, idToEvent);
-              // We want to map each exit span in the ancestral path of the exit api boundary span
-              // to the apiEntrySpanForExitSpan.
-              // So we walk back the path until we hit an entry span or there are no more ancestors
-              // in the path.
-              Event currentSpan = span;
-              while (currentSpan != null && !EnrichedSpanUtils.isEntrySpan(currentSpan)) {
-                if (EnrichedSpanUtils.isExitSpan(
-                    currentSpan)) { // Skip internal spans and just map the exit spans.
-                  exitSpanToCalleeApiEntrySpanMap.put(
-                      currentSpan.getEventId(), apiEntrySpanForExitSpan);
-                }
-                currentSpan =
-                    SpanAttributeUtils.getParentSpan(currentSpan, childToParentEventIds, idToEvent);
-              }
-            });
-
-    return exitSpanToCalleeApiEntrySpanMap;
-  }
-
-  private Event getApiEntrySpanForExitSpan(
-      Event exitSpan,
-      Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
-      Map<ByteBuffer, Event> idToEvent) {
-    List<ByteBuffer> children = parentToChildrenEventIds.get(exitSpan.getEventId());
-    if (children == null) {
-      return null;
-    }
-
-    return children.stream()
-        .map(idToEvent::get)
-        .filter(
-            EnrichedSpanUtils
-                ::isEntryApiBoundary) // TODO: Should we just check if span is ENTRY span
-        .findFirst()
-        .orElse(null);
-  }
-
   private SpanEventView.Builder generateViewBuilder(
       Event event,
       ByteBuffer traceId,
-      Map<ByteBuffer, Event> eventMap,
       Map<ByteBuffer, ByteBuffer> childToParentEventIds,
-      Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpanMap) {
+      TraceState traceState) {
 
     SpanEventView.Builder builder = SpanEventView.newBuilder();
 
-    builder.setTenantId(event.getCustomerId());
+    builder.setTenantId(traceState.intern(event.getCustomerId()));
     builder.setSpanId(event.getEventId());
     builder.setEventName(event.getEventName());
 
     // api_trace_id
-    ByteBuffer apiEntrySpanId =
-        EnrichedSpanUtils.getApiEntrySpanId(event, eventMap, childToParentEventIds);
+    Event entryApiSpan = traceState.getApiEntryEvent(event);
+    ByteBuffer apiEntrySpanId = entryApiSpan == null ? null : entryApiSpan.getEventId();
 
     builder.setApiTraceId(apiEntrySpanId);
     if (event.getEventId().equals(apiEntrySpanId)) {
@@ -173,20 +120,21 @@ public class SpanEventViewGenerator extends BaseViewGenerator<SpanEventView> {
 
     // service_id, service_name
     builder.setServiceId(EnrichedSpanUtils.getServiceId(event));
-    builder.setServiceName(EnrichedSpanUtils.getServiceName(event));
+    builder.setServiceName(traceState.getServiceName(event));
 
     // api_id, api_name, api_discovery_state
     builder.setApiId(EnrichedSpanUtils.getApiId(event));
-    builder.setApiName(EnrichedSpanUtils.getApiName(event));
+    builder.setApiName(traceState.getApiName(event));
     builder.setApiDiscoveryState(EnrichedSpanUtils.getApiDiscoveryState(event));
 
     // entry_api_id
-    Event entryApiSpan = EnrichedSpanUtils.getApiEntrySpan(event, eventMap, childToParentEventIds);
     if (entryApiSpan != null) {
       builder.setEntryApiId(EnrichedSpanUtils.getApiId(entryApiSpan));
     }
 
     // display entity and span names
+    Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpanMap =
+        traceState.getExitSpanToCalleeApiEntrySpanMap();
     builder.setDisplayEntityName(getDisplayEntityName(event, exitSpanToCalleeApiEntrySpanMap));
     builder.setDisplaySpanName(getDisplaySpanName(event, exitSpanToCalleeApiEntrySpanMap));
 
@@ -200,7 +148,7 @@ public class SpanEventViewGenerator extends BaseViewGenerator<SpanEventView> {
       builder.setProtocolName(EnrichedSpanConstants.getValue(protocol));
     }
 
-    builder.setTags(getAttributeMap(event.getAttributes()));
+    builder.setTags(getTags(event.getCustomerId(), event.getAttributes()));
 
     // request_url
     builder.setRequestUrl(getRequestUrl(event, protocol));
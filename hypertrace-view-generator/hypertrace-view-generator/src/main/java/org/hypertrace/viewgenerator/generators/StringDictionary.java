@@ -0,0 +1,28 @@
+package org.hypertrace.viewgenerator.generators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Dictionary of the names repeated on the view rows of a trace, with their UTF-8 encoding. The
+ * tenant, service, api and transaction names are looked up through it as the rows are built, so
+ * that all the rows of a trace share a single instance of each distinct name, and the serializer
+ * of the rows encodes each of them once per trace instead of once per row. The views of a trace
+ * can be generated concurrently, hence the concurrent map.
+ */
+class StringDictionary {
+  // each encoding keeps the instance of the string it was created from
+  private final ConcurrentMap<String, Utf8> encodings = new ConcurrentHashMap<>();
+
+  @Nullable
+  String intern(@Nullable String value) {
+    return value == null ? null : encodings.computeIfAbsent(value, Utf8::new).toString();
+  }
+
+  @Nullable
+  Utf8 getEncoding(String value) {
+    return encodings.get(value);
+  }
+}
@@ -0,0 +1,162 @@
+package org.hypertrace.viewgenerator.generators;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import io.micrometer.core.instrument.Counter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.hypertrace.core.datamodel.AttributeValue;
+import org.hypertrace.core.datamodel.Attributes;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Projection of the attributes of a span onto the tags of its view rows. The rules of a view are
+ * compiled once from its config: tags can be restricted to allowed keys and key prefixes, denied
+ * by keys and key prefixes, their values truncated and their count capped. Tenants can override
+ * any of the rules of the view. The approximate bytes dropped by the projection are reported per
+ * tenant.
+ */
+class TagProjection {
+  static final TagProjection KEEP_ALL = new TagProjection(Rules.KEEP_ALL, Map.of(), null);
+
+  private static final String TENANTS_CONFIG_KEY = "tenants";
+  private static final String DROPPED_BYTES_COUNTER = "hypertrace.viewgen.tags.dropped.bytes";
+
+  private final Rules defaultRules;
+  private final Map<String, Rules> tenantRules;
+  private final String viewName;
+  private final ConcurrentMap<String, Counter> tenantToDroppedBytesCounter =
+      new ConcurrentHashMap<>();
+
+  private TagProjection(Rules defaultRules, Map<String, Rules> tenantRules, String viewName) {
+    this.defaultRules = defaultRules;
+    this.tenantRules = tenantRules;
+    this.viewName = viewName;
+  }
+
+  static TagProjection from(Config config, String viewName) {
+    Config defaultConfig = config.withoutPath(TENANTS_CONFIG_KEY);
+    Map<String, Rules> tenantRules = new HashMap<>();
+    if (config.hasPath(TENANTS_CONFIG_KEY)) {
+      Config tenantsConfig = config.getConfig(TENANTS_CONFIG_KEY);
+      for (String tenantId : tenantsConfig.root().keySet()) {
+        tenantRules.put(
+            tenantId,
+            Rules.from(
+                tenantsConfig
+                    .getConfig(ConfigUtil.joinPath(tenantId))
+                    .withFallback(defaultConfig)));
+      }
+    }
+    return new TagProjection(Rules.from(defaultConfig), tenantRules, viewName);
+  }
+
+  /** The tags of the given span attributes kept by the rules of the tenant */
+  Map<String, String> project(String tenantId, Attributes attributes) {
+    Map<String, String> tags = new HashMap<>();
+    if (attributes == null || attributes.getAttributeMap() == null) {
+      return tags;
+    }
+    Rules rules = tenantRules.getOrDefault(tenantId, defaultRules);
+    long droppedBytes = 0;
+    for (Map.Entry<String, AttributeValue> entry : attributes.getAttributeMap().entrySet()) {
+      String key = entry.getKey();
+      String value = entry.getValue().getValue();
+      if (tags.size() >= rules.maxTagCount || !rules.isKept(key)) {
+        droppedBytes += key.length() + (value == null ? 0 : value.length());
+        continue;
+      }
+      if (value != null && value.length() > rules.maxValueLength) {
+        droppedBytes += value.length() - rules.maxValueLength;
+        value = value.substring(0, rules.maxValueLength);
+      }
+      tags.put(key, value);
+    }
+    if (droppedBytes > 0) {
+      tenantToDroppedBytesCounter
+          .computeIfAbsent(
+              tenantId,
+              k ->
+                  PlatformMetricsRegistry.registerCounter(
+                      DROPPED_BYTES_COUNTER, Map.of("tenantId", k, "view", viewName)))
+          .increment(droppedBytes);
+    }
+    return tags;
+  }
+
+  private static class Rules {
+    private static final String ALLOW_KEYS_CONFIG_KEY = "allow.keys";
+    private static final String ALLOW_PREFIXES_CONFIG_KEY = "allow.prefixes";
+    private static final String DENY_KEYS_CONFIG_KEY = "deny.keys";
+    private static final String DENY_PREFIXES_CONFIG_KEY = "deny.prefixes";
+    private static final String MAX_VALUE_LENGTH_CONFIG_KEY = "max.value.length";
+    private static final String MAX_TAG_COUNT_CONFIG_KEY = "max.tag.count";
+    private static final Rules KEEP_ALL =
+        new Rules(Set.of(), List.of(), Set.of(), List.of(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final Set<String> allowedKeys;
+    private final List<String> allowedPrefixes;
+    private final Set<String> deniedKeys;
+    private final List<String> deniedPrefixes;
+    private final int maxValueLength;
+    private final int maxTagCount;
+
+    private Rules(
+        Set<String> allowedKeys,
+        List<String> allowedPrefixes,
+        Set<String> deniedKeys,
+        List<String> deniedPrefixes,
+        int maxValueLength,
+        int maxTagCount) {
+      this.allowedKeys = allowedKeys;
+      this.allowedPrefixes = allowedPrefixes;
+      this.deniedKeys = deniedKeys;
+      this.deniedPrefixes = deniedPrefixes;
+      this.maxValueLength = maxValueLength;
+      this.maxTagCount = maxTagCount;
+    }
+
+    private static Rules from(Config config) {
+      return new Rules(
+          new HashSet<>(getStringList(config, ALLOW_KEYS_CONFIG_KEY)),
+          getStringList(config, ALLOW_PREFIXES_CONFIG_KEY),
+          new HashSet<>(getStringList(config, DENY_KEYS_CONFIG_KEY)),
+          getStringList(config, DENY_PREFIXES_CONFIG_KEY),
+          config.hasPath(MAX_VALUE_LENGTH_CONFIG_KEY)
+              ? config.getInt(MAX_VALUE_LENGTH_CONFIG_KEY)
+              : Integer.MAX_VALUE,
+          config.hasPath(MAX_TAG_COUNT_CONFIG_KEY)
+              ? config.getInt(MAX_TAG_COUNT_CONFIG_KEY)
+              : Integer.MAX_VALUE);
+    }
+
+    private static List<String> getStringList(Config config, String path) {
+      return config.hasPath(path) ? config.getStringList(path) : List.of();
+    }
+
+    /** Denied keys and prefixes take precedence, and all the others are kept unless restricted */
+    private boolean isKept(String key) {
+      if (deniedKeys.contains(key) || hasAnyPrefix(key, deniedPrefixes)) {
+        return false;
+      }
+      if (allowedKeys.isEmpty() && allowedPrefixes.isEmpty()) {
+        return true;
+      }
+      return allowedKeys.contains(key) || hasAnyPrefix(key, allowedPrefixes);
+    }
+
+    private static boolean hasAnyPrefix(String key, List<String> prefixes) {
+      for (String prefix : prefixes) {
+        if (key.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.hypertrace.viewgenerator.generators;
+
+/** The indexes of a trace a view generator can declare it needs, see {@link BaseViewGenerator} */
+enum TraceIndex {
+  /** Entities by entity id */
+  ENTITIES,
+  /** Events by event id */
+  EVENTS,
+  /** Ids of the children of each event, by event id */
+  PARENT_TO_CHILDREN,
+  /** Id of the parent of each event, by event id */
+  CHILD_TO_PARENT,
+  /**
+   * Api entry span, root ancestor and depth of each event, see {@link
+   * ViewGeneratorState.TraceState#getApiEntryEvent}. Builds the events and child to parent indexes
+   */
+  ANCESTRY,
+  /**
+   * Api entry span called by each exit span, see {@link
+   * ViewGeneratorState.TraceState#getExitSpanToCalleeApiEntrySpanMap}. Builds the ancestry and
+   * parent to children indexes
+   */
+  EXIT_CALLEES
+}
@@ -2,14 +2,23 @@ package org.hypertrace.viewgenerator.generators;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.avro.util.Utf8;
 import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.EventRef;
 import org.hypertrace.core.datamodel.EventRefType;
 import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.traceenricher.enrichedspan.constants.EnrichedSpanConstants;
+import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
+import org.hypertrace.traceenricher.enrichedspan.constants.v1.BoundaryTypeValue;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
 
 public class ViewGeneratorState {
@@ -33,63 +42,334 @@ public class ViewGeneratorState {
     return traceStateThreadLocal.get();
   }
 
+  /**
+   * Makes the calling thread use the trace state and api trace graph built by another thread for
+   * the same trace, instead of building its own. Both are only read once built.
+   */
+  public static void share(TraceState traceState, ApiTraceGraph apiTraceGraph) {
+    traceStateThreadLocal.set(traceState);
+    apiTraceGraphThreadLocal.set(apiTraceGraph);
+  }
+
   private static boolean isDifferentTrace(StructuredTrace cached, StructuredTrace trace) {
     return cached != trace;
   }
 
+  /**
+   * The indexes of a trace the view generators use. Each index is built on its first use, so that
+   * the generators which only need a few of them, or none, don't pay for the others.
+   */
   public static class TraceState {
     private final StructuredTrace trace;
-    private final Map<String, Entity> entityMap = new HashMap<>();
-    private final Map<ByteBuffer, Event> eventMap = new HashMap<>();
-    private final Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds = new HashMap<>();
-    private final Map<ByteBuffer, ByteBuffer> childToParentEventIds = new HashMap<>();
+    private final StringDictionary stringDictionary = new StringDictionary();
+    private final Map<String, String> serviceNamesByServiceId = new ConcurrentHashMap<>();
+    private final Map<String, String> apiNamesByApiId = new ConcurrentHashMap<>();
+    @Nullable private final String transactionName;
+    private Map<String, Entity> entityMap;
+    private Map<ByteBuffer, Event> eventMap;
+    private Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds;
+    private Map<ByteBuffer, ByteBuffer> childToParentEventIds;
+    private Ancestry ancestry;
+    private Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpan;
 
     public TraceState(StructuredTrace trace) {
       this.trace = trace;
-      for (Entity entity : trace.getEntityList()) {
-        entityMap.put(entity.getEntityId(), entity);
-      }
-      for (Event event : trace.getEventList()) {
-        eventMap.put(event.getEventId(), event);
-      }
-
-      for (Event event : trace.getEventList()) {
-        ByteBuffer childEventId = event.getEventId();
-        List<EventRef> eventRefs = eventMap.get(childEventId).getEventRefList();
-        if (eventRefs != null) {
-          eventRefs.stream()
-              .filter(eventRef -> EventRefType.CHILD_OF == eventRef.getRefType())
-              .forEach(
-                  eventRef -> {
-                    ByteBuffer parentEventId = eventRef.getEventId();
-                    parentToChildrenEventIds
-                        .computeIfAbsent(parentEventId, v -> new ArrayList<>())
-                        .add(childEventId);
-                    childToParentEventIds.put(childEventId, parentEventId);
-                  });
-        }
-        // expected only 1 childOf relationship
-      }
+      this.transactionName = stringDictionary.intern(BaseViewGenerator.getTransactionName(trace));
     }
 
     public StructuredTrace getTrace() {
       return trace;
     }
 
-    public Map<String, Entity> getEntityMap() {
+    public synchronized Map<String, Entity> getEntityMap() {
+      if (entityMap == null) {
+        entityMap = new HashMap<>();
+        for (Entity entity : trace.getEntityList()) {
+          entityMap.put(entity.getEntityId(), entity);
+        }
+      }
       return entityMap;
     }
 
-    public Map<ByteBuffer, Event> getEventMap() {
+    public synchronized Map<ByteBuffer, Event> getEventMap() {
+      if (eventMap == null) {
+        eventMap = new HashMap<>();
+        for (Event event : trace.getEventList()) {
+          eventMap.put(event.getEventId(), event);
+        }
+      }
       return eventMap;
     }
 
-    public Map<ByteBuffer, List<ByteBuffer>> getParentToChildrenEventIds() {
+    public synchronized Map<ByteBuffer, List<ByteBuffer>> getParentToChildrenEventIds() {
+      if (parentToChildrenEventIds == null) {
+        this.indexEventRefs();
+      }
       return parentToChildrenEventIds;
     }
 
-    public Map<ByteBuffer, ByteBuffer> getChildToParentEventIds() {
+    public synchronized Map<ByteBuffer, ByteBuffer> getChildToParentEventIds() {
+      if (childToParentEventIds == null) {
+        this.indexEventRefs();
+      }
       return childToParentEventIds;
     }
+
+    @Nullable
+    public String getTransactionName() {
+      return transactionName;
+    }
+
+    /** The instance of the string shared by all the view rows of the trace */
+    @Nullable
+    public String intern(@Nullable String value) {
+      return stringDictionary.intern(value);
+    }
+
+    /**
+     * The UTF-8 encoding of a string of the view rows of the trace, null if it is not one of the
+     * names they share
+     */
+    @Nullable
+    public Utf8 getEncoding(String value) {
+      return stringDictionary.getEncoding(value);
+    }
+
+    /**
+     * The service name of the event, as shared by all the view rows of the trace. Looked up once
+     * per service of the trace.
+     */
+    @Nullable
+    public String getServiceName(Event event) {
+      return this.getEntityName(
+          serviceNamesByServiceId,
+          EnrichedSpanUtils.getServiceId(event),
+          event,
+          EnrichedSpanUtils::getServiceName);
+    }
+
+    /**
+     * The api name of the event, as shared by all the view rows of the trace. Looked up once per
+     * api of the trace.
+     */
+    @Nullable
+    public String getApiName(Event event) {
+      return this.getEntityName(
+          apiNamesByApiId, EnrichedSpanUtils.getApiId(event), event, EnrichedSpanUtils::getApiName);
+    }
+
+    @Nullable
+    private String getEntityName(
+        Map<String, String> namesByEntityId,
+        @Nullable String entityId,
+        Event event,
+        Function<Event, String> nameLookup) {
+      if (entityId == null) {
+        return stringDictionary.intern(nameLookup.apply(event));
+      }
+      return namesByEntityId.computeIfAbsent(
+          entityId, id -> stringDictionary.intern(nameLookup.apply(event)));
+    }
+
+    /** The api entry span of the event, the event itself if it is one, null if it has none */
+    @Nullable
+    public Event getApiEntryEvent(Event event) {
+      Integer index = this.getAncestry().eventIndexes.get(event);
+      return index == null
+          ? EnrichedSpanUtils.getApiEntrySpan(
+              event, this.getEventMap(), this.getChildToParentEventIds())
+          : this.getAncestry().apiEntryEvents[index];
+    }
+
+    /** The root of the ancestors of the event, the event itself if it has no parent in the trace */
+    public Event getRootAncestor(Event event) {
+      Integer index = this.getAncestry().eventIndexes.get(event);
+      if (index != null) {
+        return this.getAncestry().rootAncestors[index];
+      }
+      Event parent =
+          this.getEventMap().get(this.getChildToParentEventIds().get(event.getEventId()));
+      return parent == null ? event : this.getRootAncestor(parent);
+    }
+
+    /** The number of ancestors of the event within the trace */
+    public int getDepth(Event event) {
+      Integer index = this.getAncestry().eventIndexes.get(event);
+      return index == null ? 0 : this.getAncestry().depths[index];
+    }
+
+    /**
+     * The api entry span called by each exit span, by exit span id. The exit spans in the ancestral
+     * path of an exit api boundary span, up to the closest entry span, map to the api entry span
+     * called by the exit api boundary span.
+     */
+    public synchronized Map<ByteBuffer, Event> getExitSpanToCalleeApiEntrySpanMap() {
+      if (exitSpanToCalleeApiEntrySpan == null) {
+        exitSpanToCalleeApiEntrySpan =
+            Collections.unmodifiableMap(
+                this.getAncestry()
+                    .mapExitSpansToCalleeApiEntrySpans(
+                        this.getEventMap(), this.getParentToChildrenEventIds()));
+      }
+      return exitSpanToCalleeApiEntrySpan;
+    }
+
+    /** Builds the ancestry of the events, if no view generator of the trace built it already */
+    void buildAncestry() {
+      this.getAncestry();
+    }
+
+    private synchronized Ancestry getAncestry() {
+      if (ancestry == null) {
+        ancestry = new Ancestry(trace.getEventList(), this.getEventMap(), this);
+      }
+      return ancestry;
+    }
+
+    // expected only 1 childOf relationship per event
+    private void indexEventRefs() {
+      parentToChildrenEventIds = new HashMap<>();
+      childToParentEventIds = new HashMap<>();
+      for (Event event : trace.getEventList()) {
+        List<EventRef> eventRefs = event.getEventRefList();
+        if (eventRefs == null) {
+          continue;
+        }
+        ByteBuffer childEventId = event.getEventId();
+        for (EventRef eventRef : eventRefs) {
+          if (EventRefType.CHILD_OF == eventRef.getRefType()) {
+            ByteBuffer parentEventId = eventRef.getEventId();
+            parentToChildrenEventIds
+                .computeIfAbsent(parentEventId, v -> new ArrayList<>())
+                .add(childEventId);
+            childToParentEventIds.put(childEventId, parentEventId);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Ancestry of every event of a trace, computed in a single pass over the events: each event
+   * takes the api entry span, root and depth of its parent unless it is an api entry span or a
+   * root, and each parent is resolved once for all its descendants. The trace spans quadratic
+   * parent chain walks that way, however deep its call chains.
+   */
+  private static class Ancestry {
+    private static final int NO_PARENT = -1;
+    private static final String ENTRY_BOUNDARY_TYPE =
+        EnrichedSpanConstants.getValue(BoundaryTypeValue.BOUNDARY_TYPE_VALUE_ENTRY);
+
+    private final List<Event> events;
+    private final Map<Event, Integer> eventIndexes;
+    private final int[] parents;
+    private final Event[] apiEntryEvents;
+    private final Event[] rootAncestors;
+    private final int[] depths;
+
+    private Ancestry(List<Event> events, Map<ByteBuffer, Event> eventMap, TraceState traceState) {
+      this.events = events;
+      int eventCount = events.size();
+      this.eventIndexes = new IdentityHashMap<>(eventCount);
+      for (int i = 0; i < eventCount; i++) {
+        eventIndexes.put(events.get(i), i);
+      }
+      this.parents = new int[eventCount];
+      for (int i = 0; i < eventCount; i++) {
+        Event parent =
+            eventMap.get(traceState.getChildToParentEventIds().get(events.get(i).getEventId()));
+        Integer parentIndex = parent == null ? null : eventIndexes.get(parent);
+        parents[i] = parentIndex == null ? NO_PARENT : parentIndex;
+      }
+      this.apiEntryEvents = new Event[eventCount];
+      this.rootAncestors = new Event[eventCount];
+      this.depths = new int[eventCount];
+      this.resolveAncestors();
+    }
+
+    private void resolveAncestors() {
+      boolean[] resolved = new boolean[events.size()];
+      boolean[] onPath = new boolean[events.size()];
+      int[] path = new int[events.size()];
+      for (int i = 0; i < events.size(); i++) {
+        // climb up to the first resolved ancestor, then resolve the path top down
+        int pathLength = 0;
+        int current = i;
+        while (current != NO_PARENT && !resolved[current] && !onPath[current]) {
+          onPath[current] = true;
+          path[pathLength++] = current;
+          current = parents[current];
+        }
+        // a parent cycle is broken at its top most event
+        boolean cycle = current != NO_PARENT && onPath[current];
+        for (int j = pathLength - 1; j >= 0; j--) {
+          int index = path[j];
+          int parent = cycle && j == pathLength - 1 ? NO_PARENT : parents[index];
+          Event event = events.get(index);
+          boolean isApiEntry =
+              ENTRY_BOUNDARY_TYPE.equals(EnrichedSpanUtils.getApiBoundaryType(event));
+          if (parent == NO_PARENT) {
+            apiEntryEvents[index] = isApiEntry ? event : null;
+            rootAncestors[index] = event;
+            depths[index] = 0;
+          } else {
+            apiEntryEvents[index] = isApiEntry ? event : apiEntryEvents[parent];
+            rootAncestors[index] = rootAncestors[parent];
+            depths[index] = depths[parent] + 1;
+          }
+          resolved[index] = true;
+          onPath[index] = false;
+        }
+      }
+    }
+
+    /**
+     * Walks up from the exit api boundary spans, last first so that the ancestors shared by several
+     * of them keep the callee of the last one, and stops at the spans already walked from a later
+     * one.
+     */
+    private Map<ByteBuffer, Event> mapExitSpansToCalleeApiEntrySpans(
+        Map<ByteBuffer, Event> eventMap,
+        Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds) {
+      Map<ByteBuffer, Event> calleeApiEntrySpans = new HashMap<>();
+      boolean[] walked = new boolean[events.size()];
+      for (int i = events.size() - 1; i >= 0; i--) {
+        Event exitSpan = events.get(i);
+        if (!EnrichedSpanUtils.isExitApiBoundary(exitSpan)) {
+          continue;
+        }
+        Event calleeApiEntrySpan =
+            getCalleeApiEntrySpan(exitSpan, eventMap, parentToChildrenEventIds);
+        int current = i;
+        while (current != NO_PARENT
+            && !walked[current]
+            && !EnrichedSpanUtils.isEntrySpan(events.get(current))) {
+          walked[current] = true;
+          if (EnrichedSpanUtils.isExitSpan(events.get(current))) {
+            calleeApiEntrySpans.putIfAbsent(events.get(current).getEventId(), calleeApiEntrySpan);
+          }
+          current = parents[current];
+        }
+      }
+      return calleeApiEntrySpans;
+    }
+
+    @Nullable
+    private static Event getCalleeApiEntrySpan(
+        Event exitSpan,
+        Map<ByteBuffer, Event> eventMap,
+        Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds) {
+      List<ByteBuffer> children = parentToChildrenEventIds.get(exitSpan.getEventId());
+      if (children == null) {
+        return null;
+      }
+      for (ByteBuffer child : children) {
+        Event childEvent = eventMap.get(child);
+        if (EnrichedSpanUtils.isEntryApiBoundary(childEvent)) {
+          return childEvent;
+        }
+      }
+      return null;
+    }
   }
 }
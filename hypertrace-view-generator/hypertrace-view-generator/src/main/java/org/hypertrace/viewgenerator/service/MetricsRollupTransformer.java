@@ -0,0 +1,42 @@
+package org.hypertrace.viewgenerator.service;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.To;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.hypertrace.viewgenerator.generators.MetricsRollupViewGenerator;
+
+/**
+ * Passes on the partial rollups of each trace, keyed by their rollup key and timestamped with the
+ * start of their window, for the windowed aggregation to merge them with those of other traces
+ */
+class MetricsRollupTransformer
+    implements Transformer<String, StructuredTrace, KeyValue<String, MetricsRollupView>> {
+  private final MetricsRollupViewGenerator viewGenerator;
+  private ProcessorContext context;
+
+  MetricsRollupTransformer(MetricsRollupViewGenerator viewGenerator) {
+    this.viewGenerator = viewGenerator;
+  }
+
+  @Override
+  public void init(ProcessorContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public KeyValue<String, MetricsRollupView> transform(String key, StructuredTrace trace) {
+    for (MetricsRollupView rollup : viewGenerator.process(trace)) {
+      context.forward(
+          MetricsRollupViewGenerator.getRollupKey(rollup),
+          rollup,
+          To.all().withTimestamp(rollup.getWindowStartMillis()));
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,112 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.Suppressed.BufferConfig;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.WindowStore;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.kafkastreams.framework.KafkaStreamsApp;
+import org.hypertrace.core.serviceframework.config.ConfigClient;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.hypertrace.viewgenerator.generators.MetricsRollupViewGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the metrics rollups of the traces per window: the partial rollups of the traces are
+ * merged per rollup key within windows of rollup.window, and each rollup is emitted once, when its
+ * window closes, rollup.grace after its end to let late traces in.
+ */
+public class MetricsRollupViewLauncher extends KafkaStreamsApp {
+
+  private static final Logger logger = LoggerFactory.getLogger(MetricsRollupViewLauncher.class);
+
+  private static final String METRICS_ROLLUP_VIEW_JOB_CONFIG = "metrics-rollup-view-job-config";
+  private static final String INPUT_TOPIC_CONFIG_KEY = "input.topic";
+  private static final String OUTPUT_TOPIC_CONFIG_KEY = "output.topic";
+  private static final String ROLLUP_GRACE_CONFIG_KEY = "rollup.grace";
+  private static final Duration DEFAULT_ROLLUP_GRACE = Duration.ofMinutes(1);
+  private static final String ROLLUP_STORE_NAME = "metrics-rollup-store";
+
+  public MetricsRollupViewLauncher(ConfigClient configClient) {
+    super(configClient);
+  }
+
+  @Override
+  public StreamsBuilder buildTopology(
+      Map<String, Object> streamsProperties,
+      StreamsBuilder streamsBuilder,
+      Map<String, KStream<?, ?>> inputStreams) {
+    Config jobConfig = getJobConfig(streamsProperties);
+    String inputTopic = jobConfig.getString(INPUT_TOPIC_CONFIG_KEY);
+    Duration grace =
+        jobConfig.hasPath(ROLLUP_GRACE_CONFIG_KEY)
+            ? jobConfig.getDuration(ROLLUP_GRACE_CONFIG_KEY)
+            : DEFAULT_ROLLUP_GRACE;
+
+    KStream<String, StructuredTrace> inputStream =
+        (KStream<String, StructuredTrace>) inputStreams.get(inputTopic);
+    if (inputStream == null) {
+      inputStream = streamsBuilder.stream(inputTopic, Consumed.with(Serdes.String(), null));
+      inputStreams.put(inputTopic, inputStream);
+    }
+
+    inputStream
+        .transform(
+            () -> {
+              MetricsRollupViewGenerator viewGenerator = new MetricsRollupViewGenerator();
+              viewGenerator.configure(jobConfig);
+              return new MetricsRollupTransformer(viewGenerator);
+            })
+        .groupByKey(Grouped.keySerde(Serdes.String()))
+        .windowedBy(
+            TimeWindows.of(MetricsRollupViewGenerator.getRollupWindow(jobConfig)).grace(grace))
+        .reduce(
+            MetricsRollupViewGenerator::merge,
+            Materialized.<String, MetricsRollupView, WindowStore<Bytes, byte[]>>as(
+                    ROLLUP_STORE_NAME)
+                .withKeySerde(Serdes.String()))
+        // the merged rollups are buffered until their window closes, so each is emitted once
+        .suppress(Suppressed.untilWindowCloses(BufferConfig.unbounded()))
+        .toStream((windowedKey, rollup) -> windowedKey.key())
+        .to(jobConfig.getString(OUTPUT_TOPIC_CONFIG_KEY), Produced.keySerde(Serdes.String()));
+
+    return streamsBuilder;
+  }
+
+  @Override
+  public String getJobConfigKey() {
+    return METRICS_ROLLUP_VIEW_JOB_CONFIG;
+  }
+
+  @Override
+  public Logger getLogger() {
+    return logger;
+  }
+
+  @Override
+  public List<String> getInputTopics(Map<String, Object> properties) {
+    return List.of(getJobConfig(properties).getString(INPUT_TOPIC_CONFIG_KEY));
+  }
+
+  @Override
+  public List<String> getOutputTopics(Map<String, Object> properties) {
+    return List.of(getJobConfig(properties).getString(OUTPUT_TOPIC_CONFIG_KEY));
+  }
+
+  private Config getJobConfig(Map<String, Object> properties) {
+    return (Config) properties.get(getJobConfigKey());
+  }
+}
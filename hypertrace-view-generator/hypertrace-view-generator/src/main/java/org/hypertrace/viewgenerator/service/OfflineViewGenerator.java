@@ -0,0 +1,145 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.viewgenerator.JavaCodeBasedViewGenerator;
+import org.hypertrace.viewgenerator.generators.BaseViewGenerator;
+import org.hypertrace.viewgenerator.generators.ParallelViewGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates the views of the traces of local Avro container files into the sinks of the views,
+ * without any Kafka cluster, to backfill views from historical traces or to benchmark the view
+ * generation. The traces are read from input.path, a file or a directory of .avro files, and the
+ * views of each trace generated concurrently on parallel.threads threads. The sinks are only
+ * closed, completing their files, once all the traces are generated, and aborted if the generation
+ * fails. Each config of view.generators has the view.generator.class of the view and its sink, for
+ * instance:
+ *
+ * <pre>
+ * input.path = "/data/traces"
+ * parallel.threads = 6
+ * view.generators = [{
+ *   view.generator.class = org.hypertrace.viewgenerator.generators.RawServiceViewGenerator
+ *   sink.class = org.hypertrace.viewgenerator.sink.AvroFileViewSink
+ *   sink.path = "/data/views/raw-service-view"
+ * }]
+ * </pre>
+ */
+public class OfflineViewGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(OfflineViewGenerator.class);
+
+  private static final String INPUT_PATH_CONFIG_KEY = "input.path";
+  private static final String PARALLEL_THREADS_CONFIG_KEY = "parallel.threads";
+  private static final int DEFAULT_PARALLEL_THREADS = 6;
+  private static final String VIEW_GENERATORS_CONFIG_KEY = "view.generators";
+  private static final String TRACE_FILE_SUFFIX = ".avro";
+
+  private final Path inputPath;
+  private final int threads;
+  private final List<? extends Config> viewGeneratorConfigs;
+
+  public OfflineViewGenerator(Config config) {
+    this.inputPath = Paths.get(config.getString(INPUT_PATH_CONFIG_KEY));
+    this.threads =
+        config.hasPath(PARALLEL_THREADS_CONFIG_KEY)
+            ? config.getInt(PARALLEL_THREADS_CONFIG_KEY)
+            : DEFAULT_PARALLEL_THREADS;
+    this.viewGeneratorConfigs = config.getConfigList(VIEW_GENERATORS_CONFIG_KEY);
+  }
+
+  /** Takes the path of the config file */
+  public static void main(String[] args) {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("Usage: OfflineViewGenerator <config file>");
+    }
+    new OfflineViewGenerator(ConfigFactory.parseFile(new File(args[0])).resolve()).run();
+  }
+
+  /** Generates the views of all the input traces, and returns the number of traces */
+  public long run() {
+    List<BaseViewGenerator<? extends GenericRecord>> viewGenerators = new ArrayList<>();
+    Map<Class<?>, Config> sinkConfigByViewClass = new HashMap<>();
+    for (Config viewGeneratorConfig : viewGeneratorConfigs) {
+      JavaCodeBasedViewGenerator<?, ?> viewGenerator =
+          ViewGeneratorConfigs.createViewGenerator(viewGeneratorConfig);
+      if (!(viewGenerator instanceof BaseViewGenerator)
+          || !ViewGeneratorConfigs.hasViewSink(viewGeneratorConfig)) {
+        throw new IllegalArgumentException(
+            "Not a trace view generator with a sink: " + viewGenerator.getViewName());
+      }
+      viewGenerators.add((BaseViewGenerator<? extends GenericRecord>) viewGenerator);
+      sinkConfigByViewClass.put(viewGenerator.getViewClass(), viewGeneratorConfig);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    long startMillis = System.currentTimeMillis();
+    long traceCount = 0;
+    ViewSinks viewSinks = new ViewSinks(sinkConfigByViewClass, null);
+    try {
+      ParallelViewGenerator parallelViewGenerator =
+          new ParallelViewGenerator(viewGenerators, executor);
+      SpecificDatumReader<StructuredTrace> datumReader =
+          new SpecificDatumReader<>(StructuredTrace.getClassSchema());
+      for (Path traceFile : getTraceFiles()) {
+        try (DataFileReader<StructuredTrace> traces =
+            new DataFileReader<>(traceFile.toFile(), datumReader)) {
+          // a new trace per record: the state of the view generators is cached by trace instance
+          for (StructuredTrace trace : traces) {
+            for (List<? extends GenericRecord> view : parallelViewGenerator.process(trace)) {
+              viewSinks.write(view);
+            }
+            traceCount++;
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException("Unable to read the traces of " + traceFile, e);
+        }
+      }
+    } catch (RuntimeException e) {
+      // the view files of a failed run are not completed, not to be taken for complete views
+      viewSinks.abort();
+      throw e;
+    } finally {
+      executor.shutdownNow();
+    }
+    viewSinks.close();
+    logger.info(
+        "Generated the views of {} traces in {} ms",
+        traceCount,
+        System.currentTimeMillis() - startMillis);
+    return traceCount;
+  }
+
+  private List<Path> getTraceFiles() {
+    if (!Files.isDirectory(inputPath)) {
+      return List.of(inputPath);
+    }
+    try (Stream<Path> files = Files.list(inputPath)) {
+      return files
+          .filter(file -> file.getFileName().toString().endsWith(TRACE_FILE_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to list the trace files of " + inputPath, e);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.viewgenerator.generators.ParallelViewGenerator;
+
+/**
+ * Passes on the records of all the views of each trace, generated concurrently, but for the rows
+ * of the views with a sink, written to the sinks of the task
+ */
+class ParallelViewGenerationTransformer
+    implements Transformer<String, StructuredTrace, KeyValue<String, GenericRecord>> {
+  private final ParallelViewGenerator viewGenerator;
+  private final Map<Class<?>, Config> sinkConfigByViewClass;
+  private ViewSinks viewSinks;
+  private ProcessorContext context;
+
+  ParallelViewGenerationTransformer(
+      ParallelViewGenerator viewGenerator, Map<Class<?>, Config> sinkConfigByViewClass) {
+    this.viewGenerator = viewGenerator;
+    this.sinkConfigByViewClass = sinkConfigByViewClass;
+  }
+
+  @Override
+  public void init(ProcessorContext context) {
+    this.context = context;
+    this.viewSinks = new ViewSinks(sinkConfigByViewClass, context.taskId().toString());
+    ViewSinks.scheduleFlush(context, viewSinks::flush);
+  }
+
+  @Override
+  public KeyValue<String, GenericRecord> transform(String key, StructuredTrace trace) {
+    for (List<? extends GenericRecord> view : viewGenerator.process(trace)) {
+      if (viewSinks.write(view)) {
+        continue;
+      }
+      for (GenericRecord record : view) {
+        context.forward(key, record);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    viewSinks.close();
+  }
+}
@@ -0,0 +1,261 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.kafkastreams.framework.KafkaStreamsApp;
+import org.hypertrace.core.serviceframework.config.ConfigClient;
+import org.hypertrace.core.serviceframework.config.ConfigUtils;
+import org.hypertrace.core.viewgenerator.JavaCodeBasedViewGenerator;
+import org.hypertrace.viewgenerator.generators.BaseViewGenerator;
+import org.hypertrace.viewgenerator.generators.ConfigurableViewGenerator;
+import org.hypertrace.viewgenerator.generators.ParallelViewGenerator;
+import org.hypertrace.viewgenerator.sink.ViewSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the view generators listed in view.generators, or the single view generator of a job config
+ * without that list, configuring the generators with the config of their view, see {@link
+ * ConfigurableViewGenerator}. The views are generated one record after the other, one view after
+ * the other, unless parallel.enabled: then all the views of each trace are generated concurrently
+ * on a bounded pool shared by the stream threads, while the views of other records than traces,
+ * like log events, are still generated on the stream thread. With serialization.batched, the views
+ * of each trace generated in parallel are serialized by view with a reused encoder, and optionally
+ * packed serialization.pack.rows rows per record, instead of row by row by the value serde. The
+ * rows of the views whose config has a sink block are written to a sink of each stream task
+ * instead of their output topic, see {@link ViewSink}.
+ */
+public class ParallelViewGeneratorLauncher extends KafkaStreamsApp {
+
+  private static final Logger logger = LoggerFactory.getLogger(ParallelViewGeneratorLauncher.class);
+
+  private static final String PARALLEL_VIEW_GENERATORS_JOB_CONFIG =
+      "parallel-view-generators-job-config";
+  private static final String VIEW_GENERATORS_CONFIG_KEY = "view.generators";
+  private static final String PARALLEL_CONFIG_KEY = "parallel";
+  private static final String PARALLEL_ENABLED_CONFIG_KEY = "enabled";
+  private static final String PARALLEL_THREADS_CONFIG_KEY = "threads";
+  private static final int DEFAULT_PARALLEL_THREADS = 6;
+  private static final String INPUT_TOPIC_CONFIG_KEY = "input.topic";
+  private static final String OUTPUT_TOPIC_CONFIG_KEY = "output.topic";
+  private static final String SERIALIZATION_BATCHED_CONFIG_KEY = "serialization.batched";
+  private static final String SERIALIZATION_PACK_ROWS_CONFIG_KEY = "serialization.pack.rows";
+
+  private ExecutorService viewGenerationExecutor;
+
+  public ParallelViewGeneratorLauncher(ConfigClient configClient) {
+    super(configClient);
+  }
+
+  /** Whether the views of each trace of the given job config are generated concurrently */
+  public static boolean isEnabled(Config jobConfig) {
+    String enabledPath = PARALLEL_CONFIG_KEY + "." + PARALLEL_ENABLED_CONFIG_KEY;
+    return jobConfig.hasPath(enabledPath) && jobConfig.getBoolean(enabledPath);
+  }
+
+  @Override
+  public StreamsBuilder buildTopology(
+      Map<String, Object> streamsProperties,
+      StreamsBuilder streamsBuilder,
+      Map<String, KStream<?, ?>> inputStreams) {
+    Config jobConfig = getJobConfig(streamsProperties);
+    boolean parallel = isEnabled(jobConfig);
+
+    Map<String, List<Config>> viewGeneratorConfigsByInputTopic = new LinkedHashMap<>();
+    for (Config viewGeneratorConfig : getViewGeneratorConfigs(jobConfig)) {
+      viewGeneratorConfigsByInputTopic
+          .computeIfAbsent(
+              viewGeneratorConfig.getString(INPUT_TOPIC_CONFIG_KEY), v -> new ArrayList<>())
+          .add(viewGeneratorConfig);
+    }
+
+    viewGeneratorConfigsByInputTopic.forEach(
+        (inputTopic, viewGeneratorConfigs) -> {
+          KStream<String, ?> inputStream = (KStream<String, ?>) inputStreams.get(inputTopic);
+          if (inputStream == null) {
+            inputStream = streamsBuilder.stream(inputTopic, Consumed.with(Serdes.String(), null));
+            inputStreams.put(inputTopic, inputStream);
+          }
+
+          List<Config> traceViewGeneratorConfigs = new ArrayList<>();
+          Map<Class<?>, String> outputTopicByViewClass = new HashMap<>();
+          Map<Class<?>, Config> sinkConfigByViewClass = new HashMap<>();
+          for (Config viewGeneratorConfig : viewGeneratorConfigs) {
+            JavaCodeBasedViewGenerator<?, ?> viewGenerator =
+                ViewGeneratorConfigs.createViewGenerator(viewGeneratorConfig);
+            if (parallel && viewGenerator instanceof BaseViewGenerator) {
+              traceViewGeneratorConfigs.add(viewGeneratorConfig);
+              if (ViewGeneratorConfigs.hasViewSink(viewGeneratorConfig)) {
+                sinkConfigByViewClass.put(viewGenerator.getViewClass(), viewGeneratorConfig);
+              } else {
+                outputTopicByViewClass.put(
+                    viewGenerator.getViewClass(),
+                    viewGeneratorConfig.getString(OUTPUT_TOPIC_CONFIG_KEY));
+              }
+            } else {
+              generateViews(inputStream, viewGenerator, viewGeneratorConfig);
+            }
+          }
+
+          if (traceViewGeneratorConfigs.isEmpty()) {
+            return;
+          }
+          ExecutorService executor = getViewGenerationExecutor(jobConfig);
+          Supplier<ParallelViewGenerator> parallelViewGeneratorSupplier =
+              () ->
+                  new ParallelViewGenerator(
+                      traceViewGeneratorConfigs.stream()
+                          .map(
+                              viewGeneratorConfig ->
+                                  (BaseViewGenerator<? extends GenericRecord>)
+                                      ViewGeneratorConfigs.createViewGenerator(
+                                          viewGeneratorConfig))
+                          .collect(Collectors.toList()),
+                      executor);
+          if (isSerializationBatched(jobConfig)) {
+            int rowsPerRecord = getRowsPerRecord(jobConfig);
+            ((KStream<String, StructuredTrace>) inputStream)
+                .transform(
+                    () ->
+                        new SerializingParallelViewGenerationTransformer(
+                            parallelViewGeneratorSupplier.get(),
+                            outputTopicByViewClass,
+                            sinkConfigByViewClass,
+                            rowsPerRecord))
+                .to(
+                    (key, view, recordContext) -> view.getTopic(),
+                    Produced.with(Serdes.String(), new SerializedViewSerde()));
+          } else {
+            ((KStream<String, StructuredTrace>) inputStream)
+                .transform(
+                    () ->
+                        new ParallelViewGenerationTransformer(
+                            parallelViewGeneratorSupplier.get(), sinkConfigByViewClass))
+                .to(
+                    (key, view, recordContext) -> outputTopicByViewClass.get(view.getClass()),
+                    Produced.keySerde(Serdes.String()));
+          }
+        });
+
+    return streamsBuilder;
+  }
+
+  @Override
+  public String getJobConfigKey() {
+    return PARALLEL_VIEW_GENERATORS_JOB_CONFIG;
+  }
+
+  @Override
+  public Logger getLogger() {
+    return logger;
+  }
+
+  @Override
+  public List<String> getInputTopics(Map<String, Object> properties) {
+    return getViewGeneratorConfigs(getJobConfig(properties)).stream()
+        .map(viewGeneratorConfig -> viewGeneratorConfig.getString(INPUT_TOPIC_CONFIG_KEY))
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<String> getOutputTopics(Map<String, Object> properties) {
+    return getViewGeneratorConfigs(getJobConfig(properties)).stream()
+        .filter(viewGeneratorConfig -> !ViewGeneratorConfigs.hasViewSink(viewGeneratorConfig))
+        .map(viewGeneratorConfig -> viewGeneratorConfig.getString(OUTPUT_TOPIC_CONFIG_KEY))
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  private synchronized ExecutorService getViewGenerationExecutor(Config jobConfig) {
+    if (viewGenerationExecutor == null) {
+      Config parallelConfig =
+          jobConfig.hasPath(PARALLEL_CONFIG_KEY) ? jobConfig.getConfig(PARALLEL_CONFIG_KEY) : null;
+      int threads =
+          parallelConfig != null && parallelConfig.hasPath(PARALLEL_THREADS_CONFIG_KEY)
+              ? parallelConfig.getInt(PARALLEL_THREADS_CONFIG_KEY)
+              : DEFAULT_PARALLEL_THREADS;
+      AtomicInteger threadCount = new AtomicInteger();
+      viewGenerationExecutor =
+          Executors.newFixedThreadPool(
+              threads,
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "view-generator-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return viewGenerationExecutor;
+  }
+
+  private static boolean isSerializationBatched(Config jobConfig) {
+    return jobConfig.hasPath(SERIALIZATION_BATCHED_CONFIG_KEY)
+        && jobConfig.getBoolean(SERIALIZATION_BATCHED_CONFIG_KEY);
+  }
+
+  private static int getRowsPerRecord(Config jobConfig) {
+    return jobConfig.hasPath(SERIALIZATION_PACK_ROWS_CONFIG_KEY)
+        ? jobConfig.getInt(SERIALIZATION_PACK_ROWS_CONFIG_KEY)
+        : 1;
+  }
+
+  private List<Config> getViewGeneratorConfigs(Config jobConfig) {
+    if (!jobConfig.hasPath(VIEW_GENERATORS_CONFIG_KEY)) {
+      // the job of a single view
+      return List.of(jobConfig);
+    }
+    return jobConfig.getStringList(VIEW_GENERATORS_CONFIG_KEY).stream()
+        .map(
+            viewGeneratorName ->
+                configClient.getConfig(
+                    viewGeneratorName,
+                    ConfigUtils.getEnvironmentProperty("cluster.name"),
+                    ConfigUtils.getEnvironmentProperty("pod.name"),
+                    ConfigUtils.getEnvironmentProperty("container.name")))
+        .collect(Collectors.toList());
+  }
+
+  /** Generates the views of the records one after the other, on the stream thread */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void generateViews(
+      KStream<String, ?> inputStream,
+      JavaCodeBasedViewGenerator viewGenerator,
+      Config viewGeneratorConfig) {
+    KStream<String, GenericRecord> views =
+        ((KStream<String, Object>) inputStream)
+            .flatMapValues(
+                record -> {
+                  List<GenericRecord> generatedViews = viewGenerator.process(record);
+                  // generators failing on a record log it and generate no view
+                  return generatedViews == null ? List.<GenericRecord>of() : generatedViews;
+                });
+    if (ViewGeneratorConfigs.hasViewSink(viewGeneratorConfig)) {
+      views.process(() -> new ViewSinkProcessor(viewGeneratorConfig));
+    } else {
+      views.to(
+          viewGeneratorConfig.getString(OUTPUT_TOPIC_CONFIG_KEY),
+          Produced.keySerde(Serdes.String()));
+    }
+  }
+
+  private Config getJobConfig(Map<String, Object> properties) {
+    return (Config) properties.get(getJobConfigKey());
+  }
+}
@@ -0,0 +1,20 @@
+package org.hypertrace.viewgenerator.service;
+
+/** The value of a view record already serialized, with the topic it is produced to */
+class SerializedView {
+  private final String topic;
+  private final byte[] bytes;
+
+  SerializedView(String topic, byte[] bytes) {
+    this.topic = topic;
+    this.bytes = bytes;
+  }
+
+  String getTopic() {
+    return topic;
+  }
+
+  byte[] getBytes() {
+    return bytes;
+  }
+}
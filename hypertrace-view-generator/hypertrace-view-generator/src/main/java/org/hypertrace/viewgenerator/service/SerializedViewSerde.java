@@ -0,0 +1,42 @@
+package org.hypertrace.viewgenerator.service;
+
+import java.util.Map;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+/** Passes the bytes of the serialized views through to the producer */
+class SerializedViewSerde implements Serde<SerializedView> {
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {}
+
+  @Override
+  public void close() {}
+
+  @Override
+  public Serializer<SerializedView> serializer() {
+    return new Ser();
+  }
+
+  @Override
+  public Deserializer<SerializedView> deserializer() {
+    return new De();
+  }
+
+  static class Ser implements Serializer<SerializedView> {
+
+    @Override
+    public byte[] serialize(String topic, SerializedView data) {
+      return data == null ? null : data.getBytes();
+    }
+  }
+
+  static class De implements Deserializer<SerializedView> {
+
+    @Override
+    public SerializedView deserialize(String topic, byte[] data) {
+      return data == null ? null : new SerializedView(topic, data);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.viewgenerator.generators.ParallelViewGenerator;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState;
+import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
+
+/**
+ * Passes on the records of all the views of each trace, generated concurrently, serialized by view
+ * with the reused encoder of the task, see {@link ViewSerializer}, but for the rows of the views
+ * with a sink, written to the sinks of the task
+ */
+class SerializingParallelViewGenerationTransformer
+    implements Transformer<String, StructuredTrace, KeyValue<String, SerializedView>> {
+  private final ParallelViewGenerator viewGenerator;
+  private final Map<Class<?>, String> outputTopicByViewClass;
+  private final Map<Class<?>, Config> sinkConfigByViewClass;
+  private final int rowsPerRecord;
+  private ViewSerializer viewSerializer;
+  private ViewSinks viewSinks;
+  private ProcessorContext context;
+
+  SerializingParallelViewGenerationTransformer(
+      ParallelViewGenerator viewGenerator,
+      Map<Class<?>, String> outputTopicByViewClass,
+      Map<Class<?>, Config> sinkConfigByViewClass,
+      int rowsPerRecord) {
+    this.viewGenerator = viewGenerator;
+    this.outputTopicByViewClass = outputTopicByViewClass;
+    this.sinkConfigByViewClass = sinkConfigByViewClass;
+    this.rowsPerRecord = rowsPerRecord;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void init(ProcessorContext context) {
+    this.context = context;
+    this.viewSinks = new ViewSinks(sinkConfigByViewClass, context.taskId().toString());
+    ViewSinks.scheduleFlush(context, viewSinks::flush);
+    this.viewSerializer =
+        new ViewSerializer((Serializer<Object>) context.valueSerde().serializer(), rowsPerRecord);
+  }
+
+  @Override
+  public KeyValue<String, SerializedView> transform(String key, StructuredTrace trace) {
+    List<List<? extends GenericRecord>> views = viewGenerator.process(trace);
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    for (List<? extends GenericRecord> view : views) {
+      if (view.isEmpty() || viewSinks.write(view)) {
+        continue;
+      }
+      String topic = outputTopicByViewClass.get(view.get(0).getClass());
+      for (byte[] value : viewSerializer.serialize(topic, view, traceState::getEncoding)) {
+        context.forward(key, new SerializedView(topic, value));
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    viewSinks.close();
+  }
+}
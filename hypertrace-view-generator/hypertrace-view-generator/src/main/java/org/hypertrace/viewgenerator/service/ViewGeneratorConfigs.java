@@ -0,0 +1,56 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+import javax.annotation.Nullable;
+import org.hypertrace.core.viewgenerator.JavaCodeBasedViewGenerator;
+import org.hypertrace.viewgenerator.generators.ConfigurableViewGenerator;
+import org.hypertrace.viewgenerator.sink.ViewSink;
+
+/** Creates the view generators and the view sinks of the configs of the views */
+final class ViewGeneratorConfigs {
+  private static final String VIEW_GENERATOR_CLASS_CONFIG_KEY = "view.generator.class";
+  private static final String SINK_CONFIG_KEY = "sink";
+  private static final String SINK_CLASS_CONFIG_KEY = "class";
+
+  private ViewGeneratorConfigs() {}
+
+  static JavaCodeBasedViewGenerator<?, ?> createViewGenerator(Config viewGeneratorConfig) {
+    String viewGeneratorClassName = viewGeneratorConfig.getString(VIEW_GENERATOR_CLASS_CONFIG_KEY);
+    try {
+      JavaCodeBasedViewGenerator<?, ?> viewGenerator =
+          (JavaCodeBasedViewGenerator<?, ?>)
+              Class.forName(viewGeneratorClassName).getDeclaredConstructor().newInstance();
+      if (viewGenerator instanceof ConfigurableViewGenerator) {
+        ((ConfigurableViewGenerator) viewGenerator).configure(viewGeneratorConfig);
+      }
+      return viewGenerator;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException(
+          "Unable to create the view generator " + viewGeneratorClassName, e);
+    }
+  }
+
+  /** Whether the rows of the view go to a sink instead of the output topic of the view */
+  static boolean hasViewSink(Config viewGeneratorConfig) {
+    return viewGeneratorConfig.hasPath(SINK_CONFIG_KEY);
+  }
+
+  /** Creates the sink of the view, for the given stream task if any, see {@link ViewSink} */
+  static ViewSink createViewSink(Config viewGeneratorConfig, @Nullable String taskId) {
+    Config sinkConfig = viewGeneratorConfig.getConfig(SINK_CONFIG_KEY);
+    if (taskId != null) {
+      sinkConfig =
+          sinkConfig.withValue(ViewSink.TASK_ID_CONFIG_KEY, ConfigValueFactory.fromAnyRef(taskId));
+    }
+    String sinkClassName = sinkConfig.getString(SINK_CLASS_CONFIG_KEY);
+    try {
+      ViewSink viewSink =
+          (ViewSink) Class.forName(sinkClassName).getDeclaredConstructor().newInstance();
+      viewSink.configure(sinkConfig);
+      return viewSink;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Unable to create the view sink " + sinkClassName, e);
+    }
+  }
+}
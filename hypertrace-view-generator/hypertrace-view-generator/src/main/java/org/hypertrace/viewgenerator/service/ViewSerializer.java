@@ -0,0 +1,152 @@
+package org.hypertrace.viewgenerator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serializes the rows of the views of a trace with a single reused buffer and binary encoder,
+ * instead of a new encoder and output stream per row. The serialized rows are byte for byte those
+ * of the value serializer: the header the value serializer writes before the Avro encoding of a
+ * row, like the magic byte and schema id of the schema registry wire format, is taken from the
+ * first row of each view, and written before the rows encoded here. Views whose rows the value
+ * serializer does not write that way are serialized by the value serializer, row by row.
+ *
+ * <p>Rows can be packed several per record, as the header followed by the Avro encoding of an
+ * array of rows, for the consumers which read them that way. The strings repeated across the rows
+ * of a trace are written with the UTF-8 encoding the trace keeps for them, instead of being
+ * encoded again for each row. Not thread safe: each stream task has its own.
+ */
+class ViewSerializer {
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final Serializer<Object> valueSerializer;
+  private final int rowsPerRecord;
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+  private final Map<Class<?>, ViewWriter> viewWriters = new HashMap<>();
+  private Function<String, Utf8> stringEncodings = value -> null;
+  private BinaryEncoder encoder;
+
+  ViewSerializer(Serializer<Object> valueSerializer, int rowsPerRecord) {
+    if (rowsPerRecord < 1) {
+      throw new IllegalArgumentException("Rows per record must be positive: " + rowsPerRecord);
+    }
+    this.valueSerializer = valueSerializer;
+    this.rowsPerRecord = rowsPerRecord;
+  }
+
+  /** The record values of the rows of a view, one per row or per pack of rows */
+  List<byte[]> serialize(String topic, List<? extends GenericRecord> rows) {
+    return serialize(topic, rows, value -> null);
+  }
+
+  /**
+   * The record values of the rows of a view, one per row or per pack of rows, the strings with an
+   * encoding in {@code stringEncodings} being written with it
+   */
+  List<byte[]> serialize(
+      String topic, List<? extends GenericRecord> rows, Function<String, Utf8> stringEncodings) {
+    this.stringEncodings = stringEncodings;
+    if (rows.isEmpty()) {
+      return List.of();
+    }
+    ViewWriter viewWriter =
+        viewWriters.computeIfAbsent(
+            rows.get(0).getClass(), viewClass -> createViewWriter(topic, rows.get(0)));
+
+    List<byte[]> values = new ArrayList<>((rows.size() + rowsPerRecord - 1) / rowsPerRecord);
+    if (viewWriter.header == null) {
+      for (GenericRecord row : rows) {
+        values.add(valueSerializer.serialize(topic, row));
+      }
+    } else if (rowsPerRecord == 1) {
+      for (GenericRecord row : rows) {
+        values.add(encode(viewWriter, List.of(row), false));
+      }
+    } else {
+      for (int start = 0; start < rows.size(); start += rowsPerRecord) {
+        int end = Math.min(rows.size(), start + rowsPerRecord);
+        values.add(encode(viewWriter, rows.subList(start, end), true));
+      }
+    }
+    return values;
+  }
+
+  private ViewWriter createViewWriter(String topic, GenericRecord row) {
+    ViewWriter viewWriter = new ViewWriter(row.getSchema());
+    byte[] serialized = valueSerializer.serialize(topic, row);
+    byte[] encoded = encode(viewWriter, List.of(row), false);
+    int headerLength = serialized.length - encoded.length;
+    if (headerLength >= 0
+        && Arrays.equals(
+            serialized, headerLength, serialized.length, encoded, 0, encoded.length)) {
+      viewWriter.header = Arrays.copyOf(serialized, headerLength);
+    }
+    return viewWriter;
+  }
+
+  private byte[] encode(ViewWriter viewWriter, List<? extends GenericRecord> rows, boolean packed) {
+    buffer.reset();
+    if (viewWriter.header != null) {
+      buffer.write(viewWriter.header, 0, viewWriter.header.length);
+    }
+    encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+    try {
+      if (packed) {
+        encoder.writeArrayStart();
+        encoder.setItemCount(rows.size());
+        for (GenericRecord row : rows) {
+          encoder.startItem();
+          viewWriter.datumWriter.write(row, encoder);
+        }
+        encoder.writeArrayEnd();
+      } else {
+        viewWriter.datumWriter.write(rows.get(0), encoder);
+      }
+      encoder.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to serialize the view rows", e);
+    }
+    return buffer.toByteArray();
+  }
+
+  private class ViewWriter {
+    private final SpecificDatumWriter<GenericRecord> datumWriter;
+    // null if the rows are not serialized as the header followed by their Avro encoding
+    private byte[] header;
+
+    private ViewWriter(Schema schema) {
+      this.datumWriter = new StringReusingDatumWriter(schema);
+    }
+  }
+
+  private class StringReusingDatumWriter extends SpecificDatumWriter<GenericRecord> {
+    private StringReusingDatumWriter(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    protected void writeString(Object datum, Encoder out) throws IOException {
+      Utf8 encoding = datum instanceof String ? stringEncodings.apply((String) datum) : null;
+      if (encoding != null) {
+        out.writeString(encoding);
+      } else {
+        super.writeString(datum, out);
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.streams.processor.Processor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.hypertrace.viewgenerator.sink.ViewSink;
+
+/**
+ * Writes the rows of a view to the sink of the view, with a sink per stream task flushed at the
+ * commit interval
+ */
+class ViewSinkProcessor implements Processor<String, GenericRecord> {
+  private final Config viewGeneratorConfig;
+  private ViewSink viewSink;
+
+  ViewSinkProcessor(Config viewGeneratorConfig) {
+    this.viewGeneratorConfig = viewGeneratorConfig;
+  }
+
+  @Override
+  public void init(ProcessorContext context) {
+    this.viewSink =
+        ViewGeneratorConfigs.createViewSink(viewGeneratorConfig, context.taskId().toString());
+    ViewSinks.scheduleFlush(context, viewSink::flush);
+  }
+
+  @Override
+  public void process(String key, GenericRecord row) {
+    viewSink.write(row);
+  }
+
+  @Override
+  public void close() {
+    viewSink.close();
+  }
+}
@@ -0,0 +1,77 @@
+package org.hypertrace.viewgenerator.service;
+
+import com.typesafe.config.Config;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.hypertrace.viewgenerator.sink.ViewSink;
+
+/** The sinks of the views of a stream task, by view class. Not thread safe */
+class ViewSinks implements Closeable {
+  private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 30_000L;
+
+  private final Map<Class<?>, ViewSink> viewSinks = new HashMap<>();
+
+  /**
+   * Creates a sink for each view class of the given configs of the views, for the given stream
+   * task if any
+   */
+  ViewSinks(Map<Class<?>, Config> viewGeneratorConfigByViewClass, @Nullable String taskId) {
+    viewGeneratorConfigByViewClass.forEach(
+        (viewClass, viewGeneratorConfig) ->
+            viewSinks.put(
+                viewClass, ViewGeneratorConfigs.createViewSink(viewGeneratorConfig, taskId)));
+  }
+
+  /** Writes the rows of a view to the sink of the view, false if the view has none */
+  boolean write(List<? extends GenericRecord> rows) {
+    if (rows.isEmpty()) {
+      return false;
+    }
+    ViewSink viewSink = viewSinks.get(rows.get(0).getClass());
+    if (viewSink == null) {
+      return false;
+    }
+    for (GenericRecord row : rows) {
+      viewSink.write(row);
+    }
+    return true;
+  }
+
+  void flush() {
+    viewSinks.values().forEach(ViewSink::flush);
+  }
+
+  /**
+   * Runs the flush of the sinks of a stream task at the commit interval of the task. The stream
+   * thread punctuates its tasks before committing them, so the rows of the records of a commit are
+   * flushed by then, but for those processed in between.
+   */
+  static void scheduleFlush(ProcessorContext context, Runnable flush) {
+    Object commitInterval = context.appConfigs().get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG);
+    long commitIntervalMillis =
+        commitInterval == null
+            ? DEFAULT_COMMIT_INTERVAL_MILLIS
+            : Long.parseLong(commitInterval.toString());
+    context.schedule(
+        Duration.ofMillis(commitIntervalMillis),
+        PunctuationType.WALL_CLOCK_TIME,
+        timestamp -> flush.run());
+  }
+
+  @Override
+  public void close() {
+    viewSinks.values().forEach(ViewSink::close);
+  }
+
+  void abort() {
+    viewSinks.values().forEach(ViewSink::abort);
+  }
+}
@@ -0,0 +1,355 @@
+package org.hypertrace.viewgenerator.sink;
+
+import com.typesafe.config.Config;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumWriter;
+
+/**
+ * Writes the rows of a view to local Avro container files, partitioned by tenant and hour as
+ * path/tenant_id=[tenant]/hour=[yyyy-MM-dd-HH]/part-[task id]-[sink id]-[n].avro, with the blocks
+ * of rows compressed by the codec of the sink config. A file is written as .avro.inprogress and
+ * renamed once closed, so the .avro files are complete. To backfill views or benchmark their
+ * generation without a Kafka cluster.
+ *
+ * <p>The sink config has the path, and optionally the codec (deflate by default, any name of the
+ * Avro CodecFactory), the block.size in bytes, the tenant.column and time.column of the view
+ * (tenant_id and start_time_millis by default), the time.unit of the time column (MILLISECONDS by
+ * default), and max.open.files, the partitions whose files were written the least recently being
+ * closed past it. The partitions of an hour are also closed once a row written is later than the
+ * end of the hour by partition.close.delay (5 minutes by default), the rows of that hour written
+ * afterwards going to new files.
+ *
+ * <p>The sinks of a stream task have the task.id of the task, see {@link ViewSink}. A task failing
+ * without aborting its sinks leaves their files in progress under the path. The next sink of the
+ * task recovers them when configured: the rows of their complete blocks are kept in a .avro file,
+ * those of a last block cut short dropped. The rows written after the last commit of the task are
+ * written again by the task, so some rows may be duplicated. Outside of stream tasks, the files in
+ * progress of a sink which failed without aborting are left as they are.
+ */
+public class AvroFileViewSink implements ViewSink {
+  static final String FILE_SUFFIX = ".avro";
+  static final String IN_PROGRESS_SUFFIX = ".inprogress";
+  static final String RECOVERING_SUFFIX = ".recovering";
+
+  private static final String PATH_CONFIG_KEY = "path";
+  private static final String CODEC_CONFIG_KEY = "codec";
+  private static final String DEFAULT_CODEC = "deflate";
+  private static final String BLOCK_SIZE_CONFIG_KEY = "block.size";
+  private static final String TENANT_COLUMN_CONFIG_KEY = "tenant.column";
+  private static final String DEFAULT_TENANT_COLUMN = "tenant_id";
+  private static final String TIME_COLUMN_CONFIG_KEY = "time.column";
+  private static final String DEFAULT_TIME_COLUMN = "start_time_millis";
+  private static final String TIME_UNIT_CONFIG_KEY = "time.unit";
+  private static final String MAX_OPEN_FILES_CONFIG_KEY = "max.open.files";
+  private static final int DEFAULT_MAX_OPEN_FILES = 64;
+  private static final String PARTITION_CLOSE_DELAY_CONFIG_KEY = "partition.close.delay";
+  private static final Duration DEFAULT_PARTITION_CLOSE_DELAY = Duration.ofMinutes(5);
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final String UNKNOWN_TENANT = "unknown";
+  private static final DateTimeFormatter HOUR_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd-HH").withZone(ZoneOffset.UTC);
+
+  private Path path;
+  private String filePrefix;
+  private CodecFactory codec;
+  private Integer blockSize;
+  private String tenantColumn;
+  private String timeColumn;
+  private TimeUnit timeUnit;
+  private int maxOpenFiles;
+  private long partitionCloseDelayMillis;
+  private Map<Path, PartitionFile> openFiles;
+  private int fileCount;
+  private long latestTimeMillis = Long.MIN_VALUE;
+  // the earliest end of the hours of the open files, or later if those files were closed since
+  private long earliestHourEndMillis = Long.MAX_VALUE;
+
+  @Override
+  public void configure(Config sinkConfig) {
+    this.path = Paths.get(sinkConfig.getString(PATH_CONFIG_KEY));
+    this.codec =
+        CodecFactory.fromString(
+            sinkConfig.hasPath(CODEC_CONFIG_KEY)
+                ? sinkConfig.getString(CODEC_CONFIG_KEY)
+                : DEFAULT_CODEC);
+    this.blockSize =
+        sinkConfig.hasPath(BLOCK_SIZE_CONFIG_KEY)
+            ? (int) sinkConfig.getBytes(BLOCK_SIZE_CONFIG_KEY).longValue()
+            : null;
+    this.tenantColumn =
+        sinkConfig.hasPath(TENANT_COLUMN_CONFIG_KEY)
+            ? sinkConfig.getString(TENANT_COLUMN_CONFIG_KEY)
+            : DEFAULT_TENANT_COLUMN;
+    this.timeColumn =
+        sinkConfig.hasPath(TIME_COLUMN_CONFIG_KEY)
+            ? sinkConfig.getString(TIME_COLUMN_CONFIG_KEY)
+            : DEFAULT_TIME_COLUMN;
+    this.timeUnit =
+        sinkConfig.hasPath(TIME_UNIT_CONFIG_KEY)
+            ? sinkConfig.getEnum(TimeUnit.class, TIME_UNIT_CONFIG_KEY)
+            : TimeUnit.MILLISECONDS;
+    this.maxOpenFiles =
+        sinkConfig.hasPath(MAX_OPEN_FILES_CONFIG_KEY)
+            ? sinkConfig.getInt(MAX_OPEN_FILES_CONFIG_KEY)
+            : DEFAULT_MAX_OPEN_FILES;
+    if (maxOpenFiles < 1) {
+      throw new IllegalArgumentException("Max open files must be positive: " + maxOpenFiles);
+    }
+    this.partitionCloseDelayMillis =
+        (sinkConfig.hasPath(PARTITION_CLOSE_DELAY_CONFIG_KEY)
+                ? sinkConfig.getDuration(PARTITION_CLOSE_DELAY_CONFIG_KEY)
+                : DEFAULT_PARTITION_CLOSE_DELAY)
+            .toMillis();
+    // in the order of their last write, to close the least recently written first
+    this.openFiles = new LinkedHashMap<>(16, 0.75f, true);
+    String taskId =
+        sinkConfig.hasPath(TASK_ID_CONFIG_KEY) ? sinkConfig.getString(TASK_ID_CONFIG_KEY) : null;
+    String taskFilePrefix = taskId == null ? "part-" : "part-" + taskId + "-";
+    this.filePrefix = taskFilePrefix + UUID.randomUUID() + "-";
+    if (taskId != null) {
+      this.recoverFilesInProgress(taskFilePrefix);
+    }
+  }
+
+  @Override
+  public void write(GenericRecord row) {
+    for (String column : List.of(tenantColumn, timeColumn)) {
+      if (row.getSchema().getField(column) == null) {
+        throw new IllegalArgumentException(
+            "No column " + column + " to partition the rows of " + row.getSchema().getName());
+      }
+    }
+    long timeMillis = getTimeMillis(row);
+    if (timeMillis > latestTimeMillis) {
+      latestTimeMillis = timeMillis;
+      if (latestTimeMillis - partitionCloseDelayMillis >= earliestHourEndMillis) {
+        this.closePassedPartitions();
+      }
+    }
+    long hourStartMillis = Math.floorDiv(timeMillis, HOUR_MILLIS) * HOUR_MILLIS;
+    Path partition =
+        path.resolve("tenant_id=" + getTenant(row))
+            .resolve("hour=" + HOUR_FORMATTER.format(Instant.ofEpochMilli(hourStartMillis)));
+    PartitionFile partitionFile = openFiles.get(partition);
+    if (partitionFile == null) {
+      if (openFiles.size() >= maxOpenFiles) {
+        Path leastRecentlyWritten = openFiles.keySet().iterator().next();
+        openFiles.remove(leastRecentlyWritten).close();
+      }
+      partitionFile = new PartitionFile(partition, hourStartMillis + HOUR_MILLIS, row);
+      openFiles.put(partition, partitionFile);
+      earliestHourEndMillis = Math.min(earliestHourEndMillis, partitionFile.hourEndMillis);
+    }
+    try {
+      partitionFile.writer.append(row);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write the view row to " + partition, e);
+    }
+  }
+
+  @Override
+  public void flush() {
+    for (PartitionFile partitionFile : openFiles.values()) {
+      try {
+        partitionFile.writer.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to flush " + partitionFile.inProgressFile, e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    List<PartitionFile> partitionFiles = new ArrayList<>(openFiles.values());
+    openFiles.clear();
+    for (PartitionFile partitionFile : partitionFiles) {
+      partitionFile.close();
+    }
+  }
+
+  /** Deletes the files in progress, the files already closed are complete */
+  @Override
+  public void abort() {
+    List<PartitionFile> partitionFiles = new ArrayList<>(openFiles.values());
+    openFiles.clear();
+    for (PartitionFile partitionFile : partitionFiles) {
+      partitionFile.delete();
+    }
+  }
+
+  /** Completes the files a previous sink of the task left in progress, see the class doc */
+  private void recoverFilesInProgress(String taskFilePrefix) {
+    if (!Files.isDirectory(path)) {
+      return;
+    }
+    List<Path> filesInProgress;
+    try (Stream<Path> files = Files.walk(path)) {
+      filesInProgress =
+          files
+              .filter(
+                  file -> {
+                    String fileName = file.getFileName().toString();
+                    return fileName.startsWith(taskFilePrefix)
+                        && fileName.endsWith(FILE_SUFFIX + IN_PROGRESS_SUFFIX);
+                  })
+              .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to list the files in progress under " + path, e);
+    }
+    for (Path fileInProgress : filesInProgress) {
+      Path file = getCompleteFile(fileInProgress);
+      Path recoveringFile = file.resolveSibling(file.getFileName() + RECOVERING_SUFFIX);
+      try {
+        // already recovered if the previous recovery failed before deleting the file in progress
+        if (!Files.exists(file)) {
+          Files.deleteIfExists(recoveringFile);
+          if (copyCompleteBlocks(fileInProgress, recoveringFile)) {
+            Files.move(recoveringFile, file, StandardCopyOption.ATOMIC_MOVE);
+          }
+        }
+        Files.delete(fileInProgress);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to recover " + fileInProgress, e);
+      }
+    }
+  }
+
+  /** Copies the complete blocks of an Avro file, false if even its header is incomplete */
+  private static boolean copyCompleteBlocks(Path fromFile, Path toFile) throws IOException {
+    DataFileReader<GenericRecord> reader;
+    try {
+      reader = new DataFileReader<>(fromFile.toFile(), new GenericDatumReader<>());
+    } catch (IOException | AvroRuntimeException e) {
+      return false;
+    }
+    try (DataFileReader<GenericRecord> blocks = reader;
+        DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>())) {
+      String codec = blocks.getMetaString(DataFileConstants.CODEC);
+      writer.setCodec(
+          CodecFactory.fromString(codec == null ? DataFileConstants.NULL_CODEC : codec));
+      writer.create(blocks.getSchema(), toFile.toFile());
+      try {
+        writer.appendAllFrom(blocks, false);
+      } catch (IOException | AvroRuntimeException e) {
+        // the file ends with a block cut short, the blocks before it are copied
+      }
+    }
+    return true;
+  }
+
+  private static Path getCompleteFile(Path fileInProgress) {
+    String fileName = fileInProgress.getFileName().toString();
+    return fileInProgress.resolveSibling(
+        fileName.substring(0, fileName.length() - IN_PROGRESS_SUFFIX.length()));
+  }
+
+  private void closePassedPartitions() {
+    earliestHourEndMillis = Long.MAX_VALUE;
+    Iterator<PartitionFile> partitionFiles = openFiles.values().iterator();
+    while (partitionFiles.hasNext()) {
+      PartitionFile partitionFile = partitionFiles.next();
+      if (latestTimeMillis - partitionCloseDelayMillis >= partitionFile.hourEndMillis) {
+        partitionFiles.remove();
+        partitionFile.close();
+      } else {
+        earliestHourEndMillis = Math.min(earliestHourEndMillis, partitionFile.hourEndMillis);
+      }
+    }
+  }
+
+  private String getTenant(GenericRecord row) {
+    Object tenantId = row.get(tenantColumn);
+    return tenantId == null
+        ? UNKNOWN_TENANT
+        : URLEncoder.encode(tenantId.toString(), StandardCharsets.UTF_8);
+  }
+
+  private long getTimeMillis(GenericRecord row) {
+    Object time = row.get(timeColumn);
+    if (!(time instanceof Long || time instanceof Integer)) {
+      throw new IllegalArgumentException(
+          "Column "
+              + timeColumn
+              + " of "
+              + row.getSchema().getName()
+              + " is not a time to partition the rows by: "
+              + time);
+    }
+    return timeUnit.toMillis(((Number) time).longValue());
+  }
+
+  private class PartitionFile {
+    private final long hourEndMillis;
+    private final File inProgressFile;
+    private final DataFileWriter<GenericRecord> writer;
+
+    private PartitionFile(Path partition, long hourEndMillis, GenericRecord row) {
+      this.hourEndMillis = hourEndMillis;
+      this.inProgressFile =
+          partition
+              .resolve(filePrefix + fileCount++ + FILE_SUFFIX + IN_PROGRESS_SUFFIX)
+              .toFile();
+      this.writer = new DataFileWriter<>(new SpecificDatumWriter<>(row.getSchema()));
+      writer.setCodec(codec);
+      if (blockSize != null) {
+        writer.setSyncInterval(blockSize);
+      }
+      try {
+        Files.createDirectories(partition);
+        writer.create(row.getSchema(), inProgressFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to create " + inProgressFile, e);
+      }
+    }
+
+    private void close() {
+      try {
+        writer.close();
+        Files.move(
+            inProgressFile.toPath(),
+            getCompleteFile(inProgressFile.toPath()),
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to close " + inProgressFile, e);
+      }
+    }
+
+    private void delete() {
+      try {
+        writer.close();
+        Files.delete(inProgressFile.toPath());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to delete " + inProgressFile, e);
+      }
+    }
+  }
+}
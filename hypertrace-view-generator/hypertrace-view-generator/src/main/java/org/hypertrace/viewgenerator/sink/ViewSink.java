@@ -0,0 +1,34 @@
+package org.hypertrace.viewgenerator.sink;
+
+import com.typesafe.config.Config;
+import java.io.Closeable;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Where the rows of a view go instead of the output topic of the view, when the config of the view
+ * has a sink block naming the sink class. Sinks are created with their no-arg constructor, one per
+ * stream task, configured by the sink block before any row is written, and flushed at the commit
+ * interval of the task. The sink block of the sinks of a stream task has the id of the task as
+ * task.id, for the sinks to tell what a previous sink of the same task left behind. Not thread
+ * safe.
+ */
+public interface ViewSink extends Closeable {
+  String TASK_ID_CONFIG_KEY = "task.id";
+
+  void configure(Config sinkConfig);
+
+  void write(GenericRecord row);
+
+  /** Makes the rows written so far durable */
+  void flush();
+
+  /** Flushes and releases the sink, no row can be written afterwards */
+  @Override
+  void close();
+
+  /**
+   * Releases the sink after a failure, discarding the rows not made complete yet instead of
+   * completing them. No row can be written afterwards.
+   */
+  void abort();
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.ConfigFactory;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -112,6 +113,26 @@ class LogEventViewGeneratorTest {
     assertEquals("20", deserializedMap.get("k2"));
   }
 
+  @Test
+  void testProcess_attributesCaps() throws JsonProcessingException {
+    LogEventViewGenerator logEventViewGenerator = new LogEventViewGenerator();
+    logEventViewGenerator.configure(
+        ConfigFactory.parseMap(
+            Map.of("attributes.max.value.length", 5, "attributes.max.length", 40)));
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("message", "a \"quoted\" message");
+
+    List<LogEventView> list = logEventViewGenerator.process(getLogEventsWithAttribute(attributes));
+    assertEquals(
+        Map.of("message", "a \"qu"),
+        OBJECT_MAPPER.readValue(list.get(0).getAttributes(), HashMap.class));
+    assertEquals("a \"quoted\" message", list.get(0).getSummary());
+
+    attributes.put("exception.message", "failed");
+    list = logEventViewGenerator.process(getLogEventsWithAttribute(attributes));
+    assertEquals(1, OBJECT_MAPPER.readValue(list.get(0).getAttributes(), HashMap.class).size());
+  }
+
   @Test
   void testSummaryField() {
     LogEventViewGenerator logEventViewGenerator = new LogEventViewGenerator();
@@ -0,0 +1,72 @@
+package org.hypertrace.viewgenerator.generators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.typesafe.config.ConfigFactory;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.hypertrace.viewgenerator.api.sketch.LatencySketch;
+import org.hypertrace.viewgenerator.generators.utils.TestUtilities;
+import org.junit.jupiter.api.Test;
+
+public class MetricsRollupViewGeneratorTest {
+
+  @Test
+  public void testMetricsRollupViewGenerator_HotrodTrace() throws IOException {
+    StructuredTrace trace = TestUtilities.getSampleHotRodTrace();
+    MetricsRollupViewGenerator metricsRollupViewGenerator = new MetricsRollupViewGenerator();
+    metricsRollupViewGenerator.configure(ConfigFactory.parseMap(Map.of("rollup.window", "1h")));
+    List<MetricsRollupView> rollups = metricsRollupViewGenerator.process(trace);
+    assertFalse(rollups.isEmpty());
+
+    // the calls to the apis are those of the raw service view, and the calls to the backends
+    // those of the backend entity view
+    long apiCalls =
+        new RawServiceViewGenerator()
+            .process(trace).stream().mapToLong(view -> view.getNumCalls()).sum();
+    long backendCalls = new BackendEntityViewGenerator().process(trace).size();
+    assertEquals(
+        apiCalls,
+        rollups.stream()
+            .filter(rollup -> rollup.getBackendId() == null)
+            .mapToLong(MetricsRollupView::getNumCalls)
+            .sum());
+    assertEquals(
+        backendCalls,
+        rollups.stream()
+            .filter(rollup -> rollup.getBackendId() != null)
+            .mapToLong(MetricsRollupView::getNumCalls)
+            .sum());
+
+    for (MetricsRollupView rollup : rollups) {
+      assertEquals(0, rollup.getWindowStartMillis() % 3_600_000L);
+      assertEquals(3_600_000L, rollup.getWindowEndMillis() - rollup.getWindowStartMillis());
+      assertEquals(
+          rollup.getNumCalls(),
+          LatencySketch.fromByteBuffer(rollup.getDurationSketch()).getCount());
+    }
+  }
+
+  @Test
+  public void testMerge() throws IOException {
+    StructuredTrace trace = TestUtilities.getSampleHotRodTrace();
+    MetricsRollupView rollup = new MetricsRollupViewGenerator().process(trace).get(0);
+
+    MetricsRollupView merged = MetricsRollupViewGenerator.merge(rollup, rollup);
+
+    assertEquals(
+        MetricsRollupViewGenerator.getRollupKey(rollup),
+        MetricsRollupViewGenerator.getRollupKey(merged));
+    assertEquals(rollup.getWindowStartMillis(), merged.getWindowStartMillis());
+    assertEquals(2 * rollup.getNumCalls(), merged.getNumCalls());
+    assertEquals(2 * rollup.getErrorCount(), merged.getErrorCount());
+    assertEquals(2 * rollup.getDurationSumMillis(), merged.getDurationSumMillis());
+    assertEquals(
+        2 * rollup.getNumCalls(),
+        LatencySketch.fromByteBuffer(merged.getDurationSketch()).getCount());
+  }
+}
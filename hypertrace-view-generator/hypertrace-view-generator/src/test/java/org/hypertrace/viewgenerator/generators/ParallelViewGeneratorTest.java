@@ -0,0 +1,63 @@
+package org.hypertrace.viewgenerator.generators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelViewGeneratorTest {
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setup() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  public void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testParallelViewGen_HotrodTrace() throws IOException {
+    URL resource =
+        Thread.currentThread().getContextClassLoader().getResource("StructuredTrace-Hotrod.avro");
+
+    SpecificDatumReader<StructuredTrace> datumReader =
+        new SpecificDatumReader<>(StructuredTrace.getClassSchema());
+    DataFileReader<StructuredTrace> dfrStructuredTrace =
+        new DataFileReader<>(new File(resource.getPath()), datumReader);
+    StructuredTrace trace = dfrStructuredTrace.next();
+    dfrStructuredTrace.close();
+
+    List<BaseViewGenerator<? extends GenericRecord>> viewGenerators =
+        List.of(
+            new SpanEventViewGenerator(),
+            new ServiceCallViewGenerator(),
+            new BackendEntityViewGenerator(),
+            new RawServiceViewGenerator(),
+            new RawTraceViewGenerator());
+    ParallelViewGenerator parallelViewGenerator =
+        new ParallelViewGenerator(viewGenerators, executor);
+    List<List<? extends GenericRecord>> views = parallelViewGenerator.process(trace);
+
+    // each view is the one its generator generates on its own
+    assertEquals(viewGenerators.size(), views.size());
+    for (int i = 0; i < viewGenerators.size(); i++) {
+      assertEquals(viewGenerators.get(i).generate(trace), views.get(i));
+    }
+    assertFalse(views.get(0).isEmpty());
+  }
+}
@@ -0,0 +1,47 @@
+package org.hypertrace.viewgenerator.generators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.typesafe.config.ConfigFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.datamodel.shared.ApiNode;
+import org.hypertrace.traceenricher.enrichedspan.constants.utils.EnrichedSpanUtils;
+import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
+import org.hypertrace.viewgenerator.api.RawServiceView;
+import org.hypertrace.viewgenerator.api.sketch.LatencySketch;
+import org.hypertrace.viewgenerator.generators.utils.TestUtilities;
+import org.junit.jupiter.api.Test;
+
+public class RawServiceViewGeneratorTest {
+
+  @Test
+  public void testApiNodeDurationSketchHasTheDurationsOfTheEntrySpans() throws IOException {
+    StructuredTrace trace = TestUtilities.getSampleHotRodTrace();
+    Map<ByteBuffer, Long> entrySpansByHeadSpan = new HashMap<>();
+    for (ApiNode<Event> apiNode : new ApiTraceGraph(trace).getApiNodeList()) {
+      entrySpansByHeadSpan.put(
+          apiNode.getHeadEvent().getEventId(),
+          apiNode.getEvents().stream().filter(EnrichedSpanUtils::isEntrySpan).count());
+    }
+
+    RawServiceViewGenerator rawServiceViewGenerator = new RawServiceViewGenerator();
+    rawServiceViewGenerator.configure(
+        ConfigFactory.parseMap(Map.of("duration.sketches.enabled", true)));
+    List<RawServiceView> rawServiceViews = rawServiceViewGenerator.process(trace);
+
+    assertFalse(rawServiceViews.isEmpty());
+    for (RawServiceView rawServiceView : rawServiceViews) {
+      // the exit and internal spans of the api node are parts of its entry spans
+      assertEquals(
+          (long) entrySpansByHeadSpan.get(rawServiceView.getSpanId()),
+          LatencySketch.fromByteBuffer(rawServiceView.getApiNodeDurationSketch()).getCount());
+    }
+  }
+}
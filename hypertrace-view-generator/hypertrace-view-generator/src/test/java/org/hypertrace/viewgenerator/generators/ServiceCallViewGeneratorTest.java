@@ -1,9 +1,12 @@
 package org.hypertrace.viewgenerator.generators;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.typesafe.config.ConfigFactory;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +14,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.hypertrace.core.datamodel.StructuredTrace;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
 import org.hypertrace.viewgenerator.api.ServiceCallView;
+import org.hypertrace.viewgenerator.api.sketch.LatencySketch;
 import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
 import org.hypertrace.viewgenerator.generators.utils.TestUtilities;
 import org.junit.jupiter.api.Test;
@@ -40,6 +44,42 @@ public class ServiceCallViewGeneratorTest {
     assertEquals(individuallyComputedServiceCalls, serviceCallViewRecords);
   }
 
+  @Test
+  public void testServiceCallViewGenerator_DurationSketches() throws IOException {
+    StructuredTrace trace = TestUtilities.getSampleHotRodTrace();
+    ServiceCallViewGenerator serviceCallViewGenerator = new ServiceCallViewGenerator();
+    assertNull(serviceCallViewGenerator.process(trace).get(0).getTraceDurationSketch());
+
+    serviceCallViewGenerator.configure(
+        ConfigFactory.parseMap(Map.of("duration.sketches.enabled", true)));
+    List<ServiceCallView> serviceCallViewRecords = serviceCallViewGenerator.process(trace);
+
+    // the calls from frontend to route share a sketch per edge, and all the sketches merge into
+    // the sketch of all the calls
+    LatencySketch sketch = new LatencySketch();
+    LatencySketch routeSketch = new LatencySketch();
+    int routeCalls = 0;
+    int routeSketches = 0;
+    for (ServiceCallView serviceCallView : serviceCallViewRecords) {
+      boolean isRouteCall = "route".equals(serviceCallView.getCalleeService());
+      if (isRouteCall) {
+        routeCalls++;
+      }
+      if (serviceCallView.getTraceDurationSketch() != null) {
+        LatencySketch edgeSketch =
+            LatencySketch.fromByteBuffer(serviceCallView.getTraceDurationSketch());
+        if (isRouteCall) {
+          routeSketches++;
+          routeSketch.merge(edgeSketch);
+        }
+        sketch.merge(edgeSketch);
+      }
+    }
+    assertTrue(routeSketches < routeCalls);
+    assertEquals(routeCalls, routeSketch.getCount());
+    assertEquals(serviceCallViewRecords.size(), sketch.getCount());
+  }
+
   private List<ServiceCallView> verifyEdgesCreatedFromApiNodeEdge_HotrodTrace(
       ApiTraceGraph apiTraceGraph,
       StructuredTrace trace,
@@ -105,11 +145,7 @@ public class ServiceCallViewGeneratorTest {
       ServiceCallViewGenerator serviceCallViewGenerator) {
     List<ServiceCallView> serviceCallViewRecords = Lists.newArrayList();
     serviceCallViewGenerator.createEdgeFromNonRootEntryEvent(
-        apiTraceGraph,
-        trace,
-        traceState.getEventMap(),
-        traceState.getChildToParentEventIds(),
-        serviceCallViewRecords);
+        apiTraceGraph, trace, traceState, serviceCallViewRecords);
     assertEquals(0, serviceCallViewRecords.size());
     return serviceCallViewRecords;
   }
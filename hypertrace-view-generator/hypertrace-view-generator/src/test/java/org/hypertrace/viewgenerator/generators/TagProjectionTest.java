@@ -0,0 +1,65 @@
+package org.hypertrace.viewgenerator.generators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Map;
+import org.hypertrace.core.datamodel.AttributeValue;
+import org.hypertrace.core.datamodel.Attributes;
+import org.junit.jupiter.api.Test;
+
+public class TagProjectionTest {
+  private final Attributes attributes =
+      Attributes.newBuilder()
+          .setAttributeMap(
+              Map.of(
+                  "http.method",
+                  AttributeValue.newBuilder().setValue("GET").build(),
+                  "http.url",
+                  AttributeValue.newBuilder().setValue("http://localhost:8080/customer").build(),
+                  "http.request.header.cookie",
+                  AttributeValue.newBuilder().setValue("session=abcdef").build(),
+                  "http.request.body",
+                  AttributeValue.newBuilder().setValue("{\"id\": 123}").build()))
+          .build();
+
+  @Test
+  public void keepsAllTagsByDefault() {
+    assertEquals(
+        Map.of(
+            "http.method", "GET",
+            "http.url", "http://localhost:8080/customer",
+            "http.request.header.cookie", "session=abcdef",
+            "http.request.body", "{\"id\": 123}"),
+        TagProjection.KEEP_ALL.project("tenant1", attributes));
+  }
+
+  @Test
+  public void projectsTagsByTenantRules() {
+    TagProjection tagProjection =
+        TagProjection.from(
+            ConfigFactory.parseString(
+                "deny.keys = [\"http.request.body\"]\n"
+                    + "deny.prefixes = [\"http.request.header.\"]\n"
+                    + "max.value.length = 16\n"
+                    + "tenants.tenant2 = {\n"
+                    + "  allow.prefixes = [\"http.request.\"]\n"
+                    + "  deny.keys = []\n"
+                    + "}"),
+            "testView");
+
+    assertEquals(
+        Map.of("http.method", "GET", "http.url", "http://localhost"),
+        tagProjection.project("tenant1", attributes));
+    assertEquals(
+        Map.of("http.request.body", "{\"id\": 123}"),
+        tagProjection.project("tenant2", attributes));
+  }
+
+  @Test
+  public void capsTheTagCount() {
+    TagProjection tagProjection =
+        TagProjection.from(ConfigFactory.parseMap(Map.of("max.tag.count", 3)), "testView");
+    assertEquals(3, tagProjection.project("tenant1", attributes).size());
+  }
+}
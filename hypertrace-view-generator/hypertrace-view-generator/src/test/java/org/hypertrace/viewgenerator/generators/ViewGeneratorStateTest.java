@@ -3,18 +3,39 @@ package org.hypertrace.viewgenerator.generators;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.avro.Schema;
+import org.apache.avro.util.Utf8;
+import org.hypertrace.core.datamodel.AttributeValue;
+import org.hypertrace.core.datamodel.Attributes;
 import org.hypertrace.core.datamodel.Entity;
 import org.hypertrace.core.datamodel.Event;
 import org.hypertrace.core.datamodel.EventRef;
 import org.hypertrace.core.datamodel.EventRefType;
 import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.core.datamodel.shared.trace.AttributeValueCreator;
+import org.hypertrace.traceenricher.enrichedspan.constants.EnrichedSpanConstants;
+import org.hypertrace.traceenricher.enrichedspan.constants.v1.Api;
+import org.hypertrace.traceenricher.enrichedspan.constants.v1.BoundaryTypeValue;
+import org.hypertrace.traceenricher.enrichedspan.constants.v1.CommonAttribute;
 import org.hypertrace.traceenricher.trace.util.ApiTraceGraph;
+import org.hypertrace.viewgenerator.api.RawTraceView;
+import org.hypertrace.viewgenerator.api.SpanEventView;
 import org.hypertrace.viewgenerator.generators.ViewGeneratorState.TraceState;
+import org.hypertrace.viewgenerator.generators.utils.TestUtilities;
 import org.junit.jupiter.api.Test;
 
 public class ViewGeneratorStateTest {
@@ -96,6 +117,145 @@ public class ViewGeneratorStateTest {
     assertNotEquals(apiTraceGraph, differentApiTraceGraph2);
   }
 
+  @Test
+  public void testDeclaredTraceIndexes() {
+    StructuredTrace trace = getTestTrace(customerId, traceId1);
+    List<Map<?, ?>> generatedWith = new ArrayList<>();
+    BaseViewGenerator<RawTraceView> viewGenerator =
+        new BaseViewGenerator<>() {
+          @Override
+          Set<TraceIndex> getTraceIndexes() {
+            return EnumSet.of(TraceIndex.EVENTS, TraceIndex.CHILD_TO_PARENT);
+          }
+
+          @Override
+          List<RawTraceView> generateView(
+              StructuredTrace structuredTrace,
+              Map<String, Entity> entityMap,
+              Map<ByteBuffer, Event> eventMap,
+              Map<ByteBuffer, List<ByteBuffer>> parentToChildrenEventIds,
+              Map<ByteBuffer, ByteBuffer> childToParentEventIds) {
+            generatedWith.addAll(
+                Arrays.asList(
+                    entityMap, eventMap, parentToChildrenEventIds, childToParentEventIds));
+            return List.of();
+          }
+
+          @Override
+          public String getViewName() {
+            return RawTraceView.class.getName();
+          }
+
+          @Override
+          public Schema getSchema() {
+            return RawTraceView.getClassSchema();
+          }
+
+          @Override
+          public Class<RawTraceView> getViewClass() {
+            return RawTraceView.class;
+          }
+        };
+
+    viewGenerator.generate(trace);
+
+    // only the declared indexes are built
+    assertNull(generatedWith.get(0));
+    assertEquals(2, generatedWith.get(1).size());
+    assertNull(generatedWith.get(2));
+    assertEquals(span1, generatedWith.get(3).get(span2));
+  }
+
+  @Test
+  public void testTraceStateStringDictionary() throws IOException {
+    StructuredTrace trace = TestUtilities.getSampleHotRodTrace();
+    List<SpanEventView> spanEventViews = new SpanEventViewGenerator().process(trace);
+
+    // the rows of the trace share a single instance of each service name
+    Map<String, String> serviceNames = new HashMap<>();
+    for (SpanEventView spanEventView : spanEventViews) {
+      String serviceName = spanEventView.getServiceName();
+      if (serviceName != null) {
+        assertSame(serviceNames.computeIfAbsent(serviceName, k -> serviceName), serviceName);
+      }
+    }
+    assertTrue(serviceNames.size() < spanEventViews.size());
+
+    TraceState traceState = ViewGeneratorState.getTraceState(trace);
+    String tenantId = new String(trace.getCustomerId());
+    assertSame(spanEventViews.get(0).getTenantId(), traceState.intern(tenantId));
+    assertNull(traceState.intern(null));
+
+    // and the serializer of the rows shares their encoding
+    String serviceName = serviceNames.keySet().iterator().next();
+    assertEquals(new Utf8(serviceName), traceState.getEncoding(serviceName));
+    assertNull(traceState.getEncoding("not-a-view-name"));
+  }
+
+  @Test
+  public void testTraceStateAncestry() {
+    String entry = EnrichedSpanConstants.getValue(BoundaryTypeValue.BOUNDARY_TYPE_VALUE_ENTRY);
+    String exit = EnrichedSpanConstants.getValue(BoundaryTypeValue.BOUNDARY_TYPE_VALUE_EXIT);
+    Event callerEntry = getTestEvent("caller-entry", null, entry);
+    Event callerInternal = getTestEvent("caller-internal", callerEntry, null);
+    Event callerExit = getTestEvent("caller-exit", callerInternal, exit);
+    Event calleeEntry = getTestEvent("callee-entry", callerExit, entry);
+    Event calleeInternal = getTestEvent("callee-internal", calleeEntry, null);
+    Event orphan = getTestEvent("orphan", getTestEvent("missing", null, null), null);
+    StructuredTrace trace = getTestTrace(customerId, traceId1);
+    trace.setEventList(
+        Arrays.asList(
+            calleeInternal, orphan, callerEntry, calleeEntry, callerExit, callerInternal));
+    TraceState traceState = new TraceState(trace);
+
+    assertEquals(callerEntry, traceState.getApiEntryEvent(callerEntry));
+    assertEquals(callerEntry, traceState.getApiEntryEvent(callerExit));
+    assertEquals(calleeEntry, traceState.getApiEntryEvent(calleeEntry));
+    assertEquals(calleeEntry, traceState.getApiEntryEvent(calleeInternal));
+    assertNull(traceState.getApiEntryEvent(orphan));
+
+    assertEquals(callerEntry, traceState.getRootAncestor(calleeInternal));
+    assertEquals(callerEntry, traceState.getRootAncestor(callerEntry));
+    assertEquals(orphan, traceState.getRootAncestor(orphan));
+
+    assertEquals(4, traceState.getDepth(calleeInternal));
+    assertEquals(2, traceState.getDepth(callerExit));
+    assertEquals(0, traceState.getDepth(orphan));
+
+    Map<ByteBuffer, Event> exitSpanToCalleeApiEntrySpanMap =
+        traceState.getExitSpanToCalleeApiEntrySpanMap();
+    assertEquals(1, exitSpanToCalleeApiEntrySpanMap.size());
+    assertEquals(calleeEntry, exitSpanToCalleeApiEntrySpanMap.get(callerExit.getEventId()));
+  }
+
+  private Event getTestEvent(String spanId, Event parent, String boundaryType) {
+    Map<String, AttributeValue> enrichedAttributes = new HashMap<>();
+    if (boundaryType != null) {
+      enrichedAttributes.put(
+          EnrichedSpanConstants.getValue(CommonAttribute.COMMON_ATTRIBUTE_SPAN_TYPE),
+          AttributeValueCreator.create(boundaryType));
+      enrichedAttributes.put(
+          EnrichedSpanConstants.getValue(Api.API_BOUNDARY_TYPE),
+          AttributeValueCreator.create(boundaryType));
+    }
+    List<EventRef> eventRefs =
+        parent == null
+            ? Collections.emptyList()
+            : List.of(
+                EventRef.newBuilder()
+                    .setTraceId(traceId1)
+                    .setRefType(EventRefType.CHILD_OF)
+                    .setEventId(parent.getEventId())
+                    .build());
+    return Event.newBuilder()
+        .setCustomerId(customerId)
+        .setEventId(ByteBuffer.wrap(spanId.getBytes()))
+        .setEventName(spanId)
+        .setEventRefList(eventRefs)
+        .setEnrichedAttributes(Attributes.newBuilder().setAttributeMap(enrichedAttributes).build())
+        .build();
+  }
+
   private StructuredTrace getTestTrace(String customerId, ByteBuffer traceId) {
     return StructuredTrace.newBuilder()
         .setCustomerId(customerId)
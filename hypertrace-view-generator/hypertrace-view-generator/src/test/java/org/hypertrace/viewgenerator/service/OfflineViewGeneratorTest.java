@@ -0,0 +1,121 @@
+package org.hypertrace.viewgenerator.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.typesafe.config.ConfigFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecord;
+import org.hypertrace.core.datamodel.StructuredTrace;
+import org.hypertrace.viewgenerator.api.RawTraceView;
+import org.hypertrace.viewgenerator.api.SpanEventView;
+import org.hypertrace.viewgenerator.generators.RawTraceViewGenerator;
+import org.hypertrace.viewgenerator.generators.SpanEventViewGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OfflineViewGeneratorTest {
+  @TempDir Path path;
+
+  @Test
+  public void generatesTheViewsOfTheTraceFilesIntoTheSinks() throws IOException {
+    URL resource =
+        Thread.currentThread().getContextClassLoader().getResource("StructuredTrace-Hotrod.avro");
+    String config =
+        String.join(
+            "\n",
+            "input.path = \"" + resource.getPath() + "\"",
+            "parallel.threads = 2",
+            "view.generators = [",
+            viewGeneratorConfig(RawTraceViewGenerator.class, "raw-trace-view"),
+            viewGeneratorConfig(SpanEventViewGenerator.class, "span-event-view"),
+            "]");
+
+    long traceCount = new OfflineViewGenerator(ConfigFactory.parseString(config)).run();
+
+    StructuredTrace trace = readTrace(resource);
+    assertEquals(1, traceCount);
+    assertEquals(
+        new RawTraceViewGenerator().process(trace),
+        readRows(path.resolve("raw-trace-view"), RawTraceView.class));
+    List<SpanEventView> spanEventViews =
+        readRows(path.resolve("span-event-view"), SpanEventView.class);
+    assertFalse(spanEventViews.isEmpty());
+    assertEquals(new SpanEventViewGenerator().process(trace).size(), spanEventViews.size());
+  }
+
+  @Test
+  public void leavesNoViewFilesWhenTheGenerationFails() throws IOException {
+    URL resource =
+        Thread.currentThread().getContextClassLoader().getResource("StructuredTrace-Hotrod.avro");
+    Path inputPath = Files.createDirectory(path.resolve("traces"));
+    Files.copy(Path.of(resource.getPath()), inputPath.resolve("1.avro"));
+    Files.writeString(inputPath.resolve("2.avro"), "not an avro file");
+    String config =
+        String.join(
+            "\n",
+            "input.path = \"" + inputPath + "\"",
+            "view.generators = [",
+            viewGeneratorConfig(RawTraceViewGenerator.class, "raw-trace-view"),
+            "]");
+
+    assertThrows(
+        UncheckedIOException.class,
+        () -> new OfflineViewGenerator(ConfigFactory.parseString(config)).run());
+
+    try (Stream<Path> files = Files.walk(path.resolve("raw-trace-view"))) {
+      assertFalse(files.anyMatch(Files::isRegularFile));
+    }
+  }
+
+  private String viewGeneratorConfig(Class<?> viewGeneratorClass, String viewPath) {
+    return String.join(
+        "\n",
+        "{",
+        "view.generator.class = " + viewGeneratorClass.getName(),
+        "sink.class = org.hypertrace.viewgenerator.sink.AvroFileViewSink",
+        "sink.path = \"" + path.resolve(viewPath) + "\"",
+        "}");
+  }
+
+  private static StructuredTrace readTrace(URL resource) throws IOException {
+    try (DataFileReader<StructuredTrace> traces =
+        new DataFileReader<>(
+            new File(resource.getPath()),
+            new SpecificDatumReader<>(StructuredTrace.getClassSchema()))) {
+      return traces.next();
+    }
+  }
+
+  private static <T extends SpecificRecord> List<T> readRows(Path viewPath, Class<T> viewClass)
+      throws IOException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(viewPath)) {
+      files =
+          paths
+              .filter(file -> file.toString().endsWith(".avro"))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    List<T> rows = new ArrayList<>();
+    for (Path file : files) {
+      try (DataFileReader<T> reader =
+          new DataFileReader<>(file.toFile(), new SpecificDatumReader<>(viewClass))) {
+        reader.forEach(rows::add);
+      }
+    }
+    return rows;
+  }
+}
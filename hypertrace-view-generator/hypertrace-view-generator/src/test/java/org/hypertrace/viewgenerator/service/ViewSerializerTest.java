@@ -0,0 +1,132 @@
+package org.hypertrace.viewgenerator.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.common.serialization.Serializer;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.junit.jupiter.api.Test;
+
+public class ViewSerializerTest {
+  private static final byte[] HEADER = {0, 0, 0, 0, 42};
+
+  // writes the header of the schema registry wire format before the Avro encoding of the rows
+  private final Serializer<Object> registrySerializer =
+      (topic, row) -> {
+        try {
+          ByteArrayOutputStream output = new ByteArrayOutputStream();
+          output.write(HEADER);
+          BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(output, null);
+          SpecificRecord record = (SpecificRecord) row;
+          new SpecificDatumWriter<>(record.getSchema()).write(record, encoder);
+          encoder.flush();
+          return output.toByteArray();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      };
+
+  private final List<MetricsRollupView> rows =
+      List.of(createRow("service1", 1), createRow("service1", 2), createRow("service2", 3));
+
+  @Test
+  public void serializesRowsAsTheValueSerializer() {
+    ViewSerializer viewSerializer = new ViewSerializer(registrySerializer, 1);
+
+    List<byte[]> values = viewSerializer.serialize("topic", rows);
+
+    assertEquals(rows.size(), values.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertArrayEquals(registrySerializer.serialize("topic", rows.get(i)), values.get(i));
+    }
+  }
+
+  @Test
+  public void packsRowsPerRecord() throws IOException {
+    ViewSerializer viewSerializer = new ViewSerializer(registrySerializer, 2);
+
+    List<byte[]> values = viewSerializer.serialize("topic", rows);
+
+    assertEquals(2, values.size());
+    List<MetricsRollupView> readRows = new ArrayList<>();
+    for (byte[] value : values) {
+      readRows.addAll(readPackedRows(value));
+    }
+    assertEquals(rows, readRows);
+  }
+
+  @Test
+  public void writesTheGivenStringEncodings() {
+    ViewSerializer viewSerializer = new ViewSerializer(registrySerializer, 1);
+    Map<String, Utf8> stringEncodings = Map.of("service1", new Utf8("service1"));
+    List<String> encodedStrings = new ArrayList<>();
+
+    List<byte[]> values =
+        viewSerializer.serialize(
+            "topic",
+            rows,
+            value -> {
+              encodedStrings.add(value);
+              return stringEncodings.get(value);
+            });
+
+    for (int i = 0; i < rows.size(); i++) {
+      assertArrayEquals(registrySerializer.serialize("topic", rows.get(i)), values.get(i));
+    }
+    assertTrue(encodedStrings.contains("service1"));
+  }
+
+  @Test
+  public void fallsBackToTheValueSerializer() {
+    Serializer<Object> stringSerializer = (topic, row) -> row.toString().getBytes();
+    ViewSerializer viewSerializer = new ViewSerializer(stringSerializer, 2);
+
+    List<byte[]> values = viewSerializer.serialize("topic", rows);
+
+    assertEquals(rows.size(), values.size());
+    assertArrayEquals(stringSerializer.serialize("topic", rows.get(2)), values.get(2));
+  }
+
+  private List<MetricsRollupView> readPackedRows(byte[] value) throws IOException {
+    for (int i = 0; i < HEADER.length; i++) {
+      assertEquals(HEADER[i], value[i]);
+    }
+    BinaryDecoder decoder =
+        DecoderFactory.get()
+            .binaryDecoder(value, HEADER.length, value.length - HEADER.length, null);
+    SpecificDatumReader<MetricsRollupView> reader =
+        new SpecificDatumReader<>(MetricsRollupView.getClassSchema());
+    List<MetricsRollupView> readRows = new ArrayList<>();
+    for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+      for (long i = 0; i < count; i++) {
+        readRows.add(reader.read(null, decoder));
+      }
+    }
+    return readRows;
+  }
+
+  private static MetricsRollupView createRow(String serviceName, long numCalls) {
+    return MetricsRollupView.newBuilder()
+        .setTenantId("tenant1")
+        .setWindowStartMillis(0)
+        .setWindowEndMillis(60_000)
+        .setServiceName(serviceName)
+        .setNumCalls(numCalls)
+        .build();
+  }
+}
@@ -0,0 +1,47 @@
+package org.hypertrace.viewgenerator.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.Punctuator;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ViewSinksTest {
+  @Test
+  public void flushesTheSinksAtTheCommitInterval() {
+    ProcessorContext context = mock(ProcessorContext.class);
+    when(context.appConfigs()).thenReturn(Map.of(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 5_000L));
+    Runnable flush = mock(Runnable.class);
+
+    ViewSinks.scheduleFlush(context, flush);
+
+    ArgumentCaptor<Punctuator> punctuator = ArgumentCaptor.forClass(Punctuator.class);
+    verify(context)
+        .schedule(
+            eq(Duration.ofMillis(5_000L)),
+            eq(PunctuationType.WALL_CLOCK_TIME),
+            punctuator.capture());
+    punctuator.getValue().punctuate(System.currentTimeMillis());
+    verify(flush).run();
+  }
+
+  @Test
+  public void flushesTheSinksAtTheDefaultCommitInterval() {
+    ProcessorContext context = mock(ProcessorContext.class);
+    when(context.appConfigs()).thenReturn(Map.of());
+
+    ViewSinks.scheduleFlush(context, mock(Runnable.class));
+
+    verify(context)
+        .schedule(eq(Duration.ofSeconds(30)), eq(PunctuationType.WALL_CLOCK_TIME), any());
+  }
+}
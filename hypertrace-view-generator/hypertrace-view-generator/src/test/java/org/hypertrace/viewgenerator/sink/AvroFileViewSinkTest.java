@@ -0,0 +1,201 @@
+package org.hypertrace.viewgenerator.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.hypertrace.viewgenerator.api.MetricsRollupView;
+import org.hypertrace.viewgenerator.api.RawTraceView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AvroFileViewSinkTest {
+  private static final long HOUR_MILLIS = 3_600_000L;
+
+  @TempDir Path path;
+
+  @Test
+  public void writesRowsPartitionedByTenantAndHour() throws IOException {
+    AvroFileViewSink viewSink = createViewSink(Map.of("codec", "deflate-6"));
+    List<RawTraceView> rows =
+        List.of(
+            createRow("tenant1", 1),
+            createRow("tenant1", HOUR_MILLIS + 1),
+            createRow("tenant2", 2),
+            createRow("tenant1", 3));
+    rows.forEach(viewSink::write);
+    viewSink.close();
+
+    assertEquals(
+        List.of(
+            "tenant_id=tenant1/hour=1970-01-01-00",
+            "tenant_id=tenant1/hour=1970-01-01-01",
+            "tenant_id=tenant2/hour=1970-01-01-00"),
+        getFiles().stream()
+            .map(file -> path.relativize(file.getParent()).toString())
+            .collect(Collectors.toList()));
+    assertEquals(
+        List.of(rows.get(0), rows.get(3)), readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+    assertEquals(List.of(rows.get(1)), readRows("tenant_id=tenant1/hour=1970-01-01-01"));
+    assertEquals(List.of(rows.get(2)), readRows("tenant_id=tenant2/hour=1970-01-01-00"));
+  }
+
+  @Test
+  public void closesTheLeastRecentlyWrittenFilesPastTheMaxOpenFiles() throws IOException {
+    AvroFileViewSink viewSink = createViewSink(Map.of("max.open.files", 1));
+    viewSink.write(createRow("tenant1", 1));
+    viewSink.write(createRow("tenant2", 2));
+
+    // the file of the first partition is complete once the second one is opened
+    assertEquals(1, getFiles().size());
+
+    viewSink.write(createRow("tenant1", 3));
+    viewSink.close();
+
+    assertEquals(3, getFiles().size());
+    assertEquals(
+        List.of(createRow("tenant1", 1), createRow("tenant1", 3)),
+        readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+  }
+
+  @Test
+  public void closesThePartitionsOfAnHourOnceItHasPassed() throws IOException {
+    AvroFileViewSink viewSink = createViewSink(Map.of("partition.close.delay", "1m"));
+    viewSink.write(createRow("tenant1", 1));
+    viewSink.write(createRow("tenant2", HOUR_MILLIS + 1));
+
+    // the hour of the first partition has not passed by the close delay yet
+    assertEquals(0, getFiles().size());
+
+    viewSink.write(createRow("tenant2", HOUR_MILLIS + 60_000));
+
+    assertEquals(
+        List.of(createRow("tenant1", 1)), readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+
+    // a late row of a closed partition goes to a new file
+    viewSink.write(createRow("tenant1", 2));
+    viewSink.close();
+
+    assertEquals(
+        List.of(createRow("tenant1", 1), createRow("tenant1", 2)),
+        readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+    assertEquals(3, getFiles().size());
+  }
+
+  @Test
+  public void abortDeletesTheFilesInProgress() throws IOException {
+    AvroFileViewSink viewSink = createViewSink(Map.of("max.open.files", 1));
+    viewSink.write(createRow("tenant1", 1));
+    viewSink.write(createRow("tenant2", 2));
+    viewSink.abort();
+
+    // only the file closed before is complete
+    assertEquals(
+        List.of(createRow("tenant1", 1)), readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+    assertTrue(getFilesInProgress().isEmpty());
+  }
+
+  @Test
+  public void recoversTheFilesInProgressOfThePreviousSinkOfTheTask() throws IOException {
+    AvroFileViewSink failedViewSink = createViewSink(Map.of("task.id", "0_1"));
+    failedViewSink.write(createRow("tenant1", 1));
+    failedViewSink.flush();
+    Path fileInProgress = getFilesInProgress().get(0);
+    // a block cut short after the flushed one
+    Files.write(fileInProgress, new byte[] {2, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    // the sinks of other tasks leave it be
+    createViewSink(Map.of("task.id", "0_2"));
+    assertEquals(List.of(fileInProgress), getFilesInProgress());
+
+    createViewSink(Map.of("task.id", "0_1"));
+
+    assertEquals(List.of(), getFilesInProgress());
+    assertEquals(
+        List.of(createRow("tenant1", 1)), readRows("tenant_id=tenant1/hour=1970-01-01-00"));
+  }
+
+  @Test
+  public void failsOnViewsWithoutATimeColumn() {
+    AvroFileViewSink viewSink = createViewSink(Map.of("time.column", "tenant_id"));
+
+    assertThrows(IllegalArgumentException.class, () -> viewSink.write(createRow("tenant1", 1)));
+  }
+
+  @Test
+  public void failsOnViewsWithoutThePartitionColumns() {
+    AvroFileViewSink viewSink = createViewSink(Map.of());
+    MetricsRollupView row =
+        MetricsRollupView.newBuilder()
+            .setTenantId("tenant1")
+            .setWindowStartMillis(0)
+            .setWindowEndMillis(60_000)
+            .build();
+
+    assertThrows(IllegalArgumentException.class, () -> viewSink.write(row));
+  }
+
+  private AvroFileViewSink createViewSink(Map<String, Object> sinkConfig) {
+    Config config =
+        ConfigFactory.parseMap(sinkConfig)
+            .withFallback(ConfigFactory.parseMap(Map.of("path", path.toString())));
+    AvroFileViewSink viewSink = new AvroFileViewSink();
+    viewSink.configure(config);
+    return viewSink;
+  }
+
+  private List<Path> getFiles() throws IOException {
+    try (Stream<Path> files = Files.walk(path)) {
+      return files
+          .filter(file -> file.toString().endsWith(AvroFileViewSink.FILE_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private List<Path> getFilesInProgress() throws IOException {
+    try (Stream<Path> files = Files.walk(path)) {
+      return files
+          .filter(file -> file.toString().endsWith(AvroFileViewSink.IN_PROGRESS_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private List<RawTraceView> readRows(String partition) throws IOException {
+    List<RawTraceView> rows = new ArrayList<>();
+    for (Path file : getFiles()) {
+      if (!file.getParent().equals(path.resolve(partition))) {
+        continue;
+      }
+      try (DataFileReader<RawTraceView> reader =
+          new DataFileReader<>(
+              file.toFile(), new SpecificDatumReader<>(RawTraceView.getClassSchema()))) {
+        reader.forEach(rows::add);
+      }
+    }
+    return rows;
+  }
+
+  private static RawTraceView createRow(String tenantId, long startTimeMillis) {
+    return RawTraceView.newBuilder()
+        .setTenantId(tenantId)
+        .setTraceId(ByteBuffer.wrap(new byte[] {1, 2, 3}))
+        .setStartTimeMillis(startTimeMillis)
+        .build();
+  }
+}
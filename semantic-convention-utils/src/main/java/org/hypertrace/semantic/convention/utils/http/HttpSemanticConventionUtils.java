@@ -45,6 +45,7 @@ import org.hypertrace.core.semantic.convention.constants.span.OTelSpanSemanticCo
 import org.hypertrace.core.span.constants.RawSpanConstants;
 import org.hypertrace.core.span.constants.v1.Http;
 import org.hypertrace.core.span.constants.v1.OTSpanTag;
+import org.hypertrace.semantic.convention.utils.span.SemanticAttributeIndex;
 import org.hypertrace.semantic.convention.utils.span.SpanSemanticConventionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -130,6 +131,31 @@ public class HttpSemanticConventionUtils {
           RawSpanConstants.getValue(HTTP_RESPONSE_STATUS_CODE),
           OTelHttpSemanticConventions.HTTP_STATUS_CODE.getValue());
 
+  private enum HttpAttribute {
+    USER_AGENT,
+    URL_PATH,
+    METHOD,
+    SCHEME,
+    FULL_URL,
+    STATUS_CODE
+  }
+
+  private static final SemanticAttributeIndex<HttpAttribute> HTTP_ATTRIBUTE_INDEX =
+      SemanticAttributeIndex.builder(HttpAttribute.class)
+          .add(HttpAttribute.USER_AGENT, USER_AGENT_ATTRIBUTES, StringUtils::isNotEmpty)
+          .add(
+              HttpAttribute.URL_PATH,
+              URL_PATH_ATTRIBUTES,
+              path -> StringUtils.isNotBlank(path) && path.startsWith(SLASH))
+          .add(HttpAttribute.METHOD, METHOD_ATTRIBUTES, StringUtils::isNotBlank)
+          .add(HttpAttribute.SCHEME, SCHEME_ATTRIBUTES, StringUtils::isNotEmpty)
+          .add(
+              HttpAttribute.FULL_URL,
+              FULL_URL_ATTRIBUTES,
+              url -> StringUtils.isNotBlank(url) && isValidUrl(url))
+          .add(HttpAttribute.STATUS_CODE, STATUS_CODE_ATTRIBUTES, statusCode -> true)
+          .build();
+
   /** @return attribute keys for http method */
   public static List<String> getAttributeKeysForHttpMethod() {
     return Lists.newArrayList(Sets.newHashSet(OTHER_HTTP_METHOD, OTEL_HTTP_METHOD));
@@ -145,13 +171,7 @@ public class HttpSemanticConventionUtils {
   }
 
   public static boolean isAbsoluteUrl(String urlStr) {
-    try {
-      URL url = getNormalizedUrl(urlStr);
-      return url.toString().equals(urlStr);
-    } catch (MalformedURLException e) {
-      // ignore
-    }
-    return false;
+    return ParsedUrl.of(urlStr).isAbsolute();
   }
 
   /**
@@ -271,12 +291,7 @@ public class HttpSemanticConventionUtils {
    * http://hypertrace.org/customer?customer=392 relative URL: /customer?customer=392
    */
   public static boolean isValidUrl(String url) {
-    try {
-      getNormalizedUrl(url);
-    } catch (MalformedURLException e) {
-      return false;
-    }
-    return true;
+    return ParsedUrl.of(url).isValid();
   }
 
   public static URL getNormalizedUrl(String url) throws MalformedURLException {
@@ -284,19 +299,7 @@ public class HttpSemanticConventionUtils {
   }
 
   public static Optional<String> getHttpUserAgent(Event event) {
-
-    if (event.getAttributes() == null || event.getAttributes().getAttributeMap() == null) {
-      return Optional.empty();
-    }
-
-    Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-    for (String useragent : USER_AGENT_ATTRIBUTES) {
-      if (attributeValueMap.get(useragent) != null
-          && !StringUtils.isEmpty(attributeValueMap.get(useragent).getValue())) {
-        return Optional.of(attributeValueMap.get(useragent).getValue());
-      }
-    }
-    return Optional.empty();
+    return HTTP_ATTRIBUTE_INDEX.getView(event).getValue(HttpAttribute.USER_AGENT);
   }
 
   public static Optional<String> getHttpUserAgentFromHeader(Event event) {
@@ -318,12 +321,7 @@ public class HttpSemanticConventionUtils {
   public static Optional<String> getHttpHost(Event event) {
     Optional<String> url = getHttpUrlFromRawAttributes(event);
     if (url.isPresent() && isAbsoluteUrl(url.get())) {
-      try {
-        return Optional.of(getNormalizedUrl(url.get()).getAuthority());
-      } catch (MalformedURLException e) {
-        LOGGER.warn(
-            "On extracting httpHost, received an invalid URL: {}, {}", url.get(), e.getMessage());
-      }
+      return Optional.of(ParsedUrl.of(url.get()).getAuthority());
     }
     return Optional.ofNullable(
         SpanAttributeUtils.getFirstAvailableStringAttribute(event, HOST_ATTRIBUTES));
@@ -333,82 +331,42 @@ public class HttpSemanticConventionUtils {
     Optional<String> path = getHttpPathFromRawAttributes(event);
     Optional<String> url = getHttpUrlFromRawAttributes(event);
     if (url.isPresent() && path.isEmpty()) {
-      try {
-        String pathval = getNormalizedUrl(url.get()).getPath();
+      ParsedUrl parsedUrl = ParsedUrl.of(url.get());
+      if (parsedUrl.isValid()) {
+        String pathval = parsedUrl.getPath();
         if (StringUtils.isBlank(pathval)) {
           pathval = SLASH;
         }
         return Optional.of(removeTrailingSlash(pathval));
-      } catch (MalformedURLException e) {
-        LOGGER.warn(
-            "On extracting httpPath, received an invalid URL: {}, {}", url.get(), e.getMessage());
       }
+      LOGGER.warn("On extracting httpPath, received an invalid URL: {}", url.get());
     }
     return path;
   }
 
   private static Optional<String> getHttpPathFromRawAttributes(Event event) {
-
-    if (event.getAttributes() == null || event.getAttributes().getAttributeMap() == null) {
-      return Optional.empty();
-    }
-
-    Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-    for (String path : URL_PATH_ATTRIBUTES) {
-      if (attributeValueMap.get(path) != null) {
-        String s = attributeValueMap.get(path).getValue();
-        if (StringUtils.isNotBlank(s) && s.startsWith(SLASH)) {
-          return getPathFromUrlObject(s).map(HttpSemanticConventionUtils::removeTrailingSlash);
-        }
-      }
-    }
-    return Optional.empty();
+    return HTTP_ATTRIBUTE_INDEX
+        .getView(event)
+        .getValue(HttpAttribute.URL_PATH)
+        .flatMap(HttpSemanticConventionUtils::getPathFromUrlObject)
+        .map(HttpSemanticConventionUtils::removeTrailingSlash);
   }
 
   public static Optional<String> getHttpMethod(Event event) {
-
-    if (event.getAttributes() == null || event.getAttributes().getAttributeMap() == null) {
-      return Optional.empty();
-    }
-
-    Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-    for (String method : METHOD_ATTRIBUTES) {
-      if (attributeValueMap.get(method) != null
-          && !StringUtils.isBlank(attributeValueMap.get(method).getValue())) {
-        return Optional.of(attributeValueMap.get(method).getValue());
-      }
-    }
-    return Optional.empty();
+    return HTTP_ATTRIBUTE_INDEX.getView(event).getValue(HttpAttribute.METHOD);
   }
 
   public static Optional<String> getHttpScheme(Event event) {
 
     Optional<String> url = getHttpUrlFromRawAttributes(event);
     if (url.isPresent() && isAbsoluteUrl(url.get())) {
-      try {
-        return Optional.of(getNormalizedUrl(url.get()).getProtocol());
-      } catch (MalformedURLException e) {
-        LOGGER.warn(
-            "On extracting httpScheme, received an invalid URL: {}, {}", url.get(), e.getMessage());
-      }
+      return Optional.of(ParsedUrl.of(url.get()).getScheme());
     }
     return getHttpSchemeFromRawAttributes(event);
   }
 
   private static Optional<String> getHttpSchemeFromRawAttributes(Event event) {
-
-    if (event.getAttributes() == null || event.getAttributes().getAttributeMap() == null) {
-      return Optional.empty();
-    }
-
-    Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-    for (String scheme : SCHEME_ATTRIBUTES) {
-      if (attributeValueMap.get(scheme) != null
-          && !StringUtils.isEmpty(attributeValueMap.get(scheme).getValue())) {
-        return Optional.of(attributeValueMap.get(scheme).getValue());
-      }
-    }
-    return Optional.empty();
+    return HTTP_ATTRIBUTE_INDEX.getView(event).getValue(HttpAttribute.SCHEME);
   }
 
   public static Optional<String> getHttpUrl(Event event) {
@@ -426,17 +384,8 @@ public class HttpSemanticConventionUtils {
     }
 
     Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-    String httpUrlFromRawAttributes = null;
-
-    for (String url : FULL_URL_ATTRIBUTES) {
-      if (attributeValueMap.get(url) != null) {
-        String urlVal = attributeValueMap.get(url).getValue();
-        if (!StringUtils.isBlank(urlVal) && isValidUrl(urlVal)) {
-          httpUrlFromRawAttributes = urlVal;
-          break;
-        }
-      }
-    }
+    String httpUrlFromRawAttributes =
+        HTTP_ATTRIBUTE_INDEX.getView(event).getValue(HttpAttribute.FULL_URL).orElse(null);
 
     if (httpUrlFromRawAttributes != null && isAbsoluteUrl(httpUrlFromRawAttributes)) {
       return Optional.of(httpUrlFromRawAttributes);
@@ -459,14 +408,11 @@ public class HttpSemanticConventionUtils {
 
     Optional<String> url = getHttpUrlFromRawAttributes(event);
     if (url.isPresent() && queryString.isEmpty()) {
-      try {
-        return Optional.ofNullable(getNormalizedUrl(url.get()).getQuery());
-      } catch (MalformedURLException e) {
-        LOGGER.warn(
-            "On extracting httpQueryString, received an invalid URL: {}, {}",
-            url.get(),
-            e.getMessage());
+      ParsedUrl parsedUrl = ParsedUrl.of(url.get());
+      if (parsedUrl.isValid()) {
+        return Optional.ofNullable(parsedUrl.getQuery());
       }
+      LOGGER.warn("On extracting httpQueryString, received an invalid URL: {}", url.get());
     }
     return queryString;
   }
@@ -484,20 +430,11 @@ public class HttpSemanticConventionUtils {
   }
 
   public static int getHttpResponseStatusCode(Event event) {
-
-    if (event.getAttributes() == null || event.getAttributes().getAttributeMap() == null) {
-      return 0;
-    }
-
-    Map<String, AttributeValue> attributeValueMap = event.getAttributes().getAttributeMap();
-
-    for (String responseStatusCodeKey : STATUS_CODE_ATTRIBUTES) {
-      if (attributeValueMap.get(responseStatusCodeKey) != null) {
-        return Integer.parseInt(attributeValueMap.get(responseStatusCodeKey).getValue());
-      }
-    }
-
-    return 0;
+    return HTTP_ATTRIBUTE_INDEX
+        .getView(event)
+        .getValue(HttpAttribute.STATUS_CODE)
+        .map(Integer::parseInt)
+        .orElse(0);
   }
 
   public static Optional<String> getHttpRequestHeaderPath(Event event) {
@@ -527,15 +464,11 @@ public class HttpSemanticConventionUtils {
   }
 
   static Optional<String> getPathFromUrlObject(String urlPath) {
-    try {
-      URL url = getNormalizedUrl(urlPath);
-      return Optional.of(url.getPath());
-    } catch (MalformedURLException e) {
-      LOGGER.warn(
-          "On extracting httpResponseStatusCode, received invalid URL path : {}, {}",
-          urlPath,
-          e.getMessage());
+    ParsedUrl parsedUrl = ParsedUrl.of(urlPath);
+    if (parsedUrl.isValid()) {
+      return Optional.of(parsedUrl.getPath());
     }
+    LOGGER.warn("On extracting httpResponseStatusCode, received invalid URL path : {}", urlPath);
     return Optional.empty();
   }
 
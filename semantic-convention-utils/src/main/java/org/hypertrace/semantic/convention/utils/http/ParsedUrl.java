@@ -0,0 +1,228 @@
+package org.hypertrace.semantic.convention.utils.http;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * A URL split into its components, with the same results as {@link
+ * HttpSemanticConventionUtils#getNormalizedUrl(String)}.
+ *
+ * <p>The common absolute http(s) URLs and absolute paths are split by offsets into the string
+ * without allocating anything but the components asked for, anything else (other schemes, user
+ * info, IPv6 hosts, dot segments, whitespace...) is parsed by {@link URL} to keep its exact
+ * semantics. The last few URLs parsed on a thread are memoized, as the components of a span URL
+ * are looked up one at a time by the enrichers.
+ */
+final class ParsedUrl {
+  private static final String HTTP_SCHEME_PREFIX = "http://";
+  private static final String HTTPS_SCHEME_PREFIX = "https://";
+  // components of HttpSemanticConventionUtils' context the relative urls are normalized against
+  private static final String RELATIVE_URL_CONTEXT_SCHEME = "http";
+  private static final String RELATIVE_URL_CONTEXT_AUTHORITY = "hypertrace.org";
+  private static final int NONE = -1;
+  private static final int MAX_PORT_DIGITS = 9;
+
+  private static final int MEMOIZED_URLS = 4;
+  private static final ThreadLocal<RecentUrls> RECENT_URLS =
+      ThreadLocal.withInitial(RecentUrls::new);
+
+  private final String url;
+  // set if the url was parsed by URL, null if the url was split or is invalid
+  private final URL parsedUrl;
+  private final boolean valid;
+  private final boolean absolute;
+  // offsets into the url of the components, if it was split
+  private final int schemeEnd;
+  private final int authorityEnd;
+  private final int pathEnd;
+  private final int queryEnd;
+
+  private ParsedUrl(String url, URL parsedUrl, boolean valid, boolean absolute) {
+    this(url, parsedUrl, valid, absolute, NONE, NONE, NONE, NONE);
+  }
+
+  private ParsedUrl(
+      String url,
+      URL parsedUrl,
+      boolean valid,
+      boolean absolute,
+      int schemeEnd,
+      int authorityEnd,
+      int pathEnd,
+      int queryEnd) {
+    this.url = url;
+    this.parsedUrl = parsedUrl;
+    this.valid = valid;
+    this.absolute = absolute;
+    this.schemeEnd = schemeEnd;
+    this.authorityEnd = authorityEnd;
+    this.pathEnd = pathEnd;
+    this.queryEnd = queryEnd;
+  }
+
+  static ParsedUrl of(String url) {
+    RecentUrls recentUrls = RECENT_URLS.get();
+    ParsedUrl parsedUrl = recentUrls.get(url);
+    if (parsedUrl == null) {
+      parsedUrl = parse(url);
+      recentUrls.add(parsedUrl);
+    }
+    return parsedUrl;
+  }
+
+  /** Whether the url is any valid absolute or relative URL */
+  boolean isValid() {
+    return valid;
+  }
+
+  /** Whether the url is valid and absolute, that is as it is once normalized */
+  boolean isAbsolute() {
+    return absolute;
+  }
+
+  String getScheme() {
+    if (parsedUrl != null) {
+      return parsedUrl.getProtocol();
+    }
+    return schemeEnd == NONE ? RELATIVE_URL_CONTEXT_SCHEME : url.substring(0, schemeEnd);
+  }
+
+  String getAuthority() {
+    if (parsedUrl != null) {
+      return parsedUrl.getAuthority();
+    }
+    return schemeEnd == NONE
+        ? RELATIVE_URL_CONTEXT_AUTHORITY
+        : url.substring(schemeEnd + 3, authorityEnd);
+  }
+
+  String getPath() {
+    return parsedUrl != null ? parsedUrl.getPath() : url.substring(authorityEnd, pathEnd);
+  }
+
+  /** The query, null if the url has none */
+  String getQuery() {
+    if (parsedUrl != null) {
+      return parsedUrl.getQuery();
+    }
+    return pathEnd == queryEnd ? null : url.substring(pathEnd + 1, queryEnd);
+  }
+
+  private static ParsedUrl parse(String url) {
+    ParsedUrl splitUrl = split(url);
+    if (splitUrl != null) {
+      return splitUrl;
+    }
+    try {
+      URL parsedUrl = HttpSemanticConventionUtils.getNormalizedUrl(url);
+      return new ParsedUrl(url, parsedUrl, true, parsedUrl.toString().equals(url));
+    } catch (MalformedURLException e) {
+      return new ParsedUrl(url, null, false, false);
+    }
+  }
+
+  /** Splits the url if it is simple enough to do so, or returns null */
+  private static ParsedUrl split(String url) {
+    int schemeEnd;
+    int authorityStart;
+    if (url.startsWith(HTTP_SCHEME_PREFIX)) {
+      schemeEnd = HTTP_SCHEME_PREFIX.length() - 3;
+      authorityStart = HTTP_SCHEME_PREFIX.length();
+    } else if (url.startsWith(HTTPS_SCHEME_PREFIX)) {
+      schemeEnd = HTTPS_SCHEME_PREFIX.length() - 3;
+      authorityStart = HTTPS_SCHEME_PREFIX.length();
+    } else if (url.startsWith("/") && !url.startsWith("//")) {
+      schemeEnd = NONE;
+      authorityStart = 0;
+    } else {
+      return null;
+    }
+
+    int length = url.length();
+    int fragmentStart = url.indexOf('#', authorityStart);
+    int queryEnd = fragmentStart == NONE ? length : fragmentStart;
+    int queryStart = url.indexOf('?', authorityStart);
+    int pathEnd = queryStart == NONE || queryStart > queryEnd ? queryEnd : queryStart;
+
+    int authorityEnd = authorityStart;
+    if (schemeEnd != NONE) {
+      int pathStart = url.indexOf('/', authorityStart);
+      authorityEnd = pathStart == NONE || pathStart > pathEnd ? pathEnd : pathStart;
+      if (!isSimpleAuthority(url, authorityStart, authorityEnd)) {
+        return null;
+      }
+    }
+    if (!isSimplePath(url, authorityEnd, pathEnd) || !isPrintable(url, pathEnd, length)) {
+      return null;
+    }
+    return new ParsedUrl(
+        url, null, true, schemeEnd != NONE, schemeEnd, authorityEnd, pathEnd, queryEnd);
+  }
+
+  /** A non empty host name or IPv4 address, with an optional port */
+  private static boolean isSimpleAuthority(String url, int start, int end) {
+    int portStart = NONE;
+    for (int i = start; i < end; i++) {
+      char c = url.charAt(i);
+      if (c == ':' && portStart == NONE) {
+        portStart = i + 1;
+      } else if (portStart != NONE ? !isDigit(c) : !isHostCharacter(c)) {
+        return false;
+      }
+    }
+    int hostEnd = portStart == NONE ? end : portStart - 1;
+    return hostEnd > start && (portStart == NONE || end - portStart <= MAX_PORT_DIGITS);
+  }
+
+  /** A path without the dot segments that would be normalized */
+  private static boolean isSimplePath(String url, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = url.charAt(i);
+      if (c <= ' ' || c == '\\' || (c == '.' && i > start && url.charAt(i - 1) == '/')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isPrintable(String url, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (url.charAt(i) <= ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isHostCharacter(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || isDigit(c)
+        || c == '-'
+        || c == '.'
+        || c == '_';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static class RecentUrls {
+    private final ParsedUrl[] urls = new ParsedUrl[MEMOIZED_URLS];
+    private int next;
+
+    private ParsedUrl get(String url) {
+      for (ParsedUrl parsedUrl : urls) {
+        if (parsedUrl != null && parsedUrl.url.equals(url)) {
+          return parsedUrl;
+        }
+      }
+      return null;
+    }
+
+    private void add(ParsedUrl parsedUrl) {
+      urls[next] = parsedUrl;
+      next = (next + 1) % MEMOIZED_URLS;
+    }
+  }
+}
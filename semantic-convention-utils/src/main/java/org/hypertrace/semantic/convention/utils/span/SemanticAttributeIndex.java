@@ -0,0 +1,126 @@
+package org.hypertrace.semantic.convention.utils.span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import org.hypertrace.core.datamodel.AttributeValue;
+import org.hypertrace.core.datamodel.Event;
+
+/**
+ * Index of the attribute keys that may carry each concept of a semantic convention (e.g. the http
+ * method or user agent), by priority. Rather than probing the attributes of a span for every key
+ * of a concept each time it is looked up, the attributes are scanned once against the index, and
+ * the value of every concept is then read from the resulting {@link SemanticView}. A view is a
+ * snapshot of the attributes it was taken from, not updated as they change.
+ *
+ * @param <C> the concepts of the convention
+ */
+public class SemanticAttributeIndex<C extends Enum<C>> {
+  private final C[] concepts;
+  // attribute key -> concept it carries and priority of the key for the concept
+  private final Map<String, KeyRank> keyRanks;
+  private final List<Predicate<String>> acceptedValues;
+
+  private SemanticAttributeIndex(
+      C[] concepts, Map<String, KeyRank> keyRanks, List<Predicate<String>> acceptedValues) {
+    this.concepts = concepts;
+    this.keyRanks = keyRanks;
+    this.acceptedValues = acceptedValues;
+  }
+
+  public static <C extends Enum<C>> Builder<C> builder(Class<C> conceptClass) {
+    return new Builder<>(conceptClass);
+  }
+
+  /** The view of the attributes of the given span, empty if it has none */
+  public SemanticView<C> getView(Event event) {
+    SemanticView<C> view = new SemanticView<>(concepts.length);
+    Map<String, AttributeValue> attributeMap =
+        event.getAttributes() == null ? null : event.getAttributes().getAttributeMap();
+    if (attributeMap == null) {
+      return view;
+    }
+    for (Map.Entry<String, AttributeValue> attribute : attributeMap.entrySet()) {
+      KeyRank rank = keyRanks.get(attribute.getKey());
+      if (rank == null
+          || attribute.getValue() == null
+          || rank.priority >= view.priorities[rank.concept]
+          || !acceptedValues.get(rank.concept).test(attribute.getValue().getValue())) {
+        continue;
+      }
+      view.values[rank.concept] = attribute.getValue();
+      view.priorities[rank.concept] = rank.priority;
+    }
+    return view;
+  }
+
+  public static class Builder<C extends Enum<C>> {
+    private final C[] concepts;
+    private final Map<String, KeyRank> keyRanks = new HashMap<>();
+    private final List<Predicate<String>> acceptedValues = new ArrayList<>();
+
+    private Builder(Class<C> conceptClass) {
+      this.concepts = conceptClass.getEnumConstants();
+      for (int i = 0; i < concepts.length; i++) {
+        acceptedValues.add(value -> true);
+      }
+    }
+
+    /**
+     * Indexes the keys carrying the given concept, in decreasing priority. Only the values matching
+     * the given predicate are taken as the value of the concept.
+     */
+    public Builder<C> add(C concept, List<String> keys, Predicate<String> acceptedValue) {
+      for (int priority = 0; priority < keys.size(); priority++) {
+        KeyRank previous =
+            keyRanks.putIfAbsent(keys.get(priority), new KeyRank(concept.ordinal(), priority));
+        // a key listed twice for the same concept keeps its first priority
+        if (previous != null && previous.concept != concept.ordinal()) {
+          throw new IllegalArgumentException(
+              "Attribute key " + keys.get(priority) + " is already indexed for another concept");
+        }
+      }
+      acceptedValues.set(concept.ordinal(), acceptedValue);
+      return this;
+    }
+
+    public SemanticAttributeIndex<C> build() {
+      return new SemanticAttributeIndex<>(
+          concepts, Map.copyOf(keyRanks), List.copyOf(acceptedValues));
+    }
+  }
+
+  /** The values of the concepts carried by the attributes of a span */
+  public static class SemanticView<C extends Enum<C>> {
+    private final AttributeValue[] values;
+    private final int[] priorities;
+
+    private SemanticView(int conceptCount) {
+      this.values = new AttributeValue[conceptCount];
+      this.priorities = new int[conceptCount];
+      Arrays.fill(priorities, Integer.MAX_VALUE);
+    }
+
+    public Optional<AttributeValue> getAttributeValue(C concept) {
+      return Optional.ofNullable(values[concept.ordinal()]);
+    }
+
+    public Optional<String> getValue(C concept) {
+      return this.getAttributeValue(concept).map(AttributeValue::getValue);
+    }
+  }
+
+  private static class KeyRank {
+    private final int concept;
+    private final int priority;
+
+    private KeyRank(int concept, int priority) {
+      this.concept = concept;
+      this.priority = priority;
+    }
+  }
+}
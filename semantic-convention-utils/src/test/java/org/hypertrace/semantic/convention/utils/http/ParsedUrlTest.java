@@ -0,0 +1,72 @@
+package org.hypertrace.semantic.convention.utils.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class ParsedUrlTest {
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "http://example.com/abc/xyz",
+        "https://example.com:8080/abc?q=1#fragment",
+        "http://example.com",
+        "http://example.com?a=/b",
+        "http://example.com/abc?",
+        "http://example.com/abc#a?b",
+        "http://example.com:/abc",
+        "http://example.com:port/abc",
+        "http://user@example.com/abc",
+        "http://[::1]/abc",
+        "http://example.com/./abc",
+        "http://example.com/abc def",
+        "HTTP://example.com/abc",
+        "http:///abc",
+        "ftp://example.com/abc",
+        "unknown://example.com/abc",
+        "/abc/xyz?q=1",
+        "/abc/../xyz",
+        "//example.com/abc",
+        "abc?q=1",
+        "?q=1",
+        ""
+      })
+  public void testComponentsMatchNormalizedUrl(String url) {
+    ParsedUrl parsedUrl = ParsedUrl.of(url);
+    URL normalizedUrl;
+    try {
+      normalizedUrl = HttpSemanticConventionUtils.getNormalizedUrl(url);
+    } catch (MalformedURLException e) {
+      assertFalse(parsedUrl.isValid());
+      assertFalse(parsedUrl.isAbsolute());
+      return;
+    }
+
+    assertTrue(parsedUrl.isValid());
+    assertEquals(normalizedUrl.toString().equals(url), parsedUrl.isAbsolute());
+    assertEquals(normalizedUrl.getProtocol(), parsedUrl.getScheme());
+    assertEquals(normalizedUrl.getAuthority(), parsedUrl.getAuthority());
+    assertEquals(normalizedUrl.getPath(), parsedUrl.getPath());
+    assertEquals(normalizedUrl.getQuery(), parsedUrl.getQuery());
+  }
+
+  @Test
+  public void testSplitsCommonUrls() {
+    ParsedUrl parsedUrl = ParsedUrl.of("https://example.com:443/abc/xyz?q=1");
+
+    assertTrue(parsedUrl.isAbsolute());
+    assertEquals("https", parsedUrl.getScheme());
+    assertEquals("example.com:443", parsedUrl.getAuthority());
+    assertEquals("/abc/xyz", parsedUrl.getPath());
+    assertEquals("q=1", parsedUrl.getQuery());
+    assertNull(ParsedUrl.of("/abc/xyz").getQuery());
+  }
+}
@@ -0,0 +1,102 @@
+package org.hypertrace.semantic.convention.utils.span;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.hypertrace.core.datamodel.AttributeValue;
+import org.hypertrace.core.datamodel.Event;
+import org.hypertrace.semantic.convention.utils.SemanticConventionTestUtil;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link SemanticAttributeIndex} */
+public class SemanticAttributeIndexTest {
+  private enum Concept {
+    METHOD,
+    USER_AGENT
+  }
+
+  private final SemanticAttributeIndex<Concept> index =
+      SemanticAttributeIndex.builder(Concept.class)
+          .add(Concept.METHOD, List.of("method", "http.method"), StringUtils::isNotBlank)
+          .add(Concept.USER_AGENT, List.of("user_agent", "user-agent"), value -> true)
+          .build();
+
+  @Test
+  public void testValueOfHighestPriorityKeyIsPicked() {
+    Event event =
+        createEvent(
+            Map.of(
+                "http.method", "POST",
+                "method", "GET",
+                "user-agent", "Chrome",
+                "other", "value"));
+
+    assertEquals(Optional.of("GET"), index.getView(event).getValue(Concept.METHOD));
+    assertEquals(Optional.of("Chrome"), index.getView(event).getValue(Concept.USER_AGENT));
+  }
+
+  @Test
+  public void testRejectedValueFallsBackToNextKey() {
+    Event event = createEvent(Map.of("method", " ", "http.method", "POST"));
+
+    assertEquals(Optional.of("POST"), index.getView(event).getValue(Concept.METHOD));
+    assertTrue(index.getView(event).getValue(Concept.USER_AGENT).isEmpty());
+  }
+
+  @Test
+  public void testViewFollowsTheChangesOfTheAttributes() {
+    Map<String, AttributeValue> attributeMap = new HashMap<>();
+    attributeMap.put("http.method", SemanticConventionTestUtil.buildAttributeValue("POST"));
+    Event event = mock(Event.class);
+    when(event.getAttributes())
+        .thenReturn(SemanticConventionTestUtil.buildAttributes(attributeMap));
+    assertEquals(Optional.of("POST"), index.getView(event).getValue(Concept.METHOD));
+
+    attributeMap.put("method", SemanticConventionTestUtil.buildAttributeValue("GET"));
+    assertEquals(Optional.of("GET"), index.getView(event).getValue(Concept.METHOD));
+
+    // same number of attributes, replaced value
+    attributeMap.put("method", SemanticConventionTestUtil.buildAttributeValue("PUT"));
+    assertEquals(Optional.of("PUT"), index.getView(event).getValue(Concept.METHOD));
+
+    // same number of attributes, removed and added key
+    attributeMap.remove("method");
+    attributeMap.put("user-agent", SemanticConventionTestUtil.buildAttributeValue("Chrome"));
+    assertEquals(Optional.of("POST"), index.getView(event).getValue(Concept.METHOD));
+    assertEquals(Optional.of("Chrome"), index.getView(event).getValue(Concept.USER_AGENT));
+  }
+
+  @Test
+  public void testEventWithoutAttributes() {
+    assertTrue(index.getView(mock(Event.class)).getValue(Concept.METHOD).isEmpty());
+  }
+
+  @Test
+  public void testKeyCannotCarryTwoConcepts() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            SemanticAttributeIndex.builder(Concept.class)
+                .add(Concept.METHOD, List.of("method"), value -> true)
+                .add(Concept.USER_AGENT, List.of("method"), value -> true));
+  }
+
+  private Event createEvent(Map<String, String> attributes) {
+    Map<String, AttributeValue> attributeMap = new HashMap<>();
+    attributes.forEach(
+        (key, value) ->
+            attributeMap.put(key, SemanticConventionTestUtil.buildAttributeValue(value)));
+    Event event = mock(Event.class);
+    when(event.getAttributes())
+        .thenReturn(SemanticConventionTestUtil.buildAttributes(attributeMap));
+    return event;
+  }
+}